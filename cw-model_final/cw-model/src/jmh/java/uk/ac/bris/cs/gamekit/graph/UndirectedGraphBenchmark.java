@@ -0,0 +1,77 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Benchmarks lookups and adjacency of an {@link UndirectedGraph} holding the
+ * standard graph; each lookup benchmark visits every node once
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UndirectedGraphBenchmark {
+
+	private UndirectedGraph<Integer, Transport> graph;
+	private List<Node<Integer>> nodes;
+
+	@Setup
+	public void setUp() throws IOException {
+		graph = new UndirectedGraph<>(StandardGame.standardGraph());
+		nodes = graph.getNodes();
+	}
+
+	@Benchmark
+	public void getNode(Blackhole blackhole) {
+		for (Node<Integer> node : nodes)
+			blackhole.consume(graph.getNode(node.value()));
+	}
+
+	@Benchmark
+	public int getEdgesFrom() {
+		int sum = 0;
+		for (Node<Integer> node : nodes)
+			for (Edge<Integer, Transport> edge : graph.getEdgesFrom(node))
+				sum += edge.destination().value();
+		return sum;
+	}
+
+	@Benchmark
+	public int getEdgesTo() {
+		int sum = 0;
+		for (Node<Integer> node : nodes)
+			for (Edge<Integer, Transport> edge : graph.getEdgesTo(node))
+				sum += edge.source().value();
+		return sum;
+	}
+
+	@Benchmark
+	public List<Node<Integer>> getNodes() {
+		return graph.getNodes();
+	}
+
+	@Benchmark
+	public UndirectedGraph<Integer, Transport> copy() {
+		return new UndirectedGraph<>(graph);
+	}
+
+}
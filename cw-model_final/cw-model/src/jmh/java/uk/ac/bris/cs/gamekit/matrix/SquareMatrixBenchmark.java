@@ -0,0 +1,82 @@
+package uk.ac.bris.cs.gamekit.matrix;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks cell, row and column access of a {@link SquareMatrix}; 200 is
+ * about a node by node table of the standard graph
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SquareMatrixBenchmark {
+
+	@Param({ "8", "200" }) public int size;
+
+	private SquareMatrix<Integer> matrix;
+
+	@Setup
+	public void setUp() {
+		matrix = new SquareMatrix<>(size, 0);
+		for (int row = 0; row < size; row++)
+			for (int column = 0; column < size; column++)
+				matrix.put(row, column, row * size + column);
+	}
+
+	@Benchmark
+	public int get() {
+		int sum = 0;
+		for (int row = 0; row < size; row++)
+			for (int column = 0; column < size; column++)
+				sum += matrix.get(row, column);
+		return sum;
+	}
+
+	@Benchmark
+	public SquareMatrix<Integer> put() {
+		for (int row = 0; row < size; row++)
+			for (int column = 0; column < size; column++)
+				matrix.put(row, column, column);
+		return matrix;
+	}
+
+	@Benchmark
+	public void row(Blackhole blackhole) {
+		for (int row = 0; row < size; row++)
+			blackhole.consume(matrix.row(row));
+	}
+
+	@Benchmark
+	public void column(Blackhole blackhole) {
+		for (int column = 0; column < size; column++)
+			blackhole.consume(matrix.column(column));
+	}
+
+	@Benchmark
+	public List<Integer> mainDiagonal() {
+		return matrix.mainDiagonal();
+	}
+
+	@Benchmark
+	public SquareMatrix<Integer> copy() {
+		return new SquareMatrix<>(matrix);
+	}
+
+}
@@ -0,0 +1,47 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+
+/**
+ * Benchmarks reading the standard graph from lines already in memory
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphReaderBenchmark {
+
+	private List<String> lines;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		lines = Files.readAllLines(
+				Paths.get(GraphReaderBenchmark.class.getResource("/graph.txt").toURI()));
+	}
+
+	@Benchmark
+	public ImmutableGraph<Integer, Transport> fromLines() {
+		return ScotlandYardGraphReader.fromLines(lines);
+	}
+
+}
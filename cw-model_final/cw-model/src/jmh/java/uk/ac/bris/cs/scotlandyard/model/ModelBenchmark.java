@@ -0,0 +1,203 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.verify.PlayOut;
+
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.WHITE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.YELLOW;
+
+/**
+ * Benchmarks the game models on standard games with five detectives. The
+ * start locations come from {@link StandardGame} with a fixed seed and moves
+ * are picked with a random of the same seed, so every run plays the same
+ * games. <br>
+ * Valid moves can only be had by starting a rotation and {@code accept} asks
+ * the next player for a move, so {@link #validMoves(Fresh)} includes
+ * {@code startRotate} and {@link #accept(Waiting)} includes generating the
+ * moves of the next player. Both run on a new game each time; the other
+ * benchmarks reuse a game, which favours models that cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+	private static final List<Colour> DETECTIVES = Arrays.asList(BLUE, GREEN, RED,
+			WHITE, YELLOW);
+	// moves played before a game counts as in progress
+	private static final int IN_PROGRESS = 12;
+	// bounds games that never end, a standard game ends long before
+	private static final int MAX_MOVES = 1000;
+
+	@Param({ "ScotlandYardModel", "FastScotlandYardModel" }) public String model;
+	@Param({ "0", "1", "2" }) public int seed;
+
+	private ScotlandYardGameFactory factory;
+	private Graph<Integer, Transport> graph;
+	private Request request;
+	private PlayerConfiguration mrX;
+	private PlayerConfiguration[] detectives;
+	private ScotlandYardGame inProgress;
+	private ScotlandYardGame over;
+
+	@Setup
+	public void setUp() throws IOException {
+		factory = ModelFactories.named(model);
+		graph = StandardGame.standardGraph();
+		request = new Request();
+		mrX = new PlayerConfiguration.Builder(BLACK).using(request)
+				.with(StandardGame.generateMrXTickets())
+				.at(StandardGame.generateMrXLocation(seed)).build();
+		List<Integer> locations = StandardGame.generateDetectiveLocations(seed,
+				DETECTIVES.size());
+		detectives = new PlayerConfiguration[DETECTIVES.size()];
+		for (int i = 0; i < detectives.length; i++)
+			detectives[i] = new PlayerConfiguration.Builder(DETECTIVES.get(i)).using(request)
+					.with(StandardGame.generateDetectiveTickets()).at(locations.get(i)).build();
+		inProgress = play(IN_PROGRESS);
+		over = play(MAX_MOVES);
+		if (!over.isGameOver()) throw new IllegalStateException("Game of seed " + seed
+				+ " not over after " + MAX_MOVES + " moves");
+	}
+
+	private ScotlandYardGame create() {
+		return factory.createGame(StandardGame.ROUNDS, graph, mrX, detectives[0],
+				Arrays.copyOfRange(detectives, 1, detectives.length));
+	}
+
+	// plays seeded random moves, the request of the next player is kept
+	private ScotlandYardGame play(int moves) {
+		ScotlandYardGame game = create();
+		request.callback = null;
+		Random random = new Random(seed);
+		for (int i = 0; i < moves && !game.isGameOver(); i++) {
+			Consumer<Move> callback = request.take(game);
+			List<Move> valid = new ArrayList<>(request.moves);
+			valid.sort(PlayOut.MOVE_ORDER);
+			callback.accept(valid.get(random.nextInt(valid.size())));
+		}
+		return game;
+	}
+
+	@Benchmark
+	public ScotlandYardGame createGame() {
+		return create();
+	}
+
+	@Benchmark
+	public Set<Move> validMoves(Fresh fresh) {
+		fresh.game.startRotate();
+		return request.moves;
+	}
+
+	@Benchmark
+	public ScotlandYardGame accept(Waiting waiting) {
+		waiting.callback.accept(waiting.move);
+		return waiting.game;
+	}
+
+	@Benchmark
+	public boolean isGameOver() {
+		return inProgress.isGameOver();
+	}
+
+	@Benchmark
+	public Set<Colour> getWinningPlayers() {
+		return over.getWinningPlayers();
+	}
+
+	@Benchmark
+	public ScotlandYardGame playOut() {
+		return play(MAX_MOVES);
+	}
+
+	/**
+	 * A new game that has not started
+	 */
+	@State(Scope.Thread)
+	public static class Fresh {
+
+		ScotlandYardGame game;
+
+		@Setup(Level.Invocation)
+		public void setUp(ModelBenchmark benchmark) {
+			benchmark.request.callback = null;
+			game = benchmark.create();
+		}
+
+	}
+
+	/**
+	 * A game in progress waiting for the move of a player
+	 */
+	@State(Scope.Thread)
+	public static class Waiting {
+
+		ScotlandYardGame game;
+		Consumer<Move> callback;
+		Move move;
+
+		@Setup(Level.Invocation)
+		public void setUp(ModelBenchmark benchmark) {
+			game = benchmark.play(IN_PROGRESS);
+			callback = benchmark.request.take(game);
+			List<Move> valid = new ArrayList<>(benchmark.request.moves);
+			valid.sort(PlayOut.MOVE_ORDER);
+			move = valid.get(new Random(benchmark.seed).nextInt(valid.size()));
+		}
+
+	}
+
+	// every player, holds on to the last request for a move
+	private static final class Request implements Player {
+
+		private Set<Move> moves;
+		private Consumer<Move> callback;
+
+		@Override
+		public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+				Consumer<Move> callback) {
+			this.moves = moves;
+			this.callback = callback;
+		}
+
+		// the callback of the current player, starting a rotation if needed
+		Consumer<Move> take(ScotlandYardGame game) {
+			if (callback == null) game.startRotate();
+			Consumer<Move> taken = callback;
+			callback = null;
+			return taken;
+		}
+
+	}
+
+}
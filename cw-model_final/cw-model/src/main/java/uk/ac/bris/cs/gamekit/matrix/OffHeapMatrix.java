@@ -0,0 +1,442 @@
+package uk.ac.bris.cs.gamekit.matrix;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * A rows*columns matrix of {@code int} cells stored outside of the Java heap.
+ * Cells are grouped into tiles of whole rows, a tile is only allocated (or
+ * mapped, when backed by a file) the first time it is touched so tables that
+ * are much larger than the heap can be used without GC pressure. <br>
+ * {@link #rowSize()} is the number of rows and {@link #columnSize()} is the
+ * number of columns. Use the primitive accessors {@link #getInt(int, int)} and
+ * {@link #putInt(int, int, int)} on hot paths to avoid boxing. <br>
+ * A matrix can have more cells than an {@code int} can count, see
+ * {@link #cellCount()}; {@link #count()}, {@link #asList()} and equality only
+ * work up to {@link Integer#MAX_VALUE} cells. <br>
+ * Like {@link SquareMatrix}, this class is not thread safe.
+ */
+public final class OffHeapMatrix extends AbstractMatrix<Integer> implements Closeable {
+
+	private static final int CELL_BYTES = Integer.BYTES;
+	private static final int TILE_BYTES = 1 << 20;
+	private static final Consumer<ByteBuffer> FREE = freeing();
+
+	private final int rows;
+	private final int columns;
+	private final int defaultValue;
+	private final int tileRows;
+	private final IntBuffer[] tiles;
+	// the buffer behind each tile, kept to free it
+	private final ByteBuffer[] buffers;
+	private final FileChannel channel;
+	// mapped tiles only: the tiles that are mapped and when each tile was last used
+	private final int[] resident;
+	private int residentCount;
+	private final long[] used;
+	private long clock;
+
+	/**
+	 * Creates a new matrix backed by direct memory, tiles are allocated on
+	 * first write and reads from untouched tiles return {@code defaultValue}
+	 *
+	 * @param rows number of rows, must be &gt; 0
+	 * @param columns number of columns, must be &gt; 0
+	 * @param defaultValue initial value for all cells
+	 */
+	public OffHeapMatrix(int rows, int columns, int defaultValue) {
+		checkSize(rows, columns);
+		this.rows = rows;
+		this.columns = columns;
+		this.defaultValue = defaultValue;
+		this.tileRows = Math.max(1, TILE_BYTES / (columns * CELL_BYTES));
+		this.tiles = new IntBuffer[(rows + tileRows - 1) / tileRows];
+		this.buffers = new ByteBuffer[tiles.length];
+		this.channel = null;
+		this.resident = null;
+		this.used = null;
+	}
+
+	/**
+	 * Creates a new matrix backed by a memory-mapped file. Existing content of
+	 * the file is kept, so a table written earlier can be reopened without
+	 * recomputing it; cells beyond the end of the file start as zero. At most
+	 * {@code residentTiles} tiles are mapped at any time, the least recently
+	 * read or written tile is flushed and unmapped when the limit is reached.
+	 *
+	 * @param file the backing file; not null
+	 * @param rows number of rows, must be &gt; 0
+	 * @param columns number of columns, must be &gt; 0
+	 * @param residentTiles maximum number of mapped tiles, must be &gt; 0
+	 * @throws IOException if the file cannot be opened or resized
+	 */
+	public OffHeapMatrix(Path file, int rows, int columns, int residentTiles)
+			throws IOException {
+		Objects.requireNonNull(file);
+		checkSize(rows, columns);
+		if (residentTiles < 1)
+			throw new IllegalArgumentException("residentTiles must be > 0, got " + residentTiles);
+		this.rows = rows;
+		this.columns = columns;
+		this.defaultValue = 0;
+		this.tileRows = Math.max(1, TILE_BYTES / (columns * CELL_BYTES));
+		this.tiles = new IntBuffer[(rows + tileRows - 1) / tileRows];
+		this.buffers = new ByteBuffer[tiles.length];
+		RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+		try {
+			long length = (long) rows * columns * CELL_BYTES;
+			if (raf.length() < length) raf.setLength(length);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		// closing the channel also closes the file
+		this.channel = raf.getChannel();
+		this.resident = new int[Math.min(residentTiles, tiles.length)];
+		this.used = new long[tiles.length];
+	}
+
+	private static void checkSize(int rows, int columns) {
+		if (rows < 1) throw new IllegalArgumentException("Rows must be > 0, got " + rows);
+		if (columns < 1) throw new IllegalArgumentException("Columns must be > 0, got " + columns);
+		if ((long) columns * CELL_BYTES > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Columns too large for a single row, got " + columns);
+	}
+
+	/**
+	 * Get the element at the specified location without boxing
+	 *
+	 * @param row the row of the element
+	 * @param column the column of the element
+	 * @return the element
+	 */
+	public int getInt(int row, int column) {
+		checkBound("row", row, rows);
+		checkBound("column", column, columns);
+		int index = row / tileRows;
+		IntBuffer tile = tiles[index];
+		if (tile == null) {
+			if (channel == null) return defaultValue;
+			tile = tile(index);
+		} else if (channel != null) {
+			used[index] = ++clock;
+		}
+		return tile.get(offset(row, column));
+	}
+
+	/**
+	 * Set specified location to element without boxing
+	 *
+	 * @param row the row of the element
+	 * @param column the column of the element
+	 * @param cell the element
+	 */
+	public void putInt(int row, int column, int cell) {
+		checkBound("row", row, rows);
+		checkBound("column", column, columns);
+		tile(row / tileRows).put(offset(row, column), cell);
+	}
+
+	/**
+	 * Sets all cells to the given value, touching every tile
+	 *
+	 * @param value the value
+	 */
+	public void fill(int value) {
+		for (int t = 0; t < tiles.length; t++) {
+			IntBuffer tile = tile(t);
+			for (int i = 0; i < tile.capacity(); i++)
+				tile.put(i, value);
+		}
+	}
+
+	/**
+	 * Flushes all mapped tiles to the backing file, no-op for a matrix backed
+	 * by direct memory
+	 */
+	public void flush() {
+		if (channel == null) return;
+		for (int i = 0; i < residentCount; i++)
+			((MappedByteBuffer) buffers[resident[i]]).force();
+	}
+
+	/**
+	 * Flushes and releases all tiles; the matrix cannot be used afterwards
+	 *
+	 * @throws IOException if the backing file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel == null) {
+			for (int i = 0; i < tiles.length; i++)
+				release(i);
+			return;
+		}
+		while (residentCount > 0)
+			release(resident[--residentCount]);
+		channel.close();
+	}
+
+	/**
+	 * @param row the row
+	 * @return whether the tile holding the row is allocated or mapped
+	 */
+	boolean isResident(int row) {
+		return tiles[row / tileRows] != null;
+	}
+
+	private int offset(int row, int column) {
+		return (row % tileRows) * columns + column;
+	}
+
+	private IntBuffer tile(int index) {
+		IntBuffer tile = tiles[index];
+		if (channel != null) used[index] = ++clock;
+		if (tile != null) return tile;
+		int firstRow = index * tileRows;
+		int bytes = Math.min(tileRows, rows - firstRow) * columns * CELL_BYTES;
+		ByteBuffer buffer;
+		if (channel == null) {
+			buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+			tile = buffer.asIntBuffer();
+			if (defaultValue != 0) for (int i = 0; i < tile.capacity(); i++)
+				tile.put(i, defaultValue);
+		} else {
+			if (residentCount == resident.length) evict();
+			try {
+				buffer = channel.map(MapMode.READ_WRITE,
+						(long) firstRow * columns * CELL_BYTES, bytes);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to map tile " + index, e);
+			}
+			// fixed byte order so files are portable between machines
+			tile = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			resident[residentCount++] = index;
+		}
+		buffers[index] = buffer;
+		tiles[index] = tile;
+		return tile;
+	}
+
+	// unmaps the least recently used tile
+	private void evict() {
+		int oldest = 0;
+		for (int i = 1; i < residentCount; i++)
+			if (used[resident[i]] < used[resident[oldest]]) oldest = i;
+		int index = resident[oldest];
+		resident[oldest] = resident[--residentCount];
+		release(index);
+	}
+
+	private void release(int index) {
+		ByteBuffer buffer = buffers[index];
+		if (buffer == null) return;
+		// direct buffers are MappedByteBuffers too on some JVMs, only files are forced
+		if (channel != null) ((MappedByteBuffer) buffer).force();
+		tiles[index] = null;
+		buffers[index] = null;
+		FREE.accept(buffer);
+	}
+
+	// Frees direct and mapped buffers right away instead of when they are
+	// collected, or does nothing if the JVM does not allow it. A freed buffer
+	// must never be read again, so no references to it may be left.
+	private static Consumer<ByteBuffer> freeing() {
+		try {
+			// Java 9 and later
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			return buffer -> {
+				try {
+					invokeCleaner.invoke(unsafe, buffer);
+				} catch (ReflectiveOperationException ignored) {}
+			};
+		} catch (ReflectiveOperationException | RuntimeException java8) {
+			return buffer -> {
+				try {
+					Method cleaner = buffer.getClass().getMethod("cleaner");
+					cleaner.setAccessible(true);
+					Object instance = cleaner.invoke(buffer);
+					if (instance != null) instance.getClass().getMethod("clean").invoke(instance);
+				} catch (ReflectiveOperationException | RuntimeException ignored) {}
+			};
+		}
+	}
+
+	@Override
+	public Integer get(int row, int column) {
+		return getInt(row, column);
+	}
+
+	@Override
+	public void put(int row, int column, Integer cell) {
+		putInt(row, column, Objects.requireNonNull(cell, "OffHeapMatrix does not allow null"));
+	}
+
+	@Override
+	public boolean inBounds(int row, int column) {
+		return (row >= 0 && row < rows) && (column >= 0 && column < columns);
+	}
+
+	@Override
+	public List<Integer> row(int row) {
+		checkBound("row", row, rows);
+		int[] values = new int[columns];
+		IntBuffer tile = tiles[row / tileRows];
+		if (tile == null && channel == null) {
+			Arrays.fill(values, defaultValue);
+		} else {
+			IntBuffer view = tile(row / tileRows).duplicate();
+			view.position(offset(row, 0));
+			view.get(values);
+		}
+		return unmodifiableList(Ints.asList(values));
+	}
+
+	@Override
+	public void row(int row, List<Integer> values) {
+		Objects.requireNonNull(values);
+		checkBound("row", row, rows);
+		if (columns != values.size()) throw new IllegalArgumentException("size != value.size()");
+		IntBuffer view = tile(row / tileRows).duplicate();
+		view.position(offset(row, 0));
+		view.put(Ints.toArray(values));
+	}
+
+	@Override
+	public List<Integer> column(int column) {
+		checkBound("column", column, columns);
+		int[] values = new int[rows];
+		for (int i = 0; i < rows; i++)
+			values[i] = getInt(i, column);
+		return unmodifiableList(Ints.asList(values));
+	}
+
+	@Override
+	public void column(int column, List<Integer> values) {
+		Objects.requireNonNull(values);
+		checkBound("column", column, columns);
+		if (rows != values.size()) throw new IllegalArgumentException("size != value.size()");
+		Iterator<Integer> iterator = values.iterator();
+		for (int i = 0; i < rows; i++)
+			putInt(i, column, iterator.next());
+	}
+
+	@Override
+	public List<Integer> mainDiagonal() {
+		int size = Math.min(rows, columns);
+		List<Integer> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			values.add(getInt(i, i));
+		return unmodifiableList(values);
+	}
+
+	@Override
+	public List<Integer> antiDiagonal() {
+		int size = Math.min(rows, columns);
+		List<Integer> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			values.add(getInt(i, columns - 1 - i));
+		return unmodifiableList(values);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The returned list is a read-only view that reads through to the
+	 * matrix, no copy is made
+	 *
+	 * @throws ArithmeticException if the matrix has more than
+	 *         {@link Integer#MAX_VALUE} cells
+	 */
+	@Override
+	public List<Integer> asList() {
+		int size = count();
+		return new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				if (index < 0 || index >= size) throw new IndexOutOfBoundsException(
+						"index " + index + " not in [0, " + size + ")");
+				return getInt(index / columns, index % columns);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws ArithmeticException if the matrix has more than
+	 *         {@link Integer#MAX_VALUE} cells, use {@link #cellCount()}
+	 */
+	@Override
+	public int count() {
+		return Math.toIntExact(cellCount());
+	}
+
+	/**
+	 * @return the number of cells, which may exceed {@link Integer#MAX_VALUE}
+	 */
+	public long cellCount() {
+		return (long) rows * columns;
+	}
+
+	@Override
+	public int columnSize() {
+		return columns;
+	}
+
+	@Override
+	public int rowSize() {
+		return rows;
+	}
+
+	private static void checkBound(String name, int value, int size) {
+		if (value < 0) throw new IndexOutOfBoundsException(name + " " + value + " < 0");
+		if (value >= size)
+			throw new IndexOutOfBoundsException(name + " " + value + " > " + (size - 1));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapMatrix{" + rows + "x" + columns + ", tiles=" + tiles.length
+				+ (channel == null ? ", direct" : ", mapped") + '}';
+	}
+}
@@ -0,0 +1,225 @@
+package uk.ac.bris.cs.gamekit.timer;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Timer} backed by a hashed timing wheel. Scheduling and cancelling
+ * are O(1) and never contend on a shared priority queue, which makes it
+ * suitable for hosting many concurrent games that each schedule per-move
+ * timeouts. Tasks are executed on a single daemon worker thread with a
+ * precision of one tick, so tasks should be short and hand off real work
+ * elsewhere. <br>
+ * Use {@link #newGroup()} to obtain a {@link Timer} for a single game;
+ * {@link Timer#stopAll()} on a group only cancels tasks scheduled through
+ * that group.
+ */
+public final class HashedWheelTimer implements Timer {
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Group root = new Group();
+	private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final long startNanos;
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a timer with a 10 millisecond tick and 512 buckets
+	 */
+	public HashedWheelTimer() {
+		this(10, TimeUnit.MILLISECONDS, 512);
+	}
+
+	/**
+	 * Creates a timer with the given tick and wheel size
+	 *
+	 * @param tick duration of a tick, must be &gt; 0
+	 * @param unit unit of {@code tick}; not null
+	 * @param buckets number of buckets, rounded up to a power of two, must be
+	 *        &gt; 0
+	 */
+	public HashedWheelTimer(long tick, TimeUnit unit, int buckets) {
+		if (tick <= 0) throw new IllegalArgumentException("tick must be > 0, got " + tick);
+		if (buckets <= 0 || buckets > 1 << 30)
+			throw new IllegalArgumentException("buckets must be in (0, 2^30], got " + buckets);
+		this.tickNanos = Objects.requireNonNull(unit).toNanos(tick);
+		int size = Integer.highestOneBit(buckets);
+		if (size < buckets) size <<= 1;
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++)
+			wheel[i] = new Bucket();
+		this.mask = size - 1;
+		this.startNanos = System.nanoTime();
+		this.worker = new Thread(this::run, "HashedWheelTimer");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(long duration, TimeUnit unit, Runnable runnable) {
+		return root.schedule(duration, unit, runnable);
+	}
+
+	@Override
+	public void stopAll() {
+		root.stopAll();
+	}
+
+	/**
+	 * Creates a new group of tasks that shares this timer's wheel and worker
+	 *
+	 * @return a new group; never null
+	 */
+	public Timer newGroup() {
+		return new Group();
+	}
+
+	/**
+	 * Cancels all tasks and stops the worker thread, the timer cannot be used
+	 * afterwards
+	 */
+	public void shutdown() {
+		running = false;
+		stopAll();
+		worker.interrupt();
+	}
+
+	private void run() {
+		long tick = 0;
+		while (running) {
+			long deadline = startNanos + (tick + 1) * tickNanos;
+			long sleep = deadline - System.nanoTime();
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					if (!running) return;
+					continue;
+				}
+			}
+			for (Timeout t; (t = cancelled.poll()) != null; )
+				if (t.bucket != null) t.bucket.remove(t);
+			for (Timeout t; (t = pending.poll()) != null; ) {
+				if (t.isCancelled()) continue;
+				long ticks = Math.max((t.deadlineNanos - startNanos) / tickNanos, tick);
+				t.rounds = (ticks - tick) / wheel.length;
+				wheel[(int) (ticks & mask)].add(t);
+			}
+			wheel[(int) (tick & mask)].expire();
+			tick++;
+		}
+	}
+
+	private final class Group implements Timer {
+
+		private final Set<Timeout> live = ConcurrentHashMap.newKeySet();
+
+		@Override
+		public ScheduledFuture<?> schedule(long duration, TimeUnit unit, Runnable runnable) {
+			if (!running) throw new IllegalStateException("Timer has been shut down");
+			Timeout timeout = new Timeout(this, System.nanoTime() + unit.toNanos(duration),
+					Objects.requireNonNull(runnable));
+			live.add(timeout);
+			if (this != root) root.live.add(timeout);
+			pending.add(timeout);
+			return timeout;
+		}
+
+		@Override
+		public void stopAll() {
+			live.forEach(t -> t.cancel(true));
+		}
+	}
+
+	private final class Timeout extends FutureTask<Void> implements ScheduledFuture<Void> {
+
+		private final Group group;
+		private final long deadlineNanos;
+		private long rounds;
+		private Bucket bucket;
+		private Timeout prev;
+		private Timeout next;
+
+		Timeout(Group group, long deadlineNanos, Runnable runnable) {
+			super(runnable, null);
+			this.group = group;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) HashedWheelTimer.this.cancelled.add(this);
+			return cancelled;
+		}
+
+		@Override
+		protected void done() {
+			group.live.remove(this);
+			root.live.remove(this);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			if (o == this) return 0;
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+
+	// only ever touched by the worker thread
+	private static final class Bucket {
+
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout t) {
+			t.bucket = this;
+			if (head == null) {
+				head = tail = t;
+			} else {
+				tail.next = t;
+				t.prev = tail;
+				tail = t;
+			}
+		}
+
+		void remove(Timeout t) {
+			if (t.prev != null) t.prev.next = t.next;
+			else head = t.next;
+			if (t.next != null) t.next.prev = t.prev;
+			else tail = t.prev;
+			t.prev = t.next = null;
+			t.bucket = null;
+		}
+
+		void expire() {
+			Timeout t = head;
+			while (t != null) {
+				Timeout next = t.next;
+				if (t.rounds <= 0) {
+					remove(t);
+					t.run();
+				} else {
+					t.rounds--;
+				}
+				t = next;
+			}
+		}
+	}
+
+}
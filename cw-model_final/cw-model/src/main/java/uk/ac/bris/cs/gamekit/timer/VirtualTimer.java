@@ -0,0 +1,155 @@
+package uk.ac.bris.cs.gamekit.timer;
+
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Timer} driven by a virtual clock instead of wall time. Time only
+ * moves when {@link #advance(long, TimeUnit)} or {@link #advanceToNext()} is
+ * called, and due tasks run on the calling thread in deadline order (tasks
+ * with the same deadline run in the order they were scheduled). The timer
+ * may be used from any thread. This makes
+ * timeout behaviour deterministic and lets simulations skip idle time
+ * entirely.
+ */
+public final class VirtualTimer implements Timer {
+
+	private final PriorityQueue<Task> queue = new PriorityQueue<>();
+	private long nowNanos;
+	private long sequence;
+
+	@Override
+	public synchronized ScheduledFuture<?> schedule(long duration, TimeUnit unit,
+			Runnable runnable) {
+		long delay = Math.max(0, unit.toNanos(duration));
+		Task task = new Task(nowNanos + delay, sequence++, Objects.requireNonNull(runnable));
+		queue.add(task);
+		return task;
+	}
+
+	@Override
+	public synchronized void stopAll() {
+		queue.forEach(t -> t.cancel(false));
+		queue.clear();
+	}
+
+	/**
+	 * Moves the clock forward, running every task whose deadline is reached
+	 * on the way. Tasks run without holding the timer's lock, so they may
+	 * schedule more tasks or read the clock, and other threads are not kept
+	 * waiting while they run.
+	 *
+	 * @param duration the amount of time to advance, must be &gt;= 0
+	 * @param unit the unit of {@code duration}; not null
+	 * @return the number of tasks that were run
+	 */
+	public int advance(long duration, TimeUnit unit) {
+		if (duration < 0) throw new IllegalArgumentException("duration < 0, got " + duration);
+		long target;
+		synchronized (this) {
+			target = nowNanos + unit.toNanos(duration);
+		}
+		int ran = 0;
+		for (Task task; (task = nextDue(target)) != null; ran++)
+			task.run();
+		synchronized (this) {
+			nowNanos = Math.max(nowNanos, target);
+		}
+		return ran;
+	}
+
+	// removes the next task due by the target and moves the clock to it
+	private synchronized Task nextDue(long target) {
+		Task task;
+		while ((task = queue.peek()) != null && task.deadlineNanos <= target) {
+			queue.poll();
+			nowNanos = Math.max(nowNanos, task.deadlineNanos);
+			if (!task.isCancelled()) return task;
+		}
+		return null;
+	}
+
+	/**
+	 * Jumps the clock to the earliest pending deadline and runs all tasks due
+	 * at that instant
+	 *
+	 * @return true if any task was run, false if nothing was pending
+	 */
+	public boolean advanceToNext() {
+		return advanceToNext(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Same as {@link #advanceToNext()} but leaves the clock alone if the
+	 * earliest pending deadline is further away than the limit
+	 *
+	 * @param limit the furthest the clock may move, must be &gt;= 0
+	 * @param unit the unit of {@code limit}; not null
+	 * @return true if any task was run, false if nothing was pending within
+	 *         the limit
+	 */
+	public boolean advanceToNext(long limit, TimeUnit unit) {
+		if (limit < 0) throw new IllegalArgumentException("limit < 0, got " + limit);
+		long delay;
+		synchronized (this) {
+			Task task;
+			while ((task = queue.peek()) != null && task.isCancelled())
+				queue.poll();
+			if (task == null) return false;
+			delay = Math.max(0, task.deadlineNanos - nowNanos);
+			if (delay > unit.toNanos(limit)) return false;
+		}
+		return advance(delay, TimeUnit.NANOSECONDS) > 0;
+	}
+
+	/**
+	 * @param unit the unit of the result; not null
+	 * @return virtual time elapsed since this timer was created
+	 */
+	public synchronized long now(TimeUnit unit) {
+		return unit.convert(nowNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the number of tasks that are scheduled and not yet run or
+	 *         cancelled
+	 */
+	public synchronized int pending() {
+		return (int) queue.stream().filter(t -> !t.isCancelled()).count();
+	}
+
+	private final class Task extends FutureTask<Void> implements ScheduledFuture<Void> {
+
+		private final long deadlineNanos;
+		private final long sequence;
+
+		Task(long deadlineNanos, long sequence, Runnable runnable) {
+			super(runnable, null);
+			this.deadlineNanos = deadlineNanos;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			synchronized (VirtualTimer.this) {
+				return unit.convert(deadlineNanos - nowNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			if (o == this) return 0;
+			if (o instanceof Task) {
+				Task that = (Task) o;
+				int byDeadline = Long.compare(deadlineNanos, that.deadlineNanos);
+				return byDeadline != 0 ? byDeadline : Long.compare(sequence, that.sequence);
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+
+}
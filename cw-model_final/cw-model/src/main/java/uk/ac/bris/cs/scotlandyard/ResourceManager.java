@@ -7,14 +7,17 @@ import static java.util.stream.Collectors.toMap;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 
 import javafx.geometry.Point2D;
 import javafx.scene.image.Image;
 import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.GraphAnalytics;
 import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
 import uk.ac.bris.cs.scotlandyard.model.StandardGame;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
@@ -35,6 +38,7 @@ public final class ResourceManager implements ResourceProvider {
 	private Map<Ticket, Image> ticketResources;
 	private Map<Integer, Entry<Integer, Integer>> mapCoordinates;
 	private Graph<Integer, Transport> graph;
+	private Supplier<GraphAnalytics> analytics;
 
 	/**
 	 * Loads all resources into memory <br>
@@ -56,6 +60,9 @@ public final class ResourceManager implements ResourceProvider {
 
 		mapCoordinates = ImmutableMap.copyOf(StandardGame.pngMapPositionEntries());
 		graph = new ImmutableGraph<>(StandardGame.standardGraph());
+		// computed when the first AI asks for it
+		Graph<Integer, Transport> loaded = graph;
+		analytics = Suppliers.memoize(() -> GraphAnalytics.of(loaded));
 	}
 
 	private static Image loadImage(String path) {
@@ -81,6 +88,11 @@ public final class ResourceManager implements ResourceProvider {
 		return graph;
 	}
 
+	@Override
+	public GraphAnalytics getAnalytics() {
+		return analytics.get();
+	}
+
 	@Override
 	public Point2D coordinateAtNode(int node) {
 		Entry<Integer, Integer> entry = mapCoordinates.get(node);
@@ -7,7 +7,15 @@ import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -90,17 +98,81 @@ public final class AI {
 				       .toString();
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * System property that makes {@link #load()} scan the classpath as well as
+	 * reading the index, set it to {@code true} to find {@link ManagedAI}
+	 * classes in jars that were built without {@link ManagedAIProcessor}
+	 */
+	public static final String SCAN_PROPERTY = "scotlandyard.ai.scan";
+
+	/**
+	 * Finds all {@link ManagedAI} classes from the indices written at build
+	 * time by {@link ManagedAIProcessor}. Classes without an index entry are
+	 * only found by scanning the classpath, which happens if there is no
+	 * index at all (e.g. when the processor did not run) or if the
+	 * {@value #SCAN_PROPERTY} system property is {@code true}; scanned classes
+	 * are added to the indexed ones.
+	 *
+	 * @return all AIs; never null
+	 */
+	public static List<AI> load() {
+		return load(AI.class.getClassLoader(), Boolean.getBoolean(SCAN_PROPERTY));
+	}
+
+	/**
+	 * @param loader the class loader to find indices and classes with; not
+	 *        null
+	 * @param scan whether to scan the classpath of the loader as well, it is
+	 *        always scanned if there is no index
+	 * @return all AIs, indexed ones first; never null
+	 */
+	static List<AI> load(ClassLoader loader, boolean scan) {
+		List<String> names = readIndex(loader);
+		if (scan || names.isEmpty())
+			scan(loader).stream().filter(n -> !names.contains(n)).forEach(names::add);
+		return fromClassNames(names, loader);
+	}
+
 	public static List<AI> scanClasspath() {
-		List<String> annotated = new FastClasspathScanner().scan()
+		ClassLoader loader = AI.class.getClassLoader();
+		return fromClassNames(scan(loader), loader);
+	}
+
+	private static List<String> scan(ClassLoader loader) {
+		return new FastClasspathScanner().overrideClassLoaders(loader).scan()
 				.getNamesOfClassesWithAnnotation(ManagedAI.class);
+	}
+
+	private static List<String> readIndex(ClassLoader loader) {
+		List<String> names = new ArrayList<>();
+		try {
+			Enumeration<URL> indices = loader.getResources(ManagedAIProcessor.INDEX);
+			while (indices.hasMoreElements()) {
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+						indices.nextElement().openStream(), StandardCharsets.UTF_8))) {
+					reader.lines().map(String::trim).filter(l -> !l.isEmpty())
+							.filter(l -> !names.contains(l)).forEach(names::add);
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+			names.clear();
+		}
+		return names;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<AI> fromClassNames(List<String> annotated, ClassLoader loader) {
 		List<AI> ais = annotated.stream().map(c -> {
 			try {
-				Class<?> clazz = Class.forName(c);
+				Class<?> clazz = Class.forName(c, true, loader);
 				if (!PlayerFactory.class.isAssignableFrom(clazz))
 					throw new IllegalArgumentException(
 							c + " does not implement " + PlayerFactory.class);
-				return new AI(clazz.getAnnotation(ManagedAI.class), (Class<PlayerFactory>) clazz);
+				ManagedAI ai = clazz.getAnnotation(ManagedAI.class);
+				if (ai == null)
+					throw new IllegalArgumentException(c + " is not annotated with " + ManagedAI.class);
+				return new AI(ai, (Class<PlayerFactory>) clazz);
 			} catch (ClassNotFoundException e) {
 				throw new RuntimeException(e);
 			}
@@ -0,0 +1,290 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.google.common.base.MoreObjects;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+
+/**
+ * Resource usage of AIs in an {@link AIPool}, aggregated per AI name and per
+ * colour. <br>
+ * For every move the pool records the time the move waited for the AI's
+ * executor, the CPU time and heap allocation (from {@link ThreadMXBean}) of
+ * the executor thread and of the threads listed by
+ * {@link PlayerFactory#workers()} while the AI ran, and the wall time until a
+ * move was picked, fallback moves included. Work on threads the AI does not
+ * list is not attributed to it. CPU time and allocation are reported as zero
+ * where the JVM does not support measuring them. <br>
+ * Figures are live: recording and reading may happen on any thread at any
+ * time, summaries are consistent per figure but not across figures.
+ */
+public final class AIMetrics {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final ConcurrentMap<String, Accumulator> byAi = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Colour, Accumulator> byColour = new ConcurrentHashMap<>();
+
+	/**
+	 * @return summaries by {@link AI#getName()}, sorted by name; never null
+	 */
+	public Map<String, Summary> byAi() {
+		return summarise(byAi);
+	}
+
+	/**
+	 * @return summaries by the colour the AI played; never null
+	 */
+	public Map<Colour, Summary> byColour() {
+		return summarise(byColour);
+	}
+
+	private static <K extends Comparable<K>> Map<K, Summary> summarise(
+			Map<K, Accumulator> accumulators) {
+		Map<K, Summary> summaries = new TreeMap<>();
+		accumulators.forEach((key, accumulator) -> summaries.put(key, accumulator.summary()));
+		return Collections.unmodifiableMap(summaries);
+	}
+
+	Probe start(AI ai, Colour colour, Collection<Thread> workers) {
+		return new Probe(accumulators(ai.getName(), colour), workers);
+	}
+
+	private Accumulator[] accumulators(String ai, Colour colour) {
+		return new Accumulator[] {
+				byAi.computeIfAbsent(ai, k -> new Accumulator()),
+				byColour.computeIfAbsent(colour, k -> new Accumulator()) };
+	}
+
+	/**
+	 * Measures a single move, created on the game thread when the move is
+	 * requested
+	 */
+	static final class Probe {
+
+		private final Accumulator[] accumulators;
+		private final Collection<Thread> workers;
+		private final long requested = System.nanoTime();
+		private long started;
+		private Map<Long, long[]> usage;
+
+		private Probe(Accumulator[] accumulators, Collection<Thread> workers) {
+			this.accumulators = accumulators;
+			this.workers = workers;
+		}
+
+		// on the executor thread, before the AI runs
+		void running() {
+			started = System.nanoTime();
+			usage = usage();
+			for (Accumulator accumulator : accumulators)
+				accumulator.queue.add(started - requested);
+		}
+
+		// on the executor thread, after the AI returned or was interrupted
+		void ran() {
+			long cpu = 0;
+			long allocated = 0;
+			// workers started during the move count from zero, ended ones are lost
+			for (Map.Entry<Long, long[]> entry : usage().entrySet()) {
+				long[] before = usage.getOrDefault(entry.getKey(), new long[2]);
+				cpu += Math.max(0, entry.getValue()[0] - before[0]);
+				allocated += Math.max(0, entry.getValue()[1] - before[1]);
+			}
+			for (Accumulator accumulator : accumulators) {
+				accumulator.runs.increment();
+				accumulator.cpu.add(cpu);
+				accumulator.maxCpu.accumulate(cpu);
+				accumulator.allocated.add(allocated);
+				accumulator.maxAllocated.accumulate(allocated);
+			}
+		}
+
+		// on whichever thread picked the move
+		void picked(boolean timedOut) {
+			long wall = System.nanoTime() - requested;
+			for (Accumulator accumulator : accumulators) {
+				accumulator.moves.increment();
+				if (timedOut) accumulator.timeouts.increment();
+				accumulator.wall.add(wall);
+				accumulator.maxWall.accumulate(wall);
+			}
+		}
+
+		// CPU time and allocated bytes by thread id, of this thread and the workers
+		private Map<Long, long[]> usage() {
+			Map<Long, long[]> usage = new HashMap<>();
+			usage.put(Thread.currentThread().getId(), usage(Thread.currentThread().getId()));
+			for (Thread worker : workers)
+				usage.put(worker.getId(), usage(worker.getId()));
+			return usage;
+		}
+
+		private static long[] usage(long thread) {
+			return new long[] { cpuTime(thread), allocatedBytes(thread) };
+		}
+
+		private static long cpuTime(long thread) {
+			return THREADS.isThreadCpuTimeSupported() ? Math.max(0, THREADS.getThreadCpuTime(thread))
+					: 0;
+		}
+
+		private static long allocatedBytes(long thread) {
+			if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return 0;
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (!threads.isThreadAllocatedMemorySupported()
+					|| !threads.isThreadAllocatedMemoryEnabled()) return 0;
+			return Math.max(0, threads.getThreadAllocatedBytes(thread));
+		}
+
+	}
+
+	private static final class Accumulator {
+
+		final LongAdder moves = new LongAdder();
+		final LongAdder timeouts = new LongAdder();
+		final LongAdder runs = new LongAdder();
+		final LongAdder queue = new LongAdder();
+		final LongAdder wall = new LongAdder();
+		final LongAccumulator maxWall = new LongAccumulator(Math::max, 0);
+		final LongAdder cpu = new LongAdder();
+		final LongAccumulator maxCpu = new LongAccumulator(Math::max, 0);
+		final LongAdder allocated = new LongAdder();
+		final LongAccumulator maxAllocated = new LongAccumulator(Math::max, 0);
+
+		Summary summary() {
+			return new Summary(moves.sum(), timeouts.sum(), runs.sum(), queue.sum(), wall.sum(),
+					maxWall.get(), cpu.sum(), maxCpu.get(), allocated.sum(), maxAllocated.get());
+		}
+
+	}
+
+	/**
+	 * An immutable summary of the moves of an AI or colour
+	 */
+	public static final class Summary {
+
+		private final long moves;
+		private final long timeouts;
+		private final long runs;
+		private final long queueNanos;
+		private final long wallNanos;
+		private final long maxWallNanos;
+		private final long cpuNanos;
+		private final long maxCpuNanos;
+		private final long allocatedBytes;
+		private final long maxAllocatedBytes;
+
+		private Summary(long moves, long timeouts, long runs, long queueNanos, long wallNanos,
+				long maxWallNanos, long cpuNanos, long maxCpuNanos, long allocatedBytes,
+				long maxAllocatedBytes) {
+			this.moves = moves;
+			this.timeouts = timeouts;
+			this.runs = runs;
+			this.queueNanos = queueNanos;
+			this.wallNanos = wallNanos;
+			this.maxWallNanos = maxWallNanos;
+			this.cpuNanos = cpuNanos;
+			this.maxCpuNanos = maxCpuNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.maxAllocatedBytes = maxAllocatedBytes;
+		}
+
+		/**
+		 * @return the number of moves picked, fallback moves included
+		 */
+		public long moves() {
+			return moves;
+		}
+
+		/**
+		 * @return the number of moves the AI missed its deadline for
+		 */
+		public long timeouts() {
+			return timeouts;
+		}
+
+		/**
+		 * @return total time from requesting a move to it being picked; never
+		 *         null
+		 */
+		public Duration wall() {
+			return Duration.ofNanos(wallNanos);
+		}
+
+		/**
+		 * @return longest time from requesting a move to it being picked;
+		 *         never null
+		 */
+		public Duration maxWall() {
+			return Duration.ofNanos(maxWallNanos);
+		}
+
+		/**
+		 * @return total time moves waited for the AI's executor; never null
+		 */
+		public Duration queueing() {
+			return Duration.ofNanos(queueNanos);
+		}
+
+		/**
+		 * @return total CPU time of the AI's executor and worker threads;
+		 *         never null
+		 */
+		public Duration cpu() {
+			return Duration.ofNanos(cpuNanos);
+		}
+
+		/**
+		 * @return the most CPU time spent on a single move; never null
+		 */
+		public Duration maxCpu() {
+			return Duration.ofNanos(maxCpuNanos);
+		}
+
+		/**
+		 * @return total bytes allocated by the AI's executor and worker threads
+		 */
+		public long allocatedBytes() {
+			return allocatedBytes;
+		}
+
+		/**
+		 * @return the most bytes allocated for a single move
+		 */
+		public long maxAllocatedBytes() {
+			return maxAllocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			Function<Long, Long> perRun = total -> runs == 0 ? 0 : total / runs;
+			return MoreObjects.toStringHelper(this)
+					.add("moves", moves)
+					.add("timeouts", timeouts)
+					.add("meanWallMs", moves == 0 ? 0 : wallNanos / moves / 1_000_000)
+					.add("maxWallMs", maxWallNanos / 1_000_000)
+					.add("meanQueueUs", perRun.apply(queueNanos) / 1_000)
+					.add("meanCpuMs", perRun.apply(cpuNanos) / 1_000_000)
+					.add("maxCpuMs", maxCpuNanos / 1_000_000)
+					.add("meanAllocatedKb", perRun.apply(allocatedBytes) / 1024)
+					.add("maxAllocatedKb", maxAllocatedBytes / 1024)
+					.toString();
+		}
+
+	}
+
+}
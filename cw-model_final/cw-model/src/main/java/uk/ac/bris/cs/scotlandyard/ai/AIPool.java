@@ -2,46 +2,183 @@ package uk.ac.bris.cs.scotlandyard.ai;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.gamekit.timer.HashedWheelTimer;
+import uk.ac.bris.cs.gamekit.timer.Timer;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.model.Colour;
 import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSet;
 import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
 
 /**
  * <b> Not a public API, do not use!</b> <br>
  * Internal pooling mechanism for AIs. AIs that are on the same group will share
- * a common GameFactory.
+ * a common GameFactory. Each AI runs on its own executor so a slow AI cannot
+ * starve others, and when a move deadline is given the pool interrupts
+ * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)} once the
+ * deadline passes and answers with a {@link Fallback} move instead; an AI
+ * that keeps running gets a new thread for its next move. AIs see
+ * the game through a {@link ViewSnapshot} unless
+ * {@link #setSnapshots(boolean)} says otherwise.
  * 
  * @param <G> the group, must be stable with proper {@link Object#hashCode()}
  *        and {@link Object#equals(Object)}
  */
 public class AIPool<G> {
 
+	private static final HashedWheelTimer DEADLINES = new HashedWheelTimer();
+	// fallback moves are handed back here, an AI that ignores interrupts still
+	// holds its own thread when its deadline passes
+	private static final ExecutorService FALLBACKS = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setNameFormat("AI-fallback-%d").setDaemon(true).build());
+	// time an anytime AI stops searching before the move deadline, enough to
+	// finish its last check and hand its move back before the deadline fires
+	private static final Duration DEADLINE_MARGIN = Duration.ofMillis(50);
+
 	private final VisualiserSurface surface;
 	private final Consumer<Throwable> exceptionHandler;
+	private final Duration moveDeadline;
+	private final Fallback fallback;
+	private final Timer deadlines = DEADLINES.newGroup();
 	private final Map<G, AIGroup> groups = new HashMap<>();
+	private final Map<AI, Duration> warmUpTimes = new ConcurrentHashMap<>();
+	private Duration warmUp = Duration.ZERO;
+	private boolean snapshots = true;
+	private volatile ViewSnapshot.Source source;
+	private final AIMetrics metrics = new AIMetrics();
 
+	/**
+	 * Creates a pool without move deadlines, AIs may take as long as they
+	 * want
+	 */
 	public AIPool(VisualiserSurface surface, Consumer<Throwable> exceptionHandler) {
 		this.surface = surface;
 		this.exceptionHandler = exceptionHandler;
+		this.moveDeadline = null;
+		this.fallback = Fallback.RANDOM;
+	}
+
+	/**
+	 * Creates a pool that enforces a deadline on every move
+	 *
+	 * @param moveDeadline time an AI has to pick a move; not null
+	 * @param fallback policy for picking a move when the deadline passes; not
+	 *        null
+	 */
+	public AIPool(VisualiserSurface surface, Consumer<Throwable> exceptionHandler,
+			Duration moveDeadline, Fallback fallback) {
+		this.surface = surface;
+		this.exceptionHandler = exceptionHandler;
+		this.moveDeadline = Objects.requireNonNull(moveDeadline);
+		this.fallback = Objects.requireNonNull(fallback);
+		if (moveDeadline.isNegative() || moveDeadline.isZero())
+			throw new IllegalArgumentException("moveDeadline must be positive, got " + moveDeadline);
+	}
+
+	/**
+	 * Policy used to pick a move on behalf of an AI that missed its deadline
+	 */
+	public enum Fallback {
+		/**
+		 * Picks uniformly from the valid moves
+		 */
+		RANDOM {
+			@Override
+			Move pick(Set<Move> moves) {
+				return Iterables.get(moves, ThreadLocalRandom.current().nextInt(moves.size()));
+			}
+		},
+
+		/**
+		 * Picks the first valid move in iteration order
+		 */
+		FIRST {
+			@Override
+			Move pick(Set<Move> moves) {
+				return moves.iterator().next();
+			}
+		};
+
+		abstract Move pick(Set<Move> moves);
+	}
+
+	/**
+	 * Sets how long every AI may warm up (see
+	 * {@link PlayerFactory#warmUp(ScotlandYardView, int, Set)}) during
+	 * {@link #initialise(ResourceManager, ScotlandYardGame)}. AIs warm up at
+	 * the same time, each on its own thread. Defaults to no warm-up
+	 *
+	 * @param warmUp the warm-up time; not null
+	 */
+	public void setWarmUp(Duration warmUp) {
+		if (Objects.requireNonNull(warmUp).isNegative())
+			throw new IllegalArgumentException("warmUp must not be negative, got " + warmUp);
+		this.warmUp = warmUp;
+	}
+
+	/**
+	 * Sets whether AIs are handed a {@link ViewSnapshot} of the game, taken on
+	 * the game thread when their turn starts, or the live game itself, which
+	 * the game thread keeps changing while the AI reads it. Defaults to
+	 * snapshots
+	 *
+	 * @param snapshots whether to hand out snapshots
+	 */
+	public void setSnapshots(boolean snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * @return the time each AI spent warming up, AIs that do not support it
+	 *         report close to zero; never null
+	 */
+	public Map<AI, Duration> warmUpTimes() {
+		return Collections.unmodifiableMap(warmUpTimes);
+	}
+
+	/**
+	 * @return live resource usage of the AIs of this pool, still available
+	 *         after {@link #terminate()}; never null
+	 */
+	public AIMetrics metrics() {
+		return metrics;
 	}
 
 	public void addToGroup(G group, Colour colour, AI ai) {
@@ -49,14 +186,32 @@ public class AIPool<G> {
 	}
 
 	public void initialise(ResourceManager manager, ScotlandYardGame game) {
+		source = ViewSnapshot.source(game);
+		List<AIGroup> initialised = new ArrayList<>();
 		groups.values().forEach(group -> {
 			try {
 				group.initialise(manager, game);
+				initialised.add(group);
 			} catch (Exception e) {
 				e.printStackTrace();
 				exceptionHandler.accept(e);
 			}
 		});
+		if (warmUp.isZero()) return;
+		// all groups warm up at the same time
+		Map<AI, Future<Duration>> warmUps = new HashMap<>();
+		initialised.forEach(group -> warmUps.putAll(group.warmUp(game, warmUp)));
+		for (Entry<AI, Future<Duration>> entry : warmUps.entrySet()) {
+			try {
+				warmUpTimes.put(entry.getKey(), entry.getValue().get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				exceptionHandler.accept(e.getCause());
+			}
+		}
 	}
 
 	public Optional<Player> createPlayer(Colour colour) {
@@ -72,6 +227,7 @@ public class AIPool<G> {
 	}
 
 	public void terminate() {
+		deadlines.stopAll();
 		groups.values().forEach((group) -> {
 			try {
 				group.terminate();
@@ -94,6 +250,9 @@ public class AIPool<G> {
 
 		private final Map<Colour, AI> ais = new HashMap<>();
 		private Map<AI, PlayerFactory> factories = new HashMap<>();
+		// replaced from the timer thread, guarded by this
+		private final Map<AI, ExecutorService> executors = new HashMap<>();
+		private boolean terminated;
 
 		void add(Colour colour, AI ai) {
 			ais.put(colour, ai);
@@ -103,6 +262,9 @@ public class AIPool<G> {
 			factories = ais.values().stream()
 					.distinct()
 					.collect(toMap(Function.identity(), AI::instantiate));
+			synchronized (this) {
+				factories.keySet().forEach(ai -> executors.put(ai, newExecutor(ai)));
+			}
 			factories.forEach((ai, factory) -> {
 				factory.createSpectators(game).forEach(game::registerSpectator);
 				Pane pane = surface.onCreate(ai);
@@ -110,30 +272,67 @@ public class AIPool<G> {
 			});
 		}
 
+		Map<AI, Future<Duration>> warmUp(ScotlandYardView game, Duration duration) {
+			Map<AI, Future<Duration>> warmUps = new HashMap<>();
+			factories.forEach((ai, factory) -> {
+				Set<Colour> colours = ais.keySet().stream().filter(c -> ais.get(c).equals(ai))
+						.collect(toSet());
+				warmUps.put(ai, executor(ai).submit(
+						() -> new WarmUp(game, factory, colours).run(duration)));
+			});
+			return warmUps;
+		}
+
 		void terminate() throws Exception {
+			synchronized (this) {
+				terminated = true;
+				executors.values().forEach(ExecutorService::shutdownNow);
+			}
 			factories.values().forEach(PlayerFactory::finish);
 		}
 
 		public Optional<Player> createPlayer(Colour colour) {
 			if (!ais.containsKey(colour)) return Optional.empty();
-			return Optional.of(
-					new ThreadedPlayer(
-							factories.get(ais.get(colour)).createPlayer(colour),
-							exceptionHandler));
+			AI ai = ais.get(colour);
+			Player player = factories.get(ai).createPlayer(colour);
+			return Optional.of(new ThreadedPlayer(player, ai, colour, this, factories.get(ai)));
 		}
 
-	}
+		synchronized ExecutorService executor(AI ai) {
+			return executors.get(ai);
+		}
 
-	static class ThreadedPlayer implements Player {
+		// gives the AI a new thread unless it was replaced already
+		synchronized void replace(AI ai, ExecutorService stuck) {
+			if (terminated || executors.get(ai) != stuck) return;
+			stuck.shutdownNow();
+			executors.put(ai, newExecutor(ai));
+		}
 
-		final static ExecutorService service = Executors.newWorkStealingPool();
+		private ExecutorService newExecutor(AI ai) {
+			return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("AI-" + ai.getName().replace("%", "%%") + "-%d")
+					.setDaemon(true)
+					.build());
+		}
+
+	}
+
+	class ThreadedPlayer implements Player {
 
 		private final Player player;
-		private final Consumer<Throwable> exceptionHandler;
+		private final AI ai;
+		private final Colour colour;
+		private final AIGroup group;
+		private final PlayerFactory factory;
 
-		private ThreadedPlayer(Player player, Consumer<Throwable> exceptionHandler) {
+		private ThreadedPlayer(Player player, AI ai, Colour colour, AIGroup group,
+				PlayerFactory factory) {
 			this.player = player;
-			this.exceptionHandler = exceptionHandler;
+			this.ai = ai;
+			this.colour = colour;
+			this.group = group;
+			this.factory = factory;
 		}
 
 		@Override
@@ -141,16 +340,113 @@ public class AIPool<G> {
 				int location,
 				Set<Move> moves,
 				Consumer<Move> callback) {
-			service.submit((Callable<Void>) () -> {
+			long requested = System.nanoTime();
+			AIMetrics.Probe probe = metrics.start(ai, colour, factory.workers());
+			AtomicBoolean picked = new AtomicBoolean();
+			AtomicBoolean timedOut = new AtomicBoolean();
+			AtomicReference<ScheduledFuture<?>> deadline = new AtomicReference<>();
+			Consumer<Move> once = move -> {
+				if (!picked.compareAndSet(false, true)) return;
+				ScheduledFuture<?> scheduled = deadline.get();
+				if (scheduled != null) scheduled.cancel(false);
+				probe.picked(timedOut.get());
+				callback.accept(move);
+			};
+			ViewSnapshot.Source source = AIPool.this.source;
+			// players are only asked to move while the game is running
+			ScotlandYardView handed = snapshots && source != null ? source.snapshot(view, false)
+					: view;
+			ExecutorService service = group.executor(ai);
+			Future<?> task = service.submit((Callable<Void>) () -> {
+				probe.running();
 				try {
-					player.makeMove(view, location, ImmutableSet.copyOf(moves), callback);
+					if (moveDeadline != null && player instanceof AnytimePlayer) {
+						// the time left after waiting for the executor, less a margin
+						// for handing the move back before the deadline fires
+						long left = moveDeadline.toNanos() - (System.nanoTime() - requested);
+						((AnytimePlayer) player).makeMove(handed, location,
+								MoveSet.copyOf(moves), once, left - DEADLINE_MARGIN.toNanos());
+					} else player.makeMove(handed, location, MoveSet.copyOf(moves), once);
 				} catch (Throwable e) {
+					// an interrupted AI that gave up after its deadline is not an error
+					if (timedOut.get()) return null;
 					e.printStackTrace();
 					exceptionHandler.accept(e);
+				} finally {
+					probe.ran();
 				}
 				return null;
 			});
+			if (moveDeadline == null) return;
+			// the timer thread is shared by every pool so it only interrupts the AI,
+			// retires its thread in case it carries on regardless, and queues the
+			// fallback to be handed back on a thread the AI cannot block
+			deadline.set(deadlines.schedule(moveDeadline.toMillis(), TimeUnit.MILLISECONDS, () -> {
+				if (picked.get()) return;
+				timedOut.set(true);
+				task.cancel(true);
+				group.replace(ai, service);
+				FALLBACKS.execute(() -> once.accept(fallback.pick(moves)));
+			}));
 		}
 	}
 
+	/**
+	 * Plays random games with the graph, rounds, players and tickets of a real
+	 * game from random start locations, handing every position of the given
+	 * colours to the factory until the time is up
+	 */
+	private static final class WarmUp {
+
+		private final ScotlandYardView game;
+		private final PlayerFactory factory;
+		private final Set<Colour> colours;
+		private final List<Integer> nodes = new ArrayList<>();
+		private long end;
+		private boolean wanted = true;
+
+		private WarmUp(ScotlandYardView game, PlayerFactory factory, Set<Colour> colours) {
+			this.game = game;
+			this.factory = factory;
+			this.colours = colours;
+			game.getGraph().getNodes().forEach(node -> nodes.add(node.value()));
+		}
+
+		Duration run(Duration duration) {
+			long start = System.nanoTime();
+			end = start + duration.toNanos();
+			while (wanted && System.nanoTime() < end) {
+				ScotlandYardGame model = randomGame();
+				while (wanted && System.nanoTime() < end && !model.isGameOver())
+					model.startRotate();
+			}
+			return Duration.ofNanos(System.nanoTime() - start);
+		}
+
+		private ScotlandYardGame randomGame() {
+			Collections.shuffle(nodes, ThreadLocalRandom.current());
+			List<PlayerConfiguration> players = new ArrayList<>();
+			List<Colour> colours = game.getPlayers();
+			for (int i = 0; i < colours.size(); i++) {
+				Colour colour = colours.get(i);
+				Map<Ticket, Integer> tickets = new HashMap<>();
+				for (Ticket ticket : Ticket.values())
+					tickets.put(ticket, game.getPlayerTickets(colour, ticket).orElse(0));
+				players.add(new PlayerConfiguration.Builder(colour).using(this::makeMove)
+						.with(tickets).at(nodes.get(i)).build());
+			}
+			return new ScotlandYardModel(game.getRounds(), game.getGraph(), players.get(0),
+					players.get(1),
+					players.subList(2, players.size()).toArray(new PlayerConfiguration[0]));
+		}
+
+		private void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+				Consumer<Move> callback) {
+			if (wanted && System.nanoTime() < end && colours.contains(view.getCurrentPlayer()))
+				wanted = factory.warmUp(view, location, moves);
+			callback.accept(Fallback.RANDOM.pick(moves));
+		}
+
+	}
+
 }
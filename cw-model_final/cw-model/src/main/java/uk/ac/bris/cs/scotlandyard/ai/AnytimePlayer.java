@@ -0,0 +1,343 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.common.base.MoreObjects;
+
+import uk.ac.bris.cs.gamekit.timer.HashedWheelTimer;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+
+/**
+ * Base class for AIs that keep improving a best-move-so-far until their time
+ * budget runs out. <br>
+ * Subclasses implement
+ * {@link #search(ScotlandYardView, int, Set, Search, int)}, which is called
+ * with increasing depths (iterative deepening) until the budget expires,
+ * {@link #maxDepth()} is reached or the search calls {@link Search#stop()}.
+ * The best move of the deepest completed iteration is handed to the callback
+ * exactly once, on the calling thread when searching ends. A timer only
+ * signals that the budget expired, see {@link Search#expired()}; a search
+ * that never checks is left to the deadline of {@link AIPool}, which falls
+ * back to a move of its own. <br>
+ * When used through {@link AIPool} with a move deadline, searching also stops
+ * a margin before the time left of that deadline, measured from when the move
+ * was requested, so the move is committed before the pool falls back to a
+ * move of its own.
+ */
+public abstract class AnytimePlayer implements Player {
+
+	private static final HashedWheelTimer EXPIRIES = new HashedWheelTimer();
+	// fraction of the budget spent searching, the rest is left for hand-off
+	private static final double SEARCH_FRACTION = 0.9;
+
+	private volatile Duration budget;
+	private volatile SearchStats lastStats = new SearchStats(0, 0, 0);
+
+	/**
+	 * @param budget the time allowed for each move; not null
+	 */
+	protected AnytimePlayer(Duration budget) {
+		budget(budget);
+	}
+
+	/**
+	 * @return the time allowed for each move; never null
+	 */
+	public Duration budget() {
+		return budget;
+	}
+
+	void budget(Duration budget) {
+		if (requireNonNull(budget).isNegative() || budget.isZero())
+			throw new IllegalArgumentException("budget must be positive, got " + budget);
+		this.budget = budget;
+	}
+
+	/**
+	 * @return statistics of the last completed move search; never null
+	 */
+	public SearchStats lastStats() {
+		return lastStats;
+	}
+
+	/**
+	 * The deepest iteration to run
+	 *
+	 * @return maximum depth, defaults to unbounded
+	 */
+	protected int maxDepth() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Runs a single search iteration to the given depth. Implementations
+	 * should call {@link Search#node()} for every node visited and
+	 * {@link Search#offer(Move, double)} for every candidate root move.
+	 *
+	 * @param view the view of the game; never null
+	 * @param location the location of the player
+	 * @param moves the valid moves; never empty and never null
+	 * @param search the search context; never null
+	 * @param depth the depth of this iteration, starting at 1
+	 */
+	protected abstract void search(ScotlandYardView view, int location, Set<Move> moves,
+			Search search, int depth);
+
+	/**
+	 * Supplies a move to play without searching, e.g. from an opening book or
+	 * an endgame table. Moves that are not valid are ignored. <br>
+	 * Defaults to none
+	 *
+	 * @param view the view of the game; never null
+	 * @param location the location of the player
+	 * @param moves the valid moves; never empty and never null
+	 * @return the move to play, empty to search instead; never null
+	 */
+	protected Optional<Move> instantMove(ScotlandYardView view, int location, Set<Move> moves) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Called after every move search on the searching thread, defaults to
+	 * no-op
+	 *
+	 * @param stats statistics of the search; never null
+	 */
+	protected void onSearchFinished(SearchStats stats) {}
+
+	@Override
+	public final void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		makeMove(view, location, moves, callback, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #makeMove(ScotlandYardView, int, Set, Consumer)} but
+	 * searches no longer than the given limit even if the budget is longer
+	 *
+	 * @param limitNanos the most nanoseconds to search for
+	 */
+	void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback, long limitNanos) {
+		long start = System.nanoTime();
+		Optional<Move> instant = instantMove(view, location, moves);
+		if (instant.isPresent() && moves.contains(instant.get())) {
+			callback.accept(instant.get());
+			lastStats = new SearchStats(0, 0, System.nanoTime() - start);
+			onSearchFinished(lastStats);
+			return;
+		}
+		long searchNanos = Math.max(0,
+				Math.min((long) (budget.toNanos() * SEARCH_FRACTION), limitNanos));
+		Search search = new Search(start + searchNanos, moves.iterator().next(), callback);
+		if (moves.size() == 1) search.stop();
+		ScheduledFuture<?> timeout = EXPIRIES.schedule(searchNanos, TimeUnit.NANOSECONDS,
+				search::expire);
+		try {
+			for (int depth = 1; depth <= maxDepth() && !search.expired(); depth++) {
+				search.depth = depth;
+				try {
+					search(view, location, moves, search, depth);
+				} catch (Expired e) {
+					break;
+				}
+				search.completeIteration();
+			}
+		} finally {
+			timeout.cancel(false);
+			search.commit();
+			lastStats = new SearchStats(search.nodes, search.completedDepth,
+					System.nanoTime() - start);
+			onSearchFinished(lastStats);
+		}
+	}
+
+	/**
+	 * Search context of a single move, shared between iterations
+	 */
+	public static final class Search {
+
+		private static final int CHECK_INTERVAL = 1024;
+
+		private final long deadlineNanos;
+		private final Consumer<Move> callback;
+		private volatile boolean stopped;
+		private volatile boolean timedOut;
+		private volatile Move completedBest;
+		private volatile Move iterationBest;
+		private double iterationBestScore = Double.NEGATIVE_INFINITY;
+		private long nodes;
+		private int depth;
+		private volatile int completedDepth;
+
+		private Search(long deadlineNanos, Move initial, Consumer<Move> callback) {
+			this.deadlineNanos = deadlineNanos;
+			this.completedBest = initial;
+			this.callback = callback;
+		}
+
+		/**
+		 * Counts a visited node, aborting the current iteration if the budget
+		 * has expired. The clock is only consulted every few nodes so this is
+		 * cheap enough to call on every node.
+		 */
+		public void node() {
+			if (++nodes % CHECK_INTERVAL == 0 && expired()) throw Expired.INSTANCE;
+		}
+
+		/**
+		 * Counts nodes visited elsewhere, e.g. by helper threads, without
+		 * checking the budget
+		 *
+		 * @param count the number of nodes, must be &gt;= 0
+		 */
+		public void nodes(long count) {
+			if (count < 0) throw new IllegalArgumentException("count < 0, got " + count);
+			nodes += count;
+		}
+
+		/**
+		 * @return nanoseconds left until the budget expires, negative once it
+		 *         has
+		 */
+		public long remainingNanos() {
+			return deadlineNanos - System.nanoTime();
+		}
+
+		/**
+		 * Offers a candidate root move for the current iteration, the highest
+		 * scoring one wins
+		 *
+		 * @param move the move; not null
+		 * @param score the score of the move, higher is better
+		 */
+		public void offer(Move move, double score) {
+			if (iterationBest == null || score > iterationBestScore) {
+				iterationBest = requireNonNull(move);
+				iterationBestScore = score;
+			}
+		}
+
+		/**
+		 * Ends searching after the current iteration, e.g. when the result is
+		 * already proven
+		 */
+		public void stop() {
+			stopped = true;
+		}
+
+		/**
+		 * @return true if the search should stop as soon as possible
+		 */
+		public boolean expired() {
+			return stopped || timedOut || System.nanoTime() >= deadlineNanos
+					|| Thread.currentThread().isInterrupted();
+		}
+
+		/**
+		 * @return the depth of the running iteration
+		 */
+		public int depth() {
+			return depth;
+		}
+
+		/**
+		 * @return the number of nodes visited so far over all iterations
+		 */
+		public long nodes() {
+			return nodes;
+		}
+
+		private void completeIteration() {
+			if (iterationBest != null) completedBest = iterationBest;
+			completedDepth = depth;
+			iterationBest = null;
+			iterationBestScore = Double.NEGATIVE_INFINITY;
+		}
+
+		// called on the timer thread, the searching thread commits
+		private void expire() {
+			timedOut = true;
+		}
+
+		private void commit() {
+			// a partial first iteration is still better than an arbitrary move
+			Move partial = iterationBest;
+			callback.accept(completedDepth == 0 && partial != null ? partial : completedBest);
+		}
+	}
+
+	/**
+	 * Statistics of a single move search
+	 */
+	public static final class SearchStats {
+
+		private final long nodes;
+		private final int depth;
+		private final long elapsedNanos;
+
+		SearchStats(long nodes, int depth, long elapsedNanos) {
+			this.nodes = nodes;
+			this.depth = depth;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return number of nodes visited
+		 */
+		public long nodes() {
+			return nodes;
+		}
+
+		/**
+		 * @return deepest completed iteration, 0 if none completed
+		 */
+		public int depth() {
+			return depth;
+		}
+
+		/**
+		 * @return wall time spent on the move
+		 */
+		public Duration elapsed() {
+			return Duration.ofNanos(elapsedNanos);
+		}
+
+		/**
+		 * @return nodes visited per second of wall time
+		 */
+		public double nodesPerSecond() {
+			return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this)
+					.add("nodes", nodes)
+					.add("depth", depth)
+					.add("elapsed", elapsed())
+					.add("nodesPerSecond", Math.round(nodesPerSecond()))
+					.toString();
+		}
+	}
+
+	// thrown without a stack trace to unwind deep recursion cheaply
+	private static final class Expired extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final Expired INSTANCE = new Expired();
+
+		private Expired() {
+			super(null, null, false, false);
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.IntSummaryStatistics;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Precomputed facts about a game graph that AIs would otherwise each work out
+ * for themselves: hop distances between all nodes, neighbours by transport
+ * and node degrees. <br>
+ * There is one instance per graph structure, obtained through
+ * {@link #of(Graph)} or {@link ResourceProvider#getAnalytics()}, so all AIs
+ * and all games on graphs with the same nodes and edges share the same
+ * tables, even if every call to {@code getGraph()} returns a new wrapper; an
+ * instance is dropped once no graph with its structure is used. Tables are
+ * computed on first use and instances are safe to use from any thread.
+ */
+public final class GraphAnalytics {
+
+	// boards compare by structure, an entry is dropped once its analytics are
+	// no longer used
+	private static final LoadingCache<Board, GraphAnalytics> BY_BOARD =
+			CacheBuilder.newBuilder().weakValues().build(CacheLoader.from(GraphAnalytics::new));
+	// weak keys compare graphs by identity, so a board is only built the first
+	// time a graph instance is seen; analytics do not refer to graphs
+	private static final LoadingCache<Graph<Integer, Transport>, GraphAnalytics> BY_GRAPH =
+			CacheBuilder.newBuilder().weakKeys()
+					.build(CacheLoader.from(graph -> BY_BOARD.getUnchecked(Board.of(graph))));
+	private static final Transport[] TRANSPORTS = Transport.values();
+
+	private final Board board;
+	// [transport][node index] -> neighbour node indices
+	private final Supplier<int[][][]> adjacency = Suppliers.memoize(this::buildAdjacency);
+
+	private GraphAnalytics(Board board) {
+		this.board = board;
+	}
+
+	/**
+	 * Returns the shared analytics of a graph, graphs with the same nodes and
+	 * edges always get the same analytics
+	 *
+	 * @param graph the graph; not null
+	 * @return the analytics; never null
+	 */
+	public static GraphAnalytics of(Graph<Integer, Transport> graph) {
+		return BY_GRAPH.getUnchecked(Objects.requireNonNull(graph));
+	}
+
+	/**
+	 * @return the shared search board of the graph, see {@link Board}; never
+	 *         null
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return board.size();
+	}
+
+	/**
+	 * Hop distance between two nodes, ignoring tickets. The table for all
+	 * pairs is computed on first use
+	 *
+	 * @param from the node to start from
+	 * @param to the node to reach
+	 * @return the distance or -1 if {@code to} cannot be reached
+	 * @throws IllegalArgumentException if either node is not in the graph
+	 */
+	public int distance(int from, int to) {
+		return board.distance(index(from), index(to));
+	}
+
+	/**
+	 * @param node the node
+	 * @param transport the transport; not null
+	 * @return the nodes reachable from {@code node} with {@code transport},
+	 *         a new array on every call; never null
+	 * @throws IllegalArgumentException if the node is not in the graph
+	 */
+	public int[] neighbours(int node, Transport transport) {
+		int[] indices = adjacency.get()[transport.ordinal()][index(node)];
+		int[] neighbours = new int[indices.length];
+		for (int i = 0; i < indices.length; i++)
+			neighbours[i] = board.value(indices[i]);
+		return neighbours;
+	}
+
+	/**
+	 * @param node the node
+	 * @return the number of distinct edges leaving the node
+	 * @throws IllegalArgumentException if the node is not in the graph
+	 */
+	public int degree(int node) {
+		return board.degree(index(node));
+	}
+
+	/**
+	 * @param node the node
+	 * @param transport the transport; not null
+	 * @return the number of distinct {@code transport} edges leaving the node
+	 * @throws IllegalArgumentException if the node is not in the graph
+	 */
+	public int degree(int node, Transport transport) {
+		return adjacency.get()[transport.ordinal()][index(node)].length;
+	}
+
+	/**
+	 * @return statistics over the degrees of all nodes, a new instance on
+	 *         every call; never null
+	 */
+	public IntSummaryStatistics degreeStatistics() {
+		return IntStream.range(0, board.size()).map(board::degree).summaryStatistics();
+	}
+
+	/**
+	 * @param transport the transport; not null
+	 * @return statistics over the {@code transport} degrees of all nodes, a
+	 *         new instance on every call; never null
+	 */
+	public IntSummaryStatistics degreeStatistics(Transport transport) {
+		int[][] nodes = adjacency.get()[transport.ordinal()];
+		return IntStream.range(0, nodes.length).map(i -> nodes[i].length).summaryStatistics();
+	}
+
+	private int index(int node) {
+		int index = board.index(node);
+		if (index < 0) throw new IllegalArgumentException("No such node " + node);
+		return index;
+	}
+
+	private int[][][] buildAdjacency() {
+		int[][][] adjacency = new int[TRANSPORTS.length][board.size()][];
+		for (Transport transport : TRANSPORTS) {
+			int ticket = Ticket.fromTransport(transport).ordinal();
+			for (int i = 0; i < board.size(); i++)
+				adjacency[transport.ordinal()][i] = IntStream
+						.range(board.edgesStart(i), board.edgesEnd(i))
+						.filter(e -> board.ticket(e) == ticket).map(board::target).toArray();
+		}
+		return adjacency;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("nodes", board.size())
+				.add("degrees", degreeStatistics())
+				.toString();
+	}
+
+}
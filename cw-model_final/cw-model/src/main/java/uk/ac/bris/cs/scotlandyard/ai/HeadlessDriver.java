@@ -0,0 +1,167 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import uk.ac.bris.cs.gamekit.timer.VirtualTimer;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.Fallback;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+
+/**
+ * Plays a game without a UI on the calling thread. <br>
+ * The model asks the next player for a move from inside the callback of the
+ * previous one, so players wrapped with {@link #defer(Player)} only queue
+ * their move and {@link #play(ScotlandYardGame, BooleanSupplier)} plays the
+ * queued moves one after the other instead of recursing, or running on
+ * whatever thread an AI calls back on. A driver plays one game at a time and
+ * is not thread safe. <br>
+ * Given a {@link VirtualTimer}, moves have a deadline on its clock. Tasks
+ * due on the clock before a move's deadline, such as a player's own
+ * timeouts, run without waiting. A player that has not called back by then,
+ * for example because it picks its move on a thread of its own, is waited
+ * for in real time up to the move deadline; only then does the clock reach
+ * the deadline and the player gets a {@link Fallback} move. A player that
+ * calls back before {@code makeMove} returns, as {@link AnytimePlayer}s
+ * on the calling thread do, never waits.
+ */
+public final class HeadlessDriver {
+
+	// null without move deadlines
+	private final VirtualTimer clock;
+	private final Duration moveDeadline;
+	private final Fallback fallback;
+	private Runnable pending;
+
+	/**
+	 * Creates a driver that waits for every move as long as it takes
+	 */
+	public HeadlessDriver() {
+		this.clock = null;
+		this.moveDeadline = null;
+		this.fallback = null;
+	}
+
+	/**
+	 * Creates a driver with move deadlines on a virtual clock
+	 *
+	 * @param clock the clock deadlines are scheduled on; not null
+	 * @param moveDeadline the time allowed for each move; not null
+	 * @param fallback picks the move of a player that missed its deadline;
+	 *        not null
+	 */
+	public HeadlessDriver(VirtualTimer clock, Duration moveDeadline, Fallback fallback) {
+		this.clock = Objects.requireNonNull(clock);
+		if (Objects.requireNonNull(moveDeadline).isNegative())
+			throw new IllegalArgumentException("moveDeadline < 0, got " + moveDeadline);
+		this.moveDeadline = moveDeadline;
+		this.fallback = Objects.requireNonNull(fallback);
+	}
+
+	/**
+	 * Registers the spectators of a factory with the game and readies it
+	 * without a visualiser or resources
+	 *
+	 * @param factory the factory; not null
+	 * @param game the game; not null
+	 */
+	public static void register(PlayerFactory factory, ScotlandYardGame game) {
+		factory.createSpectators(game).forEach(game::registerSpectator);
+		factory.ready(null, null);
+	}
+
+	/**
+	 * Wraps a player so its moves are queued and played by this driver. The
+	 * queued move waits for the player to call back, and the callback of the
+	 * model is then called on the driving thread.
+	 *
+	 * @param player the player; not null
+	 * @return the deferred player; never null
+	 */
+	public Player defer(Player player) {
+		Objects.requireNonNull(player);
+		return (view, location, moves, callback) -> pending = () -> {
+			CompletableFuture<Move> move = new CompletableFuture<>();
+			if (clock == null) {
+				player.makeMove(view, location, moves, move::complete);
+			} else {
+				long due = clock.now(TimeUnit.NANOSECONDS) + moveDeadline.toNanos();
+				ScheduledFuture<?> deadline = clock.schedule(moveDeadline.toNanos(),
+						TimeUnit.NANOSECONDS, () -> move.complete(fallback.pick(moves)));
+				player.makeMove(view, location, moves, move::complete);
+				runBefore(due, move);
+				awaitInRealTime(move);
+				while (!move.isDone() && clock.advanceToNext()) {}
+				deadline.cancel(false);
+			}
+			try {
+				callback.accept(move.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		};
+	}
+
+	// runs the tasks due on the clock before the deadline until the move is in
+	private void runBefore(long due, CompletableFuture<Move> move) {
+		long left;
+		while (!move.isDone() && (left = due - clock.now(TimeUnit.NANOSECONDS)) > 0
+				&& clock.advanceToNext(left - 1, TimeUnit.NANOSECONDS)) {}
+	}
+
+	// gives a player calling back from another thread the time it would have
+	// in a real game
+	private void awaitInRealTime(CompletableFuture<Move> move) {
+		if (move.isDone()) return;
+		try {
+			move.get(moveDeadline.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// missed the deadline, the fallback picks
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Plays the game until it is over
+	 *
+	 * @param game the game, all players deferred by this driver; not null
+	 */
+	public void play(ScotlandYardGame game) {
+		play(game, () -> true);
+	}
+
+	/**
+	 * Plays the game until it is over or {@code carryOn} says otherwise,
+	 * which is asked before every rotation
+	 *
+	 * @param game the game, all players deferred by this driver; not null
+	 * @param carryOn whether to play another rotation; not null
+	 */
+	public void play(ScotlandYardGame game, BooleanSupplier carryOn) {
+		Objects.requireNonNull(game);
+		Objects.requireNonNull(carryOn);
+		pending = null;
+		while (carryOn.getAsBoolean() && !game.isGameOver()) {
+			game.startRotate();
+			for (Runnable next; (next = pending) != null; ) {
+				pending = null;
+				next.run();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * <b> Not a public API, do not use!</b> <br>
+ * Writes the names of all classes annotated with {@link ManagedAI} to
+ * {@value #INDEX} so {@link AI#load()} does not have to scan the classpath
+ * at startup. Classes that {@link AI#instantiate()} could not create are
+ * reported as compile errors. <br>
+ * The processor only refers to the rest of the project by name, so it can be
+ * compiled on its own before the sources it processes (see {@code pom.xml}).
+ */
+@SupportedAnnotationTypes(ManagedAIProcessor.MANAGED_AI)
+public final class ManagedAIProcessor extends AbstractProcessor {
+
+	/**
+	 * Classpath location of the index, one binary class name per line
+	 */
+	public static final String INDEX = "META-INF/managed-ai.index";
+
+	static final String MANAGED_AI = "uk.ac.bris.cs.scotlandyard.ai.ManagedAI";
+	static final String PLAYER_FACTORY = "uk.ac.bris.cs.scotlandyard.ai.PlayerFactory";
+
+	private final Set<String> classes = new TreeSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+		if (environment.processingOver()) {
+			if (!classes.isEmpty()) write();
+			return false;
+		}
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(MANAGED_AI);
+		TypeElement factory = processingEnv.getElementUtils().getTypeElement(PLAYER_FACTORY);
+		if (annotation == null || factory == null) return false;
+		for (Element element : environment.getElementsAnnotatedWith(annotation)) {
+			if (valid(element, factory.asType()))
+				classes.add(processingEnv.getElementUtils()
+						.getBinaryName((TypeElement) element).toString());
+		}
+		return false;
+	}
+
+	private boolean valid(Element element, TypeMirror factory) {
+		if (element.getKind() != ElementKind.CLASS
+				|| element.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(element, "must be a concrete class");
+			return false;
+		}
+		if (!processingEnv.getTypeUtils().isAssignable(element.asType(), factory)) {
+			error(element, "must implement " + PLAYER_FACTORY);
+			return false;
+		}
+		if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE
+				&& !element.getModifiers().contains(Modifier.STATIC)) {
+			error(element, "must be top-level or static");
+			return false;
+		}
+		return true;
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Kind.ERROR,
+				"@ManagedAI class " + message, element);
+	}
+
+	private void write() {
+		try {
+			FileObject index = processingEnv.getFiler()
+					.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+			try (Writer writer = index.openWriter();
+			     PrintWriter printer = new PrintWriter(writer)) {
+				classes.forEach(printer::println);
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Unable to write " + INDEX + ": " + e);
+		}
+	}
+
+}
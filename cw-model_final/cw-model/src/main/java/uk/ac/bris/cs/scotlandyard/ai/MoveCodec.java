@@ -0,0 +1,65 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Packs moves into an int, as stored by the opening book and self-play data:
+ * destination in bits 0-11 and ticket ordinal in bits 12-14 for the first
+ * leg, the same shifted by 15 for the second leg of a double move, bit 30
+ * for double moves and bit 31 for passes. <br>
+ * The packed moves are part of those file formats, so the layout must not
+ * change without a new version of both.
+ */
+public final class MoveCodec {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int NODE_BITS = 12;
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+	private static final int TICKET_MASK = 0x7;
+	private static final int LEG_BITS = 15;
+	private static final int DOUBLE_FLAG = 1 << 30;
+	private static final int PASS_FLAG = 1 << 31;
+
+	private MoveCodec() {}
+
+	/**
+	 * @param move the move; not null
+	 * @return the packed move
+	 * @throws IllegalArgumentException if a destination does not fit in 12
+	 *         bits
+	 */
+	public static int encode(Move move) {
+		if (move instanceof PassMove) return PASS_FLAG;
+		if (move instanceof DoubleMove) {
+			DoubleMove doubleMove = (DoubleMove) move;
+			return encode(doubleMove.firstMove()) | encode(doubleMove.secondMove()) << LEG_BITS
+					| DOUBLE_FLAG;
+		}
+		TicketMove ticketMove = (TicketMove) move;
+		if (ticketMove.destination() < 0 || ticketMove.destination() > NODE_MASK)
+			throw new IllegalArgumentException("Location does not fit: " + move);
+		return ticketMove.destination() | ticketMove.ticket().ordinal() << NODE_BITS;
+	}
+
+	/**
+	 * @param colour the colour of the player who made the move; not null
+	 * @param move a move packed by {@link #encode(Move)}
+	 * @return the move; never null
+	 */
+	public static Move decode(Colour colour, int move) {
+		if ((move & PASS_FLAG) != 0) return new PassMove(colour);
+		TicketMove first = leg(colour, move);
+		if ((move & DOUBLE_FLAG) == 0) return first;
+		return new DoubleMove(colour, first, leg(colour, move >>> LEG_BITS));
+	}
+
+	private static TicketMove leg(Colour colour, int leg) {
+		return new TicketMove(colour, TICKETS[leg >>> NODE_BITS & TICKET_MASK], leg & NODE_MASK);
+	}
+
+}
@@ -1,11 +1,13 @@
 package uk.ac.bris.cs.scotlandyard.ai;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
 import uk.ac.bris.cs.scotlandyard.model.Player;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
@@ -27,7 +29,12 @@ public interface PlayerFactory {
 	 * Create a player with the given colour<br>
 	 * The returned player's
 	 * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)} will be
-	 * executed on a separate thread.
+	 * executed on a separate thread. If the game enforces a move deadline the
+	 * thread is interrupted when it passes and a fallback move is played, so
+	 * long running searches should check {@link Thread#isInterrupted()}. The
+	 * view passed to the player is an immutable
+	 * {@link uk.ac.bris.cs.scotlandyard.model.ViewSnapshot} of the game as of
+	 * the start of the turn.
 	 * 
 	 * @param colour the colour; never null
 	 * @return a player
@@ -54,10 +61,45 @@ public interface PlayerFactory {
 	 * last until {@link #finish()}
 	 *
 	 * @param visualiser a visualiser instance
-	 * @param provider a resource provider; never null
+	 * @param provider a resource provider; never null, except in games played
+	 *        by a {@link HeadlessDriver}
 	 */
 	default void ready(Visualiser visualiser, ResourceProvider provider) {}
 
+	/**
+	 * Called repeatedly after {@link #ready(Visualiser, ResourceProvider)} and
+	 * before the game starts, if the game allows a warm-up, so search code is
+	 * compiled by the time the clock starts. Every call gets a synthetic
+	 * position from a throwaway game with the same graph, rounds and tickets,
+	 * with one of the colours this factory plays to move; whatever is searched
+	 * is discarded. Calls stop once the warm-up time is used up or this
+	 * returns {@code false}. <br>
+	 * Runs on the thread that will later run
+	 * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)}, defaults
+	 * to no warm-up
+	 *
+	 * @param view the view of the synthetic game; never null
+	 * @param location the location of the player to move
+	 * @param moves the valid moves; never empty and never null
+	 * @return whether more positions are wanted
+	 */
+	default boolean warmUp(ScotlandYardView view, int location, Set<Move> moves) {
+		return false;
+	}
+
+	/**
+	 * The threads, besides the one calling
+	 * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)}, that the
+	 * players of this factory hand work to, so the CPU time and allocation of
+	 * a move can be attributed to the AI (see {@link AIMetrics}). <br>
+	 * Called from any thread, defaults to none
+	 *
+	 * @return the live worker threads; never null
+	 */
+	default Collection<Thread> workers() {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Called when the game is finished(i.e. when
 	 * {@link Spectator#onGameOver(ScotlandYardView, Set)} is called) <br>
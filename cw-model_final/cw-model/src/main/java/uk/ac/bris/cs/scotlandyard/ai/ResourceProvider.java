@@ -45,4 +45,14 @@ public interface ResourceProvider {
 	 */
 	Point2D coordinateAtNode(int node);
 
+	/**
+	 * Retrieves precomputed distances, adjacency and degrees of the graph
+	 * returned by {@link #getGraph()}, shared with all other AIs
+	 *
+	 * @return the analytics; never null
+	 */
+	default GraphAnalytics getAnalytics() {
+		return GraphAnalytics.of(getGraph());
+	}
+
 }
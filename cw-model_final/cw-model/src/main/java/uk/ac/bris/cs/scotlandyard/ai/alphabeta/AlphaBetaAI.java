@@ -0,0 +1,177 @@
+package uk.ac.bris.cs.scotlandyard.ai.alphabeta;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.ai.GraphAnalytics;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.ai.search.LocationTracker;
+import uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Detective AI that searches the detectives' moves with alpha-beta pruning
+ * and iterative deepening. <br>
+ * The search does not guess where Mr X is, it works on the set of locations
+ * he could be on: detectives remove the nodes they move onto, Mr X's hidden
+ * moves grow the set by the ticket he uses and reveal rounds collapse it to
+ * a location of his choice. Leaves are scored by the set size and the
+ * average distance of its locations to the nearest detective. Detective
+ * moves are tried closest-to-the-set first, and root moves in the order of
+ * the previous iteration. <br>
+ * The search is deterministic for a given depth; nodes per second of the last
+ * move are available through
+ * {@link uk.ac.bris.cs.scotlandyard.ai.AnytimePlayer#lastStats()}. <br>
+ * Mr X is played by a greedy one-move lookahead that keeps as far away from
+ * the detectives as possible. Given an {@link EndgameTable} for the number of
+ * detectives in the game, he first prefers the moves the table says he
+ * escapes from, then the ones furthest from capture; the table ignores
+ * tickets, but only moves he has the tickets for are considered.
+ */
+@ManagedAI("Alpha-Beta")
+public class AlphaBetaAI implements PlayerFactory {
+
+	static final Duration DEFAULT_BUDGET = Duration.ofSeconds(5);
+	static final Duration WARM_UP_BUDGET = Duration.ofMillis(100);
+
+	private final Duration budget;
+	// null without one
+	private final EndgameTable table;
+	// set by createSpectators and ready, analytics stays null without a provider
+	private volatile ScotlandYardView view;
+	private volatile GraphAnalytics analytics;
+	private volatile LocationTracker tracker;
+
+	/**
+	 * Creates a factory with a 5 second budget per move
+	 */
+	public AlphaBetaAI() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param budget the time allowed for each detective move; not null
+	 */
+	public AlphaBetaAI(Duration budget) {
+		this.budget = Objects.requireNonNull(budget);
+		this.table = null;
+	}
+
+	/**
+	 * @param budget the time allowed for each detective move; not null
+	 * @param table the table Mr X consults in games with as many detectives
+	 *        as it was solved for; not null
+	 */
+	public AlphaBetaAI(Duration budget, EndgameTable table) {
+		this.budget = Objects.requireNonNull(budget);
+		this.table = Objects.requireNonNull(table);
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		if (colour.isMrX()) return this::greedy;
+		return new AlphaBetaPlayer(this, budget);
+	}
+
+	// the tracker is made once the provider is known, in ready
+	@Override
+	public List<Spectator> createSpectators(ScotlandYardView view) {
+		this.view = view;
+		return Collections.singletonList(new Spectator() {
+			@Override
+			public void onMoveMade(ScotlandYardView view, Move move) {
+				LocationTracker tracker = AlphaBetaAI.this.tracker;
+				if (tracker != null) tracker.onMoveMade(view, move);
+			}
+		});
+	}
+
+	@Override
+	public void ready(Visualiser visualiser, ResourceProvider provider) {
+		// headless games have no provider
+		analytics = provider == null ? null : provider.getAnalytics();
+		ScotlandYardView view = this.view;
+		if (view != null) tracker = new LocationTracker(analytics(view).board(), view);
+	}
+
+	@Override
+	public boolean warmUp(ScotlandYardView view, int location, Set<Move> moves) {
+		if (view.getCurrentPlayer().isMrX()) {
+			greedy(view, location, moves, move -> {});
+			return true;
+		}
+		// the tracker of the real game knows nothing about the synthetic one
+		LocationTracker tracker = new LocationTracker(tracker(view).board(), view);
+		new AlphaBetaPlayer(this, WARM_UP_BUDGET, tracker)
+				.makeMove(view, location, moves, move -> {});
+		return true;
+	}
+
+	LocationTracker tracker(ScotlandYardView view) {
+		LocationTracker tracker = this.tracker;
+		if (tracker == null)
+			tracker = new LocationTracker(analytics(view).board(), view);
+		return tracker;
+	}
+
+	private GraphAnalytics analytics(ScotlandYardView view) {
+		GraphAnalytics analytics = this.analytics;
+		return analytics != null ? analytics : GraphAnalytics.of(view.getGraph());
+	}
+
+	private void greedy(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		Board board = tracker(view).board();
+		int[] detectives = view.getPlayers().stream().filter(Colour::isDetective)
+				.mapToInt(colour -> view.getPlayerLocation(colour).orElse(0)).toArray();
+		boolean probing = table != null && table.detectives() == detectives.length;
+		Move best = null;
+		int bestCapture = Integer.MIN_VALUE;
+		int bestScore = Integer.MIN_VALUE;
+		for (Move move : moves) {
+			TicketMove last = move instanceof DoubleMove ? ((DoubleMove) move).secondMove()
+					: (TicketMove) move;
+			int destination = board.index(last.destination());
+			int nearest = board.size();
+			for (int at : detectives) {
+				int detective = board.index(at);
+				int distance = detective < 0 ? -1 : board.distance(detective, destination);
+				if (distance >= 0) nearest = Math.min(nearest, distance);
+			}
+			// spend double and secret tickets only when they buy distance
+			int score = nearest * 4 - (move instanceof DoubleMove ? 2 : 0)
+					- (last.ticket() == Ticket.SECRET ? 1 : 0);
+			int capture = probing ? capture(last.destination(), detectives) : 0;
+			if (capture > bestCapture || (capture == bestCapture && score > bestScore)) {
+				bestCapture = capture;
+				bestScore = score;
+				best = move;
+			}
+		}
+		callback.accept(best);
+	}
+
+	// plies until capture after moving, escapes rank above any distance and
+	// positions the table does not know rank with the nearest capture
+	private int capture(int destination, int[] detectives) {
+		int plies = table.distanceToCapture(destination, detectives, 1);
+		if (plies == EndgameTable.ESCAPES) return Integer.MAX_VALUE;
+		return plies == EndgameTable.UNKNOWN ? 0 : plies;
+	}
+
+}
@@ -0,0 +1,369 @@
+package uk.ac.bris.cs.scotlandyard.ai.alphabeta;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.ai.AnytimePlayer;
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.ai.search.GameState;
+import uk.ac.bris.cs.scotlandyard.ai.search.LocationTracker;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * A detective of {@link AlphaBetaAI}. Scores are from Mr X's point of view,
+ * detectives minimise and Mr X maximises. <br>
+ * Mr X's moves are abstract: a ticket (or two for a double move) and, on
+ * reveal rounds, the location he shows up on. His location in the
+ * {@link GameState}s is only a representative of the set and never read.
+ */
+final class AlphaBetaPlayer extends AnytimePlayer {
+
+	static final int WIN = 1 << 20;
+	private static final int INFINITY = Integer.MAX_VALUE;
+	private static final int[] MRX_TICKETS = { Ticket.TAXI.ordinal(), Ticket.BUS.ordinal(),
+			Ticket.UNDERGROUND.ordinal(), Ticket.SECRET.ordinal() };
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final AlphaBetaAI factory;
+	// null to use the factory's tracker of the game being played
+	private final LocationTracker tracker;
+	private Board board;
+	private int words;
+	private long[] rootMoves;
+	private Map<Long, Move> decoded;
+	private int[] rootScores;
+
+	// per ply scratch, index 0 is the root
+	private GameState[] states;
+	private long[][] sets;
+	private long[][] expanded;
+	private long[][] secondLegs;
+	private long[][] moves;
+	private int[][] keys;
+	private Search search;
+
+	AlphaBetaPlayer(AlphaBetaAI factory, Duration budget) {
+		this(factory, budget, null);
+	}
+
+	AlphaBetaPlayer(AlphaBetaAI factory, Duration budget, LocationTracker tracker) {
+		super(budget);
+		this.factory = factory;
+		this.tracker = tracker;
+	}
+
+	@Override
+	protected void search(ScotlandYardView view, int location, Set<Move> moves, Search search,
+			int depth) {
+		if (depth == 1) prepare(view, moves);
+		this.search = search;
+		ensurePlies(depth + 1);
+		int best = INFINITY;
+		for (int i = 0; i < rootMoves.length; i++) {
+			int score = child(0, rootMoves[i], depth - 1, -INFINITY, best);
+			rootScores[i] = score;
+			search.offer(decoded.get(rootMoves[i]), -score);
+			if (score < best) best = score;
+		}
+		orderRoot();
+		if (Math.abs(best) >= WIN - states.length) search.stop();
+	}
+
+	@Override
+	protected void onSearchFinished(SearchStats stats) {
+		search = null;
+		decoded = null;
+	}
+
+	private void prepare(ScotlandYardView view, Set<Move> moves) {
+		LocationTracker tracker = this.tracker != null ? this.tracker : factory.tracker(view);
+		board = tracker.board();
+		words = (board.size() + 63) / 64;
+		int[] candidates = tracker.candidates();
+		GameState root = GameState.of(board, view,
+				board.value(candidates.length == 0 ? 0 : candidates[0]));
+		states = new GameState[] { root };
+		sets = new long[][] { new long[words] };
+		expanded = new long[][] { new long[words] };
+		secondLegs = new long[][] { new long[words] };
+		this.moves = new long[][] { new long[GameState.MAX_MOVES] };
+		keys = new int[][] { new int[GameState.MAX_MOVES] };
+		for (int candidate : candidates)
+			set(sets[0], candidate);
+		decoded = new HashMap<>();
+		for (Move move : moves)
+			decoded.put(root.encode(move), move);
+		rootMoves = new long[decoded.size()];
+		int i = 0;
+		for (long move : decoded.keySet())
+			rootMoves[i++] = move;
+		// sorted first so ties break the same way every time
+		Arrays.sort(rootMoves);
+		rootScores = new int[rootMoves.length];
+		for (i = 0; i < rootMoves.length; i++)
+			rootScores[i] = closeness(sets[0], rootMoves[i]);
+		orderRoot();
+	}
+
+	private void orderRoot() {
+		// insertion sort keeps equal scores in their previous order
+		for (int i = 1; i < rootMoves.length; i++) {
+			long move = rootMoves[i];
+			int score = rootScores[i];
+			int j = i - 1;
+			for (; j >= 0 && rootScores[j] > score; j--) {
+				rootMoves[j + 1] = rootMoves[j];
+				rootScores[j + 1] = rootScores[j];
+			}
+			rootMoves[j + 1] = move;
+			rootScores[j + 1] = score;
+		}
+	}
+
+	private void ensurePlies(int plies) {
+		int old = states.length;
+		if (old > plies) return;
+		int size = plies + 1;
+		states = Arrays.copyOf(states, size);
+		sets = Arrays.copyOf(sets, size);
+		expanded = Arrays.copyOf(expanded, size);
+		secondLegs = Arrays.copyOf(secondLegs, size);
+		moves = Arrays.copyOf(moves, size);
+		keys = Arrays.copyOf(keys, size);
+		for (int i = old; i < size; i++) {
+			states[i] = states[0].copy();
+			sets[i] = new long[words];
+			expanded[i] = new long[words];
+			secondLegs[i] = new long[words];
+			moves[i] = new long[GameState.MAX_MOVES];
+			keys[i] = new int[GameState.MAX_MOVES];
+		}
+	}
+
+	private int value(int ply, int depth, int alpha, int beta) {
+		search.node();
+		GameState state = states[ply];
+		long[] set = sets[ply];
+		if (isEmpty(set)) return -(WIN - ply);
+		if (state.current() == 0 && state.round() >= state.rounds()) return WIN - ply;
+		if (detectivesStuck(state)) return WIN - ply;
+		if (depth == 0) return evaluate(state, set);
+		return state.current() == 0 ? mrX(ply, depth, alpha, beta)
+				: detective(ply, depth, alpha, beta);
+	}
+
+	private int detective(int ply, int depth, int alpha, int beta) {
+		long[] buffer = moves[ply];
+		int[] order = keys[ply];
+		int count = states[ply].moves(buffer);
+		for (int i = 0; i < count; i++)
+			order[i] = closeness(sets[ply], buffer[i]);
+		sort(buffer, order, count);
+		int best = INFINITY;
+		for (int i = 0; i < count; i++) {
+			int score = child(ply, buffer[i], depth - 1, alpha, beta);
+			if (score < best) best = score;
+			if (best < beta) beta = best;
+			if (alpha >= beta) break;
+		}
+		return best;
+	}
+
+	// a detective move from ply into ply + 1, removing its destination
+	private int child(int ply, long move, int depth, int alpha, int beta) {
+		GameState next = states[ply + 1];
+		next.copyFrom(states[ply]);
+		next.play(move);
+		System.arraycopy(sets[ply], 0, sets[ply + 1], 0, words);
+		if (!GameState.isPass(move)) clear(sets[ply + 1], GameState.destination(move));
+		return value(ply + 1, depth, alpha, beta);
+	}
+
+	private int mrX(int ply, int depth, int alpha, int beta) {
+		GameState state = states[ply];
+		int best = -INFINITY;
+		boolean moved = false;
+		for (int ticket : MRX_TICKETS) {
+			if (state.tickets(0, TICKETS[ticket]) == 0) continue;
+			long[] first = expanded[ply];
+			if (!expand(state, sets[ply], ticket, first)) continue;
+			moved = true;
+			int score = reveal(ply, depth, alpha, beta, first, state.round(), ticket, -1, -1);
+			if (score > best) best = score;
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) return best;
+		}
+		if (!moved) return -(WIN - ply);
+		if (state.tickets(0, Ticket.DOUBLE) == 0 || state.rounds() - 1 <= state.round())
+			return best;
+		for (int ticket1 : MRX_TICKETS) {
+			if (state.tickets(0, TICKETS[ticket1]) == 0) continue;
+			for (int ticket2 : MRX_TICKETS) {
+				int needed = ticket1 == ticket2 ? 2 : 1;
+				if (state.tickets(0, TICKETS[ticket2]) < needed) continue;
+				long[] first = expanded[ply];
+				if (!expand(state, sets[ply], ticket1, first)) continue;
+				int score = doubleFirstLeg(ply, depth, alpha, beta, first, ticket1, ticket2);
+				if (score > best) best = score;
+				if (best > alpha) alpha = best;
+				if (alpha >= beta) return best;
+			}
+		}
+		return best;
+	}
+
+	private int doubleFirstLeg(int ply, int depth, int alpha, int beta, long[] first,
+			int ticket1, int ticket2) {
+		GameState state = states[ply];
+		long[] second = secondLegs[ply];
+		if (!state.isRevealRound(state.round())) {
+			if (!expand(state, first, ticket2, second)) return -INFINITY;
+			return reveal(ply, depth, alpha, beta, second, state.round() + 1, ticket2, -1, ticket1);
+		}
+		// shown after the first leg, hidden again or shown after the second
+		int best = -INFINITY;
+		long[] shown = sets[ply + 1];
+		for (int at = nextSet(first, 0); at >= 0; at = nextSet(first, at + 1)) {
+			Arrays.fill(shown, 0);
+			set(shown, at);
+			if (!expand(state, shown, ticket2, second)) continue;
+			int score = reveal(ply, depth, alpha, beta, second, state.round() + 1, ticket2, at,
+					ticket1);
+			if (score > best) best = score;
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) break;
+		}
+		return best;
+	}
+
+	// plays Mr X's (last) leg ending in the given set, branching on where he
+	// shows up if the round of the leg is a reveal round
+	private int reveal(int ply, int depth, int alpha, int beta, long[] set, int round,
+			int ticket, int firstAt, int firstTicket) {
+		GameState state = states[ply];
+		if (!state.isRevealRound(round))
+			return mrXChild(ply, depth, alpha, beta, set, -1, ticket, firstAt, firstTicket);
+		int best = -INFINITY;
+		for (int at = nextSet(set, 0); at >= 0; at = nextSet(set, at + 1)) {
+			int score = mrXChild(ply, depth, alpha, beta, set, at, ticket, firstAt, firstTicket);
+			if (score > best) best = score;
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) break;
+		}
+		return best;
+	}
+
+	private int mrXChild(int ply, int depth, int alpha, int beta, long[] set, int at,
+			int ticket, int firstAt, int firstTicket) {
+		long[] next = sets[ply + 1];
+		if (at >= 0) {
+			Arrays.fill(next, 0);
+			set(next, at);
+		} else if (next != set) {
+			System.arraycopy(set, 0, next, 0, words);
+		}
+		int representative = nextSet(next, 0);
+		long move = firstTicket < 0 ? GameState.ticketMove(representative, ticket)
+				: GameState.doubleMove(firstAt < 0 ? representative : firstAt, firstTicket,
+						representative, ticket);
+		states[ply + 1].copyFrom(states[ply]);
+		states[ply + 1].play(move);
+		return value(ply + 1, depth - 1, alpha, beta);
+	}
+
+	// every node reachable from the set with the ticket that no detective is on
+	private boolean expand(GameState state, long[] from, int ticket, long[] into) {
+		Arrays.fill(into, 0);
+		boolean any = false;
+		for (int node = nextSet(from, 0); node >= 0; node = nextSet(from, node + 1)) {
+			int end = board.edgesEnd(node);
+			for (int e = board.edgesStart(node); e < end; e++) {
+				if (ticket != SECRET && board.ticket(e) != ticket) continue;
+				int target = board.target(e);
+				if (state.occupiedByDetective(target)) continue;
+				set(into, target);
+				any = true;
+			}
+		}
+		return any;
+	}
+
+	private int evaluate(GameState state, long[] set) {
+		int size = 0;
+		long sum = 0;
+		for (int node = nextSet(set, 0); node >= 0; node = nextSet(set, node + 1)) {
+			size++;
+			int nearest = board.size();
+			for (int p = 1; p < state.players(); p++) {
+				int distance = board.distance(state.location(p), node);
+				if (distance >= 0 && distance < nearest) nearest = distance;
+			}
+			sum += nearest;
+		}
+		return (int) (sum * 16 / size) + 8 * (31 - Integer.numberOfLeadingZeros(size));
+	}
+
+	// ordering key of a detective move, smaller is tried first
+	private int closeness(long[] set, long move) {
+		if (GameState.isPass(move)) return INFINITY;
+		int destination = GameState.destination(move);
+		int nearest = INFINITY;
+		for (int node = nextSet(set, 0); node >= 0; node = nextSet(set, node + 1)) {
+			int distance = board.distance(destination, node);
+			if (distance >= 0 && distance < nearest) nearest = distance;
+		}
+		return nearest;
+	}
+
+	private static boolean detectivesStuck(GameState state) {
+		for (int p = 1; p < state.players(); p++)
+			if (state.hasMove(p)) return false;
+		return true;
+	}
+
+	private static void sort(long[] moves, int[] keys, int count) {
+		for (int i = 1; i < count; i++) {
+			long move = moves[i];
+			int key = keys[i];
+			int j = i - 1;
+			for (; j >= 0 && keys[j] > key; j--) {
+				moves[j + 1] = moves[j];
+				keys[j + 1] = keys[j];
+			}
+			moves[j + 1] = move;
+			keys[j + 1] = key;
+		}
+	}
+
+	private static void set(long[] set, int node) {
+		set[node >>> 6] |= 1L << node;
+	}
+
+	private static void clear(long[] set, int node) {
+		set[node >>> 6] &= ~(1L << node);
+	}
+
+	private static boolean isEmpty(long[] set) {
+		for (long word : set)
+			if (word != 0) return false;
+		return true;
+	}
+
+	private static int nextSet(long[] set, int from) {
+		int word = from >>> 6;
+		if (word >= set.length) return -1;
+		long bits = set[word] & (-1L << from);
+		while (true) {
+			if (bits != 0) return word * 64 + Long.numberOfTrailingZeros(bits);
+			if (++word == set.length) return -1;
+			bits = set[word];
+		}
+	}
+
+}
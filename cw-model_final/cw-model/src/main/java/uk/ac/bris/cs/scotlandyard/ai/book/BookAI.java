@@ -0,0 +1,56 @@
+package uk.ac.bris.cs.scotlandyard.ai.book;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.ai.mcts.MctsAI;
+import uk.ac.bris.cs.scotlandyard.ai.mcts.MctsPlayer;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+
+/**
+ * {@link MctsAI} with an {@link OpeningBook} for Mr X. While the position is
+ * in the book Mr X moves instantly, afterwards (and for detectives) moves are
+ * searched as usual. The book is loaded from {@link OpeningBook#RESOURCE},
+ * without one this behaves exactly like {@link MctsAI}. <br>
+ * No book is shipped, so this is not a {@link uk.ac.bris.cs.scotlandyard.ai.ManagedAI};
+ * build one with {@link OpeningBookBuilder} and use
+ * {@link #BookAI(OpeningBook, Duration)}.
+ */
+public class BookAI extends MctsAI {
+
+	private final OpeningBook book;
+
+	/**
+	 * Creates a factory with the default book and budget
+	 */
+	public BookAI() {
+		this.book = OpeningBook.loadDefault();
+	}
+
+	/**
+	 * @param book the book; not null
+	 * @param budget the time allowed for each searched move; not null
+	 */
+	public BookAI(OpeningBook book, Duration budget) {
+		super(budget);
+		this.book = Objects.requireNonNull(book);
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return new MctsPlayer(this, budget()) {
+			@Override
+			protected Optional<Move> instantMove(ScotlandYardView view, int location,
+					Set<Move> moves) {
+				if (!view.getCurrentPlayer().isMrX()) return Optional.empty();
+				return book.lookup(view, location, moves);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,222 @@
+package uk.ac.bris.cs.scotlandyard.ai.book;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+
+import com.google.common.io.ByteStreams;
+
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * An immutable table of Mr X moves for positions seen in the first rounds,
+ * built offline by {@link OpeningBookBuilder}. <br>
+ * A position is keyed by the round, Mr X's location and tickets and the
+ * detectives' locations and tickets regardless of colour. The file is a small header followed by
+ * fixed-width records sorted by key (8 byte key, 4 byte move), so lookups are
+ * a binary search over the mapped file without any parsing.
+ */
+public final class OpeningBook {
+
+	/**
+	 * Classpath location of the book used by {@link BookAI}
+	 */
+	public static final String RESOURCE = "/opening-book.bin";
+
+	private static final int MAGIC = 0x5359424B; // SYBK
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 12;
+	private static final int RECORD_BYTES = 12;
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	static final int TICKET_BITS = Byte.SIZE * TICKETS.length;
+
+	private final ByteBuffer records;
+	private final int size;
+
+	private OpeningBook(ByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not an opening book");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported opening book version " + buffer.getInt(4));
+		this.size = buffer.getInt(8);
+		if (size < 0 || buffer.remaining() < HEADER_BYTES + (long) size * RECORD_BYTES)
+			throw new IOException("Truncated opening book");
+		buffer.position(HEADER_BYTES);
+		this.records = buffer.slice();
+	}
+
+	/**
+	 * @return a book without any positions; never null
+	 */
+	public static OpeningBook empty() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+		try {
+			return new OpeningBook(buffer);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Reads a book fully into memory
+	 *
+	 * @param input the input, not closed; not null
+	 * @return the book; never null
+	 * @throws IOException if the input cannot be read or is not a book
+	 */
+	public static OpeningBook read(InputStream input) throws IOException {
+		return new OpeningBook(ByteBuffer.wrap(ByteStreams.toByteArray(input)));
+	}
+
+	/**
+	 * Maps a book file into memory
+	 *
+	 * @param file the file; not null
+	 * @return the book; never null
+	 * @throws IOException if the file cannot be mapped or is not a book
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new OpeningBook(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Loads the book from {@link #RESOURCE}, or an empty book if there is
+	 * none or it cannot be read
+	 *
+	 * @return the book; never null
+	 */
+	public static OpeningBook loadDefault() {
+		try (InputStream input = OpeningBook.class.getResourceAsStream(RESOURCE)) {
+			return input == null ? empty() : read(input);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return empty();
+		}
+	}
+
+	/**
+	 * @return the number of positions in the book
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Looks up the move for the position Mr X is in. Keys are hashes, so a
+	 * book move that is not valid in the position belongs to another position
+	 * and is ignored
+	 *
+	 * @param view the view of the game with Mr X to move; not null
+	 * @param location Mr X's location
+	 * @param moves the valid moves; not null
+	 * @return the book move, empty if the position is not in the book; never
+	 *         null
+	 */
+	public Optional<Move> lookup(ScotlandYardView view, int location, Set<Move> moves) {
+		int index = find(key(view, location));
+		if (index < 0) return Optional.empty();
+		Move move = MoveCodec.decode(view.getCurrentPlayer(),
+				records.getInt(index * RECORD_BYTES + 8));
+		return moves.contains(move) ? Optional.of(move) : Optional.empty();
+	}
+
+	private int find(long key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long value = records.getLong(middle * RECORD_BYTES);
+			if (value < key) low = middle + 1;
+			else if (value > key) high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+
+	static long key(ScotlandYardView view, int location) {
+		long[] detectives = view.getPlayers().stream().filter(Colour::isDetective)
+				.mapToLong(c -> (long) view.getPlayerLocation(c).orElse(0) << TICKET_BITS
+						| tickets(view, c))
+				.toArray();
+		return key(view.getCurrentRound(), location, tickets(view, view.getCurrentPlayer()),
+				detectives);
+	}
+
+	/**
+	 * @param round the current round
+	 * @param mrX Mr X's location
+	 * @param mrXTickets Mr X's tickets, see {@link #tickets(ScotlandYardView, Colour)}
+	 * @param detectives each detective's location shifted left by
+	 *        {@link #TICKET_BITS} or'd with its tickets, in any order; not null
+	 * @return the key of the position
+	 */
+	static long key(int round, int mrX, long mrXTickets, long[] detectives) {
+		long[] sorted = detectives.clone();
+		Arrays.sort(sorted);
+		long hash = round * 31L + mrX;
+		hash = hash * 31 + mrXTickets;
+		for (long detective : sorted)
+			hash = hash * 31 + detective;
+		// 64 bit finaliser from MurmurHash3 to spread the keys
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	// a byte per ticket type, counts beyond 255 are capped
+	static long tickets(ScotlandYardView view, Colour colour) {
+		long tickets = 0;
+		for (Ticket ticket : TICKETS)
+			tickets |= (long) Math.min(0xFF, view.getPlayerTickets(colour, ticket).orElse(0))
+					<< Byte.SIZE * ticket.ordinal();
+		return tickets;
+	}
+
+	/**
+	 * Writes a book
+	 *
+	 * @param positions moves packed by {@link MoveCodec} by position key, in key order; not null
+	 * @param output the output, not closed; not null
+	 * @throws IOException if the book cannot be written
+	 */
+	static void write(SortedMap<Long, Integer> positions, OutputStream output)
+			throws IOException {
+		Objects.requireNonNull(positions);
+		DataOutputStream data = new DataOutputStream(output);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(positions.size());
+		// SortedMap<Long, ...> is ordered like the signed comparison in find
+		for (Map.Entry<Long, Integer> entry : positions.entrySet()) {
+			data.writeLong(entry.getKey());
+			data.writeInt(entry.getValue());
+		}
+		data.flush();
+	}
+
+}
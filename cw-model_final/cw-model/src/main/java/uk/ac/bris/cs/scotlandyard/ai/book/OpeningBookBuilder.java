@@ -0,0 +1,236 @@
+package uk.ac.bris.cs.scotlandyard.ai.book;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.ai.HeadlessDriver;
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.ai.alphabeta.AlphaBetaAI;
+import uk.ac.bris.cs.scotlandyard.ai.mcts.MctsAI;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Builds an {@link OpeningBook} offline. <br>
+ * For every start configuration of the standard game (each of
+ * {@link StandardGame#MRX_LOCATIONS} against each combination of detectives
+ * from {@link StandardGame#DETECTIVE_LOCATIONS}) Mr X searches his moves with
+ * {@link MctsAI} and a long budget, detectives reply with {@link AlphaBetaAI},
+ * and every Mr X position of the first rounds is recorded. Games use standard
+ * tickets. Configurations are played in parallel with one game per thread,
+ * every thread has its own AIs and MCTS shares the cores between threads.
+ * <br>
+ * Usage: {@code OpeningBookBuilder <output> [budgetMillis] [rounds]
+ * [detectives] [threads]}, defaults to 1000ms, 2 rounds, 5 detectives and
+ * one thread per core. Copy the output to {@code src/main/resources} as
+ * {@value OpeningBook#RESOURCE} to use it with {@link BookAI}.
+ */
+public final class OpeningBookBuilder {
+
+	private final Graph<Integer, Transport> graph;
+	private final Duration budget;
+	private final int rounds;
+	private final SortedMap<Long, Integer> positions = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @param budget search budget for each Mr X move; not null
+	 * @param rounds number of rounds to record
+	 * @throws IOException if the standard graph cannot be read
+	 */
+	public OpeningBookBuilder(Duration budget, int rounds) throws IOException {
+		if (rounds < 1) throw new IllegalArgumentException("rounds must be > 0, got " + rounds);
+		this.graph = StandardGame.standardGraph();
+		this.budget = Objects.requireNonNull(budget);
+		this.rounds = rounds;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: OpeningBookBuilder <output> [budgetMillis] [rounds] "
+					+ "[detectives] [threads]");
+			System.exit(1);
+		}
+		Path output = Paths.get(args[0]);
+		Duration budget = Duration.ofMillis(args.length > 1 ? Long.parseLong(args[1]) : 1000);
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		int detectives = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int threads = args.length > 4 ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		OpeningBookBuilder builder = new OpeningBookBuilder(budget, rounds);
+		List<List<Integer>> starts = combinations(StandardGame.DETECTIVE_LOCATIONS, detectives);
+		List<Integer> mrXLocations = new ArrayList<>();
+		List<List<Integer>> detectiveLocations = new ArrayList<>();
+		for (int location : StandardGame.MRX_LOCATIONS) {
+			for (List<Integer> start : starts) {
+				mrXLocations.add(location);
+				detectiveLocations.add(start);
+			}
+		}
+		builder.build(mrXLocations, detectiveLocations, threads);
+		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(output))) {
+			builder.write(stream);
+		}
+	}
+
+	/**
+	 * Plays the first rounds of the given start configurations and records Mr
+	 * X's moves
+	 *
+	 * @param mrXLocations Mr X's start location of each configuration; not
+	 *        null
+	 * @param detectiveLocations the detectives' start locations of each
+	 *        configuration; not null
+	 * @param threads the number of configurations to play at a time
+	 * @throws InterruptedException if interrupted while waiting for the
+	 *         threads
+	 */
+	void build(List<Integer> mrXLocations, List<List<Integer>> detectiveLocations,
+			int threads) throws InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		if (mrXLocations.size() != detectiveLocations.size())
+			throw new IllegalArgumentException("Expected as many detective configurations as "
+					+ "Mr X locations, got " + detectiveLocations.size() + " and "
+					+ mrXLocations.size());
+		int searchThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService service = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("opening-book-%d").build());
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(service.submit(() -> {
+					Worker worker = new Worker(searchThreads);
+					try {
+						for (int n; (n = next.getAndIncrement()) < mrXLocations.size(); )
+							worker.play(mrXLocations.get(n), detectiveLocations.get(n));
+					} finally {
+						worker.finish();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) {
+					// stop the other workers from starting new configurations
+					next.set(mrXLocations.size());
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			service.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes the positions recorded so far as an {@link OpeningBook}
+	 *
+	 * @param output the output, not closed; not null
+	 * @throws IOException if the book cannot be written
+	 */
+	void write(OutputStream output) throws IOException {
+		OpeningBook.write(positions, output);
+	}
+
+	/**
+	 * Plays configurations one after the other on a single thread
+	 */
+	private final class Worker {
+
+		private final MctsAI mrX;
+		private final AlphaBetaAI detectives;
+		private final HeadlessDriver driver = new HeadlessDriver();
+
+		Worker(int searchThreads) {
+			this.mrX = new MctsAI(budget, searchThreads);
+			// detectives only need to reply sensibly, not perfectly
+			this.detectives = new AlphaBetaAI(budget.dividedBy(4));
+		}
+
+		void play(int mrXLocation, List<Integer> detectiveLocations) {
+			List<Colour> colours = Stream.of(Colour.values()).filter(Colour::isDetective)
+					.limit(detectiveLocations.size()).collect(Collectors.toList());
+			if (colours.size() < detectiveLocations.size())
+				throw new IllegalArgumentException("Too many detectives");
+			boolean[] recording = { true };
+			PlayerConfiguration mrXConfiguration = new PlayerConfiguration.Builder(Colour.BLACK)
+					.using(recording(mrX.createPlayer(Colour.BLACK), recording))
+					.with(StandardGame.generateMrXTickets()).at(mrXLocation).build();
+			List<PlayerConfiguration> rest = new ArrayList<>();
+			for (int i = 0; i < colours.size(); i++) {
+				rest.add(new PlayerConfiguration.Builder(colours.get(i))
+						.using(driver.defer(detectives.createPlayer(colours.get(i))))
+						.with(StandardGame.generateDetectiveTickets())
+						.at(detectiveLocations.get(i)).build());
+			}
+			ScotlandYardGame game = new ScotlandYardModel(StandardGame.ROUNDS, graph,
+					mrXConfiguration, rest.get(0),
+					rest.subList(1, rest.size()).toArray(new PlayerConfiguration[0]));
+			HeadlessDriver.register(mrX, game);
+			HeadlessDriver.register(detectives, game);
+			driver.play(game, () -> recording[0]);
+		}
+
+		void finish() {
+			mrX.finish();
+			detectives.finish();
+		}
+
+		private Player recording(Player player, boolean[] recording) {
+			Player deferred = driver.defer(player);
+			return (view, location, moves, callback) -> {
+				if (view.getCurrentRound() >= rounds) {
+					recording[0] = false;
+					return;
+				}
+				long key = OpeningBook.key(view, location);
+				deferred.makeMove(view, location, moves, move -> {
+					positions.put(key, MoveCodec.encode(move));
+					callback.accept(move);
+				});
+			};
+		}
+
+	}
+
+	private static List<List<Integer>> combinations(List<Integer> values, int size) {
+		if (size < 1 || size > values.size())
+			throw new IllegalArgumentException("Cannot choose " + size + " of " + values.size());
+		List<List<Integer>> combinations = new ArrayList<>();
+		for (int mask = 0; mask < 1 << values.size(); mask++) {
+			if (Integer.bitCount(mask) != size) continue;
+			List<Integer> combination = new ArrayList<>(size);
+			for (int i = 0; i < values.size(); i++)
+				if ((mask & 1 << i) != 0) combination.add(values.get(i));
+			combinations.add(combination);
+		}
+		return combinations;
+	}
+
+}
@@ -0,0 +1,165 @@
+package uk.ac.bris.cs.scotlandyard.ai.mcts;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.scotlandyard.ai.GraphAnalytics;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.ai.search.LocationTracker;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+
+/**
+ * Monte Carlo tree search AI for both Mr X and the detectives. <br>
+ * Playouts run on a {@link uk.ac.bris.cs.scotlandyard.ai.search.GameState}
+ * rather than the game model. Every core grows its own tree from the same
+ * root (root parallelisation), the root visit counts of all trees are merged
+ * every few milliseconds and the most visited move is played when the budget
+ * runs out. Detectives sample Mr X's location from the locations he could be
+ * on at the start of every iteration. <br>
+ * The number of playouts per second of the last move is available through
+ * {@link uk.ac.bris.cs.scotlandyard.ai.AnytimePlayer#lastStats()} as
+ * {@code nodesPerSecond}.
+ */
+@ManagedAI("MCTS")
+public class MctsAI implements PlayerFactory {
+
+	static final Duration DEFAULT_BUDGET = Duration.ofSeconds(5);
+	static final Duration WARM_UP_BUDGET = Duration.ofMillis(100);
+
+	private final int threads;
+	private final Duration budget;
+	private final Collection<Thread> workers = new ConcurrentLinkedQueue<>();
+	// set by createSpectators and ready, analytics stays null without a provider
+	private volatile ScotlandYardView view;
+	private volatile GraphAnalytics analytics;
+	private volatile LocationTracker tracker;
+	private ExecutorService executor;
+
+	/**
+	 * Creates a factory with a 5 second budget per move
+	 */
+	public MctsAI() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param budget the time allowed for each move; not null
+	 */
+	public MctsAI(Duration budget) {
+		this(budget, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param budget the time allowed for each move; not null
+	 * @param threads the number of trees searched in parallel, must be &gt; 0
+	 */
+	public MctsAI(Duration budget, int threads) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		this.budget = Objects.requireNonNull(budget);
+		this.threads = threads;
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return new MctsPlayer(this, budget);
+	}
+
+	/**
+	 * @return the time allowed for each move; never null
+	 */
+	protected Duration budget() {
+		return budget;
+	}
+
+	// the tracker is made once the provider is known, in ready
+	@Override
+	public List<Spectator> createSpectators(ScotlandYardView view) {
+		this.view = view;
+		return Collections.singletonList(new Spectator() {
+			@Override
+			public void onMoveMade(ScotlandYardView view, Move move) {
+				LocationTracker tracker = MctsAI.this.tracker;
+				if (tracker != null) tracker.onMoveMade(view, move);
+			}
+		});
+	}
+
+	@Override
+	public void ready(Visualiser visualiser, ResourceProvider provider) {
+		// headless games have no provider
+		analytics = provider == null ? null : provider.getAnalytics();
+		ScotlandYardView view = this.view;
+		if (view != null) tracker = new LocationTracker(analytics(view).board(), view);
+		executor();
+	}
+
+	@Override
+	public boolean warmUp(ScotlandYardView view, int location, Set<Move> moves) {
+		// the tracker of the real game knows nothing about the synthetic one
+		LocationTracker tracker = new LocationTracker(tracker(view).board(), view);
+		new MctsPlayer(this, WARM_UP_BUDGET, tracker).makeMove(view, location, moves, move -> {});
+		return true;
+	}
+
+	@Override
+	public synchronized void finish() {
+		if (executor != null) executor.shutdownNow();
+		executor = null;
+	}
+
+	int threads() {
+		return threads;
+	}
+
+	synchronized ExecutorService executor() {
+		if (executor == null) {
+			ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("MCTS-%d")
+					.setDaemon(true).build();
+			// threads are kept so their CPU time counts towards the moves
+			executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = factory.newThread(runnable);
+				workers.add(thread);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	@Override
+	public Collection<Thread> workers() {
+		workers.removeIf(thread -> thread.getState() == Thread.State.TERMINATED);
+		return Collections.unmodifiableCollection(workers);
+	}
+
+	// without spectators (e.g. a player driven by hand) Mr X is assumed to
+	// be anywhere a detective is not
+	LocationTracker tracker(ScotlandYardView view) {
+		LocationTracker tracker = this.tracker;
+		if (tracker == null)
+			tracker = new LocationTracker(analytics(view).board(), view);
+		return tracker;
+	}
+
+	private GraphAnalytics analytics(ScotlandYardView view) {
+		GraphAnalytics analytics = this.analytics;
+		return analytics != null ? analytics : GraphAnalytics.of(view.getGraph());
+	}
+
+}
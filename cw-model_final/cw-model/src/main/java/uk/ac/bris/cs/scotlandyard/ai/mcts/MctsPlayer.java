@@ -0,0 +1,117 @@
+package uk.ac.bris.cs.scotlandyard.ai.mcts;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.ai.AnytimePlayer;
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.ai.search.GameState;
+import uk.ac.bris.cs.scotlandyard.ai.search.LocationTracker;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+
+/**
+ * A player of {@link MctsAI}, every iteration of the anytime search is one
+ * time slice of all trees followed by a merge of their root statistics. <br>
+ * Subclasses may supply moves without searching through
+ * {@link #instantMove(ScotlandYardView, int, Set)}.
+ */
+public class MctsPlayer extends AnytimePlayer {
+
+	private static final long MIN_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+	private static final long MAX_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final MctsAI factory;
+	// null to use the factory's tracker of the game being played
+	private final LocationTracker tracker;
+	private SearchTree[] trees;
+	private Map<Long, Move> rootMoves;
+
+	/**
+	 * @param factory the factory whose workers and tracker to use; not null
+	 * @param budget the time allowed for each move; not null
+	 */
+	protected MctsPlayer(MctsAI factory, Duration budget) {
+		this(factory, budget, null);
+	}
+
+	MctsPlayer(MctsAI factory, Duration budget, LocationTracker tracker) {
+		super(budget);
+		this.factory = Objects.requireNonNull(factory);
+		this.tracker = tracker;
+	}
+
+	@Override
+	protected final void search(ScotlandYardView view, int location, Set<Move> moves, Search search,
+			int depth) {
+		if (depth == 1) prepare(view, location, moves);
+		// slices shrink towards the deadline so the last merge is close to it
+		long slice = Math.max(MIN_SLICE_NANOS,
+				Math.min(MAX_SLICE_NANOS, search.remainingNanos() / 4));
+		long end = System.nanoTime() + slice;
+		List<Future<Long>> futures = new ArrayList<>(trees.length);
+		for (SearchTree tree : trees)
+			futures.add(factory.executor().submit(() -> tree.run(end, search)));
+		long playouts = 0;
+		try {
+			for (Future<Long> future : futures)
+				playouts += future.get();
+		} catch (InterruptedException e) {
+			futures.forEach(f -> f.cancel(true));
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			futures.forEach(f -> f.cancel(true));
+			throw new IllegalStateException("Playout failed", e.getCause());
+		}
+		search.nodes(playouts);
+		for (Map.Entry<Long, Move> entry : rootMoves.entrySet()) {
+			long visits = 0;
+			for (SearchTree tree : trees)
+				visits += tree.visits(entry.getKey());
+			search.offer(entry.getValue(), visits);
+		}
+	}
+
+	@Override
+	protected final void onSearchFinished(SearchStats stats) {
+		trees = null;
+		rootMoves = null;
+	}
+
+	private void prepare(ScotlandYardView view, int location, Set<Move> moves) {
+		LocationTracker tracker = this.tracker != null ? this.tracker : factory.tracker(view);
+		Board board = tracker.board();
+		int[] candidates = null;
+		GameState root;
+		if (view.getCurrentPlayer().isMrX()) {
+			root = GameState.of(board, view, location);
+		} else {
+			candidates = tracker.candidates();
+			if (candidates.length == 0) candidates = unoccupied(board, view);
+			root = GameState.of(board, view, board.value(candidates[0]));
+		}
+		rootMoves = new HashMap<>();
+		for (Move move : moves)
+			rootMoves.put(root.encode(move), move);
+		trees = new SearchTree[factory.threads()];
+		for (int i = 0; i < trees.length; i++)
+			trees[i] = new SearchTree(root, candidates);
+	}
+
+	private static int[] unoccupied(Board board, ScotlandYardView view) {
+		GameState state = GameState.of(board, view, board.value(0));
+		return IntStream.range(0, board.size())
+				.filter(i -> !state.occupiedByDetective(i)).toArray();
+	}
+
+}
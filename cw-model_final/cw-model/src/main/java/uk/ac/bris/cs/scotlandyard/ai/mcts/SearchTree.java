@@ -0,0 +1,189 @@
+package uk.ac.bris.cs.scotlandyard.ai.mcts;
+
+import static uk.ac.bris.cs.scotlandyard.ai.search.GameState.MRX_WINS;
+import static uk.ac.bris.cs.scotlandyard.ai.search.GameState.ONGOING;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import uk.ac.bris.cs.scotlandyard.ai.AnytimePlayer.Search;
+import uk.ac.bris.cs.scotlandyard.ai.search.GameState;
+
+/**
+ * A single Monte Carlo search tree, only ever touched by one worker at a time.
+ * <br>
+ * When Mr X's location is unknown a location is sampled from the candidates
+ * at the start of every iteration and the tree is shared between all samples
+ * (single observer information set MCTS): children are keyed by move, only
+ * the children that are valid in the current sample are considered and UCB
+ * uses the number of times a child was available instead of the parent's
+ * visit count.
+ */
+final class SearchTree {
+
+	private static final double EXPLORATION = 0.7;
+	private static final int CHECK_INTERVAL = 64;
+
+	private final GameState root;
+	private final GameState state;
+	private final int[] candidates;
+	private final Node top;
+	private final long[] buffer = new long[GameState.MAX_MOVES];
+	private Node[] path = new Node[64];
+
+	/**
+	 * @param root the state to search from, Mr X's location is ignored when
+	 *        candidates are given; not null
+	 * @param candidates board indices Mr X is sampled from or null if his
+	 *        location is known
+	 */
+	SearchTree(GameState root, int[] candidates) {
+		this.root = root.copy();
+		this.state = root.copy();
+		this.candidates = candidates;
+		this.top = new Node(0, -1);
+	}
+
+	/**
+	 * Runs iterations until the slice ends or the search expires
+	 *
+	 * @param endNanos end of the slice in {@link System#nanoTime()}
+	 * @param search the search to check for expiry; not null
+	 * @return the number of iterations run
+	 */
+	long run(long endNanos, Search search) {
+		long iterations = 0;
+		do {
+			for (int i = 0; i < CHECK_INTERVAL; i++)
+				iterate();
+			iterations += CHECK_INTERVAL;
+		} while (System.nanoTime() < endNanos && !search.expired());
+		return iterations;
+	}
+
+	/**
+	 * @param move an encoded root move
+	 * @return the number of times the move was visited
+	 */
+	int visits(long move) {
+		int index = top.find(move);
+		return index < 0 ? 0 : top.children[index].visits;
+	}
+
+	private void iterate() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		state.copyFrom(root);
+		if (candidates != null && candidates.length > 0)
+			state.location(0, candidates[random.nextInt(candidates.length)]);
+		Node node = top;
+		int depth = 0;
+		path[depth++] = node;
+		int outcome;
+		while ((outcome = state.outcome()) == ONGOING) {
+			int mover = state.current();
+			Node child = node.select(buffer, state.moves(buffer), mover, random);
+			state.play(child.move);
+			if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+			path[depth++] = child;
+			node = child;
+			if (child.visits == 0) {
+				outcome = playout(random);
+				break;
+			}
+		}
+		boolean mrXWon = outcome == MRX_WINS;
+		for (int i = 0; i < depth; i++) {
+			Node visited = path[i];
+			visited.visits++;
+			if ((visited.mover == 0) == mrXWon) visited.wins++;
+		}
+	}
+
+	// random playout, detectives take Mr X if they can and Mr X keeps his
+	// double move tickets for the tree to decide on
+	private int playout(ThreadLocalRandom random) {
+		int outcome;
+		while ((outcome = state.outcome()) == ONGOING) {
+			int count = state.singleMoves(buffer);
+			long move = buffer[random.nextInt(count)];
+			if (state.current() != 0) {
+				int mrX = state.location(0);
+				for (int i = 0; i < count; i++) {
+					if (!GameState.isPass(buffer[i]) && GameState.destination(buffer[i]) == mrX) {
+						move = buffer[i];
+						break;
+					}
+				}
+			}
+			state.play(move);
+		}
+		return outcome;
+	}
+
+	private static final class Node {
+
+		private static final long[] NO_KEYS = new long[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private final long move;
+		private final int mover;
+		private long[] keys = NO_KEYS;
+		private Node[] children = NO_CHILDREN;
+		private int size;
+		private int visits;
+		private int available;
+		private double wins;
+
+		Node(long move, int mover) {
+			this.move = move;
+			this.mover = mover;
+		}
+
+		int find(long key) {
+			return Arrays.binarySearch(keys, 0, size, key);
+		}
+
+		// picks a random untried move if there is one, the best child by
+		// UCB otherwise; moves in the buffer may be reordered
+		Node select(long[] moves, int count, int mover, ThreadLocalRandom random) {
+			int untried = 0;
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				int index = find(moves[i]);
+				if (index < 0) {
+					moves[untried++] = moves[i];
+					continue;
+				}
+				Node child = children[index];
+				child.available++;
+				double score = child.wins / child.visits
+						+ EXPLORATION * Math.sqrt(Math.log(child.available) / child.visits);
+				if (score > bestScore) {
+					bestScore = score;
+					best = child;
+				}
+			}
+			if (untried == 0) return best;
+			return add(moves[random.nextInt(untried)], mover);
+		}
+
+		private Node add(long key, int mover) {
+			int index = -find(key) - 1;
+			if (size == keys.length) {
+				int capacity = Math.max(4, size * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(children, index, children, index + 1, size - index);
+			Node child = new Node(key, mover);
+			child.available = 1;
+			keys[index] = key;
+			children[index] = child;
+			size++;
+			return child;
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+package uk.ac.bris.cs.scotlandyard.ai.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * An immutable, array based copy of a game graph for use in search. Nodes are
+ * renumbered to dense indices {@code 0..size()-1} and edges are stored in
+ * compressed sparse row form so neighbours of a node can be walked without
+ * allocating or boxing. Duplicate edges (same destination and transport) are
+ * dropped.
+ */
+public final class Board {
+
+	private final int[] values;
+	private final Map<Integer, Integer> indices;
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] tickets;
+	private final AtomicReferenceArray<int[]> distances;
+
+	private Board(int[] values, Map<Integer, Integer> indices, int[] offsets, int[] targets,
+			byte[] tickets) {
+		this.values = values;
+		this.indices = indices;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.tickets = tickets;
+		this.distances = new AtomicReferenceArray<>(values.length);
+	}
+
+	/**
+	 * Creates a board from the given graph
+	 *
+	 * @param graph the graph; not null
+	 * @return the board; never null
+	 */
+	public static Board of(Graph<Integer, Transport> graph) {
+		List<Node<Integer>> nodes = Objects.requireNonNull(graph).getNodes();
+		int[] values = new int[nodes.size()];
+		Map<Integer, Integer> indices = new HashMap<>();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = nodes.get(i).value();
+			indices.put(values[i], i);
+		}
+		int[] offsets = new int[values.length + 1];
+		int[][] adjacentTargets = new int[values.length][];
+		byte[][] adjacentTickets = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			Set<Long> unique = new LinkedHashSet<>();
+			for (Edge<Integer, Transport> edge : graph.getEdgesFrom(nodes.get(i))) {
+				long target = indices.get(edge.destination().value());
+				unique.add(target << 8 | Ticket.fromTransport(edge.data()).ordinal());
+			}
+			adjacentTargets[i] = new int[unique.size()];
+			adjacentTickets[i] = new byte[unique.size()];
+			int j = 0;
+			for (long edge : unique) {
+				adjacentTargets[i][j] = (int) (edge >>> 8);
+				adjacentTickets[i][j] = (byte) (edge & 0xFF);
+				j++;
+			}
+			offsets[i + 1] = offsets[i] + unique.size();
+		}
+		int[] targets = new int[offsets[values.length]];
+		byte[] tickets = new byte[offsets[values.length]];
+		for (int i = 0; i < values.length; i++) {
+			System.arraycopy(adjacentTargets[i], 0, targets, offsets[i], adjacentTargets[i].length);
+			System.arraycopy(adjacentTickets[i], 0, tickets, offsets[i], adjacentTickets[i].length);
+		}
+		return new Board(values, indices, offsets, targets, tickets);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param index a dense node index
+	 * @return the node value (location) of the index
+	 */
+	public int value(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param value a node value (location)
+	 * @return the dense index of the node or -1 if no such node exists
+	 */
+	public int index(int value) {
+		Integer index = indices.get(value);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param index a dense node index
+	 * @return the start of the node's edges, see {@link #target(int)}
+	 */
+	public int edgesStart(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @param index a dense node index
+	 * @return the end (exclusive) of the node's edges, see {@link #target(int)}
+	 */
+	public int edgesEnd(int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * @param edge an edge position in {@code [edgesStart(n), edgesEnd(n))}
+	 * @return the dense index of the destination of the edge
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge an edge position in {@code [edgesStart(n), edgesEnd(n))}
+	 * @return the ordinal of the {@link Ticket} required for the edge, ferries
+	 *         require {@link Ticket#SECRET}
+	 */
+	public int ticket(int edge) {
+		return tickets[edge];
+	}
+
+	/**
+	 * @param index a dense node index
+	 * @return the number of distinct edges leaving the node
+	 */
+	public int degree(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * Hop distance between two nodes ignoring tickets, the distances from a
+	 * node are computed on first use and kept, so only sources actually asked
+	 * about take up memory
+	 *
+	 * @param from a dense node index
+	 * @param to a dense node index
+	 * @return the distance or -1 if {@code to} cannot be reached
+	 */
+	public int distance(int from, int to) {
+		int[] row = distances.get(from);
+		if (row == null) {
+			// computing twice on a race is harmless, the rows are equal
+			row = distancesFrom(from);
+			distances.set(from, row);
+		}
+		return row[to];
+	}
+
+	/**
+	 * Computes hop distances from the given node ignoring tickets
+	 *
+	 * @param from a dense node index
+	 * @return distances indexed by dense node index, -1 if unreachable
+	 */
+	public int[] distancesFrom(int from) {
+		int[] distances = new int[values.length];
+		Arrays.fill(distances, -1);
+		int[] queue = new int[values.length];
+		int head = 0;
+		int tail = 0;
+		distances[from] = 0;
+		queue[tail++] = from;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+				int next = targets[e];
+				if (distances[next] >= 0) continue;
+				distances[next] = distances[node] + 1;
+				queue[tail++] = next;
+			}
+		}
+		return distances;
+	}
+
+	// structural, boards of equal graphs are interchangeable
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		Board that = (Board) o;
+		return Arrays.equals(values, that.values) && Arrays.equals(offsets, that.offsets)
+				&& Arrays.equals(targets, that.targets) && Arrays.equals(tickets, that.tickets);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(Arrays.hashCode(values), Arrays.hashCode(targets),
+				Arrays.hashCode(tickets));
+	}
+
+}
@@ -0,0 +1,546 @@
+package uk.ac.bris.cs.scotlandyard.ai.search;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableList;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveVisitor;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * A compact, mutable game state for search. It follows the same rules as
+ * {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel} but keeps
+ * everything in primitive arrays, encodes moves as {@code long}s and never
+ * notifies anyone, so millions of moves can be generated and played per
+ * second. <br>
+ * Locations are dense {@link Board} indices, player 0 is always Mr X and
+ * tickets are indexed by {@link Ticket#ordinal()}. Use
+ * {@link #copyFrom(GameState)} to reset a scratch state instead of allocating
+ * a new one. <br>
+ * This class is not thread safe, give each thread its own copy.
+ */
+public final class GameState {
+
+	/**
+	 * Result of {@link #outcome()} while the game is still running
+	 */
+	public static final int ONGOING = 0;
+	/**
+	 * Result of {@link #outcome()} when Mr X has won
+	 */
+	public static final int MRX_WINS = 1;
+	/**
+	 * Result of {@link #outcome()} when the detectives have won
+	 */
+	public static final int DETECTIVES_WIN = 2;
+
+	/**
+	 * Upper bound of moves generated by {@link #moves(long[])} on the
+	 * standard map, buffers should be at least this large
+	 */
+	public static final int MAX_MOVES = 4096;
+
+	private static final int TICKETS = Ticket.values().length;
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+	private static final int SECRET = Ticket.SECRET.ordinal();
+
+	private static final long NODE_MASK = 0xFFFF;
+	private static final int TICKET1_SHIFT = 16;
+	private static final int DESTINATION2_SHIFT = 19;
+	private static final int TICKET2_SHIFT = 35;
+	private static final long DOUBLE_FLAG = 1L << 38;
+	private static final long PASS_FLAG = 1L << 39;
+
+	private final Board board;
+	private final boolean[] rounds;
+	private final List<Colour> colours;
+	private final int[] locations;
+	private final int[] tickets;
+	private int current;
+	private int round;
+
+	/**
+	 * Creates a new state
+	 *
+	 * @param board the board; not null
+	 * @param rounds the reveal rounds; not null
+	 * @param colours colours of all players, Mr X first; not null
+	 * @param locations node values (not indices) of all players, in the same
+	 *        order as {@code colours}; not null
+	 * @param tickets ticket counts of all players indexed by
+	 *        {@code player * 5 + ticket.ordinal()}; not null
+	 * @param current the index of the player to move
+	 * @param round the current round
+	 */
+	public GameState(Board board, List<Boolean> rounds, List<Colour> colours, int[] locations,
+			int[] tickets, int current, int round) {
+		this.board = requireNonNull(board);
+		if (board.size() > NODE_MASK + 1)
+			throw new IllegalArgumentException("Board too large, got " + board.size() + " nodes");
+		this.rounds = new boolean[requireNonNull(rounds).size()];
+		for (int i = 0; i < this.rounds.length; i++)
+			this.rounds[i] = rounds.get(i);
+		this.colours = ImmutableList.copyOf(colours);
+		if (this.colours.isEmpty() || !this.colours.get(0).isMrX())
+			throw new IllegalArgumentException("Mr X must be the first player");
+		if (locations.length != this.colours.size())
+			throw new IllegalArgumentException("locations.length != colours.size()");
+		if (tickets.length != this.colours.size() * TICKETS)
+			throw new IllegalArgumentException("tickets.length != colours.size() * " + TICKETS);
+		this.locations = new int[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			this.locations[i] = board.index(locations[i]);
+			if (this.locations[i] < 0)
+				throw new IllegalArgumentException("No such location " + locations[i]);
+		}
+		this.tickets = tickets.clone();
+		if (current < 0 || current >= locations.length)
+			throw new IndexOutOfBoundsException("current " + current + " not a player");
+		this.current = current;
+		this.round = round;
+	}
+
+	private GameState(GameState that) {
+		this.board = that.board;
+		this.rounds = that.rounds;
+		this.colours = that.colours;
+		this.locations = that.locations.clone();
+		this.tickets = that.tickets.clone();
+		this.current = that.current;
+		this.round = that.round;
+	}
+
+	/**
+	 * Creates a state from a view of a running game. The view does not know
+	 * where Mr X is, so his location must be supplied.
+	 *
+	 * @param board the board built from {@code view.getGraph()}; not null
+	 * @param view the view; not null
+	 * @param mrXLocation the (assumed) location of Mr X
+	 * @return a new state; never null
+	 */
+	public static GameState of(Board board, ScotlandYardView view, int mrXLocation) {
+		List<Colour> colours = view.getPlayers();
+		int[] locations = new int[colours.size()];
+		int[] tickets = new int[colours.size() * TICKETS];
+		for (int i = 0; i < colours.size(); i++) {
+			Colour colour = colours.get(i);
+			locations[i] = colour.isMrX() ? mrXLocation
+					: view.getPlayerLocation(colour).orElseThrow(IllegalArgumentException::new);
+			for (Ticket ticket : Ticket.values())
+				tickets[i * TICKETS + ticket.ordinal()] = view.getPlayerTickets(colour, ticket)
+						.orElse(0);
+		}
+		return new GameState(board, view.getRounds(), colours, locations, tickets,
+				colours.indexOf(view.getCurrentPlayer()), view.getCurrentRound());
+	}
+
+	/**
+	 * @return an independent copy of this state; never null
+	 */
+	public GameState copy() {
+		return new GameState(this);
+	}
+
+	/**
+	 * Overwrites this state with another state of the same game
+	 *
+	 * @param that the state to copy; not null
+	 */
+	public void copyFrom(GameState that) {
+		if (that.board != board || that.locations.length != locations.length)
+			throw new IllegalArgumentException("States are not of the same game");
+		System.arraycopy(that.locations, 0, locations, 0, locations.length);
+		System.arraycopy(that.tickets, 0, tickets, 0, tickets.length);
+		current = that.current;
+		round = that.round;
+	}
+
+	/**
+	 * @return the board; never null
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * @return the number of players including Mr X
+	 */
+	public int players() {
+		return locations.length;
+	}
+
+	/**
+	 * @param player the player index
+	 * @return the colour of the player; never null
+	 */
+	public Colour colour(int player) {
+		return colours.get(player);
+	}
+
+	/**
+	 * @return the index of the player to move, 0 is Mr X
+	 */
+	public int current() {
+		return current;
+	}
+
+	/**
+	 * @return the current round, incremented for every ticket Mr X uses
+	 */
+	public int round() {
+		return round;
+	}
+
+	/**
+	 * @return the total number of rounds
+	 */
+	public int rounds() {
+		return rounds.length;
+	}
+
+	/**
+	 * @param round the round
+	 * @return true if Mr X's location is revealed after moving in the round
+	 */
+	public boolean isRevealRound(int round) {
+		return rounds[round];
+	}
+
+	/**
+	 * @param player the player index
+	 * @return the board index of the player's location
+	 */
+	public int location(int player) {
+		return locations[player];
+	}
+
+	/**
+	 * Moves a player without playing a move, e.g. to place Mr X on a sampled
+	 * location
+	 *
+	 * @param player the player index
+	 * @param index the board index of the new location
+	 */
+	public void location(int player, int index) {
+		locations[player] = index;
+	}
+
+	/**
+	 * @param player the player index
+	 * @param ticket the ticket
+	 * @return the number of tickets
+	 */
+	public int tickets(int player, Ticket ticket) {
+		return tickets[player * TICKETS + ticket.ordinal()];
+	}
+
+	/**
+	 * @param index a board index
+	 * @return true if a detective stands on the node
+	 */
+	public boolean occupiedByDetective(int index) {
+		for (int p = 1; p < locations.length; p++)
+			if (locations[p] == index) return true;
+		return false;
+	}
+
+	/**
+	 * Generates all valid moves of the current player
+	 *
+	 * @param out the buffer to write the encoded moves into; not null
+	 * @return the number of moves written, at least 1 unless Mr X is stuck
+	 */
+	public int moves(long[] out) {
+		int count = singles(current, locations[current], out, 0);
+		if (current == 0) {
+			int base = current * TICKETS;
+			if (tickets[base + DOUBLE] > 0 && rounds.length - 1 > round) {
+				int singles = count;
+				for (int i = 0; i < singles; i++) {
+					long first = out[i];
+					int ticket = ticket1(first);
+					// the first leg is not played yet so second legs are
+					// generated from the untouched tickets, same as the model
+					int start = count;
+					count = singles(current, destination1(first), out, count);
+					int kept = start;
+					for (int j = start; j < count; j++) {
+						int second = ticket1(out[j]);
+						if (second == ticket && tickets[base + ticket] < 2) continue;
+						out[kept++] = first | DOUBLE_FLAG
+								| (out[j] & NODE_MASK) << DESTINATION2_SHIFT
+								| (long) second << TICKET2_SHIFT;
+					}
+					count = kept;
+				}
+			}
+		} else if (count == 0) {
+			out[count++] = PASS_FLAG;
+		}
+		return count;
+	}
+
+	/**
+	 * Generates the valid moves of the current player without double moves,
+	 * e.g. for a cheap playout policy
+	 *
+	 * @param out the buffer to write the encoded moves into; not null
+	 * @return the number of moves written, at least 1 unless Mr X is stuck
+	 */
+	public int singleMoves(long[] out) {
+		int count = singles(current, locations[current], out, 0);
+		if (current != 0 && count == 0) out[count++] = PASS_FLAG;
+		return count;
+	}
+
+	private int singles(int player, int from, long[] out, int count) {
+		int base = player * TICKETS;
+		boolean secret = tickets[base + SECRET] > 0;
+		int end = board.edgesEnd(from);
+		for (int e = board.edgesStart(from); e < end; e++) {
+			int target = board.target(e);
+			if (occupiedByDetective(target)) continue;
+			int ticket = board.ticket(e);
+			if (ticket != SECRET && tickets[base + ticket] > 0)
+				out[count++] = target | (long) ticket << TICKET1_SHIFT;
+			if (secret && firstEdgeTo(from, e, target))
+				out[count++] = target | (long) SECRET << TICKET1_SHIFT;
+		}
+		return count;
+	}
+
+	// secret moves only depend on the target, so emit them once per target
+	private boolean firstEdgeTo(int from, int edge, int target) {
+		for (int e = board.edgesStart(from); e < edge; e++)
+			if (board.target(e) == target) return false;
+		return true;
+	}
+
+	/**
+	 * @param player the player index
+	 * @return true if the player has at least one ticket move, cheaper than
+	 *         {@link #moves(long[])}
+	 */
+	public boolean hasMove(int player) {
+		int base = player * TICKETS;
+		int from = locations[player];
+		boolean secret = tickets[base + SECRET] > 0;
+		int end = board.edgesEnd(from);
+		for (int e = board.edgesStart(from); e < end; e++) {
+			if (occupiedByDetective(board.target(e))) continue;
+			int ticket = board.ticket(e);
+			if (secret || (ticket != SECRET && tickets[base + ticket] > 0)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Plays an encoded move for the current player, the move is assumed to
+	 * be valid
+	 *
+	 * @param move a move produced by {@link #moves(long[])} or
+	 *        {@link #encode(Move)}
+	 */
+	public void play(long move) {
+		if ((move & PASS_FLAG) == 0) {
+			if ((move & DOUBLE_FLAG) != 0) {
+				tickets[current * TICKETS + DOUBLE]--;
+				leg(destination1(move), ticket1(move));
+				leg(destination2(move), ticket2(move));
+			} else {
+				leg(destination1(move), ticket1(move));
+			}
+		}
+		current = current + 1 == locations.length ? 0 : current + 1;
+	}
+
+	private void leg(int destination, int ticket) {
+		locations[current] = destination;
+		tickets[current * TICKETS + ticket]--;
+		if (current == 0) round++;
+		else tickets[ticket]++;
+	}
+
+	/**
+	 * Decides whether the game is over and who won, with the same rules as
+	 * {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel}
+	 *
+	 * @return one of {@link #ONGOING}, {@link #MRX_WINS} or
+	 *         {@link #DETECTIVES_WIN}
+	 */
+	public int outcome() {
+		// a capture wins even in the last round or with every detective stuck
+		if (occupiedByDetective(locations[0])) return DETECTIVES_WIN;
+		boolean mrXTurn = current == 0;
+		if (mrXTurn && round >= rounds.length) return MRX_WINS;
+		boolean detectivesStuck = true;
+		for (int p = 1; p < locations.length && detectivesStuck; p++)
+			if (hasMove(p)) detectivesStuck = false;
+		if (detectivesStuck) return MRX_WINS;
+		if (mrXTurn && !hasMove(0)) return DETECTIVES_WIN;
+		return ONGOING;
+	}
+
+	/**
+	 * Encodes a move of the current player
+	 *
+	 * @param move the move; not null
+	 * @return the encoded move
+	 */
+	public long encode(Move move) {
+		long[] encoded = new long[1];
+		requireNonNull(move).visit(new MoveVisitor() {
+			@Override
+			public void visit(PassMove move) {
+				encoded[0] = PASS_FLAG;
+			}
+
+			@Override
+			public void visit(TicketMove move) {
+				encoded[0] = single(move);
+			}
+
+			@Override
+			public void visit(DoubleMove move) {
+				long second = single(move.secondMove());
+				encoded[0] = single(move.firstMove()) | DOUBLE_FLAG
+						| (second & NODE_MASK) << DESTINATION2_SHIFT
+						| (long) ticket1(second) << TICKET2_SHIFT;
+			}
+		});
+		return encoded[0];
+	}
+
+	private long single(TicketMove move) {
+		int index = board.index(move.destination());
+		if (index < 0) throw new IllegalArgumentException("No such location in " + move);
+		return index | (long) move.ticket().ordinal() << TICKET1_SHIFT;
+	}
+
+	/**
+	 * Decodes a move of the current player
+	 *
+	 * @param move the encoded move
+	 * @return the move; never null
+	 */
+	public Move decode(long move) {
+		Colour colour = colours.get(current);
+		if ((move & PASS_FLAG) != 0) return new PassMove(colour);
+		Ticket[] values = Ticket.values();
+		TicketMove first = new TicketMove(colour, values[ticket1(move)],
+				board.value(destination1(move)));
+		if ((move & DOUBLE_FLAG) == 0) return first;
+		return new DoubleMove(colour, first, new TicketMove(colour, values[ticket2(move)],
+				board.value(destination2(move))));
+	}
+
+	/**
+	 * Encodes a single ticket move
+	 *
+	 * @param destination the board index of the destination
+	 * @param ticket the ticket ordinal
+	 * @return the encoded move
+	 */
+	public static long ticketMove(int destination, int ticket) {
+		return destination | (long) ticket << TICKET1_SHIFT;
+	}
+
+	/**
+	 * Encodes a double move
+	 *
+	 * @param destination1 the board index of the first destination
+	 * @param ticket1 the ticket ordinal of the first leg
+	 * @param destination2 the board index of the second destination
+	 * @param ticket2 the ticket ordinal of the second leg
+	 * @return the encoded move
+	 */
+	public static long doubleMove(int destination1, int ticket1, int destination2,
+			int ticket2) {
+		return ticketMove(destination1, ticket1) | DOUBLE_FLAG
+				| (long) destination2 << DESTINATION2_SHIFT | (long) ticket2 << TICKET2_SHIFT;
+	}
+
+	/**
+	 * @param move an encoded move
+	 * @return true if the move is a pass
+	 */
+	public static boolean isPass(long move) {
+		return (move & PASS_FLAG) != 0;
+	}
+
+	/**
+	 * @param move an encoded move
+	 * @return true if the move is a double move
+	 */
+	public static boolean isDouble(long move) {
+		return (move & DOUBLE_FLAG) != 0;
+	}
+
+	/**
+	 * @param move an encoded move
+	 * @return the board index the player ends up on, undefined for a pass
+	 */
+	public static int destination(long move) {
+		return isDouble(move) ? destination2(move) : destination1(move);
+	}
+
+	/**
+	 * @param move an encoded move
+	 * @return the board index of the first (or only) leg
+	 */
+	public static int destination1(long move) {
+		return (int) (move & NODE_MASK);
+	}
+
+	/**
+	 * @param move an encoded double move
+	 * @return the board index of the second leg
+	 */
+	public static int destination2(long move) {
+		return (int) (move >>> DESTINATION2_SHIFT & NODE_MASK);
+	}
+
+	/**
+	 * @param move an encoded move
+	 * @return the ticket ordinal of the first (or only) leg
+	 */
+	public static int ticket1(long move) {
+		return (int) (move >>> TICKET1_SHIFT & 0x7);
+	}
+
+	/**
+	 * @param move an encoded double move
+	 * @return the ticket ordinal of the second leg
+	 */
+	public static int ticket2(long move) {
+		return (int) (move >>> TICKET2_SHIFT & 0x7);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof GameState)) return false;
+		GameState that = (GameState) o;
+		return current == that.current && round == that.round && board == that.board
+				&& Arrays.equals(locations, that.locations)
+				&& Arrays.equals(tickets, that.tickets);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(current, round, Arrays.hashCode(locations),
+				Arrays.hashCode(tickets));
+	}
+
+}
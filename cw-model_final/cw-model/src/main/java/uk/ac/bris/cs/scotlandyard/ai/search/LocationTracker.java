@@ -0,0 +1,90 @@
+package uk.ac.bris.cs.scotlandyard.ai.search;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.BitSet;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * A {@link Spectator} that keeps the set of locations Mr X could be on, given
+ * everything the detectives have seen. <br>
+ * Before Mr X is first revealed he could be anywhere a detective is not. On a
+ * reveal round the set collapses to the revealed location, on a hidden round
+ * it grows to every node reachable with the ticket Mr X used, and nodes a
+ * detective moves onto are removed. <br>
+ * Callbacks arrive on the game thread while AIs read from their own threads,
+ * so all access is synchronised and {@link #candidates()} returns a copy.
+ */
+public final class LocationTracker implements Spectator {
+
+	private final Board board;
+	private BitSet candidates;
+
+	/**
+	 * Creates a tracker for a game that has not started yet
+	 *
+	 * @param board the board of the game; not null
+	 * @param view the view of the game; not null
+	 */
+	public LocationTracker(Board board, ScotlandYardView view) {
+		this.board = requireNonNull(board);
+		this.candidates = new BitSet(board.size());
+		candidates.set(0, board.size());
+		for (Colour colour : view.getPlayers())
+			if (colour.isDetective()) view.getPlayerLocation(colour)
+					.ifPresent(location -> remove(board.index(location)));
+	}
+
+	/**
+	 * @return the board; never null
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * @return board indices of all possible locations of Mr X; never null
+	 */
+	public synchronized int[] candidates() {
+		return candidates.stream().toArray();
+	}
+
+	@Override
+	public synchronized void onMoveMade(ScotlandYardView view, Move move) {
+		if (!(move instanceof TicketMove)) return;
+		TicketMove ticketMove = (TicketMove) move;
+		if (move.colour().isDetective()) {
+			remove(board.index(ticketMove.destination()));
+			return;
+		}
+		// the round has already been incremented when the move is announced
+		if (view.getRounds().get(view.getCurrentRound() - 1)) {
+			candidates = new BitSet(board.size());
+			candidates.set(board.index(ticketMove.destination()));
+			return;
+		}
+		int ticket = ticketMove.ticket().ordinal();
+		boolean secret = ticketMove.ticket() == Ticket.SECRET;
+		BitSet next = new BitSet(board.size());
+		for (int from = candidates.nextSetBit(0); from >= 0;
+				from = candidates.nextSetBit(from + 1)) {
+			for (int e = board.edgesStart(from); e < board.edgesEnd(from); e++)
+				if (secret || board.ticket(e) == ticket) next.set(board.target(e));
+		}
+		for (Colour colour : view.getPlayers())
+			if (colour.isDetective()) view.getPlayerLocation(colour)
+					.ifPresent(location -> next.clear(board.index(location)));
+		candidates = next;
+	}
+
+	private void remove(int index) {
+		if (index >= 0) candidates.clear(index);
+	}
+
+}
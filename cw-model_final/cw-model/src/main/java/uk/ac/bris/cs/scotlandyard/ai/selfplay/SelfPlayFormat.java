@@ -0,0 +1,154 @@
+package uk.ac.bris.cs.scotlandyard.ai.selfplay;
+
+import java.nio.ByteBuffer;
+
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Layout of self-play data written by {@link SelfPlayWriter}. <br>
+ * A data set is a directory of chunk files {@code chunk-NNNNN.bin} and one
+ * {@code index.bin}, all big-endian. Every file starts with a
+ * {@value #HEADER_BYTES} byte header of four ints: a magic number, the format
+ * version, the size of the fixed-width entries that follow and, for chunks,
+ * the chunk number. <br>
+ * Chunks hold one {@value #RECORD_BYTES} byte record per turn, in the order
+ * the turns were played, and games never span chunks:
+ *
+ * <pre>
+ *  0  int    game number
+ *  4  byte   round before the move
+ *  5  byte   index of the player to move, 0 is Mr X
+ *  6  byte   number of players
+ *  7  byte   outcome, {@link #MRX_WINS} or {@link #DETECTIVES_WIN}
+ *  8  short  location of each of 6 players, Mr X's true location, 0 if absent
+ * 20  byte   tickets of each of 6 players, 5 per player in {@link Ticket} order
+ * 50  int    the move played, see {@link MoveCodec}
+ * 54  short  reserved, 0
+ * </pre>
+ *
+ * The index holds one {@value #ENTRY_BYTES} byte entry per game: int game
+ * number, int chunk, int first record in the chunk, short number of records,
+ * byte outcome and byte number of players.
+ */
+public final class SelfPlayFormat {
+
+	/**
+	 * Outcome of games won by Mr X
+	 */
+	public static final int MRX_WINS = 1;
+
+	/**
+	 * Outcome of games won by the detectives
+	 */
+	public static final int DETECTIVES_WIN = 2;
+
+	public static final int VERSION = 1;
+	public static final int CHUNK_MAGIC = 0x53595350; // SYSP
+	public static final int INDEX_MAGIC = 0x53595349; // SYSI
+	public static final int HEADER_BYTES = 16;
+	public static final int RECORD_BYTES = 56;
+	public static final int ENTRY_BYTES = 16;
+	public static final int MAX_PLAYERS = 6;
+	public static final String INDEX = "index.bin";
+
+	static final int GAME = 0;
+	static final int ROUND = 4;
+	static final int PLAYER = 5;
+	static final int PLAYERS = 6;
+	static final int OUTCOME = 7;
+	static final int LOCATIONS = 8;
+	static final int TICKETS = 20;
+	static final int MOVE = 50;
+
+	private static final Ticket[] TICKET_VALUES = Ticket.values();
+
+	private SelfPlayFormat() {}
+
+	/**
+	 * @param chunk the chunk number
+	 * @return the file name of the chunk; never null
+	 */
+	public static String chunkName(int chunk) {
+		return String.format("chunk-%05d.bin", chunk);
+	}
+
+	/**
+	 * @param records records, e.g. from {@link SelfPlayReader#records(int)};
+	 *        not null
+	 * @param record the index of the record in {@code records}
+	 * @return the game number of the record
+	 */
+	public static int game(ByteBuffer records, int record) {
+		return records.getInt(record * RECORD_BYTES + GAME);
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @return the round before the move
+	 */
+	public static int round(ByteBuffer records, int record) {
+		return records.get(record * RECORD_BYTES + ROUND) & 0xFF;
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @return the index of the player to move, 0 is Mr X
+	 */
+	public static int player(ByteBuffer records, int record) {
+		return records.get(record * RECORD_BYTES + PLAYER) & 0xFF;
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @return the number of players in the game
+	 */
+	public static int players(ByteBuffer records, int record) {
+		return records.get(record * RECORD_BYTES + PLAYERS) & 0xFF;
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @return {@link #MRX_WINS} or {@link #DETECTIVES_WIN}
+	 */
+	public static int outcome(ByteBuffer records, int record) {
+		return records.get(record * RECORD_BYTES + OUTCOME);
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @param player the index of the player, 0 is Mr X
+	 * @return the true location of the player
+	 */
+	public static int location(ByteBuffer records, int record, int player) {
+		return records.getShort(record * RECORD_BYTES + LOCATIONS + player * 2) & 0xFFFF;
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @param player the index of the player, 0 is Mr X
+	 * @param ticket the ticket; not null
+	 * @return the number of {@code ticket} the player holds
+	 */
+	public static int tickets(ByteBuffer records, int record, int player, Ticket ticket) {
+		return records.get(record * RECORD_BYTES + TICKETS + player * TICKET_VALUES.length
+				+ ticket.ordinal()) & 0xFF;
+	}
+
+	/**
+	 * @param records records; not null
+	 * @param record the index of the record in {@code records}
+	 * @return the move played, see {@link MoveCodec#decode(Colour, int)}
+	 */
+	public static int move(ByteBuffer records, int record) {
+		return records.getInt(record * RECORD_BYTES + MOVE);
+	}
+
+}
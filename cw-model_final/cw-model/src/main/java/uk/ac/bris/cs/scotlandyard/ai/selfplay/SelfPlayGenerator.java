@@ -0,0 +1,324 @@
+package uk.ac.bris.cs.scotlandyard.ai.selfplay;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.timer.VirtualTimer;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.Fallback;
+import uk.ac.bris.cs.scotlandyard.ai.HeadlessDriver;
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.alphabeta.AlphaBetaAI;
+import uk.ac.bris.cs.scotlandyard.ai.mcts.MctsAI;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.FastScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static uk.ac.bris.cs.scotlandyard.ai.selfplay.SelfPlayFormat.*;
+
+/**
+ * Plays AI against AI without a UI and writes every turn to a self-play data
+ * set, see {@link SelfPlayFormat}. <br>
+ * Games are standard games from random start locations with standard
+ * tickets, played in parallel with one game per thread. Every thread has its
+ * own AI factories and keeps only the game it is playing in memory; a game
+ * is written as soon as it is over, once its outcome is known. Start
+ * locations are seeded by game, AI moves depend on timing. Each thread keeps
+ * its own {@link VirtualTimer} for move deadlines, so an AI that searches on
+ * the calling thread never waits on the clock and one that stalls gets a
+ * random move once the deadline has passed in real time. <br>
+ * Usage: {@code SelfPlayGenerator <outputDir> [games] [threads]
+ * [budgetMillis] [mrXAi] [detectiveAi] [recordsPerChunk] [engine]
+ * [moveDeadlineMillis]}, defaults to 100 games, one thread per core, 100ms,
+ * {@code Alpha-Beta} on both sides, 1000000 records per chunk,
+ * {@link FastScotlandYardModel}, any model of
+ * {@link ModelFactories#factories()} can be named, and one minute. Alpha-Beta searches on the calling thread;
+ * MCTS uses every core for each move, so run it with a single thread.
+ */
+public final class SelfPlayGenerator {
+
+	private static final Map<String, Function<Duration, PlayerFactory>> AIS;
+
+	static {
+		Map<String, Function<Duration, PlayerFactory>> ais = new LinkedHashMap<>();
+		ais.put("Alpha-Beta", AlphaBetaAI::new);
+		ais.put("MCTS", MctsAI::new);
+		AIS = Collections.unmodifiableMap(ais);
+	}
+
+	private static final int INITIAL_RECORDS = 256;
+	private static final Ticket[] TICKET_VALUES = Ticket.values();
+	private static final byte[] EMPTY = new byte[RECORD_BYTES];
+	private static final Duration MOVE_DEADLINE = Duration.ofMinutes(1);
+
+	private final ScotlandYardGameFactory engine;
+	private final Supplier<? extends PlayerFactory> mrX;
+	private final Supplier<? extends PlayerFactory> detectives;
+	private final int detectiveCount;
+	private final Duration moveDeadline;
+	private final Graph<Integer, Transport> graph;
+	private final List<Colour> colours;
+
+	/**
+	 * @param engine creates the games; not null
+	 * @param mrX creates Mr X's AI, once per thread; not null
+	 * @param detectives creates the detectives' AI, once per thread; not null
+	 * @param detectiveCount the number of detectives
+	 * @throws IOException if the standard graph cannot be read
+	 */
+	public SelfPlayGenerator(ScotlandYardGameFactory engine,
+			Supplier<? extends PlayerFactory> mrX, Supplier<? extends PlayerFactory> detectives,
+			int detectiveCount) throws IOException {
+		this(engine, mrX, detectives, detectiveCount, MOVE_DEADLINE);
+	}
+
+	/**
+	 * @param engine creates the games; not null
+	 * @param mrX creates Mr X's AI, once per thread; not null
+	 * @param detectives creates the detectives' AI, once per thread; not null
+	 * @param detectiveCount the number of detectives
+	 * @param moveDeadline the time an AI has to pick a move before a random
+	 *        one is picked for it; not null
+	 * @throws IOException if the standard graph cannot be read
+	 */
+	public SelfPlayGenerator(ScotlandYardGameFactory engine,
+			Supplier<? extends PlayerFactory> mrX, Supplier<? extends PlayerFactory> detectives,
+			int detectiveCount, Duration moveDeadline) throws IOException {
+		if (detectiveCount < 1 || detectiveCount > MAX_PLAYERS - 1)
+			throw new IllegalArgumentException("detectiveCount must be 1 to "
+					+ (MAX_PLAYERS - 1) + ", got " + detectiveCount);
+		this.engine = Objects.requireNonNull(engine);
+		this.mrX = Objects.requireNonNull(mrX);
+		this.detectives = Objects.requireNonNull(detectives);
+		this.detectiveCount = detectiveCount;
+		this.moveDeadline = Objects.requireNonNull(moveDeadline);
+		this.graph = StandardGame.standardGraph();
+		this.colours = Stream.of(Colour.values()).filter(Colour::isDetective)
+				.limit(detectiveCount).collect(Collectors.toList());
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: SelfPlayGenerator <outputDir> [games] [threads] "
+					+ "[budgetMillis] [mrXAi] [detectiveAi] [recordsPerChunk] [engine] [moveDeadlineMillis]");
+			System.err.println("AIs: " + AIS.keySet());
+			System.err.println("Engines: "
+					+ ScotlandYardGameFactory.instantiate(ModelFactories.factories()));
+			System.exit(1);
+		}
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		Duration budget = Duration.ofMillis(args.length > 3 ? Long.parseLong(args[3]) : 100);
+		Function<Duration, PlayerFactory> mrX = ai(args.length > 4 ? args[4] : "Alpha-Beta");
+		Function<Duration, PlayerFactory> detectives = ai(
+				args.length > 5 ? args[5] : "Alpha-Beta");
+		int recordsPerChunk = args.length > 6 ? Integer.parseInt(args[6]) : 1_000_000;
+		ScotlandYardGameFactory engine = ModelFactories.named(
+				args.length > 7 ? args[7] : "FastScotlandYardModel");
+		Duration moveDeadline = args.length > 8 ? Duration.ofMillis(Long.parseLong(args[8]))
+				: MOVE_DEADLINE;
+		SelfPlayGenerator generator = new SelfPlayGenerator(engine,
+				() -> mrX.apply(budget), () -> detectives.apply(budget), 5, moveDeadline);
+		long start = System.nanoTime();
+		try (SelfPlayWriter writer = new SelfPlayWriter(Paths.get(args[0]), recordsPerChunk)) {
+			int mrXWins = generator.generate(games, threads, writer.games(), writer);
+			System.out.printf("%d games (%d won by Mr X), %d records in %ds, %d games in %s%n",
+					games, mrXWins, writer.records(),
+					Duration.ofNanos(System.nanoTime() - start).getSeconds(), writer.games(),
+					args[0]);
+		}
+	}
+
+	private static Function<Duration, PlayerFactory> ai(String name) {
+		Function<Duration, PlayerFactory> ai = AIS.get(name);
+		if (ai == null)
+			throw new IllegalArgumentException("Unknown AI " + name + ", expected one of "
+					+ AIS.keySet());
+		return ai;
+	}
+
+	/**
+	 * Plays games and writes them
+	 *
+	 * @param games the number of games to play
+	 * @param threads the number of games to play at a time
+	 * @param seed seeds the start locations, game {@code n} starts from
+	 *        locations seeded with {@code seed + n}
+	 * @param writer the writer; not null
+	 * @return the number of games won by Mr X
+	 * @throws IOException if writing fails
+	 * @throws InterruptedException if interrupted while waiting for the
+	 *         games
+	 */
+	public int generate(int games, int threads, long seed, SelfPlayWriter writer)
+			throws IOException, InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		Objects.requireNonNull(writer);
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger mrXWins = new AtomicInteger();
+		ExecutorService service = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("self-play-%d").build());
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(service.submit(() -> {
+					Worker worker = new Worker();
+					try {
+						for (int n; (n = next.getAndIncrement()) < games; ) {
+							if (worker.play(new Random(seed + n), writer) == MRX_WINS)
+								mrXWins.incrementAndGet();
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					} finally {
+						worker.finish();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) {
+					// stop the other workers from starting new games
+					next.set(games);
+					if (e.getCause() instanceof UncheckedIOException)
+						throw ((UncheckedIOException) e.getCause()).getCause();
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			service.shutdownNow();
+		}
+		return mrXWins.get();
+	}
+
+	/**
+	 * Plays games one after the other on a single thread
+	 */
+	private final class Worker {
+
+		private final PlayerFactory mrXFactory = mrX.get();
+		private final PlayerFactory detectiveFactory = detectives.get();
+		private final HeadlessDriver driver = new HeadlessDriver(new VirtualTimer(),
+				moveDeadline, Fallback.RANDOM);
+		private ByteBuffer records = ByteBuffer.allocate(INITIAL_RECORDS * RECORD_BYTES);
+		private int recordCount;
+		private int mrXLocation;
+
+		int play(Random random, SelfPlayWriter writer) throws IOException {
+			List<Integer> starts = new ArrayList<>(StandardGame.DETECTIVE_LOCATIONS);
+			Collections.shuffle(starts, random);
+			mrXLocation = StandardGame.MRX_LOCATIONS
+					.get(random.nextInt(StandardGame.MRX_LOCATIONS.size()));
+			records.clear();
+			recordCount = 0;
+			PlayerConfiguration mrXConfiguration = new PlayerConfiguration.Builder(Colour.BLACK)
+					.using(recording(mrXFactory.createPlayer(Colour.BLACK), 0))
+					.with(StandardGame.generateMrXTickets()).at(mrXLocation).build();
+			List<PlayerConfiguration> rest = new ArrayList<>();
+			for (int i = 0; i < detectiveCount; i++) {
+				rest.add(new PlayerConfiguration.Builder(colours.get(i))
+						.using(recording(detectiveFactory.createPlayer(colours.get(i)), i + 1))
+						.with(StandardGame.generateDetectiveTickets()).at(starts.get(i)).build());
+			}
+			ScotlandYardGame game = engine.createGame(StandardGame.ROUNDS, graph,
+					mrXConfiguration, rest.get(0),
+					rest.subList(1, rest.size()).toArray(new PlayerConfiguration[0]));
+			HeadlessDriver.register(mrXFactory, game);
+			HeadlessDriver.register(detectiveFactory, game);
+			driver.play(game);
+			records.flip();
+			int outcome = game.getWinningPlayers().contains(Colour.BLACK) ? MRX_WINS
+					: DETECTIVES_WIN;
+			writer.write(records, outcome);
+			return outcome;
+		}
+
+		void finish() {
+			mrXFactory.finish();
+			detectiveFactory.finish();
+		}
+
+		// the state is recorded when the move is requested, the move once the
+		// AI picked it
+		private Player recording(Player player, int index) {
+			Player deferred = driver.defer(player);
+			return (view, location, moves, callback) -> {
+				int record = record(view, index);
+				deferred.makeMove(view, location, moves, move -> {
+					records.putInt(record * RECORD_BYTES + MOVE, MoveCodec.encode(move));
+					if (index == 0) mrXLocation = destination(move, mrXLocation);
+					callback.accept(move);
+				});
+			};
+		}
+
+		private int record(ScotlandYardView view, int index) {
+			if (records.capacity() < (recordCount + 1) * RECORD_BYTES) {
+				ByteBuffer larger = ByteBuffer.allocate(records.capacity() * 2);
+				records.flip();
+				larger.put(records);
+				records = larger;
+			}
+			int at = recordCount * RECORD_BYTES;
+			records.position(at);
+			records.put(EMPTY);
+			List<Colour> players = view.getPlayers();
+			records.put(at + ROUND, (byte) view.getCurrentRound());
+			records.put(at + PLAYER, (byte) index);
+			records.put(at + PLAYERS, (byte) players.size());
+			for (int i = 0; i < players.size(); i++) {
+				Colour colour = players.get(i);
+				int location = i == 0 ? mrXLocation : view.getPlayerLocation(colour).orElse(0);
+				records.putShort(at + LOCATIONS + i * 2, (short) location);
+				for (Ticket ticket : TICKET_VALUES)
+					records.put(at + TICKETS + i * TICKET_VALUES.length + ticket.ordinal(),
+							(byte) Math.min(0xFF, view.getPlayerTickets(colour, ticket).orElse(0)));
+			}
+			return recordCount++;
+		}
+
+		private int destination(Move move, int location) {
+			if (move instanceof DoubleMove) return ((DoubleMove) move).finalDestination();
+			if (move instanceof TicketMove) return ((TicketMove) move).destination();
+			return location;
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package uk.ac.bris.cs.scotlandyard.ai.selfplay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.bris.cs.scotlandyard.ai.selfplay.SelfPlayFormat.*;
+
+/**
+ * Reads a self-play data set written by {@link SelfPlayWriter}. <br>
+ * The index and chunks are memory mapped, chunks when one of their games is
+ * first read, so data sets larger than the heap can be read. Games written
+ * after the reader was opened are not seen. Readers are not thread safe.
+ */
+public final class SelfPlayReader {
+
+	private final Path directory;
+	private final ByteBuffer index;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+
+	private SelfPlayReader(Path directory, ByteBuffer index) {
+		this.directory = directory;
+		this.index = index;
+	}
+
+	/**
+	 * @param directory the directory of the data set; not null
+	 * @return the reader; never null
+	 * @throws IOException if the index cannot be read or is not a self-play
+	 *         index
+	 */
+	public static SelfPlayReader open(Path directory) throws IOException {
+		return new SelfPlayReader(directory,
+				map(directory.resolve(INDEX), INDEX_MAGIC, ENTRY_BYTES));
+	}
+
+	/**
+	 * @return the number of games
+	 */
+	public int games() {
+		return (index.capacity() - HEADER_BYTES) / ENTRY_BYTES;
+	}
+
+	/**
+	 * @param game the game number
+	 * @return the outcome of the game, {@link SelfPlayFormat#MRX_WINS} or
+	 *         {@link SelfPlayFormat#DETECTIVES_WIN}
+	 */
+	public int outcome(int game) {
+		return index.get(entry(game) + 14);
+	}
+
+	/**
+	 * @param game the game number
+	 * @return the number of records of the game
+	 */
+	public int size(int game) {
+		return index.getShort(entry(game) + 12) & 0xFFFF;
+	}
+
+	/**
+	 * @param game the game number
+	 * @return the records of the game, read with the accessors of
+	 *         {@link SelfPlayFormat}; never null
+	 * @throws IOException if the chunk of the game cannot be read
+	 */
+	public ByteBuffer records(int game) throws IOException {
+		int entry = entry(game);
+		int chunk = index.getInt(entry + 4);
+		ByteBuffer records = chunk(chunk).duplicate();
+		records.position(HEADER_BYTES + index.getInt(entry + 8) * RECORD_BYTES);
+		records.limit(records.position() + size(game) * RECORD_BYTES);
+		return records.slice();
+	}
+
+	private int entry(int game) {
+		if (game < 0 || game >= games())
+			throw new IndexOutOfBoundsException("No game " + game + ", " + games() + " games");
+		return HEADER_BYTES + game * ENTRY_BYTES;
+	}
+
+	private ByteBuffer chunk(int chunk) throws IOException {
+		while (chunks.size() <= chunk)
+			chunks.add(null);
+		ByteBuffer buffer = chunks.get(chunk);
+		if (buffer == null) {
+			buffer = map(directory.resolve(chunkName(chunk)), CHUNK_MAGIC, RECORD_BYTES);
+			chunks.set(chunk, buffer);
+		}
+		return buffer;
+	}
+
+	private static ByteBuffer map(Path file, int magic, int entryBytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != magic
+					|| buffer.getInt(4) != VERSION || buffer.getInt(8) != entryBytes)
+				throw new IOException("Not a self-play file: " + file);
+			return buffer;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package uk.ac.bris.cs.scotlandyard.ai.selfplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static uk.ac.bris.cs.scotlandyard.ai.selfplay.SelfPlayFormat.*;
+
+/**
+ * Appends whole games to a self-play data set, see {@link SelfPlayFormat}.
+ * <br>
+ * Each game's records go to the current chunk, a new chunk is started when a
+ * game would take the current one past its record limit. Writing to an
+ * existing data set continues its game numbers in a new chunk; nothing that
+ * was written before is changed. Writers are safe to share between threads,
+ * games are numbered in the order they are written.
+ */
+public final class SelfPlayWriter implements Closeable {
+
+	private final Path directory;
+	private final int recordsPerChunk;
+	private final FileChannel index;
+	private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+	private FileChannel chunk;
+	private int chunkNumber;
+	private int chunkRecords;
+	private int games;
+	private long records;
+
+	/**
+	 * @param directory the directory of the data set, created if it does not
+	 *        exist; not null
+	 * @param recordsPerChunk the most records in a chunk, unless a single
+	 *        game has more
+	 * @throws IOException if the index cannot be created or is not a
+	 *         self-play index
+	 */
+	public SelfPlayWriter(Path directory, int recordsPerChunk) throws IOException {
+		if (recordsPerChunk < 1)
+			throw new IllegalArgumentException("recordsPerChunk must be > 0, got " + recordsPerChunk);
+		this.directory = Files.createDirectories(directory);
+		this.recordsPerChunk = recordsPerChunk;
+		this.index = FileChannel.open(directory.resolve(INDEX), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (index.size() == 0) {
+				writeFully(index, header(INDEX_MAGIC, ENTRY_BYTES, 0));
+			} else {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				index.read(header, 0);
+				if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION
+						|| header.getInt(8) != ENTRY_BYTES)
+					throw new IOException("Not a self-play index: " + directory.resolve(INDEX));
+				games = (int) ((index.size() - HEADER_BYTES) / ENTRY_BYTES);
+				if (games > 0) {
+					ByteBuffer last = ByteBuffer.allocate(ENTRY_BYTES);
+					index.read(last, index.size() - ENTRY_BYTES);
+					chunkNumber = last.getInt(4) + 1;
+				}
+				index.position(HEADER_BYTES + (long) games * ENTRY_BYTES);
+			}
+		} catch (IOException e) {
+			index.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a game
+	 *
+	 * @param game the records of the game from position to limit, game
+	 *        numbers and outcome are filled in here; not null
+	 * @param outcome {@link SelfPlayFormat#MRX_WINS} or
+	 *        {@link SelfPlayFormat#DETECTIVES_WIN}
+	 * @return the number of the game
+	 * @throws IOException if writing fails
+	 */
+	public synchronized int write(ByteBuffer game, int outcome) throws IOException {
+		if (outcome != MRX_WINS && outcome != DETECTIVES_WIN)
+			throw new IllegalArgumentException("Unknown outcome " + outcome);
+		if (game.remaining() % RECORD_BYTES != 0)
+			throw new IllegalArgumentException("Partial record in " + game);
+		int count = game.remaining() / RECORD_BYTES;
+		if (count == 0) throw new IllegalArgumentException("Game has no records");
+		if (count > 0xFFFF) throw new IllegalArgumentException("Game has " + count + " records");
+		int number = games;
+		int players = game.get(game.position() + PLAYERS);
+		for (int i = 0; i < count; i++) {
+			int record = game.position() + i * RECORD_BYTES;
+			game.putInt(record + GAME, number);
+			game.put(record + OUTCOME, (byte) outcome);
+		}
+		if (chunk != null && chunkRecords + count > recordsPerChunk) {
+			chunk.close();
+			chunk = null;
+			chunkNumber++;
+		}
+		if (chunk == null) {
+			chunk = FileChannel.open(directory.resolve(chunkName(chunkNumber)),
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			writeFully(chunk, header(CHUNK_MAGIC, RECORD_BYTES, chunkNumber));
+			chunkRecords = 0;
+		}
+		writeFully(chunk, game);
+		entry.clear();
+		entry.putInt(number).putInt(chunkNumber).putInt(chunkRecords).putShort((short) count)
+				.put((byte) outcome).put((byte) players).flip();
+		writeFully(index, entry);
+		chunkRecords += count;
+		records += count;
+		games++;
+		return number;
+	}
+
+	/**
+	 * @return the number of games in the data set
+	 */
+	public synchronized int games() {
+		return games;
+	}
+
+	/**
+	 * @return the number of records written by this writer
+	 */
+	public synchronized long records() {
+		return records;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (chunk != null) chunk.close();
+		} finally {
+			index.close();
+		}
+	}
+
+	private static ByteBuffer header(int magic, int entryBytes, int number) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(magic).putInt(VERSION).putInt(entryBytes).putInt(number).flip();
+		return header;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+}
@@ -0,0 +1,173 @@
+package uk.ac.bris.cs.scotlandyard.ai.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+import uk.ac.bris.cs.scotlandyard.ai.search.GameState;
+
+/**
+ * A solved capture game for one or two detectives, produced by
+ * {@link EndgameTableGenerator}. <br>
+ * The table answers, for every placement of Mr X and the detectives and every
+ * player to move, how many plies the detectives need to catch a Mr X they can
+ * see if both sides play perfectly. Mr X may use any connection except double
+ * moves, detectives any connection except ferries; tickets are not part of
+ * the position, so callers should compare the distance with the rounds and
+ * tickets that are left. Positions further from capture than the table can
+ * store are {@link #UNKNOWN}. <br>
+ * Probes are a single read from the memory-mapped file and are safe to call
+ * from any number of threads.
+ */
+public final class EndgameTable {
+
+	/**
+	 * Returned by probes when Mr X can escape forever
+	 */
+	public static final int ESCAPES = -1;
+
+	/**
+	 * Returned by probes when capture takes longer than the table can store,
+	 * or never happens
+	 */
+	public static final int UNKNOWN = -2;
+
+	static final int MAGIC = 0x53594547; // SYEG
+	static final int VERSION = 2;
+	static final int HEADER_INTS = 4;
+	// cell value for positions that are never resolved
+	static final int UNRESOLVED = 0;
+	static final int MAX_VALUE = 0xFF;
+	// cell value for positions still unresolved when the distances ran out
+	static final int UNDECIDED = MAX_VALUE;
+
+	private final int detectives;
+	private final int nodes;
+	private final int[] indices;
+	private final ByteBuffer cells;
+
+	private EndgameTable(ByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.remaining() < HEADER_INTS * Integer.BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not an endgame table");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported endgame table version " + buffer.getInt(4));
+		this.detectives = buffer.getInt(8);
+		this.nodes = buffer.getInt(12);
+		if (detectives < 1 || detectives > 2 || nodes < 1)
+			throw new IOException("Corrupt endgame table header");
+		int maxValue = 0;
+		int[] values = new int[nodes];
+		for (int i = 0; i < nodes; i++) {
+			values[i] = buffer.getInt((HEADER_INTS + i) * Integer.BYTES);
+			maxValue = Math.max(maxValue, values[i]);
+		}
+		this.indices = new int[maxValue + 1];
+		Arrays.fill(indices, -1);
+		for (int i = 0; i < nodes; i++)
+			indices[values[i]] = i;
+		int header = headerBytes(nodes);
+		if (buffer.capacity() < header + cellCount(nodes, detectives))
+			throw new IOException("Truncated endgame table");
+		buffer.position(header);
+		this.cells = buffer.slice();
+	}
+
+	/**
+	 * Maps a table file into memory
+	 *
+	 * @param file the file; not null
+	 * @return the table; never null
+	 * @throws IOException if the file cannot be mapped or is not a table
+	 */
+	public static EndgameTable open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file),
+				StandardOpenOption.READ)) {
+			return new EndgameTable(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return the number of detectives the table was solved for
+	 */
+	public int detectives() {
+		return detectives;
+	}
+
+	/**
+	 * Probes a position by location
+	 *
+	 * @param mrX Mr X's location
+	 * @param detectives the detectives' locations in the order they move; not
+	 *        null
+	 * @param turn 0 if Mr X is to move, {@code i} if the {@code i}th detective
+	 *        is to move
+	 * @return plies until Mr X is caught, {@link #ESCAPES} or {@link #UNKNOWN}
+	 * @throws IllegalArgumentException if the position does not fit the table
+	 */
+	public int distanceToCapture(int mrX, int[] detectives, int turn) {
+		if (detectives.length != this.detectives)
+			throw new IllegalArgumentException("Table is for " + this.detectives
+					+ " detectives, got " + detectives.length);
+		if (turn < 0 || turn > this.detectives)
+			throw new IllegalArgumentException("turn must be in [0, " + this.detectives
+					+ "], got " + turn);
+		int first = index(detectives[0]);
+		int second = this.detectives == 2 ? index(detectives[1]) : 0;
+		return decode(cells.get(cell(nodes, this.detectives, index(mrX), first, second, turn)));
+	}
+
+	/**
+	 * Probes the position of a search state, all detectives in the state are
+	 * used
+	 *
+	 * @param state the state; not null
+	 * @return plies until Mr X is caught, {@link #ESCAPES} or {@link #UNKNOWN}
+	 * @throws IllegalArgumentException if the state does not fit the table
+	 */
+	public int distanceToCapture(GameState state) {
+		if (state.players() - 1 != detectives)
+			throw new IllegalArgumentException("Table is for " + detectives
+					+ " detectives, got " + (state.players() - 1));
+		int mrX = index(state.board().value(state.location(0)));
+		int first = index(state.board().value(state.location(1)));
+		int second = detectives == 2 ? index(state.board().value(state.location(2))) : 0;
+		return decode(cells.get(cell(nodes, detectives, mrX, first, second, state.current())));
+	}
+
+	private int index(int location) {
+		int index = location >= 0 && location < indices.length ? indices[location] : -1;
+		if (index < 0) throw new IllegalArgumentException("No such location " + location);
+		return index;
+	}
+
+	private static int decode(byte cell) {
+		int value = cell & MAX_VALUE;
+		if (value == UNDECIDED) return UNKNOWN;
+		return value == UNRESOLVED ? ESCAPES : value - 1;
+	}
+
+	static int headerBytes(int nodes) {
+		return (HEADER_INTS + nodes) * Integer.BYTES;
+	}
+
+	static long cellCount(int nodes, int detectives) {
+		long positions = nodes;
+		for (int i = 0; i < detectives; i++)
+			positions *= nodes;
+		return positions * (detectives + 1);
+	}
+
+	static int cell(int nodes, int detectives, int mrX, int first, int second, int turn) {
+		int placement = mrX * nodes + first;
+		if (detectives == 2) placement = placement * nodes + second;
+		return placement * (detectives + 1) + turn;
+	}
+
+}
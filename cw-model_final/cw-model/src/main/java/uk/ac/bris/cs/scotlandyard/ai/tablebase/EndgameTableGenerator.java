@@ -0,0 +1,229 @@
+package uk.ac.bris.cs.scotlandyard.ai.tablebase;
+
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.MAX_VALUE;
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.UNDECIDED;
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.UNRESOLVED;
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.cell;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Solves the capture game for one or two detectives by retrograde analysis
+ * and writes the result as an {@link EndgameTable}. <br>
+ * Captured positions (and Mr X being stuck) are solved first. Every
+ * following pass solves the positions that can be decided from the passes
+ * before it: a detective to move wins if any move leads to a solved
+ * position, Mr X to move loses if every move does. Pass {@code n} therefore
+ * finds exactly the positions that are {@code n} plies from capture, and
+ * positions still unsolved when a pass finds nothing new are escapes. If the
+ * passes run out of distances to store before that, the positions still
+ * unsolved are marked unknown rather than escapes. Each
+ * pass is split by Mr X's location across all cores and writes straight
+ * into the memory-mapped output, cells written during a pass are never read
+ * by the same pass. <br>
+ * Usage: {@code EndgameTableGenerator <output> [detectives]}, defaults to 2
+ * detectives on the standard map.
+ */
+public final class EndgameTableGenerator {
+
+	private static final int SECRET = Ticket.SECRET.ordinal();
+
+	private final Board board;
+	private final int detectives;
+	private final int nodes;
+	private final ByteBuffer cells;
+
+	private EndgameTableGenerator(Board board, int detectives, ByteBuffer cells) {
+		this.board = board;
+		this.detectives = detectives;
+		this.nodes = board.size();
+		this.cells = cells;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: EndgameTableGenerator <output> [detectives]");
+			System.exit(1);
+		}
+		int detectives = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		long start = System.nanoTime();
+		int passes = generate(Board.of(StandardGame.standardGraph()), detectives,
+				Paths.get(args[0]));
+		System.out.printf("Solved in %d passes, %d ms%n", passes,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Solves the capture game and writes the table
+	 *
+	 * @param board the board; not null
+	 * @param detectives number of detectives, 1 or 2
+	 * @param output the table file, replaced if it exists; not null
+	 * @return the number of passes that solved at least one position
+	 * @throws IOException if the file cannot be written
+	 */
+	public static int generate(Board board, int detectives, Path output) throws IOException {
+		Objects.requireNonNull(board);
+		if (detectives < 1 || detectives > 2)
+			throw new IllegalArgumentException("detectives must be 1 or 2, got " + detectives);
+		int header = EndgameTable.headerBytes(board.size());
+		long size = header + EndgameTable.cellCount(board.size(), detectives);
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Table too large to map: " + size + " bytes");
+		try (FileChannel channel = FileChannel.open(Objects.requireNonNull(output),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE, 0, size);
+			mapped.order(ByteOrder.BIG_ENDIAN);
+			mapped.putInt(EndgameTable.MAGIC).putInt(EndgameTable.VERSION).putInt(detectives)
+					.putInt(board.size());
+			for (int i = 0; i < board.size(); i++)
+				mapped.putInt(board.value(i));
+			mapped.position(header);
+			EndgameTableGenerator generator = new EndgameTableGenerator(board, detectives,
+					mapped.slice());
+			int passes = generator.solve();
+			mapped.force();
+			return passes;
+		}
+	}
+
+	private int solve() {
+		IntStream.range(0, nodes).parallel().forEach(this::solveTerminal);
+		int pass = 1;
+		for (; pass < MAX_VALUE - 1; pass++) {
+			int current = pass;
+			LongAdder solved = new LongAdder();
+			IntStream.range(0, nodes).parallel().forEach(mrX -> solved.add(solvePass(mrX, current)));
+			if (solved.sum() == 0) return pass - 1;
+		}
+		// later passes could still solve positions, so none of them is an escape
+		IntStream.range(0, nodes).parallel().forEach(this::markUndecided);
+		return pass - 1;
+	}
+
+	private void solveTerminal(int mrX) {
+		int[] at = new int[2];
+		int seconds = detectives == 2 ? nodes : 1;
+		for (at[0] = 0; at[0] < nodes; at[0]++) {
+			for (at[1] = 0; at[1] < seconds; at[1]++) {
+				if (invalid(at)) continue;
+				boolean caught = occupied(at, mrX);
+				for (int turn = 0; turn <= detectives; turn++) {
+					if (caught || (turn == 0 && !mrXCanMove(mrX, at)))
+						put(mrX, at, turn, 1);
+				}
+			}
+		}
+	}
+
+	private long solvePass(int mrX, int pass) {
+		int[] at = new int[2];
+		int seconds = detectives == 2 ? nodes : 1;
+		long solved = 0;
+		for (at[0] = 0; at[0] < nodes; at[0]++) {
+			for (at[1] = 0; at[1] < seconds; at[1]++) {
+				if (invalid(at)) continue;
+				for (int turn = 0; turn <= detectives; turn++) {
+					if (get(mrX, at, turn) != UNRESOLVED) continue;
+					boolean won = turn == 0 ? mrXLoses(mrX, at, pass)
+							: detectiveWins(mrX, at, turn, pass);
+					if (won) {
+						put(mrX, at, turn, pass + 1);
+						solved++;
+					}
+				}
+			}
+		}
+		return solved;
+	}
+
+	private void markUndecided(int mrX) {
+		int[] at = new int[2];
+		int seconds = detectives == 2 ? nodes : 1;
+		for (at[0] = 0; at[0] < nodes; at[0]++) {
+			for (at[1] = 0; at[1] < seconds; at[1]++) {
+				if (invalid(at)) continue;
+				for (int turn = 0; turn <= detectives; turn++)
+					if (get(mrX, at, turn) == UNRESOLVED) put(mrX, at, turn, UNDECIDED);
+			}
+		}
+	}
+
+	// every move of Mr X leads to a position solved in an earlier pass
+	private boolean mrXLoses(int mrX, int[] at, int pass) {
+		int end = board.edgesEnd(mrX);
+		for (int e = board.edgesStart(mrX); e < end; e++) {
+			int target = board.target(e);
+			if (occupied(at, target)) continue;
+			if (!solvedBefore(get(target, at, 1), pass)) return false;
+		}
+		return true;
+	}
+
+	// some move of the detective leads to a position solved in an earlier pass
+	private boolean detectiveWins(int mrX, int[] at, int turn, int pass) {
+		int detective = turn - 1;
+		int next = turn == detectives ? 0 : turn + 1;
+		int from = at[detective];
+		boolean moved = false;
+		int end = board.edgesEnd(from);
+		try {
+			for (int e = board.edgesStart(from); e < end; e++) {
+				if (board.ticket(e) == SECRET) continue;
+				int target = board.target(e);
+				if (detectives == 2 && target == at[1 - detective]) continue;
+				moved = true;
+				at[detective] = target;
+				if (solvedBefore(get(mrX, at, next), pass)) return true;
+			}
+		} finally {
+			at[detective] = from;
+		}
+		// a detective that cannot move passes
+		return !moved && solvedBefore(get(mrX, at, next), pass);
+	}
+
+	private boolean mrXCanMove(int mrX, int[] at) {
+		int end = board.edgesEnd(mrX);
+		for (int e = board.edgesStart(mrX); e < end; e++)
+			if (!occupied(at, board.target(e))) return true;
+		return false;
+	}
+
+	private static boolean solvedBefore(int value, int pass) {
+		return value != UNRESOLVED && value <= pass;
+	}
+
+	private boolean occupied(int[] at, int node) {
+		return at[0] == node || (detectives == 2 && at[1] == node);
+	}
+
+	private boolean invalid(int[] at) {
+		return detectives == 2 && at[0] == at[1];
+	}
+
+	private int get(int mrX, int[] at, int turn) {
+		return cells.get(cell(nodes, detectives, mrX, at[0], at[1], turn)) & MAX_VALUE;
+	}
+
+	private void put(int mrX, int[] at, int turn, int value) {
+		cells.put(cell(nodes, detectives, mrX, at[0], at[1], turn), (byte) value);
+	}
+
+}
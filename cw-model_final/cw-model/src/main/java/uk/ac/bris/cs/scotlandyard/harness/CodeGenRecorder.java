@@ -2,6 +2,8 @@ package uk.ac.bris.cs.scotlandyard.harness;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,8 @@ import static java.util.stream.Collectors.toSet;
 public final class CodeGenRecorder {
 
 
+	// views handed to code gens are snapshots that share the graph and
+	// unchanged players with the seed
 	public interface CodeGen {
 		String name();
 		void movePicked(ImmutableScotlandYardView seed,
@@ -30,9 +34,18 @@ public final class CodeGenRecorder {
 		String readOut(ImmutableScotlandYardView seed,
 		               ImmutableMap<Colour, PlayerConfiguration> configs,
 		               String graphMethod);
+		// writes what precedes the interactions, then every interaction as
+		// it happens instead of keeping it for readOut
+		void stream(ImmutableScotlandYardView seed,
+		            ImmutableMap<Colour, PlayerConfiguration> configs,
+		            String graphMethod, Writer output) throws IOException;
+		// writes what follows the interactions and flushes the output
+		void finish() throws IOException;
 	}
 
 	private ImmutableScotlandYardView seed;
+	// the latest snapshot, each event only copies what changed since
+	private ImmutableScotlandYardView latest;
 	private final Map<Colour, PlayerConfiguration> configs = new HashMap<>();
 	private final List<CodeGen> codeGens;
 
@@ -40,6 +53,7 @@ public final class CodeGenRecorder {
 
 	public final void snap(ScotlandYardView view) {
 		seed = ImmutableScotlandYardView.snapshot(view);
+		latest = seed;
 		if (!configs.keySet().equals(seed.players.stream().map(v -> v.colour).collect(toSet()))) {
 			throw new IllegalArgumentException("Not all created player(s) were added, created:" +
 					configs + " but game has " + configs);
@@ -52,13 +66,44 @@ public final class CodeGenRecorder {
 				cg -> cg.readOut(seed, ImmutableMap.copyOf(configs), graphMethod)));
 	}
 
+	/**
+	 * Streams the output of every code gen as the game is played instead of
+	 * keeping it in memory for {@link #readOut(String)}, so memory use does not
+	 * grow with the length of the game. Call after {@link #snap} and before
+	 * the game starts, then {@link #finish()} once it is over.
+	 *
+	 * @param graphMethod the graph method to use in the output; not null
+	 * @param outputs the output of each code gen, preferably buffered; they
+	 *        are flushed but not closed
+	 * @throws IOException if writing fails
+	 */
+	public final void stream(String graphMethod,
+	                         Function<? super CodeGen, ? extends Writer> outputs)
+			throws IOException {
+		if (seed == null) throw new IllegalStateException("snap() was not called");
+		ImmutableMap<Colour, PlayerConfiguration> copy = ImmutableMap.copyOf(configs);
+		for (CodeGen codeGen : codeGens)
+			codeGen.stream(seed, copy, graphMethod, outputs.apply(codeGen));
+	}
+
+	/**
+	 * Writes the remaining output of every code gen that is streaming
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public final void finish() throws IOException {
+		for (CodeGen codeGen : codeGens)
+			codeGen.finish();
+	}
+
 	public final PlayerConfiguration observePlayer(PlayerConfiguration that) {
 		PlayerConfiguration configuration = new Builder(that.colour)
 				.at(that.location)
 				.with(that.tickets)
 				.using((view, location, moves, callback) ->
 						that.player.makeMove(view, location, moves, (Move picked) -> {
-							codeGens.forEach(v -> v.movePicked(seed, view, location, moves,
+							ImmutableScotlandYardView now = now(view);
+							codeGens.forEach(v -> v.movePicked(seed, now, location, moves,
 									picked));
 							callback.accept(picked);
 						})).build();
@@ -66,22 +111,32 @@ public final class CodeGenRecorder {
 		return configuration;
 	}
 
+	// players may pick moves on threads of their own
+	private synchronized ImmutableScotlandYardView now(ScotlandYardView view) {
+		latest = latest.next(view);
+		return latest;
+	}
+
 	public final Spectator createSpectator() {
 		List<Spectator> spectators = codeGens.stream()
 				.map(v -> v.mkSpectator(seed))
 				.collect(toList());
 		return new Spectator() {
 			@Override public void onMoveMade(ScotlandYardView view, Move move) {
-				spectators.forEach(s -> s.onMoveMade(view, move));
+				ImmutableScotlandYardView now = now(view);
+				spectators.forEach(s -> s.onMoveMade(now, move));
 			}
 			@Override public void onRoundStarted(ScotlandYardView view, int round) {
-				spectators.forEach(s -> s.onRoundStarted(view, round));
+				ImmutableScotlandYardView now = now(view);
+				spectators.forEach(s -> s.onRoundStarted(now, round));
 			}
 			@Override public void onRotationComplete(ScotlandYardView view) {
-				spectators.forEach(s -> s.onRotationComplete(view));
+				ImmutableScotlandYardView now = now(view);
+				spectators.forEach(s -> s.onRotationComplete(now));
 			}
 			@Override public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
-				spectators.forEach(s -> s.onGameOver(view, winningPlayers));
+				ImmutableScotlandYardView now = now(view);
+				spectators.forEach(s -> s.onGameOver(now, winningPlayers));
 			}
 		};
 	}
@@ -2,6 +2,8 @@ package uk.ac.bris.cs.scotlandyard.harness;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -28,7 +30,9 @@ import static uk.ac.bris.cs.scotlandyard.model.Colour.YELLOW;
 public class GameModelSequencePUMLCodeGen implements CodeGen {
 
 	private int maxRound = 0;
-	private List<String> interactions = new ArrayList<>();
+	private final InteractionLog interactions = new InteractionLog("\n");
+	private Writer output;
+	private ImmutableScotlandYardView seed;
 
 	@Override public String name() { return "GameModelSequencePUMLCodeGen"; }
 	@Override
@@ -104,13 +108,48 @@ public class GameModelSequencePUMLCodeGen implements CodeGen {
 	                                ImmutableMap<Colour, PlayerConfiguration> configs,
 	                                String graphMethod) {
 
+		List<String> lines = header(seed, title(seed));
+
+		String recorded = interactions.join();
+		if (!recorded.isEmpty()) lines.add(recorded);
+
+		lines.add("@enduml");
+
+		return lines.stream().collect(joining("\n"));
+	}
+
+	// the number of rounds is only known at the end, so the title is written
+	// last; PlantUML accepts it anywhere in the diagram
+	@Override public void stream(ImmutableScotlandYardView seed,
+	                             ImmutableMap<Colour, PlayerConfiguration> configs,
+	                             String graphMethod, Writer output) throws IOException {
+		output.write(header(seed, null).stream().collect(joining("\n")));
+		output.write("\n");
+		interactions.stream(output);
+		this.output = output;
+		this.seed = seed;
+	}
+
+	@Override public void finish() throws IOException {
+		if (output == null) return;
+		interactions.close();
+		output.write("\n" + title(seed) + "\n@enduml");
+		output.flush();
+		output = null;
+	}
+
+	private String title(ImmutableScotlandYardView seed) {
+		return format("title Sample game sequence(%d player, %d rounds)",
+				seed.players.size(), maxRound);
+	}
+
+	private static List<String> header(ImmutableScotlandYardView seed, String title) {
 		List<String> lines = new ArrayList<>();
 
 		lines.add("@startuml\n" +
 				"\n" +
 				"skinparam monochrome true");
-		lines.add(format("title Sample game sequence(%d player, %d rounds)",
-				seed.players.size(), maxRound));
+		if (title != null) lines.add(title);
 		lines.add("legend right\n" +
 				"Type legend\n" +
 				"In package: uk.ac.bris.cs.scotlandyard.model\n" +
@@ -131,13 +170,7 @@ public class GameModelSequencePUMLCodeGen implements CodeGen {
 				.collect(joining("\n")));
 		lines.add("end box\n");
 		lines.add("autonumber\n");
-
-
-		lines.addAll(interactions);
-
-		lines.add("@enduml");
-
-		return lines.stream().collect(joining("\n"));
+		return lines;
 	}
 
 
@@ -43,6 +43,8 @@ import static uk.ac.bris.cs.scotlandyard.model.Ticket.UNDERGROUND;
 
 public final class ImmutableScotlandYardView implements ScotlandYardView {
 
+	private static final Ticket[] TICKETS = Ticket.values();
+
 	public static final class ImmutablePlayer {
 		final Colour colour;
 		final int location;
@@ -53,6 +55,17 @@ public final class ImmutableScotlandYardView implements ScotlandYardView {
 			this.location = location;
 			this.tickets = tickets;
 		}
+		// this player if it has not moved or spent tickets since
+		ImmutablePlayer next(ScotlandYardView view) {
+			int location = view.getPlayerLocation(colour).orElseThrow(AssertionError::new);
+			boolean same = location == this.location;
+			for (Ticket ticket : TICKETS) {
+				if (!same) break;
+				same = Objects.equals(tickets.get(ticket),
+						view.getPlayerTickets(colour, ticket).orElseThrow(AssertionError::new));
+			}
+			return same ? this : new ImmutablePlayer(colour, location, copyTickets(view, colour));
+		}
 		//		ColourAbbr colour() { return ColourAbbr.from(colour); }
 		ImmutableMap<TicketAbbr, Integer> tickets() {
 			return tickets.entrySet().stream()
@@ -85,10 +98,47 @@ public final class ImmutableScotlandYardView implements ScotlandYardView {
 	final Colour currentPlayer;
 	final int currentRound;
 
+	/**
+	 * Takes a full snapshot of a view, copying the graph; a view that is
+	 * already a snapshot is returned as is
+	 *
+	 * @param view the view; not null
+	 * @return the snapshot; never null
+	 */
 	public static ImmutableScotlandYardView snapshot(ScotlandYardView view) {
+		if (view instanceof ImmutableScotlandYardView) return (ImmutableScotlandYardView) view;
 		return new ImmutableScotlandYardView(view);
 	}
 
+	/**
+	 * Takes a snapshot of a later state of the game this snapshot was taken
+	 * from. The players, rounds and graph are shared with this snapshot
+	 * rather than copied, as are players whose location and tickets have not
+	 * changed
+	 *
+	 * @param view the view of the same game; not null
+	 * @return the snapshot, this one if nothing changed; never null
+	 */
+	public ImmutableScotlandYardView next(ScotlandYardView view) {
+		ImmutableList.Builder<ImmutablePlayer> builder = ImmutableList.builder();
+		boolean changed = false;
+		for (ImmutablePlayer player : players) {
+			ImmutablePlayer now = player.next(view);
+			changed |= now != player;
+			builder.add(now);
+		}
+		Set<Colour> winning = view.getWinningPlayers();
+		ImmutableSet<Colour> nowWinning = this.winning.equals(winning) ? this.winning
+				: ImmutableSet.copyOf(winning);
+		if (!changed && nowWinning == this.winning && gameOver == view.isGameOver()
+				&& currentPlayer == view.getCurrentPlayer()
+				&& currentRound == view.getCurrentRound())
+			return this;
+		return new ImmutableScotlandYardView(colours, rounds, graph,
+				changed ? builder.build() : players, nowWinning, view.isGameOver(),
+				view.getCurrentPlayer(), view.getCurrentRound());
+	}
+
 	private ImmutableScotlandYardView(
 			ImmutableList<Colour> colours,
 			ImmutableList<Boolean> rounds,
@@ -111,11 +161,7 @@ public final class ImmutableScotlandYardView implements ScotlandYardView {
 				.stream()
 				.map(p -> {
 					Integer location = view.getPlayerLocation(p).orElseThrow(AssertionError::new);
-					ImmutableMap<Ticket, Integer> tickets = Stream.of(Ticket.values())
-							.collect(ImmutableMap.toImmutableMap(identity(), t -> view
-									.getPlayerTickets(p, t)
-									.orElseThrow(AssertionError::new)));
-					return new ImmutablePlayer(p, location, tickets);
+					return new ImmutablePlayer(p, location, copyTickets(view, p));
 				}).collect(ImmutableList.toImmutableList());
 		colours = ImmutableList.copyOf(view.getPlayers());
 		winning = ImmutableSet.copyOf(view.getWinningPlayers());
@@ -126,6 +172,13 @@ public final class ImmutableScotlandYardView implements ScotlandYardView {
 		graph = new ImmutableGraph<>(new UndirectedGraph<>(view.getGraph()));
 	}
 
+	private static ImmutableMap<Ticket, Integer> copyTickets(ScotlandYardView view, Colour colour) {
+		return Stream.of(TICKETS)
+				.collect(ImmutableMap.toImmutableMap(identity(), t -> view
+						.getPlayerTickets(colour, t)
+						.orElseThrow(AssertionError::new)));
+	}
+
 	@Override public List<Colour> getPlayers() { return colours; }
 	@Override public Set<Colour> getWinningPlayers() { return winning; }
 	@Override public Optional<Integer> getPlayerLocation(Colour colour) {
@@ -0,0 +1,95 @@
+package uk.ac.bris.cs.scotlandyard.harness;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The interactions a code gen recorded, kept in memory until read out or,
+ * once {@link #stream(Writer)} is called, written out as they are added so
+ * memory use does not grow with the length of the game. <br>
+ * Interactions are separated by the given separator in both modes; players
+ * may pick moves on threads of their own so all methods are synchronized.
+ */
+final class InteractionLog {
+
+	private final String separator;
+	private final List<String> buffered = new ArrayList<>();
+	private Writer output;
+	private boolean first = true;
+	private boolean closed;
+
+	/**
+	 * @param separator the separator between interactions; not null
+	 */
+	InteractionLog(String separator) {
+		this.separator = Objects.requireNonNull(separator);
+	}
+
+	/**
+	 * @param interaction the interaction to add; not null
+	 * @throws UncheckedIOException if streaming and writing fails
+	 */
+	synchronized void add(String interaction) {
+		if (closed) throw new IllegalStateException("Output already closed");
+		if (output == null) {
+			buffered.add(interaction);
+			return;
+		}
+		try {
+			write(interaction);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the interactions added so far and every one added after to the
+	 * output
+	 *
+	 * @param output the output; not null
+	 * @throws IOException if writing fails
+	 */
+	synchronized void stream(Writer output) throws IOException {
+		if (this.output != null) throw new IllegalStateException("Already streaming");
+		this.output = Objects.requireNonNull(output);
+		for (String interaction : buffered)
+			write(interaction);
+		buffered.clear();
+	}
+
+	/**
+	 * @return whether interactions are streamed
+	 */
+	synchronized boolean streaming() {
+		return output != null;
+	}
+
+	/**
+	 * Stops accepting interactions, the output is flushed but left open
+	 *
+	 * @throws IOException if flushing fails
+	 */
+	synchronized void close() throws IOException {
+		closed = true;
+		if (output != null) output.flush();
+	}
+
+	/**
+	 * @return the buffered interactions, joined with the separator; never null
+	 */
+	synchronized String join() {
+		if (output != null) throw new IllegalStateException("Interactions were streamed");
+		return String.join(separator, buffered);
+	}
+
+	private void write(String interaction) throws IOException {
+		if (!first) output.write(separator);
+		output.write(interaction);
+		first = false;
+	}
+
+}
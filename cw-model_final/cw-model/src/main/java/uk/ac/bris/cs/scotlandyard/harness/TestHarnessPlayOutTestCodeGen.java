@@ -2,6 +2,8 @@ package uk.ac.bris.cs.scotlandyard.harness;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -35,7 +37,10 @@ public class TestHarnessPlayOutTestCodeGen implements CodeGen {
 	private final String seedV = "seed";
 	private final String spectatorV = "spectator";
 
-	private final List<String> interactions = new ArrayList<>();
+	private static final String EPILOGUE = ")\n.thenAssertNoFurtherInteractions();";
+
+	private final InteractionLog interactions = new InteractionLog(", \n");
+	private Writer output;
 
 	@Override public String name() { return "PlayOutTestCodeGen"; }
 
@@ -95,6 +100,28 @@ public class TestHarnessPlayOutTestCodeGen implements CodeGen {
 	@Override public String readOut(ImmutableScotlandYardView seed,
 	                                ImmutableMap<Colour, PlayerConfiguration> configs,
 	                                String graphMethod) {
+		return prologue(seed, configs, graphMethod) + interactions.join() + EPILOGUE;
+	}
+
+	@Override public void stream(ImmutableScotlandYardView seed,
+	                             ImmutableMap<Colour, PlayerConfiguration> configs,
+	                             String graphMethod, Writer output) throws IOException {
+		output.write(prologue(seed, configs, graphMethod));
+		interactions.stream(output);
+		this.output = output;
+	}
+
+	@Override public void finish() throws IOException {
+		if (output == null) return;
+		interactions.close();
+		output.write(EPILOGUE);
+		output.flush();
+		output = null;
+	}
+
+	private String prologue(ImmutableScotlandYardView seed,
+	                        ImmutableMap<Colour, PlayerConfiguration> configs,
+	                        String graphMethod) {
 		List<String> ls = new ArrayList<>();
 		ls.add(format("TestHarness %s = new TestHarness();", harnessV));
 
@@ -120,9 +147,8 @@ public class TestHarnessPlayOutTestCodeGen implements CodeGen {
 		ls.add(format("ImmutableScotlandYardView %s = ImmutableScotlandYardView.snapshot(%s);",
 				seedV, gameV));
 
-		ls.add(format("%s.play(%s).startRotationAndAssertTheseInteractionsOccurInOrder(\n%s)" +
-						"\n.thenAssertNoFurtherInteractions();",
-				harnessV, gameV, interactions.stream().collect(joining(", \n"))));
+		ls.add(format("%s.play(%s).startRotationAndAssertTheseInteractionsOccurInOrder(\n",
+				harnessV, gameV));
 
 		return ls.stream().collect(joining("\n"));
 	}
@@ -0,0 +1,338 @@
+package uk.ac.bris.cs.scotlandyard.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static uk.ac.bris.cs.scotlandyard.journal.JournalFormat.*;
+
+/**
+ * A {@link Spectator} that appends every event of a game to a compact binary
+ * journal as it happens, see {@link JournalReplay} to read it back. <br>
+ * Events only store what changed: the move, and the location and tickets of
+ * the players it changed. A checkpoint with the full state is written when
+ * the game starts and every few rounds, and an index of the checkpoints is
+ * appended when the journal is closed or the game is over, so replays can
+ * seek without reading the whole journal. Mr X's true location is journaled
+ * too if his player configuration was passed through
+ * {@link #observePlayer(PlayerConfiguration)}. <br>
+ * Usage: observe the players, create the game, {@link #start} the journal
+ * and register it as a spectator. The output is flushed after every event, a
+ * journal that was never closed can still be replayed. The first IO error in
+ * a spectator method is passed to the failure handler, the output is closed
+ * and later events are ignored, so the game carries on unjournaled.
+ */
+public final class GameJournal implements Spectator, Closeable {
+
+	public static final int DEFAULT_CHECKPOINT_ROUNDS = 4;
+
+	private final DataOutputStream output;
+	private final int checkpointRounds;
+	private final Consumer<? super IOException> onFailure;
+	private final List<int[]> checkpoints = new ArrayList<>();
+	private List<Colour> colours;
+	// the state as last written, tickets are player * TICKETS.length + ordinal
+	private int[] locations;
+	private int[] tickets;
+	private int mrXLocation;
+	private boolean finished;
+	private boolean failed;
+
+	/**
+	 * Creates a journal with a checkpoint every
+	 * {@value #DEFAULT_CHECKPOINT_ROUNDS} rounds
+	 *
+	 * @param output the output, closed with the journal; not null
+	 */
+	public GameJournal(OutputStream output) {
+		this(output, DEFAULT_CHECKPOINT_ROUNDS);
+	}
+
+	/**
+	 * Creates a journal that prints the stack trace of an IO error
+	 *
+	 * @param output the output, closed with the journal; not null
+	 * @param checkpointRounds the number of rounds between checkpoints
+	 */
+	public GameJournal(OutputStream output, int checkpointRounds) {
+		this(output, checkpointRounds, Throwable::printStackTrace);
+	}
+
+	/**
+	 * @param output the output, closed with the journal; not null
+	 * @param checkpointRounds the number of rounds between checkpoints
+	 * @param onFailure called once with the first IO error of a spectator
+	 *        method, on the thread of the event; not null
+	 */
+	public GameJournal(OutputStream output, int checkpointRounds,
+			Consumer<? super IOException> onFailure) {
+		if (checkpointRounds < 1)
+			throw new IllegalArgumentException(
+					"checkpointRounds must be > 0, got " + checkpointRounds);
+		this.output = new DataOutputStream(new BufferedOutputStream(Objects.requireNonNull(output)));
+		this.checkpointRounds = checkpointRounds;
+		this.onFailure = Objects.requireNonNull(onFailure);
+	}
+
+	/**
+	 * Wraps Mr X's player so his true location is journaled, other players
+	 * are returned as is
+	 *
+	 * @param that the configuration; not null
+	 * @return the configuration to create the game with; never null
+	 */
+	public PlayerConfiguration observePlayer(PlayerConfiguration that) {
+		if (!that.colour.isMrX()) return that;
+		synchronized (this) {
+			mrXLocation = that.location;
+		}
+		return new PlayerConfiguration.Builder(that.colour)
+				.at(that.location)
+				.with(that.tickets)
+				.using((view, location, moves, callback) ->
+						that.player.makeMove(view, location, moves, picked -> {
+							picked(picked);
+							callback.accept(picked);
+						})).build();
+	}
+
+	/**
+	 * Writes the header and the first checkpoint
+	 *
+	 * @param view the view of the game before the first move; not null
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void start(ScotlandYardView view) throws IOException {
+		if (colours != null) throw new IllegalStateException("Journal already started");
+		colours = new ArrayList<>(view.getPlayers());
+		locations = new int[colours.size()];
+		tickets = new int[colours.size() * TICKETS.length];
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeByte(colours.size());
+		for (Colour colour : colours)
+			output.writeByte(colour.ordinal());
+		output.writeShort(view.getRounds().size());
+		for (boolean reveal : view.getRounds())
+			output.writeBoolean(reveal);
+		writeGraph(view.getGraph());
+		checkpoint(view);
+		output.flush();
+	}
+
+	private void writeGraph(Graph<Integer, Transport> graph) throws IOException {
+		List<Node<Integer>> nodes = graph.getNodes();
+		output.writeShort(nodes.size());
+		for (Node<Integer> node : nodes)
+			output.writeShort(node.value());
+		Collection<Edge<Integer, Transport>> edges = graph.getEdges();
+		output.writeInt(edges.size());
+		for (Edge<Integer, Transport> edge : edges) {
+			output.writeShort(edge.source().value());
+			output.writeShort(edge.destination().value());
+			output.writeByte(edge.data().ordinal());
+		}
+	}
+
+	private void checkpoint(ScotlandYardView view) throws IOException {
+		checkpoints.add(new int[] { view.getCurrentRound(), output.size() });
+		output.writeByte(CHECKPOINT);
+		output.writeByte(view.getCurrentRound());
+		output.writeByte(colours.indexOf(view.getCurrentPlayer()));
+		output.writeBoolean(view.isGameOver());
+		output.writeShort(mrXLocation);
+		for (int i = 0; i < colours.size(); i++) {
+			read(view, i);
+			writePlayer(i);
+		}
+	}
+
+	private synchronized void picked(Move move) {
+		if (move instanceof DoubleMove) mrXLocation = ((DoubleMove) move).finalDestination();
+		else if (move instanceof TicketMove) mrXLocation = ((TicketMove) move).destination();
+		if (!writing()) return;
+		try {
+			output.writeByte(PICK);
+			output.writeShort(mrXLocation);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void onMoveMade(ScotlandYardView view, Move move) {
+		if (!writing()) return;
+		try {
+			output.writeByte(MOVE);
+			output.writeByte(colours.indexOf(move.colour()));
+			writeMove(output, move);
+			writeDelta(view);
+			output.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void onRoundStarted(ScotlandYardView view, int round) {
+		if (!writing()) return;
+		try {
+			output.writeByte(ROUND);
+			output.writeByte(round);
+			writeDelta(view);
+			if (round % checkpointRounds == 0) checkpoint(view);
+			output.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void onRotationComplete(ScotlandYardView view) {
+		if (!writing()) return;
+		try {
+			output.writeByte(ROTATION);
+			writeDelta(view);
+			output.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+		if (!writing()) return;
+		try {
+			output.writeByte(GAME_OVER);
+			output.writeShort(bitmask(winningPlayers));
+			writeDelta(view);
+			finish();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * @return whether an IO error stopped the journal
+	 */
+	public synchronized boolean failed() {
+		return failed;
+	}
+
+	/**
+	 * Writes the checkpoint index unless the game is over, then closes the
+	 * output; does nothing if an IO error already stopped the journal
+	 *
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (failed) return;
+		try {
+			if (writing()) finish();
+		} finally {
+			finished = true;
+			output.close();
+		}
+	}
+
+	private boolean writing() {
+		return colours != null && !finished;
+	}
+
+	private void fail(IOException e) {
+		finished = true;
+		failed = true;
+		try {
+			output.close();
+		} catch (IOException suppressed) {
+			e.addSuppressed(suppressed);
+		}
+		onFailure.accept(e);
+	}
+
+	private void writeDelta(ScotlandYardView view) throws IOException {
+		output.writeByte(colours.indexOf(view.getCurrentPlayer()));
+		output.writeByte(view.getCurrentRound());
+		output.writeBoolean(view.isGameOver());
+		if (view.isGameOver()) output.writeShort(bitmask(view.getWinningPlayers()));
+		int[] changed = new int[colours.size()];
+		int count = 0;
+		for (int i = 0; i < colours.size(); i++)
+			if (read(view, i)) changed[count++] = i;
+		output.writeByte(count);
+		for (int i = 0; i < count; i++) {
+			output.writeByte(changed[i]);
+			writePlayer(changed[i]);
+		}
+	}
+
+	private static int bitmask(Set<Colour> colours) {
+		int bitmask = 0;
+		for (Colour colour : colours)
+			bitmask |= 1 << colour.ordinal();
+		return bitmask;
+	}
+
+	// reads a player from the view, returns whether it changed
+	private boolean read(ScotlandYardView view, int player) {
+		Colour colour = colours.get(player);
+		boolean changed = false;
+		int location = view.getPlayerLocation(colour).orElse(0);
+		if (locations[player] != location) {
+			locations[player] = location;
+			changed = true;
+		}
+		for (Ticket ticket : TICKETS) {
+			int index = player * TICKETS.length + ticket.ordinal();
+			int count = view.getPlayerTickets(colour, ticket).orElse(0);
+			if (tickets[index] != count) {
+				tickets[index] = count;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private void writePlayer(int player) throws IOException {
+		output.writeShort(locations[player]);
+		for (int i = 0; i < TICKETS.length; i++)
+			output.writeByte(tickets[player * TICKETS.length + i]);
+	}
+
+	private void finish() throws IOException {
+		int offset = output.size();
+		output.writeByte(INDEX);
+		output.writeInt(checkpoints.size());
+		for (int[] checkpoint : checkpoints) {
+			output.writeByte(checkpoint[0]);
+			output.writeInt(checkpoint[1]);
+		}
+		output.writeInt(offset);
+		output.writeInt(END_MAGIC);
+		output.flush();
+		finished = true;
+	}
+
+}
@@ -0,0 +1,108 @@
+package uk.ac.bris.cs.scotlandyard.journal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Layout of a game journal, all big-endian:
+ *
+ * <pre>
+ * header      int magic, short version,
+ *             byte players, byte colour ordinal per player,
+ *             short rounds, byte reveal flag per round,
+ *             short nodes, short value per node,
+ *             int edges, per edge short source, short destination,
+ *             byte transport ordinal
+ * events      byte type, then by type:
+ *   CHECKPOINT  byte round, byte current player, byte game over,
+ *               short Mr X's true location (0 if unknown), per player
+ *               short location and a byte per ticket in Ticket order
+ *   PICK        short Mr X's true location after his move
+ *   MOVE        byte player, move, delta
+ *   ROUND       byte round, delta
+ *   ROTATION    delta
+ *   GAME_OVER   short bitmask of winning colour ordinals, delta
+ *   INDEX       int checkpoints, per checkpoint byte round, int offset;
+ *               then int offset of the INDEX event, int end magic
+ * move        byte kind (0 ticket, 1 double, 2 pass), then byte ticket
+ *             and short destination per ticket leg
+ * delta       byte current player, byte round, byte game over, short
+ *             bitmask of winning colour ordinals if over, byte changed
+ *             players, per changed player byte player, short location, byte
+ *             per ticket
+ * </pre>
+ *
+ * Players are indices into the header's colours, locations are what the
+ * game's view reports, so Mr X's is his last revealed one. The index is only
+ * written when the journal is closed; journals without one are scanned
+ * instead.
+ */
+final class JournalFormat {
+
+	static final int MAGIC = 0x53594A4E; // SYJN
+	static final int END_MAGIC = 0x53594A58; // SYJX
+	static final short VERSION = 1;
+	static final int FOOTER_BYTES = 8;
+
+	static final byte CHECKPOINT = 1;
+	static final byte PICK = 2;
+	static final byte MOVE = 3;
+	static final byte ROUND = 4;
+	static final byte ROTATION = 5;
+	static final byte GAME_OVER = 6;
+	static final byte INDEX = 7;
+
+	static final Ticket[] TICKETS = Ticket.values();
+	static final Colour[] COLOURS = Colour.values();
+
+	private static final byte TICKET_MOVE = 0;
+	private static final byte DOUBLE_MOVE = 1;
+	private static final byte PASS_MOVE = 2;
+
+	private JournalFormat() {}
+
+	static void writeMove(DataOutputStream output, Move move) throws IOException {
+		if (move instanceof PassMove) {
+			output.writeByte(PASS_MOVE);
+		} else if (move instanceof DoubleMove) {
+			output.writeByte(DOUBLE_MOVE);
+			writeLeg(output, ((DoubleMove) move).firstMove());
+			writeLeg(output, ((DoubleMove) move).secondMove());
+		} else {
+			output.writeByte(TICKET_MOVE);
+			writeLeg(output, (TicketMove) move);
+		}
+	}
+
+	private static void writeLeg(DataOutputStream output, TicketMove move) throws IOException {
+		output.writeByte(move.ticket().ordinal());
+		output.writeShort(move.destination());
+	}
+
+	static Move readMove(ByteBuffer input, Colour colour) {
+		byte kind = input.get();
+		switch (kind) {
+			case PASS_MOVE:
+				return new PassMove(colour);
+			case DOUBLE_MOVE:
+				return new DoubleMove(colour, readLeg(input, colour), readLeg(input, colour));
+			case TICKET_MOVE:
+				return readLeg(input, colour);
+			default:
+				throw new IllegalStateException("Unknown move kind " + kind);
+		}
+	}
+
+	private static TicketMove readLeg(ByteBuffer input, Colour colour) {
+		return new TicketMove(colour, TICKETS[input.get()], input.getShort() & 0xFFFF);
+	}
+
+}
@@ -0,0 +1,432 @@
+package uk.ac.bris.cs.scotlandyard.journal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
+
+import static uk.ac.bris.cs.scotlandyard.journal.JournalFormat.*;
+
+/**
+ * Reads a journal written by {@link GameJournal}. <br>
+ * Seeking to a round binary searches the checkpoints for the last one at or
+ * before the round and replays the events after it, so the cost does not
+ * grow with the length of the game. Opening a journal reads the header, the
+ * checkpoint index and the events after the last checkpoints; journals
+ * without an index, from games that never ended or were not closed, are
+ * scanned once. Replays are not thread safe.
+ */
+public final class JournalReplay {
+
+	private final ByteBuffer journal;
+	private final List<Colour> colours;
+	private final List<Boolean> rounds;
+	private final Graph<Integer, Transport> graph;
+	private final int[] checkpointRounds;
+	private final int[] checkpointOffsets;
+	private final ViewSnapshot.Source source;
+	private final Position last;
+	private final Position resume;
+
+	private JournalReplay(ByteBuffer journal) throws IOException {
+		this.journal = journal;
+		try {
+			ByteBuffer input = journal.duplicate();
+			if (input.getInt() != MAGIC || input.getShort() != VERSION)
+				throw new IOException("Not a game journal");
+			List<Colour> colours = new ArrayList<>();
+			for (int i = input.get(); i > 0; i--)
+				colours.add(COLOURS[input.get()]);
+			this.colours = Collections.unmodifiableList(colours);
+			List<Boolean> rounds = new ArrayList<>();
+			for (int i = input.getShort(); i > 0; i--)
+				rounds.add(input.get() != 0);
+			this.rounds = Collections.unmodifiableList(rounds);
+			this.graph = readGraph(input);
+
+			List<int[]> checkpoints = readIndex().orElse(null);
+			if (checkpoints == null) checkpoints = scan(input.position());
+			if (checkpoints.isEmpty()) throw new IOException("Journal has no checkpoint");
+			this.checkpointRounds = checkpoints.stream().mapToInt(c -> c[0]).toArray();
+			this.checkpointOffsets = checkpoints.stream().mapToInt(c -> c[1]).toArray();
+
+			State state = new State();
+			load(state, checkpointOffsets[0]);
+			this.source = ViewSnapshot.source(state);
+
+			// the last rotation may be before the last checkpoint as rounds
+			// start halfway through rotations
+			Position last = null;
+			Position resume = null;
+			for (int k = checkpointOffsets.length - 1; k >= 0 && resume == null; k--) {
+				ByteBuffer events = load(state, checkpointOffsets[k]);
+				if (k == 0) resume = position(state);
+				for (byte type; (type = step(events, state, null)) != 0; )
+					if (type == ROTATION) resume = position(state);
+				if (last == null) last = position(state);
+			}
+			this.last = last;
+			this.resume = resume;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Truncated game journal", e);
+		}
+	}
+
+	/**
+	 * @param file the journal; not null
+	 * @return the replay; never null
+	 * @throws IOException if the file cannot be read or is not a journal
+	 */
+	public static JournalReplay open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new JournalReplay(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @param journal the journal; not null
+	 * @return the replay; never null
+	 * @throws IOException if the bytes are not a journal
+	 */
+	public static JournalReplay read(byte[] journal) throws IOException {
+		return new JournalReplay(ByteBuffer.wrap(journal).asReadOnlyBuffer());
+	}
+
+	/**
+	 * @return the players of the game, Mr X first; never null
+	 */
+	public List<Colour> getPlayers() {
+		return colours;
+	}
+
+	/**
+	 * @return the reveal flags of all rounds; never null
+	 */
+	public List<Boolean> getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the graph the game was played on; never null
+	 */
+	public Graph<Integer, Transport> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the position after the last journaled event; never null
+	 */
+	public Position last() {
+		return last;
+	}
+
+	/**
+	 * @return the position after the last completed rotation, or the start
+	 *         of the game, from which a new game can carry on with Mr X to
+	 *         move; never null
+	 */
+	public Position resumePoint() {
+		return resume;
+	}
+
+	/**
+	 * @param round the round, 0 for the start of the game
+	 * @return the position right after the round started; never null
+	 * @throws IllegalArgumentException if the game did not reach the round
+	 */
+	public Position seek(int round) {
+		if (round < 0 || round > last.view().getCurrentRound())
+			throw new IllegalArgumentException("Round " + round + " not in journal, last round is "
+					+ last.view().getCurrentRound());
+		State state = new State();
+		ByteBuffer events = load(state, checkpointOffsets[checkpoint(round)]);
+		while (state.round < round)
+			if (step(events, state, null) == 0)
+				throw new IllegalArgumentException("Round " + round + " not in journal");
+		return position(state);
+	}
+
+	/**
+	 * Plays the journal from the start of a round to its end to a spectator.
+	 * Views are snapshots and moves are as the game reported them
+	 *
+	 * @param round the round to start from, 0 for the start of the game
+	 * @param spectator the spectator; not null
+	 * @throws IllegalArgumentException if the game did not reach the round
+	 */
+	public void replay(int round, Spectator spectator) {
+		Objects.requireNonNull(spectator);
+		State state = new State();
+		ByteBuffer events = load(state, checkpointOffsets[checkpoint(round)]);
+		while (state.round < round)
+			if (step(events, state, null) == 0)
+				throw new IllegalArgumentException("Round " + round + " not in journal");
+		while (step(events, state, spectator) != 0) {
+			// keep going
+		}
+	}
+
+	// the last checkpoint at or before the round
+	private int checkpoint(int round) {
+		int index = Arrays.binarySearch(checkpointRounds, round);
+		return index < 0 ? -index - 2 : index;
+	}
+
+	private Position position(State state) {
+		return new Position(source.snapshot(state),
+				state.mrXLocation != 0 ? state.mrXLocation : state.locations[0]);
+	}
+
+	private Optional<List<int[]>> readIndex() {
+		int size = journal.limit();
+		if (size < FOOTER_BYTES || journal.getInt(size - 4) != END_MAGIC)
+			return Optional.empty();
+		int offset = journal.getInt(size - FOOTER_BYTES);
+		if (offset < 0 || offset >= size || journal.get(offset) != INDEX) return Optional.empty();
+		ByteBuffer input = journal.duplicate();
+		input.position(offset + 1);
+		List<int[]> checkpoints = new ArrayList<>();
+		for (int i = input.getInt(); i > 0; i--)
+			checkpoints.add(new int[] { input.get() & 0xFF, input.getInt() });
+		return Optional.of(checkpoints);
+	}
+
+	private List<int[]> scan(int start) {
+		List<int[]> checkpoints = new ArrayList<>();
+		State state = new State();
+		ByteBuffer events = journal.duplicate();
+		events.position(start);
+		for (int offset = start; ; offset = events.position()) {
+			byte type = step(events, state, null);
+			if (type == 0) break;
+			if (type == CHECKPOINT) checkpoints.add(new int[] { state.round, offset });
+		}
+		return checkpoints;
+	}
+
+	// reads the checkpoint at offset into the state, returns the events after it
+	private ByteBuffer load(State state, int offset) {
+		ByteBuffer events = journal.duplicate();
+		events.position(offset);
+		if (step(events, state, null) != CHECKPOINT)
+			throw new IllegalStateException("No checkpoint at " + offset);
+		return events;
+	}
+
+	// applies the next event, returns its type or 0 at the end of the journal
+	private byte step(ByteBuffer events, State state, Spectator spectator) {
+		int start = events.position();
+		try {
+			if (!events.hasRemaining()) return 0;
+			byte type = events.get();
+			switch (type) {
+				case CHECKPOINT:
+					state.round = events.get() & 0xFF;
+					state.current = events.get();
+					state.over = events.get() != 0;
+					state.mrXLocation = events.getShort() & 0xFFFF;
+					state.winning.clear();
+					for (int i = 0; i < colours.size(); i++)
+						readPlayer(events, state, i);
+					break;
+				case PICK:
+					state.mrXLocation = events.getShort() & 0xFFFF;
+					break;
+				case MOVE:
+					Move move = readMove(events, colours.get(events.get()));
+					readDelta(events, state);
+					if (spectator != null) spectator.onMoveMade(source.snapshot(state), move);
+					break;
+				case ROUND:
+					int round = events.get() & 0xFF;
+					readDelta(events, state);
+					if (spectator != null) spectator.onRoundStarted(source.snapshot(state), round);
+					break;
+				case ROTATION:
+					readDelta(events, state);
+					if (spectator != null) spectator.onRotationComplete(source.snapshot(state));
+					break;
+				case GAME_OVER:
+					Set<Colour> winners = colours(events.getShort());
+					readDelta(events, state);
+					if (spectator != null)
+						spectator.onGameOver(source.snapshot(state),
+								Collections.unmodifiableSet(winners));
+					break;
+				case INDEX:
+					return 0;
+				default:
+					throw new IllegalStateException("Unknown event " + type + " at " + start);
+			}
+			return type;
+		} catch (BufferUnderflowException e) {
+			// an event cut short by a crash ends the journal
+			events.position(start);
+			return 0;
+		}
+	}
+
+	private void readDelta(ByteBuffer events, State state) {
+		state.current = events.get();
+		state.round = events.get() & 0xFF;
+		state.over = events.get() != 0;
+		state.winning.clear();
+		if (state.over) state.winning.addAll(colours(events.getShort()));
+		for (int i = events.get(); i > 0; i--)
+			readPlayer(events, state, events.get());
+	}
+
+	private Set<Colour> colours(int bitmask) {
+		Set<Colour> colours = EnumSet.noneOf(Colour.class);
+		for (Colour colour : this.colours)
+			if ((bitmask & 1 << colour.ordinal()) != 0) colours.add(colour);
+		return colours;
+	}
+
+	private void readPlayer(ByteBuffer events, State state, int player) {
+		state.locations[player] = events.getShort() & 0xFFFF;
+		for (int i = 0; i < TICKETS.length; i++)
+			state.tickets[player * TICKETS.length + i] = events.get() & 0xFF;
+	}
+
+	private static Graph<Integer, Transport> readGraph(ByteBuffer input) {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		for (int i = input.getShort(); i > 0; i--)
+			graph.addNode(new Node<>(input.getShort() & 0xFFFF));
+		Transport[] transports = Transport.values();
+		// edges are journaled in both directions, adding one adds its swap
+		Map<Edge<Integer, Transport>, Integer> swapped = new HashMap<>();
+		for (int i = input.getInt(); i > 0; i--) {
+			Edge<Integer, Transport> edge = new Edge<>(
+					graph.getNode(input.getShort() & 0xFFFF),
+					graph.getNode(input.getShort() & 0xFFFF), transports[input.get()]);
+			Integer pending = swapped.get(edge);
+			if (pending != null) {
+				if (pending == 1) swapped.remove(edge);
+				else swapped.put(edge, pending - 1);
+			} else {
+				graph.addEdge(edge);
+				swapped.merge(edge.swap(), 1, Integer::sum);
+			}
+		}
+		return new ImmutableGraph<>(graph);
+	}
+
+	/**
+	 * A position in a journaled game
+	 */
+	public static final class Position {
+
+		private final ViewSnapshot view;
+		private final int mrXLocation;
+
+		private Position(ViewSnapshot view, int mrXLocation) {
+			this.view = view;
+			this.mrXLocation = mrXLocation;
+		}
+
+		/**
+		 * @return the game as spectators saw it; never null
+		 */
+		public ViewSnapshot view() {
+			return view;
+		}
+
+		/**
+		 * @return Mr X's true location if it was journaled, his last revealed
+		 *         location otherwise
+		 */
+		public int mrXLocation() {
+			return mrXLocation;
+		}
+
+	}
+
+	// the replayed game, snapshots are handed out
+	private final class State implements ScotlandYardView {
+
+		int round;
+		int current;
+		boolean over;
+		int mrXLocation;
+		final int[] locations = new int[colours.size()];
+		final int[] tickets = new int[colours.size() * TICKETS.length];
+		final Set<Colour> winning = EnumSet.noneOf(Colour.class);
+
+		@Override
+		public List<Colour> getPlayers() {
+			return colours;
+		}
+
+		@Override
+		public Set<Colour> getWinningPlayers() {
+			return winning;
+		}
+
+		@Override
+		public Optional<Integer> getPlayerLocation(Colour colour) {
+			int index = colours.indexOf(colour);
+			return index < 0 ? Optional.empty() : Optional.of(locations[index]);
+		}
+
+		@Override
+		public Optional<Integer> getPlayerTickets(Colour colour, Ticket ticket) {
+			int index = colours.indexOf(colour);
+			if (index < 0 || ticket == null) return Optional.empty();
+			return Optional.of(tickets[index * TICKETS.length + ticket.ordinal()]);
+		}
+
+		@Override
+		public boolean isGameOver() {
+			return over;
+		}
+
+		@Override
+		public Colour getCurrentPlayer() {
+			return colours.get(current);
+		}
+
+		@Override
+		public int getCurrentRound() {
+			return round;
+		}
+
+		@Override
+		public List<Boolean> getRounds() {
+			return rounds;
+		}
+
+		@Override
+		public Graph<Integer, Transport> getGraph() {
+			return graph;
+		}
+
+	}
+
+}
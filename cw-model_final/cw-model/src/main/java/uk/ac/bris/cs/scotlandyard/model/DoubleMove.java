@@ -10,6 +10,8 @@ public class DoubleMove extends Move {
 	private static final long serialVersionUID = 8857602351332595005L;
 	private final TicketMove firstMove;
 	private final TicketMove secondMove;
+	// cached like TicketMove.hash
+	private transient int hash;
 
 	/**
 	 * Create a new double move from two individual ticket moves
@@ -86,7 +88,9 @@ public class DoubleMove extends Move {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), firstMove, secondMove);
+		int h = hash;
+		if (h == 0) hash = h = Objects.hash(super.hashCode(), firstMove, secondMove);
+		return h;
 	}
 
 	@Override
@@ -0,0 +1,583 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Objects.requireNonNull;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+
+/**
+ * A {@link ScotlandYardGame} with the rules of {@link ScotlandYardModel}, built
+ * for playing many games quickly: self-play, fuzzing and search. <br>
+ * The graph is copied into arrays: nodes are renumbered to dense indices in
+ * order of value and the edges of each node are a slice of a target array and
+ * a ticket array. An {@link ImmutableGraph} is only copied once and shared by
+ * every game played on it, so creating a game on it is cheap. Players are kept as parallel arrays of colours,
+ * locations and a flat ticket table, and the number of detectives on every
+ * node is counted so occupied destinations are skipped with one array read.
+ * Move generation and the game over checks walk these arrays without boxing;
+ * whether the game is over is worked out without generating a single move. <br>
+ * Valid moves are generated at most once per player between changes to the
+ * game and handed out as {@link MoveSet}s. Single ticket moves are created
+ * once per graph and shared by every move set and double move that uses them.
+ * Searches copy the game with {@link #fork()} and play on the copies. <br>
+ * Everything observable, including the order and content of spectator
+ * notifications, matches {@link ScotlandYardModel}; {@code DifferentialTester}
+ * compares the two. The only difference is that start locations that are not
+ * on the graph are rejected when the game is created rather than when moves
+ * are first generated.
+ */
+public final class FastScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
+
+	private static final int MR_X = 0;
+	private static final int TICKET_KINDS = Ticket.values().length;
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Colour[] COLOURS = Colour.values();
+	private static final Set<Colour> MR_X_WINS = Collections.unmodifiableSet(EnumSet.of(BLACK));
+	private static final PassMove[] PASS_MOVES = Arrays.stream(COLOURS).map(PassMove::new)
+			.toArray(PassMove[]::new);
+	// the players of forked games, moves are played on them directly
+	private static final Player SILENT = (view, location, moves, callback) -> {};
+
+	// immutable graphs are compiled once, weak keys compare by identity
+	private static final LoadingCache<Graph<Integer, Transport>, Topology> TOPOLOGIES =
+			CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(Topology::new));
+
+	// ticket counts are small, their optionals are shared
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Optional<Integer>[] COUNTS = new Optional[128];
+
+	static {
+		for (int i = 0; i < COUNTS.length; i++)
+			COUNTS[i] = Optional.of(i);
+	}
+
+	private final List<Boolean> rounds;
+	private final boolean[] reveal;
+	private final Graph<Integer, Transport> graph;
+
+	private final Topology topology;
+	private final int[] values;
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] edgeTickets;
+
+	// players, Mr X first
+	private final int count;
+	private final Colour[] colours;
+	private final Player[] players;
+	private final int[] playerIndices;
+	private final List<Colour> playerList;
+	private final Set<Colour> detectivesWin;
+	private final int[] locations;
+	// player * TICKET_KINDS + ticket ordinal
+	private final int[] tickets;
+	// the number of detectives on each node
+	private final int[] occupied;
+
+	private int current;
+	private int currentRound = ScotlandYardView.NOT_STARTED;
+	private int mrXLastKnown;
+	private Optional<Integer> mrXLastKnownOptional = Optional.of(0);
+	private final List<Spectator> spectators = new ArrayList<>();
+
+	// caches, dropped whenever the game changes
+	private final MoveSet[] moves;
+	private boolean evaluated;
+	private boolean gameOver;
+	private boolean mrXWins;
+
+	// move generation
+	private final int[] legTickets;
+	private final int[] legTargets;
+	private final int[] secretSeen;
+	private int stamp;
+	private Move[] generated = new Move[64];
+
+	public FastScotlandYardModel(List<Boolean> rounds, Graph<Integer, Transport> graph,
+			PlayerConfiguration mrX, PlayerConfiguration firstDetective,
+			PlayerConfiguration... restOfTheDetectives) {
+		requireNonNull(rounds);
+		requireNonNull(graph);
+		if (rounds.isEmpty())
+			throw new IllegalArgumentException("The list of rounds cannot be empty.");
+		if (graph.isEmpty())
+			throw new IllegalArgumentException("The game graph cannot be empty.");
+		if (mrX.colour != BLACK)
+			throw new IllegalArgumentException("Mr X's colour should only be BLACK.");
+
+		List<PlayerConfiguration> configurations = new ArrayList<>();
+		configurations.add(mrX);
+		configurations.add(requireNonNull(firstDetective));
+		for (PlayerConfiguration configuration : requireNonNull(restOfTheDetectives))
+			configurations.add(requireNonNull(configuration));
+
+		Set<Integer> startLocations = new HashSet<>();
+		for (PlayerConfiguration configuration : configurations)
+			if (!startLocations.add(configuration.location))
+				throw new IllegalArgumentException("Two players cannot start at the same location.");
+		Set<Colour> startColours = EnumSet.noneOf(Colour.class);
+		for (PlayerConfiguration configuration : configurations)
+			if (!startColours.add(configuration.colour))
+				throw new IllegalArgumentException("Two players cannot have the same colour.");
+		for (PlayerConfiguration configuration : configurations)
+			if (!configuration.tickets.keySet().containsAll(EnumSet.allOf(Ticket.class)))
+				throw new IllegalArgumentException("A player is missing a ticket type.");
+		for (PlayerConfiguration configuration : configurations)
+			if (configuration.colour != BLACK && (configuration.tickets.get(Ticket.SECRET) != 0
+					|| configuration.tickets.get(Ticket.DOUBLE) != 0))
+				throw new IllegalArgumentException("A detective has a SECRET or DOUBLE.");
+
+		this.rounds = Collections.unmodifiableList(new ArrayList<>(rounds));
+		this.reveal = new boolean[rounds.size()];
+		for (int i = 0; i < reveal.length; i++)
+			reveal[i] = rounds.get(i);
+		this.graph = graph instanceof ImmutableGraph ? graph : new ImmutableGraph<>(graph);
+
+		this.topology = topology(graph);
+		this.values = topology.values;
+		this.offsets = topology.offsets;
+		this.targets = topology.targets;
+		this.edgeTickets = topology.tickets;
+
+		this.count = configurations.size();
+		this.colours = new Colour[count];
+		this.players = new Player[count];
+		this.playerIndices = new int[COLOURS.length];
+		Arrays.fill(playerIndices, -1);
+		this.locations = new int[count];
+		this.tickets = new int[count * TICKET_KINDS];
+		this.occupied = new int[values.length];
+		for (int i = 0; i < count; i++) {
+			PlayerConfiguration configuration = configurations.get(i);
+			colours[i] = configuration.colour;
+			players[i] = configuration.player;
+			playerIndices[configuration.colour.ordinal()] = i;
+			locations[i] = index(configuration.location);
+			if (locations[i] < 0)
+				throw new IllegalArgumentException("Location " + configuration.location + " of "
+						+ configuration.colour + " is not on the graph.");
+			if (i != MR_X) occupied[locations[i]]++;
+			for (Ticket ticket : TICKETS)
+				tickets[i * TICKET_KINDS + ticket.ordinal()] = configuration.tickets.get(ticket);
+		}
+		this.playerList = Collections.unmodifiableList(Arrays.asList(colours.clone()));
+		this.detectivesWin = Collections.unmodifiableSet(
+				EnumSet.copyOf(playerList.subList(1, count)));
+
+		this.moves = new MoveSet[count];
+		// each leg can be taken with its own ticket or a secret one
+		this.legTickets = new int[4 * topology.maxDegree];
+		this.legTargets = new int[4 * topology.maxDegree];
+		this.secretSeen = new int[values.length];
+	}
+
+	// a copy of the game, see fork()
+	private FastScotlandYardModel(FastScotlandYardModel game) {
+		this.rounds = game.rounds;
+		this.reveal = game.reveal;
+		this.graph = game.graph;
+		this.topology = game.topology;
+		this.values = game.values;
+		this.offsets = game.offsets;
+		this.targets = game.targets;
+		this.edgeTickets = game.edgeTickets;
+		this.count = game.count;
+		this.colours = game.colours;
+		this.players = new Player[count];
+		Arrays.fill(players, SILENT);
+		this.playerIndices = game.playerIndices;
+		this.playerList = game.playerList;
+		this.detectivesWin = game.detectivesWin;
+		this.locations = game.locations.clone();
+		this.tickets = game.tickets.clone();
+		this.occupied = game.occupied.clone();
+		this.current = game.current;
+		this.currentRound = game.currentRound;
+		this.mrXLastKnown = game.mrXLastKnown;
+		this.mrXLastKnownOptional = game.mrXLastKnownOptional;
+		// move sets never change, the copy starts with those already generated
+		this.moves = game.moves.clone();
+		this.evaluated = game.evaluated;
+		this.gameOver = game.gameOver;
+		this.mrXWins = game.mrXWins;
+		this.legTickets = new int[game.legTickets.length];
+		this.legTargets = new int[game.legTargets.length];
+		this.secretSeen = new int[values.length];
+	}
+
+	/**
+	 * Copies the game as it is now, so that moves can be searched ahead
+	 * without touching it. The copy has no spectators and never asks its
+	 * players for moves: moves of the current player, see
+	 * {@link #getValidMoves()}, are played on it with {@link #accept(Move)}
+	 * whether or not a rotation was started. <br>
+	 * Forking only reads the game, but like the game itself it is not thread
+	 * safe; fork on one thread and hand the copies out.
+	 *
+	 * @return the copy; never null
+	 */
+	public FastScotlandYardModel fork() {
+		return new FastScotlandYardModel(this);
+	}
+
+	/**
+	 * @return the valid moves of the current player, as they would be given
+	 *         to the player; never null
+	 */
+	public Set<Move> getValidMoves() {
+		return validMoves(current);
+	}
+
+	// the dense index of a node value, or -1 if the graph does not have it
+	private int index(int value) {
+		int index = Arrays.binarySearch(values, value);
+		return index < 0 ? -1 : index;
+	}
+
+	@Override
+	public void registerSpectator(Spectator spectator) {
+		requireNonNull(spectator, "NULL spectator.");
+		if (spectators.contains(spectator))
+			throw new IllegalArgumentException("Cannot register a spectator more than once.");
+		spectators.add(spectator);
+	}
+
+	@Override
+	public void unregisterSpectator(Spectator spectator) {
+		requireNonNull(spectator, "NULL spectator.");
+		if (!spectators.remove(spectator))
+			throw new IllegalArgumentException("Cannot de-register an unregistered spectator.");
+	}
+
+	@Override
+	public Collection<Spectator> getSpectators() {
+		return Collections.unmodifiableCollection(spectators);
+	}
+
+	@Override
+	public void startRotate() {
+		if (isGameOver()) throw new IllegalStateException("Cannot rotate when game is over.");
+		players[current].makeMove(this, values[locations[current]], validMoves(current), this);
+	}
+
+	@Override
+	public void accept(Move move) {
+		requireNonNull(move, "NULL move");
+		if (!validMoves(current).contains(move))
+			throw new IllegalArgumentException("The move is not in the valid move set.");
+		int player = current;
+		invalidate();
+		current = (current + 1) % count;
+		if (move instanceof TicketMove) {
+			ticketMove(player, (TicketMove) move);
+		} else if (move instanceof DoubleMove) {
+			doubleMove(player, (DoubleMove) move);
+		} else {
+			for (Spectator spectator : spectators)
+				spectator.onMoveMade(this, move);
+		}
+		invalidate();
+		if (isGameOver()) {
+			Set<Colour> winners = getWinningPlayers();
+			for (Spectator spectator : spectators)
+				spectator.onGameOver(this, winners);
+		} else if (current != MR_X) {
+			players[current].makeMove(this, values[locations[current]], validMoves(current), this);
+		} else {
+			for (Spectator spectator : spectators)
+				spectator.onRotationComplete(this);
+		}
+	}
+
+	private void ticketMove(int player, TicketMove move) {
+		int ticket = move.ticket().ordinal();
+		int destination = index(move.destination());
+		if (player == MR_X) {
+			locations[MR_X] = destination;
+			boolean revealed = reveal[currentRound];
+			if (revealed) {
+				mrXLastKnown = move.destination();
+				mrXLastKnownOptional = topology.optionals[destination];
+			}
+			currentRound++;
+			tickets[ticket]--;
+			invalidate();
+			for (Spectator spectator : spectators)
+				spectator.onRoundStarted(this, currentRound);
+			Move shown = revealed ? move : new TicketMove(BLACK, move.ticket(), mrXLastKnown);
+			for (Spectator spectator : spectators)
+				spectator.onMoveMade(this, shown);
+		} else {
+			occupied[locations[player]]--;
+			occupied[destination]++;
+			locations[player] = destination;
+			tickets[player * TICKET_KINDS + ticket]--;
+			tickets[ticket]++;
+			invalidate();
+			for (Spectator spectator : spectators)
+				spectator.onMoveMade(this, move);
+		}
+	}
+
+	// spectators see the legs of hidden rounds at Mr X's last revealed location
+	private void doubleMove(int player, DoubleMove move) {
+		TicketMove first = move.firstMove();
+		TicketMove second = move.secondMove();
+		TicketMove shownFirst = reveal[currentRound] ? first
+				: new TicketMove(move.colour(), first.ticket(), mrXLastKnown);
+		TicketMove shownSecond = reveal[currentRound + 1] ? second
+				: new TicketMove(move.colour(), second.ticket(),
+						reveal[currentRound] ? first.destination() : mrXLastKnown);
+		tickets[player * TICKET_KINDS + DOUBLE]--;
+		invalidate();
+		DoubleMove shown = new DoubleMove(move.colour(), shownFirst, shownSecond);
+		for (Spectator spectator : spectators)
+			spectator.onMoveMade(this, shown);
+		ticketMove(player, first);
+		ticketMove(player, second);
+	}
+
+	private void invalidate() {
+		Arrays.fill(moves, null);
+		evaluated = false;
+	}
+
+	private MoveSet validMoves(int player) {
+		MoveSet set = moves[player];
+		if (set == null) moves[player] = set = generateMoves(player);
+		return set;
+	}
+
+	// legs and doubles come out distinct, so the set does not check them again
+	private MoveSet generateMoves(int player) {
+		int size = 0;
+		int base = player * TICKET_KINDS;
+		int firsts = legs(player, locations[player], 0);
+		boolean doubles = tickets[base + DOUBLE] >= 1 && reveal.length - 1 > currentRound;
+		for (int i = 0; i < firsts; i++) {
+			TicketMove first = ticketMove(player, legTickets[i], legTargets[i]);
+			size = add(size, first);
+			if (!doubles) continue;
+			int end = legs(player, legTargets[i], firsts);
+			for (int j = firsts; j < end; j++) {
+				// the same ticket twice needs two of them
+				if (legTickets[j] == legTickets[i] && tickets[base + legTickets[j]] < 2) continue;
+				size = add(size, new DoubleMove(colours[player], first,
+						ticketMove(player, legTickets[j], legTargets[j])));
+			}
+		}
+		if (player != MR_X && size == 0) size = add(size, PASS_MOVES[colours[player].ordinal()]);
+		return MoveSet.ofDistinct(generated, size);
+	}
+
+	private int add(int size, Move move) {
+		if (size == generated.length) generated = Arrays.copyOf(generated, size * 2);
+		generated[size] = move;
+		return size + 1;
+	}
+
+	// writes the single moves from a node to the leg arrays from start, returns the end
+	private int legs(int player, int from, int start) {
+		int base = player * TICKET_KINDS;
+		boolean secret = tickets[base + SECRET] >= 1;
+		if (++stamp == 0) {
+			Arrays.fill(secretSeen, 0);
+			stamp = 1;
+		}
+		int end = start;
+		for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+			int target = targets[edge];
+			if (occupied[target] != 0) continue;
+			int ticket = edgeTickets[edge];
+			if (ticket != SECRET && tickets[base + ticket] >= 1) {
+				legTickets[end] = ticket;
+				legTargets[end++] = target;
+			}
+			// several transports can lead to the same node, it takes one secret move
+			if (secret && secretSeen[target] != stamp) {
+				secretSeen[target] = stamp;
+				legTickets[end] = SECRET;
+				legTargets[end++] = target;
+			}
+		}
+		return end;
+	}
+
+	private TicketMove ticketMove(int player, int ticket, int target) {
+		return topology.ticketMove(colours[player], ticket, target);
+	}
+
+	// whether the player has any ticket move, without generating moves
+	private boolean canMove(int player) {
+		int base = player * TICKET_KINDS;
+		boolean secret = tickets[base + SECRET] >= 1;
+		int from = locations[player];
+		for (int edge = offsets[from]; edge < offsets[from + 1]; edge++)
+			if (occupied[targets[edge]] == 0 && (secret || tickets[base + edgeTickets[edge]] >= 1))
+				return true;
+		return false;
+	}
+
+	private void evaluate() {
+		if (evaluated) return;
+		boolean caught = occupied[locations[MR_X]] != 0;
+		boolean roundsOver = currentRound >= reveal.length && current == MR_X;
+		boolean detectivesStuck = true;
+		for (int player = 1; player < count && detectivesStuck; player++)
+			if (canMove(player)) detectivesStuck = false;
+		boolean mrXStuck = current == MR_X && !canMove(MR_X);
+		gameOver = caught || roundsOver || detectivesStuck || mrXStuck;
+		// a capture wins for the detectives even in the last round
+		mrXWins = !caught && (roundsOver || detectivesStuck);
+		evaluated = true;
+	}
+
+	@Override
+	public boolean isGameOver() {
+		evaluate();
+		return gameOver;
+	}
+
+	@Override
+	public Set<Colour> getWinningPlayers() {
+		evaluate();
+		if (!gameOver) return Collections.emptySet();
+		return mrXWins ? MR_X_WINS : detectivesWin;
+	}
+
+	@Override
+	public List<Colour> getPlayers() {
+		return playerList;
+	}
+
+	@Override
+	public Optional<Integer> getPlayerLocation(Colour colour) {
+		if (colour == BLACK) return mrXLastKnownOptional;
+		int player = colour == null ? -1 : playerIndices[colour.ordinal()];
+		if (player < 0) return Optional.empty();
+		return topology.optionals[locations[player]];
+	}
+
+	@Override
+	public Optional<Integer> getPlayerTickets(Colour colour, Ticket ticket) {
+		int player = playerIndices[colour.ordinal()];
+		if (player < 0) return Optional.empty();
+		int tickets = this.tickets[player * TICKET_KINDS + ticket.ordinal()];
+		return tickets >= 0 && tickets < COUNTS.length ? COUNTS[tickets] : Optional.of(tickets);
+	}
+
+	@Override
+	public Colour getCurrentPlayer() {
+		return colours[current];
+	}
+
+	@Override
+	public int getCurrentRound() {
+		return currentRound;
+	}
+
+	@Override
+	public List<Boolean> getRounds() {
+		return rounds;
+	}
+
+	@Override
+	public Graph<Integer, Transport> getGraph() {
+		return graph;
+	}
+
+	private static Topology topology(Graph<Integer, Transport> graph) {
+		return graph instanceof ImmutableGraph ? TOPOLOGIES.getUnchecked(graph)
+				: new Topology(graph);
+	}
+
+	/**
+	 * The graph as arrays, shared by every game on the same immutable graph
+	 */
+	private static final class Topology {
+
+		// nodes, sorted by value; the edges of node i are [offsets[i], offsets[i + 1])
+		final int[] values;
+		final int[] offsets;
+		final int[] targets;
+		final byte[] tickets;
+		final int maxDegree;
+		final Optional<Integer>[] optionals;
+		// colour, ticket, node; filled on first use, racing threads create equal moves
+		private final TicketMove[] ticketMoves;
+
+		Topology(Graph<Integer, Transport> graph) {
+			List<Node<Integer>> nodes = graph.getNodes();
+			this.values = new int[nodes.size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = nodes.get(i).value();
+			Arrays.sort(values);
+			this.offsets = new int[values.length + 1];
+			// destination above the ticket, sorted and deduplicated per node
+			long[][] adjacent = new long[values.length][];
+			for (Node<Integer> node : nodes) {
+				Collection<Edge<Integer, Transport>> edges = graph.getEdgesFrom(node);
+				long[] packed = new long[edges.size()];
+				int size = 0;
+				for (Edge<Integer, Transport> edge : edges)
+					packed[size++] = (long) Arrays.binarySearch(values, edge.destination().value())
+							<< 8 | Ticket.fromTransport(edge.data()).ordinal();
+				Arrays.sort(packed);
+				int unique = 0;
+				for (int i = 0; i < size; i++)
+					if (unique == 0 || packed[i] != packed[unique - 1]) packed[unique++] = packed[i];
+				adjacent[Arrays.binarySearch(values, node.value())] = Arrays.copyOf(packed, unique);
+			}
+			int maxDegree = 0;
+			for (int i = 0; i < values.length; i++) {
+				offsets[i + 1] = offsets[i] + adjacent[i].length;
+				maxDegree = Math.max(maxDegree, adjacent[i].length);
+			}
+			this.maxDegree = maxDegree;
+			this.targets = new int[offsets[values.length]];
+			this.tickets = new byte[offsets[values.length]];
+			for (int i = 0; i < values.length; i++) {
+				for (int j = 0; j < adjacent[i].length; j++) {
+					targets[offsets[i] + j] = (int) (adjacent[i][j] >>> 8);
+					tickets[offsets[i] + j] = (byte) (adjacent[i][j] & 0xFF);
+				}
+			}
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			Optional<Integer>[] optionals = new Optional[values.length];
+			for (int i = 0; i < values.length; i++)
+				optionals[i] = Optional.of(values[i]);
+			this.optionals = optionals;
+			this.ticketMoves = new TicketMove[COLOURS.length * TICKET_KINDS * values.length];
+		}
+
+		TicketMove ticketMove(Colour colour, int ticket, int target) {
+			int i = (colour.ordinal() * TICKET_KINDS + ticket) * values.length + target;
+			TicketMove move = ticketMoves[i];
+			if (move == null)
+				ticketMoves[i] = move = new TicketMove(colour, TICKETS[ticket], values[target]);
+			return move;
+		}
+
+	}
+
+}
@@ -1,7 +1,6 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import uk.ac.bris.cs.gamekit.graph.Graph;
@@ -12,11 +11,26 @@ import uk.ac.bris.cs.gamekit.graph.Graph;
 public class ModelFactories {
 
 	/**
-	 * A list of models to test
+	 * A list of models to test, also compared with each other by
+	 * {@link uk.ac.bris.cs.scotlandyard.verify.DifferentialTester}
 	 * @return A list of models; never null
 	 */
-	static List<Class<? extends ScotlandYardGameFactory>> factories() {
-		return Collections.singletonList(ImperativeModelFactory.class);
+	public static List<Class<? extends ScotlandYardGameFactory>> factories() {
+		return Arrays.asList(ImperativeModelFactory.class, FastModelFactory.class);
+	}
+
+	/**
+	 * Finds a model of {@link #factories()} by name
+	 * @param name the name of the model, e.g. FastScotlandYardModel; not null
+	 * @return A new instance of the model; never null
+	 * @throws IllegalArgumentException if no model has that name
+	 */
+	public static ScotlandYardGameFactory named(String name) {
+		List<? extends ScotlandYardGameFactory> factories = ScotlandYardGameFactory
+				.instantiate(factories());
+		return factories.stream().filter(f -> f.toString().equals(name)).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException(
+						"No model named " + name + ", expected one of " + factories));
 	}
 
 	/**
@@ -38,4 +52,24 @@ public class ModelFactories {
 
 	}
 
+	/**
+	 * An implementation that uses the {@link FastScotlandYardModel}
+	 */
+	static class FastModelFactory implements ScotlandYardGameFactory {
+
+		@Override
+		public ScotlandYardGame createGame(List<Boolean> rounds, Graph<Integer, Transport> graph,
+				PlayerConfiguration mrX, PlayerConfiguration firstDetective,
+				PlayerConfiguration... restOfTheDetectives) {
+			return new FastScotlandYardModel(rounds, graph, mrX, firstDetective,
+					restOfTheDetectives);
+		}
+
+		@Override
+		public String toString() {
+			return "FastScotlandYardModel";
+		}
+
+	}
+
 }
@@ -0,0 +1,203 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable set of moves, built once by move generation and then shared
+ * between threads without copying. <br>
+ * Moves are kept in an array in the order they were added, with an
+ * open-addressing table of indices into it for lookups, so a set of a few
+ * hundred double moves is two arrays rather than a node per move. All fields
+ * are final and never change after {@link Builder#build()}, so instances are
+ * safe to publish to any thread. Mutators throw
+ * {@link UnsupportedOperationException}.
+ */
+public final class MoveSet extends AbstractSet<Move> {
+
+	private static final MoveSet EMPTY = new MoveSet(new Move[0], 0);
+
+	private final Move[] moves;
+	// index + 1 into moves, 0 for a free slot; length is a power of two
+	private final int[] table;
+	private final int hashCode;
+
+	private MoveSet(Move[] moves, int size) {
+		this.moves = size == moves.length ? moves : Arrays.copyOf(moves, size);
+		this.table = new int[tableSize(size)];
+		int hash = 0;
+		for (int i = 0; i < size; i++) {
+			table[free(table, moves[i])] = i + 1;
+			hash += moves[i].hashCode();
+		}
+		this.hashCode = hash;
+	}
+
+	/**
+	 * @return a set without any moves; never null
+	 */
+	public static MoveSet of() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns an immutable set with the given moves, the set itself if it
+	 * already is a {@link MoveSet}
+	 *
+	 * @param moves the moves; not null, must not contain null
+	 * @return the set; never null
+	 */
+	public static MoveSet copyOf(Collection<? extends Move> moves) {
+		if (moves instanceof MoveSet) return (MoveSet) moves;
+		Builder builder = new Builder(moves.size());
+		moves.forEach(builder::add);
+		return builder.build();
+	}
+
+	/**
+	 * Returns an immutable set of moves that are known to be distinct, without
+	 * checking them against each other
+	 *
+	 * @param moves the moves, the array is copied; not null
+	 * @param size the number of moves to take from the start of the array
+	 * @return the set; never null
+	 */
+	static MoveSet ofDistinct(Move[] moves, int size) {
+		return size == 0 ? EMPTY : new MoveSet(Arrays.copyOf(moves, size), size);
+	}
+
+	/**
+	 * @return a builder for a new set; never null
+	 */
+	public static Builder builder() {
+		return new Builder(16);
+	}
+
+	@Override
+	public int size() {
+		return moves.length;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Move)) return false;
+		return find(moves, table, (Move) o) >= 0;
+	}
+
+	@Override
+	public Iterator<Move> iterator() {
+		return new Iterator<Move>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < moves.length;
+			}
+
+			@Override
+			public Move next() {
+				if (next >= moves.length) throw new NoSuchElementException();
+				return moves[next++];
+			}
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		return moves.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * Collects moves for a {@link MoveSet}, adding a move that is already
+	 * there does nothing. Builders are not thread safe.
+	 */
+	public static final class Builder {
+
+		private Move[] moves;
+		private int[] table;
+		private int size;
+
+		private Builder(int capacity) {
+			this.moves = new Move[Math.max(capacity, 4)];
+			this.table = new int[tableSize(moves.length)];
+		}
+
+		/**
+		 * @param move the move to add; not null
+		 * @return this builder; never null
+		 */
+		public Builder add(Move move) {
+			Objects.requireNonNull(move);
+			if (find(moves, table, move) >= 0) return this;
+			if (size == moves.length) grow();
+			moves[size++] = move;
+			table[free(table, move)] = size;
+			return this;
+		}
+
+		/**
+		 * @return the number of distinct moves added so far
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return whether no moves were added so far
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * @return an immutable set of the moves added so far; never null
+		 */
+		public MoveSet build() {
+			return size == 0 ? EMPTY : new MoveSet(moves, size);
+		}
+
+		private void grow() {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+			table = new int[tableSize(moves.length)];
+			for (int i = 0; i < size; i++)
+				table[free(table, moves[i])] = i + 1;
+		}
+
+	}
+
+	// at most half full so probes stay short
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) * 2;
+	}
+
+	private static int slot(Move move, int mask) {
+		// Move hashes are small sums of enum and int hashes, spread them first
+		int hash = move.hashCode() * 0x9E3779B9;
+		return (hash ^ hash >>> 16) & mask;
+	}
+
+	private static int find(Move[] moves, int[] table, Move move) {
+		int mask = table.length - 1;
+		for (int i = slot(move, mask); table[i] != 0; i = (i + 1) & mask)
+			if (moves[table[i] - 1].equals(move)) return table[i] - 1;
+		return -1;
+	}
+
+	private static int free(int[] table, Move move) {
+		int mask = table.length - 1;
+		int i = slot(move, mask);
+		while (table[i] != 0)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+}
@@ -19,11 +19,14 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
     private List<Boolean> rounds;
     private Graph<Integer, Transport> graph;
+    //One read-only view of the graph for every caller, so caches keyed by it are shared.
+    private ImmutableGraph<Integer, Transport> immutableGraph;
     private List<ScotlandYardPlayer> syplayers;
     private int currentRound;
     private int currentPlayerIndex;
     private int mrXLastKnown;
     private List<Spectator> spectators;
+    private MoveSet currentMoves;
 
     public ScotlandYardModel(List<Boolean> rounds, Graph<Integer, Transport> graph,
                              PlayerConfiguration mrX, PlayerConfiguration firstDetective,
@@ -31,6 +34,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
         this.rounds = requireNonNull(rounds);
         this.graph = requireNonNull(graph);
+        this.immutableGraph = new ImmutableGraph<>(graph);
         this.syplayers = new ArrayList<>();
         this.currentRound = ScotlandYardView.NOT_STARTED;
         this.spectators = new ArrayList<>();
@@ -196,7 +200,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
         // Checks if Mr X has been caught, and makes dWin = true if so.
         for (ScotlandYardPlayer syplayer : syplayers) {
 
-            if (syplayer.location() == mrX.location()) dWin = true;
+            if (syplayer.isDetective() && syplayer.location() == mrX.location()) dWin = true;
         }
 
 
@@ -207,7 +211,8 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
 
         //Checks if the round limit has been reached and makes xWin = true if so.
-        if (currentRound >= rounds.size() && currentPlayerIndex == 0) xWin = true;
+        //A capture in the final round still wins for the detectives.
+        if (currentRound >= rounds.size() && currentPlayerIndex == 0 && !dWin) xWin = true;
 
 
         //Checks if detectives are stuck (all detectives only have pass moves), and makes xWin = true if so.
@@ -218,7 +223,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
                     !(moves.size() == 1 && moves.iterator().next() instanceof PassMove))
                 noValidDetectiveMoves = false;
         }
-        if (noValidDetectiveMoves) xWin = true;
+        if (noValidDetectiveMoves && !dWin) xWin = true;
 
 
 
@@ -352,9 +357,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
     //Returns the game graph
     @Override
     public Graph<Integer, Transport> getGraph() {
-        ImmutableGraph<Integer, Transport> imGraph = new ImmutableGraph<>(this
-                .graph);
-        return imGraph;
+        return immutableGraph;
     }
 
 
@@ -370,6 +373,9 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
         ScotlandYardPlayer movePlayer = colourToPlayer(move.colour());
         ScotlandYardView syView = this;
 
+        //The state is about to change, so the cached moves of the current player are no longer valid.
+        currentMoves = null;
+
         //Increments the player index and checks if the index is the same size as the list of players, in which case reverts back to Mr X.
         currentPlayerIndex++;
         if (currentPlayerIndex == syplayers.size()) currentPlayerIndex = 0;
@@ -488,6 +494,9 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
         });
 
+        //Spectators may have cached moves of a half-finished double move, so drop them again.
+        currentMoves = null;
+
         //If the game is over then update spectators .onGameOver.
         if (isGameOver()) {
             for (Spectator spectator : spectators) {
@@ -513,12 +522,19 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
     }
 
-    //Returns all the valid moves for a player:
+    //Returns all the valid moves for a player, the moves of the current player are only generated once per turn:
     private Set<Move> validMoves(Colour playerColour) {
+        if (playerColour != getCurrentPlayer()) return generateMoves(playerColour);
+        if (currentMoves == null) currentMoves = generateMoves(playerColour);
+        return currentMoves;
+    }
+
+    //Generates all the valid moves for a player as an immutable MoveSet that can be handed to other threads as is:
+    private MoveSet generateMoves(Colour playerColour) {
 
         //Gets the ScotlandYardPlayer, creates a new set for the moves and gets all the valid tickets for the player.
         ScotlandYardPlayer syplayer = colourToPlayer(playerColour);
-        Set<Move> validMoves = new HashSet<>();
+        MoveSet.Builder validMoves = MoveSet.builder();
         Set<Move> ticketMoves = validTicket(syplayer, syplayer.location());
 
         //For every valid ticket:
@@ -562,7 +578,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
         }
 
         //Return the valid moves.
-        return Collections.unmodifiableSet(validMoves);
+        return validMoves.build();
     }
 
     //Returns the valid tickets a playr can use:
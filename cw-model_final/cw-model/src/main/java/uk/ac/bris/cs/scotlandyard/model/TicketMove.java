@@ -10,6 +10,8 @@ public class TicketMove extends Move {
 	private static final long serialVersionUID = -8579140322766860934L;
 	private final Ticket ticket;
 	private final int destination;
+	// move sets hash every move they hold, computed on first use like String
+	private transient int hash;
 
 	/**
 	 * Create a new ticket move with ticket and destination
@@ -54,7 +56,9 @@ public class TicketMove extends Move {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), ticket, destination);
+		int h = hash;
+		if (h == 0) hash = h = Objects.hash(super.hashCode(), ticket, destination);
+		return h;
 	}
 
 	@Override
@@ -0,0 +1,214 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+/**
+ * An immutable copy of a {@link ScotlandYardView} at one point of a game,
+ * cheap enough to take on every turn. <br>
+ * Snapshots are taken through a {@link Source} created once per game, which
+ * keeps the parts of the view that never change during a game (the graph, the
+ * rounds and the players) and shares them between all its snapshots; a
+ * snapshot itself only copies locations, tickets and whose turn it is. Every
+ * snapshot of a source has a higher {@link #version()} than the ones taken
+ * before it. <br>
+ * Whether the game is over can be costly to work out, callers that already
+ * know it (a player asked to move is only asked while the game is running)
+ * should pass it to {@link Source#snapshot(ScotlandYardView, boolean)}. <br>
+ * Locations are copied as the view reports them, so Mr X's location is his
+ * last revealed one when the snapshot is taken from the game. Snapshots are
+ * safe to read from any thread.
+ */
+public final class ViewSnapshot implements ScotlandYardView {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final Source source;
+	private final long version;
+	private final int[] locations;
+	// player * TICKETS.length + ticket ordinal
+	private final int[] tickets;
+	private final Colour currentPlayer;
+	private final int currentRound;
+	private final boolean gameOver;
+	private final Set<Colour> winning;
+
+	private ViewSnapshot(Source source, long version, ScotlandYardView view, boolean gameOver) {
+		this.source = source;
+		this.version = version;
+		List<Colour> colours = source.colours;
+		this.locations = new int[colours.size()];
+		this.tickets = new int[colours.size() * TICKETS.length];
+		for (int i = 0; i < colours.size(); i++) {
+			Colour colour = colours.get(i);
+			locations[i] = view.getPlayerLocation(colour).orElse(0);
+			for (Ticket ticket : TICKETS)
+				tickets[i * TICKETS.length + ticket.ordinal()] =
+						view.getPlayerTickets(colour, ticket).orElse(0);
+		}
+		this.currentPlayer = view.getCurrentPlayer();
+		this.currentRound = view.getCurrentRound();
+		this.gameOver = gameOver;
+		// nobody has won a game that is still running
+		this.winning = gameOver ? Collections.unmodifiableSet(copy(view.getWinningPlayers()))
+				: Collections.emptySet();
+	}
+
+	/**
+	 * Creates a source for snapshots of a game. The graph, rounds and
+	 * players are read here once and must not change afterwards
+	 *
+	 * @param view the view of the game; not null
+	 * @return the source; never null
+	 */
+	public static Source source(ScotlandYardView view) {
+		return new Source(view);
+	}
+
+	/**
+	 * Takes a single snapshot, copying the rounds as well; use a
+	 * {@link Source} to take more than one
+	 *
+	 * @param view the view; not null
+	 * @return the snapshot; never null
+	 */
+	public static ViewSnapshot of(ScotlandYardView view) {
+		return source(view).snapshot(view);
+	}
+
+	/**
+	 * @return the version of this snapshot, higher for later snapshots of the
+	 *         same {@link Source}
+	 */
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * @param other another snapshot; not null
+	 * @return whether both snapshots come from the same {@link Source}
+	 */
+	public boolean sameSource(ViewSnapshot other) {
+		return source == other.source;
+	}
+
+	@Override
+	public List<Colour> getPlayers() {
+		return source.colours;
+	}
+
+	@Override
+	public Set<Colour> getWinningPlayers() {
+		return winning;
+	}
+
+	@Override
+	public Optional<Integer> getPlayerLocation(Colour colour) {
+		int index = source.index(colour);
+		return index < 0 ? Optional.empty() : Optional.of(locations[index]);
+	}
+
+	@Override
+	public Optional<Integer> getPlayerTickets(Colour colour, Ticket ticket) {
+		int index = source.index(colour);
+		if (index < 0 || ticket == null) return Optional.empty();
+		return Optional.of(tickets[index * TICKETS.length + ticket.ordinal()]);
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	@Override
+	public Colour getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	@Override
+	public int getCurrentRound() {
+		return currentRound;
+	}
+
+	@Override
+	public List<Boolean> getRounds() {
+		return source.rounds;
+	}
+
+	@Override
+	public Graph<Integer, Transport> getGraph() {
+		return source.graph;
+	}
+
+	@Override
+	public String toString() {
+		return "ViewSnapshot{version=" + version + ", round=" + currentRound + ", current="
+				+ currentPlayer + ", over=" + gameOver + ", locations="
+				+ Arrays.toString(locations) + "}";
+	}
+
+	private static Set<Colour> copy(Set<Colour> colours) {
+		return colours.isEmpty() ? EnumSet.noneOf(Colour.class) : EnumSet.copyOf(colours);
+	}
+
+	/**
+	 * Takes snapshots of one game, see {@link ViewSnapshot}. Sources are
+	 * thread safe, though snapshots should be taken on the thread that
+	 * changes the game so they are consistent.
+	 */
+	public static final class Source {
+
+		private final List<Colour> colours;
+		private final List<Boolean> rounds;
+		private final Graph<Integer, Transport> graph;
+		// player index by colour ordinal, -1 if not playing
+		private final int[] indices = new int[Colour.values().length];
+		private final AtomicLong versions = new AtomicLong();
+
+		private Source(ScotlandYardView view) {
+			Objects.requireNonNull(view);
+			this.colours = Collections.unmodifiableList(new ArrayList<>(view.getPlayers()));
+			this.rounds = Collections.unmodifiableList(new ArrayList<>(view.getRounds()));
+			this.graph = Objects.requireNonNull(view.getGraph());
+			Arrays.fill(indices, -1);
+			for (int i = 0; i < colours.size(); i++)
+				indices[colours.get(i).ordinal()] = i;
+		}
+
+		/**
+		 * @param view the current view of the game this source was created
+		 *        for; not null
+		 * @return a snapshot of the view; never null
+		 */
+		public ViewSnapshot snapshot(ScotlandYardView view) {
+			return snapshot(view, Objects.requireNonNull(view).isGameOver());
+		}
+
+		/**
+		 * @param view the current view of the game this source was created
+		 *        for; not null
+		 * @param gameOver whether the game is over, the winning players are
+		 *        only read from the view if it is
+		 * @return a snapshot of the view; never null
+		 */
+		public ViewSnapshot snapshot(ScotlandYardView view, boolean gameOver) {
+			return new ViewSnapshot(this, versions.incrementAndGet(), Objects.requireNonNull(view),
+					gameOver);
+		}
+
+		private int index(Colour colour) {
+			return colour == null ? -1 : indices[colour.ordinal()];
+		}
+
+	}
+
+}
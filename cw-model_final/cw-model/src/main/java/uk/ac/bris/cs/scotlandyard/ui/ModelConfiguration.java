@@ -2,9 +2,11 @@ package uk.ac.bris.cs.scotlandyard.ui;
 
 import java.time.Duration;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.collections.ObservableList;
 import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
 import uk.ac.bris.cs.scotlandyard.model.Transport;
 import uk.ac.bris.cs.scotlandyard.ui.model.PlayerProperty;
 
@@ -19,4 +21,10 @@ public interface ModelConfiguration {
 	ObservableList<PlayerProperty> allPlayers();
 
 	ObservableList<PlayerProperty> players();
+
+	ObjectProperty<ScotlandYardGameFactory> engineProperty();
+
+	BooleanProperty aiWarmUpProperty();
+
+	BooleanProperty journalProperty();
 }
@@ -35,6 +35,7 @@ import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.Parent;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
@@ -65,6 +66,8 @@ import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.ai.AI;
 import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
 import uk.ac.bris.cs.scotlandyard.model.StandardGame;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
 import uk.ac.bris.cs.scotlandyard.ui.ColourTableCell;
@@ -106,6 +109,9 @@ public final class GameSetup implements Controller {
 	@FXML private Label timeoutHint;
 
 	@FXML private Spinner<Integer> roundCount;
+	@FXML private ChoiceBox<ScotlandYardGameFactory> engine;
+	@FXML private CheckBox aiWarmUp;
+	@FXML private CheckBox journal;
 	@FXML private FlowPane roundConfig;
 
 	private ObservableList<PlayerProperty> playerEntries = FXCollections
@@ -263,6 +269,17 @@ public final class GameSetup implements Controller {
 				.map(Math::round).map(String::valueOf));
 		timeout.valueProperty().setValue(initialValue.timeoutProperty().get().getSeconds());
 
+		// engine, instances differ between configurations so match on the class
+		List<ScotlandYardGameFactory> engines = new ArrayList<>(ScotlandYardGameFactory
+				.instantiate(ModelFactories.factories()));
+		engine.setItems(FXCollections.observableArrayList(engines));
+		engine.getSelectionModel().select(engines.stream()
+				.filter(e -> e.getClass() == initialValue.engineProperty().get().getClass())
+				.findFirst().orElse(engines.get(0)));
+
+		aiWarmUp.setSelected(initialValue.aiWarmUpProperty().get());
+		journal.setSelected(initialValue.journalProperty().get());
+
 		IntFunction<ToggleButton> mapper = i -> {
 			ToggleButton button = new ToggleButton(String.valueOf(i + 1));
 			button.setPrefWidth(45);
@@ -313,10 +330,21 @@ public final class GameSetup implements Controller {
 			}
 		});
 
-		return new ModelProperty(Duration.ofSeconds(Math.round(timeout.getValue())),
+		return currentConfig();
+	}
+
+	/**
+	 * @return the configuration as it is set up, random locations are left
+	 *         random; never null
+	 */
+	ModelProperty currentConfig() {
+		ModelProperty config = new ModelProperty(Duration.ofSeconds(Math.round(timeout.getValue())),
 				roundConfig.getChildren().stream().map(ToggleButton.class::cast)
 						.map(ToggleButton::isSelected).collect(Collectors.toList()),
-				playerEntries, new ImmutableGraph<>(manager.getGraph()));
+				playerEntries, new ImmutableGraph<>(manager.getGraph()), engine.getValue());
+		config.aiWarmUpProperty().set(aiWarmUp.isSelected());
+		config.journalProperty().set(journal.isSelected());
+		return config;
 	}
 
 	ReadOnlyBooleanProperty readyProperty() {
@@ -3,7 +3,10 @@ package uk.ac.bris.cs.scotlandyard.ui.controller;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -25,14 +28,15 @@ import javafx.stage.Stage;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.ResourceManager.ImageResource;
 import uk.ac.bris.cs.scotlandyard.ai.AIPool;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.Fallback;
 import uk.ac.bris.cs.scotlandyard.harness.CodeGenRecorder;
 import uk.ac.bris.cs.scotlandyard.harness.CodeGenRecorder.CodeGen;
 import uk.ac.bris.cs.scotlandyard.harness.GameModelSequencePUMLCodeGen;
 import uk.ac.bris.cs.scotlandyard.harness.TestHarnessPlayOutTestCodeGen;
+import uk.ac.bris.cs.scotlandyard.journal.GameJournal;
 import uk.ac.bris.cs.scotlandyard.model.Colour;
 import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
-import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
 import uk.ac.bris.cs.scotlandyard.model.Spectator;
 import uk.ac.bris.cs.scotlandyard.ui.GameControl;
@@ -52,6 +56,8 @@ import static uk.ac.bris.cs.scotlandyard.ui.Utils.handleFatalException;
 
 public final class LocalGame extends BaseGame implements Spectator {
 
+	private static final Duration AI_DEADLINE_SLACK = Duration.ofSeconds(1);
+	private static final Duration AI_WARM_UP = Duration.ofSeconds(1);
 	private final boolean showCapturedTest;
 
 	public static void newGame(ResourceManager manager, Stage stage, boolean captureTest) {
@@ -103,15 +109,22 @@ public final class LocalGame extends BaseGame implements Spectator {
 		private final ModelProperty setup;
 		private final ScotlandYardGame model;
 		private final List<GameControl> controls;
-		private final AIPool<Side> pool = new AIPool<>(
-				createVisualiserSurface(),
-				Utils::handleFatalException);
+		private final AIPool<Side> pool;
 		private final CodeGenRecorder recorder = new CodeGenRecorder(ImmutableList.of(
 				new TestHarnessPlayOutTestCodeGen(),
 				new GameModelSequencePUMLCodeGen()));
+		// null if the game is not journaled
+		private final GameJournal journal;
 
 		Game(ModelProperty setup) throws Exception {
 			this.setup = setup;
+			this.journal = setup.journalProperty().get() ? createJournal() : null;
+			this.pool = new AIPool<>(
+					createVisualiserSurface(),
+					Utils::handleFatalException,
+					aiMoveDeadline(setup.timeoutProperty().get()),
+					Fallback.RANDOM);
+			if (setup.aiWarmUpProperty().get()) pool.setWarmUp(AI_WARM_UP);
 
 			List<PlayerProperty> joining = setup.players();
 
@@ -130,6 +143,7 @@ public final class LocalGame extends BaseGame implements Spectator {
 							.using(board)
 							.build())
 					.map(pc -> recorder.observePlayer(pc))
+					.map(pc -> journal == null ? pc : journal.observePlayer(pc))
 					.collect(Collectors.toList());
 
 			PlayerConfiguration mrX = configs.stream()
@@ -141,7 +155,7 @@ public final class LocalGame extends BaseGame implements Spectator {
 					.filter(p -> p.colour.isDetective())
 					.collect(toList());
 
-			model = new ScotlandYardModel(
+			model = setup.engineProperty().get().createGame(
 					setup.revealRounds(),
 					setup.graphProperty().get(),
 					mrX,
@@ -150,6 +164,7 @@ public final class LocalGame extends BaseGame implements Spectator {
 
 
 			recorder.snap(model);
+			if (journal != null) startJournal();
 
 			controls = asList(
 					board,
@@ -173,15 +188,58 @@ public final class LocalGame extends BaseGame implements Spectator {
 			}
 
 			model.registerSpectator(recorder.createSpectator());
+			if (journal != null) model.registerSpectator(journal);
 			controls.forEach(model::registerSpectator);
 			controls.forEach(l -> l.onGameAttach(model, setup));
 			model.startRotate();
 		}
 
+		private GameJournal createJournal() {
+			try {
+				return new GameJournal(Files.newOutputStream(SavedGames.newJournal()),
+						GameJournal.DEFAULT_CHECKPOINT_ROUNDS, this::journalFailed);
+			} catch (IOException e) {
+				journalFailed(e);
+				return null;
+			}
+		}
+
+		private void startJournal() {
+			try {
+				journal.start(model);
+			} catch (IOException e) {
+				journalFailed(e);
+				closeJournal();
+			}
+		}
+
+		// the game carries on, the journal stops writing after its first error
+		private void journalFailed(IOException e) {
+			Utils.handleNonFatalException(e, "Unable to save the game, it will not be resumable");
+		}
+
+		private void closeJournal() {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// leave the AI some slack so the fallback move lands before the UI timeout
+		private Duration aiMoveDeadline(Duration timeout) {
+			Duration deadline = timeout.minus(AI_DEADLINE_SLACK);
+			return deadline.compareTo(timeout.dividedBy(2)) < 0 ? timeout.dividedBy(2) : deadline;
+		}
+
 		void terminate() {
 			controls.forEach(model::unregisterSpectator);
 			controls.forEach(GameControl::onGameDetached);
 			pool.terminate();
+			if (journal != null) {
+				model.unregisterSpectator(journal);
+				closeJournal();
+			}
 		}
 
 		@Override
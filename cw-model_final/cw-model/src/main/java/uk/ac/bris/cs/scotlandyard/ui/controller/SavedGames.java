@@ -1,19 +1,172 @@
 package uk.ac.bris.cs.scotlandyard.ui.controller;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import com.google.common.base.StandardSystemProperty;
+
+import javafx.fxml.FXML;
 import javafx.scene.Parent;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SplitPane;
+import uk.ac.bris.cs.fxkit.BindFXML;
 import uk.ac.bris.cs.fxkit.Controller;
-import uk.ac.bris.cs.scotlandyard.ui.ModelConfiguration;
+import uk.ac.bris.cs.scotlandyard.journal.JournalReplay;
+import uk.ac.bris.cs.scotlandyard.journal.JournalReplay.Position;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.ui.model.ModelProperty;
+import uk.ac.bris.cs.scotlandyard.ui.model.PlayerProperty;
+import uk.ac.bris.cs.scotlandyard.ui.model.TicketProperty;
+
+import static java.util.stream.Collectors.toList;
 
+/**
+ * Lists the journals {@link LocalGame} writes to {@link #DIRECTORY} and
+ * resumes them. <br>
+ * A journal is resumed from its last completed rotation, found through the
+ * journal's checkpoint index so long games load without replaying every move.
+ * The resumed game is a new game: rounds are numbered from the resume point,
+ * Mr X starts at his true location but stays hidden until the next reveal
+ * round. AIs, names, the timeout and the other round settings are not
+ * journaled, they are taken from the game setup as it currently is.
+ */
+@BindFXML("layout/SavedGames.fxml")
 public final class SavedGames implements Controller {
 
-	public SavedGames(Consumer<ModelConfiguration> controller) {
-		// TODO implement me
+	static final Path DIRECTORY = Paths.get(StandardSystemProperty.USER_DIR.value(), "saves");
+	static final String EXTENSION = ".journal";
+
+	private static final DateTimeFormatter FILE_NAME = DateTimeFormatter
+			.ofPattern("'game-'yyyyMMdd-HHmmss-SSS'" + EXTENSION + "'");
+
+	@FXML private SplitPane root;
+	@FXML private ListView<Path> games;
+	@FXML private Label description;
+	@FXML private Button resume;
+
+	private JournalReplay selected;
+
+	/**
+	 * @param setup the current game setup, asked on resume; not null
+	 * @param consumer starts the resumed game; not null
+	 */
+	public SavedGames(Supplier<ModelProperty> setup, Consumer<ModelProperty> consumer) {
+		Controller.bind(this);
+		games.setCellFactory(view -> new ListCell<Path>() {
+			@Override
+			protected void updateItem(Path item, boolean empty) {
+				super.updateItem(item, empty);
+				setText(empty || item == null ? null : item.getFileName().toString());
+			}
+		});
+		games.getItems().setAll(list());
+		games.getSelectionModel().selectedItemProperty().addListener((o, p, n) -> select(n));
+		resume.setDisable(true);
+		resume.setOnAction(e -> {
+			if (selected != null) consumer.accept(createGameConfig(selected, setup.get()));
+		});
+	}
+
+	/**
+	 * @return a new journal file in {@link #DIRECTORY}, named after the
+	 *         current time; never null
+	 * @throws IOException if the directory cannot be created
+	 */
+	static Path newJournal() throws IOException {
+		Files.createDirectories(DIRECTORY);
+		return DIRECTORY.resolve(LocalDateTime.now().format(FILE_NAME));
+	}
+
+	private static List<Path> list() {
+		if (!Files.isDirectory(DIRECTORY)) return Collections.emptyList();
+		try (Stream<Path> files = Files.list(DIRECTORY)) {
+			return files.filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+					.sorted(Comparator.reverseOrder())
+					.collect(toList());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return Collections.emptyList();
+		}
+	}
+
+	private void select(Path file) {
+		selected = null;
+		resume.setDisable(true);
+		if (file == null) {
+			description.setText(null);
+			return;
+		}
+		try {
+			JournalReplay replay = JournalReplay.open(file);
+			ScotlandYardView last = replay.last().view();
+			ScotlandYardView resumed = replay.resumePoint().view();
+			StringBuilder builder = new StringBuilder()
+					.append(file.getFileName()).append('\n')
+					.append("Players: ").append(replay.getPlayers()).append('\n')
+					.append("Round ").append(last.getCurrentRound())
+					.append(" of ").append(replay.getRounds().size()).append('\n');
+			if (last.isGameOver()) {
+				builder.append("Game over, won by ").append(last.getWinningPlayers());
+			} else {
+				builder.append("Resumes at round ").append(resumed.getCurrentRound());
+				selected = replay;
+				resume.setDisable(false);
+			}
+			description.setText(builder.toString());
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			description.setText("Unable to read " + file.getFileName() + ": " + e.getMessage());
+		}
+	}
+
+	private static ModelProperty createGameConfig(JournalReplay replay, ModelProperty setup) {
+		Position position = replay.resumePoint();
+		ScotlandYardView view = position.view();
+		List<PlayerProperty> players = Stream.of(Colour.values()).map(colour -> {
+			PlayerProperty player = new PlayerProperty(colour);
+			setup.allPlayers().stream().filter(p -> p.colour() == colour).findFirst()
+					.ifPresent(chosen -> {
+						chosen.name().ifPresent(player.nameProperty()::set);
+						chosen.ai().ifPresent(player.aiProperty()::set);
+					});
+			boolean joined = view.getPlayers().contains(colour);
+			player.enabledProperty().set(joined);
+			if (joined) {
+				int location = colour.isMrX() ? position.mrXLocation()
+						: view.getPlayerLocation(colour).orElse(0);
+				player.locationProperty().set(location == 0 ? PlayerProperty.RANDOM : location);
+				player.tickets().setAll(Stream.of(Ticket.values())
+						.map(t -> new TicketProperty(t, view.getPlayerTickets(colour, t).orElse(0)))
+						.collect(toList()));
+			}
+			return player;
+		}).collect(toList());
+		List<Boolean> rounds = replay.getRounds();
+		ModelProperty config = new ModelProperty(setup.timeoutProperty().get(),
+				rounds.subList(view.getCurrentRound(), rounds.size()), players,
+				replay.getGraph(), setup.engineProperty().get());
+		config.aiWarmUpProperty().set(setup.aiWarmUpProperty().get());
+		config.journalProperty().set(setup.journalProperty().get());
+		return config;
 	}
 
 	@Override
 	public Parent root() {
-		return null;
+		return root;
 	}
 }
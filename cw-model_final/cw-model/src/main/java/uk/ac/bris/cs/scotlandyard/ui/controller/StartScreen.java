@@ -35,7 +35,7 @@ public final class StartScreen implements Controller {
 		this.config = config;
 		Controller.bind(this);
 
-		ArrayList<AI> ais = new ArrayList<>(AI.scanClasspath());
+		ArrayList<AI> ais = new ArrayList<>(AI.load());
 		// add null for no ai(user select)
 		ais.add(0, null);
 
@@ -44,11 +44,10 @@ public final class StartScreen implements Controller {
 
 		gameSetup.setContent(setupController.root());
 
-		// TODO presets and saved games...
+		// TODO presets...
 		savedConfigs.setDisable(true);
 		// savedConfigs.setContent(new SavedConfigsController(consumer).root());
-		savedGames.setDisable(true);
-		// savedGames.setContent(new SavedGamesController(consumer).root());
+		savedGames.setContent(new SavedGames(setupController::currentConfig, consumer).root());
 
 		start.disableProperty().bind(setupController.readyProperty().not());
 		start.setOnAction(e -> {
@@ -8,7 +8,9 @@ import java.util.List;
 
 import com.google.common.base.MoreObjects;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -16,6 +18,8 @@ import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
 import uk.ac.bris.cs.scotlandyard.model.StandardGame;
 import uk.ac.bris.cs.scotlandyard.model.Transport;
 import uk.ac.bris.cs.scotlandyard.ui.ModelConfiguration;
@@ -26,13 +30,23 @@ public class ModelProperty implements ModelConfiguration {
 	private final ObservableList<Boolean> revealRounds = FXCollections.observableArrayList();
 	private final ObservableList<PlayerProperty> players = FXCollections.observableArrayList();
 	private final ObjectProperty<Graph<Integer, Transport>> graph = new SimpleObjectProperty<>();
+	private final ObjectProperty<ScotlandYardGameFactory> engine = new SimpleObjectProperty<>();
+	private final BooleanProperty aiWarmUp = new SimpleBooleanProperty();
+	private final BooleanProperty journal = new SimpleBooleanProperty(false);
 
 	public ModelProperty(Duration timeout, List<Boolean> revealRounds, List<PlayerProperty> players,
 			Graph<Integer, Transport> graph) {
+		this(timeout, revealRounds, players, graph,
+				ScotlandYardGameFactory.instantiate(ModelFactories.factories()).get(0));
+	}
+
+	public ModelProperty(Duration timeout, List<Boolean> revealRounds, List<PlayerProperty> players,
+			Graph<Integer, Transport> graph, ScotlandYardGameFactory engine) {
 		this.timeout.set(timeout);
 		this.revealRounds.addAll(revealRounds);
 		this.players.addAll(players);
 		this.graph.set(graph);
+		this.engine.set(engine);
 	}
 
 	public static ModelProperty createDefault(ResourceManager manager) {
@@ -66,10 +80,27 @@ public class ModelProperty implements ModelConfiguration {
 		return graph;
 	}
 
+	@Override
+	public ObjectProperty<ScotlandYardGameFactory> engineProperty() {
+		return engine;
+	}
+
+	@Override
+	public BooleanProperty aiWarmUpProperty() {
+		return aiWarmUp;
+	}
+
+	@Override
+	public BooleanProperty journalProperty() {
+		return journal;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("timeout", timeout)
-				.add("revealRounds", revealRounds).add("players", players).toString();
+				.add("revealRounds", revealRounds).add("players", players)
+				.add("engine", engine).add("aiWarmUp", aiWarmUp)
+				.add("journal", journal).toString();
 	}
 
 }
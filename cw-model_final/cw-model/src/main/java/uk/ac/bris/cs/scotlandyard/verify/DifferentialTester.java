@@ -0,0 +1,378 @@
+package uk.ac.bris.cs.scotlandyard.verify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Plays the same random {@link Scenario}s with the same moves on two or more
+ * {@link ScotlandYardGameFactory} implementations and compares them step by
+ * step. <br>
+ * Every game is recorded as a trace of events: each request for a move with
+ * the valid moves offered, each spectator callback, exceptions and the end of
+ * the game, each followed by the state of the view at that point. Moves are
+ * picked by index in {@link PlayOut#MOVE_ORDER} with the same random sequence
+ * on every implementation, so the traces stay identical until the
+ * implementations disagree; the first event that differs is reported. <br>
+ * The first implementation is the reference. Game {@code n} is seeded with
+ * {@code seed + n}, as in {@link RuleFuzzer}. <br>
+ * Usage: {@code DifferentialTester [games] [threads] [seed]}, compares the
+ * factories of {@link ModelFactories#factories()}, defaults to 10000 games,
+ * one thread per core and a seed from the clock. Exits with status 1 if the
+ * implementations diverge.
+ */
+public final class DifferentialTester {
+
+	// events shown before the divergence
+	private static final int CONTEXT = 4;
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final List<ScotlandYardGameFactory> factories;
+	private final Graph<Integer, Transport> standard;
+
+	/**
+	 * @param factories the implementations to compare, the first is the
+	 *        reference; at least two, not null
+	 * @param standard the standard graph, used for a quarter of the games;
+	 *        null to only use random graphs
+	 */
+	public DifferentialTester(List<? extends ScotlandYardGameFactory> factories,
+			Graph<Integer, Transport> standard) {
+		if (factories.size() < 2)
+			throw new IllegalArgumentException("Need at least two factories to compare, got "
+					+ factories);
+		factories.forEach(Objects::requireNonNull);
+		this.factories = Collections.unmodifiableList(new ArrayList<>(factories));
+		this.standard = standard;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.currentTimeMillis();
+		List<? extends ScotlandYardGameFactory> factories = ScotlandYardGameFactory
+				.instantiate(ModelFactories.factories());
+		if (factories.size() < 2) {
+			System.out.println("Only " + factories + " registered, nothing to compare");
+			return;
+		}
+		Report report = new DifferentialTester(factories, StandardGame.standardGraph())
+				.compare(games, threads, seed);
+		System.out.println(report);
+		if (report.divergence().isPresent()) System.exit(1);
+	}
+
+	/**
+	 * Plays games on every implementation until two diverge or all are played
+	 *
+	 * @param games the number of games
+	 * @param threads the number of threads to play on
+	 * @param seed the seed of game 0
+	 * @return the report, with the divergence of the lowest numbered game that
+	 *         diverged, if any; never null
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	public Report compare(int games, int threads, long seed) throws InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger played = new AtomicInteger();
+		AtomicLong events = new AtomicLong();
+		AtomicReference<Divergence> first = new AtomicReference<>();
+		long start = System.nanoTime();
+		ExecutorService service = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("differential-%d").build());
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(service.submit(() -> {
+					for (int n; (n = next.getAndIncrement()) < games; ) {
+						Optional<Divergence> divergence = compare(seed, n, events);
+						played.incrementAndGet();
+						if (divergence.isPresent()) {
+							first.accumulateAndGet(divergence.get(), (a, b) ->
+									a == null || b.game < a.game ? b : a);
+							next.set(games);
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			service.shutdownNow();
+		}
+		return new Report(played.get(), events.get(),
+				Duration.ofNanos(System.nanoTime() - start), first.get());
+	}
+
+	/**
+	 * Plays one game on every implementation
+	 *
+	 * @param seed the seed of game 0
+	 * @param game the game number
+	 * @return the first divergence from the reference, if any; never null
+	 */
+	public Optional<Divergence> compare(long seed, int game) {
+		return compare(seed, game, new AtomicLong());
+	}
+
+	private Optional<Divergence> compare(long seed, int game, AtomicLong events) {
+		Random random = new Random(seed + game);
+		Scenario scenario = Scenario.random(random, standard);
+		long moves = random.nextLong();
+		List<String> reference = play(factories.get(0), scenario, moves);
+		events.addAndGet(reference.size());
+		for (ScotlandYardGameFactory factory : factories.subList(1, factories.size())) {
+			List<String> trace = play(factory, scenario, moves);
+			events.addAndGet(trace.size());
+			int step = 0;
+			while (step < reference.size() && step < trace.size()
+					&& reference.get(step).equals(trace.get(step)))
+				step++;
+			if (step < reference.size() || step < trace.size())
+				return Optional.of(new Divergence(seed, game, scenario, factories.get(0), factory,
+						reference, trace, step));
+		}
+		return Optional.empty();
+	}
+
+	// records the game as events, stops at the first exception
+	private static List<String> play(ScotlandYardGameFactory factory, Scenario scenario,
+			long moves) {
+		Recorder recorder = new Recorder(new Random(moves));
+		try {
+			ScotlandYardGame game = scenario.create(factory, colour ->
+					(view, location, offered, callback) ->
+							recorder.makeMove(colour, view, location, offered, callback));
+			game.registerSpectator(recorder);
+			for (int rotation = 0; !game.isGameOver(); rotation++) {
+				if (rotation >= scenario.rounds().size()) {
+					recorder.record("not over after " + rotation + " rotations", game);
+					return recorder.events;
+				}
+				game.startRotate();
+			}
+			recorder.record("end", game);
+		} catch (RuntimeException e) {
+			// messages are implementation specific, the type is not
+			recorder.events.add("threw " + e.getClass().getName());
+		}
+		return recorder.events;
+	}
+
+	private static final class Recorder implements Spectator {
+
+		private final Random random;
+		private final List<String> events = new ArrayList<>();
+		private final StringBuilder builder = new StringBuilder();
+
+		Recorder(Random random) {
+			this.random = random;
+		}
+
+		void makeMove(Colour colour, ScotlandYardView view, int location, Set<Move> offered,
+				Consumer<Move> callback) {
+			Move[] sorted = offered.toArray(new Move[0]);
+			Arrays.sort(sorted, PlayOut.MOVE_ORDER);
+			record(colour + " asked at " + location + " with " + Arrays.toString(sorted), view);
+			if (sorted.length == 0) throw new IllegalStateException(colour + " offered no moves");
+			callback.accept(sorted[random.nextInt(sorted.length)]);
+		}
+
+		@Override public void onMoveMade(ScotlandYardView view, Move move) {
+			record("onMoveMade " + move, view);
+		}
+
+		@Override public void onRoundStarted(ScotlandYardView view, int round) {
+			record("onRoundStarted " + round, view);
+		}
+
+		@Override public void onRotationComplete(ScotlandYardView view) {
+			record("onRotationComplete", view);
+		}
+
+		@Override public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+			record("onGameOver " + ordered(winningPlayers), view);
+		}
+
+		void record(String event, ScotlandYardView view) {
+			builder.setLength(0);
+			builder.append(event).append(" | current ").append(view.getCurrentPlayer())
+					.append(", round ").append(view.getCurrentRound())
+					.append(", over ").append(view.isGameOver())
+					.append(", winners ").append(ordered(view.getWinningPlayers()));
+			for (Colour colour : view.getPlayers()) {
+				builder.append(", ").append(colour).append(" at ")
+						.append(view.getPlayerLocation(colour).orElse(-1)).append(' ');
+				for (Ticket ticket : TICKETS)
+					builder.append(ticket.name().charAt(0))
+							.append(view.getPlayerTickets(colour, ticket).orElse(-1));
+			}
+			events.add(builder.toString());
+		}
+
+		// sets of colours can iterate in any order
+		private static Set<Colour> ordered(Set<Colour> colours) {
+			Set<Colour> ordered = EnumSet.noneOf(Colour.class);
+			ordered.addAll(colours);
+			return ordered;
+		}
+
+	}
+
+	/**
+	 * A game that two implementations played differently
+	 */
+	public static final class Divergence {
+
+		private final long seed;
+		private final int game;
+		private final Scenario scenario;
+		private final ScotlandYardGameFactory reference;
+		private final ScotlandYardGameFactory other;
+		private final List<String> expected;
+		private final List<String> actual;
+		private final int step;
+
+		Divergence(long seed, int game, Scenario scenario, ScotlandYardGameFactory reference,
+				ScotlandYardGameFactory other, List<String> expected, List<String> actual,
+				int step) {
+			this.seed = seed;
+			this.game = game;
+			this.scenario = scenario;
+			this.reference = reference;
+			this.other = other;
+			this.expected = expected;
+			this.actual = actual;
+			this.step = step;
+		}
+
+		/**
+		 * @return the scenario; never null
+		 */
+		public Scenario scenario() {
+			return scenario;
+		}
+
+		/**
+		 * @return the index of the first event that differs
+		 */
+		public int step() {
+			return step;
+		}
+
+		/**
+		 * @return the reference's event at the divergence, or empty if its
+		 *         trace ended; never null
+		 */
+		public Optional<String> expected() {
+			return step < expected.size() ? Optional.of(expected.get(step)) : Optional.empty();
+		}
+
+		/**
+		 * @return the other implementation's event at the divergence, or empty
+		 *         if its trace ended; never null
+		 */
+		public Optional<String> actual() {
+			return step < actual.size() ? Optional.of(actual.get(step)) : Optional.empty();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(String.format(
+					"Game %d of seed %d: %s and %s diverge at event %d%n%s%n", game, seed,
+					reference, other, step, scenario));
+			for (int i = Math.max(0, step - CONTEXT); i < step; i++)
+				builder.append(String.format("  %d: %s%n", i, expected.get(i)));
+			builder.append(String.format("- %s: %s%n+ %s: %s", reference,
+					expected().orElse("<end>"), other, actual().orElse("<end>")));
+			return builder.toString();
+		}
+
+	}
+
+	/**
+	 * The outcome of a comparison run
+	 */
+	public static final class Report {
+
+		private final int games;
+		private final long events;
+		private final Duration elapsed;
+		private final Divergence divergence;
+
+		Report(int games, long events, Duration elapsed, Divergence divergence) {
+			this.games = games;
+			this.events = events;
+			this.elapsed = elapsed;
+			this.divergence = divergence;
+		}
+
+		/**
+		 * @return the number of games played on every implementation
+		 */
+		public int games() {
+			return games;
+		}
+
+		/**
+		 * @return the number of events compared
+		 */
+		public long events() {
+			return events;
+		}
+
+		/**
+		 * @return the first divergence, if any; never null
+		 */
+		public Optional<Divergence> divergence() {
+			return Optional.ofNullable(divergence);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d games, %d events in %dms%s", games, events,
+					elapsed.toMillis(), divergence == null ? ", no divergence"
+							: "\n" + divergence);
+		}
+
+	}
+
+}
@@ -0,0 +1,335 @@
+package uk.ac.bris.cs.scotlandyard.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.FastScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Counts every sequence of valid moves of a given length from the start of a
+ * {@link Scenario}, like perft in chess engines. <br>
+ * A move is one player's turn, so a depth of one more than the number of
+ * detectives is one round. Sequences that end the game early stop there and
+ * are not counted. The sequences are counted by the kind of their last move:
+ * a ticket move, a secret move, a double move or a pass. Known counts catch
+ * any change to move generation, and counts from different implementations
+ * must agree. <br>
+ * The moves of the first turn are counted in parallel. Games of
+ * {@link FastScotlandYardModel} are forked at every move; other
+ * implementations replay every sequence on a new game, which is correct but
+ * much slower. <br>
+ * Usage: {@code Perft [depth] [threads] [detectives] [seed] [model]}, counts
+ * every depth up to 5 on one thread per core for the standard game with 5
+ * detectives and the start locations of seed 0 on FastScotlandYardModel by
+ * default, and prints the nodes per second of each depth.
+ */
+public final class Perft {
+
+	private static final int TICKET = 0;
+	private static final int SECRET = 1;
+	private static final int DOUBLE = 2;
+	private static final int PASS = 3;
+
+	private final ScotlandYardGameFactory factory;
+
+	/**
+	 * @param factory the implementation to count the moves of; not null
+	 */
+	public Perft(ScotlandYardGameFactory factory) {
+		this.factory = Objects.requireNonNull(factory);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int detectives = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int seed = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		ScotlandYardGameFactory factory = ModelFactories.named(
+				args.length > 4 ? args[4] : "FastScotlandYardModel");
+		Scenario scenario = Scenario.standard(StandardGame.standardGraph(), detectives, seed);
+		System.out.println(factory + ", " + scenario);
+		Perft perft = new Perft(factory);
+		for (int d = 1; d <= depth; d++) {
+			long start = System.nanoTime();
+			Counts counts = perft.count(scenario, d, threads);
+			long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+			System.out.printf("depth %d: %s in %dms (%d nodes/s)%n", d, counts, micros / 1000,
+					counts.nodes() * 1_000_000 / micros);
+		}
+	}
+
+	/**
+	 * Counts the move sequences of a given length
+	 *
+	 * @param scenario the start of the game; not null
+	 * @param depth the number of moves in each sequence, at least 1
+	 * @param threads the number of threads to count on
+	 * @return the counts; never null
+	 * @throws InterruptedException if interrupted while waiting for the counts
+	 */
+	public Counts count(Scenario scenario, int depth, int threads) throws InterruptedException {
+		Counts total = new Counts(0, 0, 0, 0);
+		for (Counts counts : divide(scenario, depth, threads).values())
+			total = total.plus(counts);
+		return total;
+	}
+
+	/**
+	 * Counts the move sequences of a given length for each first move, to
+	 * find the moves that two implementations disagree on
+	 *
+	 * @param scenario the start of the game; not null
+	 * @param depth the number of moves in each sequence, at least 1
+	 * @param threads the number of threads to count on
+	 * @return the counts of each valid first move, in
+	 *         {@link PlayOut#MOVE_ORDER}; never null
+	 * @throws InterruptedException if interrupted while waiting for the counts
+	 */
+	public Map<Move, Counts> divide(Scenario scenario, int depth, int threads)
+			throws InterruptedException {
+		Objects.requireNonNull(scenario);
+		if (depth < 1) throw new IllegalArgumentException("depth must be > 0, got " + depth);
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		Position root = root(scenario);
+		List<Move> firsts = new ArrayList<>(root.moves());
+		firsts.sort(PlayOut.MOVE_ORDER);
+		Map<Move, Counts> divided = new LinkedHashMap<>();
+		ExecutorService service = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("perft-%d").build());
+		try {
+			Map<Move, Future<Counts>> futures = new LinkedHashMap<>();
+			for (Move first : firsts) {
+				// played here, positions are not shared between threads
+				Position position = depth > 1 ? root.play(first) : null;
+				futures.put(first, service.submit(() -> {
+					long[] counts = new long[4];
+					if (position == null) counts[kind(first)]++;
+					else count(position, depth - 1, counts);
+					return new Counts(counts[TICKET], counts[SECRET], counts[DOUBLE],
+							counts[PASS]);
+				}));
+			}
+			for (Map.Entry<Move, Future<Counts>> entry : futures.entrySet()) {
+				try {
+					divided.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			service.shutdownNow();
+		}
+		return divided;
+	}
+
+	// the last move is only counted, not played
+	private static void count(Position position, int depth, long[] counts) {
+		Set<Move> moves = position.moves();
+		if (depth == 1) {
+			for (Move move : moves)
+				counts[kind(move)]++;
+		} else {
+			for (Move move : moves)
+				count(position.play(move), depth - 1, counts);
+		}
+	}
+
+	private static int kind(Move move) {
+		if (move instanceof DoubleMove) return DOUBLE;
+		if (move instanceof TicketMove)
+			return ((TicketMove) move).ticket() == Ticket.SECRET ? SECRET : TICKET;
+		return PASS;
+	}
+
+	private Position root(Scenario scenario) {
+		Replay replay = new Replay();
+		ScotlandYardGame game = scenario.create(factory, colour -> replay);
+		if (game instanceof FastScotlandYardModel)
+			return new Forked((FastScotlandYardModel) game);
+		return new Replayed(scenario, Collections.emptyList());
+	}
+
+	// a game after some moves
+	private interface Position {
+
+		// empty once the game is over
+		Set<Move> moves();
+
+		Position play(Move move);
+
+	}
+
+	private static final class Forked implements Position {
+
+		private final FastScotlandYardModel game;
+
+		Forked(FastScotlandYardModel game) {
+			this.game = game;
+		}
+
+		@Override
+		public Set<Move> moves() {
+			return game.isGameOver() ? Collections.emptySet() : game.getValidMoves();
+		}
+
+		@Override
+		public Position play(Move move) {
+			FastScotlandYardModel next = game.fork();
+			next.accept(move);
+			return new Forked(next);
+		}
+
+	}
+
+	private final class Replayed implements Position {
+
+		private final Scenario scenario;
+		private final List<Move> moves;
+
+		Replayed(Scenario scenario, List<Move> moves) {
+			this.scenario = scenario;
+			this.moves = moves;
+		}
+
+		@Override
+		public Set<Move> moves() {
+			Replay replay = new Replay();
+			ScotlandYardGame game = scenario.create(factory, colour -> replay);
+			for (Move move : moves)
+				replay.request(game).accept(move);
+			if (game.isGameOver()) return Collections.emptySet();
+			replay.request(game);
+			return replay.moves;
+		}
+
+		@Override
+		public Position play(Move move) {
+			List<Move> next = new ArrayList<>(moves);
+			next.add(move);
+			return new Replayed(scenario, next);
+		}
+
+	}
+
+	// holds on to the last request for a move
+	private static final class Replay implements Player {
+
+		private Set<Move> moves;
+		private Consumer<Move> callback;
+
+		@Override
+		public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+				Consumer<Move> callback) {
+			this.moves = moves;
+			this.callback = callback;
+		}
+
+		// the callback of the current player, starting a rotation if needed
+		Consumer<Move> request(ScotlandYardGame game) {
+			if (callback == null) game.startRotate();
+			Consumer<Move> requested = callback;
+			callback = null;
+			return requested;
+		}
+
+	}
+
+	/**
+	 * The number of move sequences, by the kind of their last move
+	 */
+	public static final class Counts {
+
+		private final long tickets;
+		private final long secrets;
+		private final long doubles;
+		private final long passes;
+
+		/**
+		 * @param tickets sequences ending in a ticket move other than a secret
+		 *        move
+		 * @param secrets sequences ending in a secret move
+		 * @param doubles sequences ending in a double move
+		 * @param passes sequences ending in a pass
+		 */
+		public Counts(long tickets, long secrets, long doubles, long passes) {
+			this.tickets = tickets;
+			this.secrets = secrets;
+			this.doubles = doubles;
+			this.passes = passes;
+		}
+
+		/**
+		 * @return the number of sequences
+		 */
+		public long nodes() {
+			return tickets + secrets + doubles + passes;
+		}
+
+		public long tickets() {
+			return tickets;
+		}
+
+		public long secrets() {
+			return secrets;
+		}
+
+		public long doubles() {
+			return doubles;
+		}
+
+		public long passes() {
+			return passes;
+		}
+
+		Counts plus(Counts that) {
+			return new Counts(tickets + that.tickets, secrets + that.secrets,
+					doubles + that.doubles, passes + that.passes);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Counts)) return false;
+			Counts that = (Counts) o;
+			return tickets == that.tickets && secrets == that.secrets
+					&& doubles == that.doubles && passes == that.passes;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(tickets, secrets, doubles, passes);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d nodes (%d ticket, %d secret, %d double, %d pass)", nodes(),
+					tickets, secrets, doubles, passes);
+		}
+
+	}
+
+}
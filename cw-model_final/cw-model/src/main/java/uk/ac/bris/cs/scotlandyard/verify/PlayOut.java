@@ -0,0 +1,378 @@
+package uk.ac.bris.cs.scotlandyard.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Plays a {@link Scenario} to the end with moves picked by a {@link Chooser}
+ * and checks the rules of the game whenever the game is between moves: when a
+ * player is asked for a move, when a rotation completes and when the game is
+ * over. <br>
+ * The harness keeps its own account of every player's location and tickets
+ * and checks the game against it:
+ * <ul>
+ * <li>{@link Invariant#TICKETS} every ticket a player spends is gone, except
+ * detectives' which go to Mr X</li>
+ * <li>{@link Invariant#LOCATIONS} detectives are where their moves took
+ * them</li>
+ * <li>{@link Invariant#COLLISION} no two detectives share a location</li>
+ * <li>{@link Invariant#WINNERS} {@code getWinningPlayers} is empty exactly
+ * while {@code isGameOver} is false and is either Mr X or all detectives</li>
+ * <li>{@link Invariant#CAPTURE} the detectives win once one is on Mr X</li>
+ * <li>{@link Invariant#GAME_OVER} once a move ends the game spectators are
+ * told once, with the same winners, and no one is asked to move</li>
+ * <li>{@link Invariant#TURN} the right player is asked, at the right
+ * location</li>
+ * <li>{@link Invariant#MOVES} players are offered moves of their own</li>
+ * <li>{@link Invariant#TERMINATION} the game ends within its rounds</li>
+ * <li>{@link Invariant#EXCEPTION} the game throws nothing for valid input</li>
+ * </ul>
+ * Moves are offered to the chooser in {@link #MOVE_ORDER}, so a sequence of
+ * choices replays the same game on any implementation. Play-outs are not
+ * thread safe, use one per thread.
+ */
+public final class PlayOut {
+
+	/**
+	 * A rule a play-out checks
+	 */
+	public enum Invariant {
+		TICKETS, LOCATIONS, COLLISION, WINNERS, CAPTURE, GAME_OVER, TURN, MOVES, TERMINATION,
+		EXCEPTION
+	}
+
+	/**
+	 * Picks moves
+	 */
+	@FunctionalInterface
+	public interface Chooser {
+		/**
+		 * @param step the number of moves picked before this one
+		 * @param moves the number of moves to pick from, at least 1
+		 * @return the index of the move in {@link #MOVE_ORDER}, from 0 to
+		 *         {@code moves - 1}
+		 */
+		int choose(int step, int moves);
+	}
+
+	/**
+	 * Orders moves by kind, then tickets and destinations, independently of
+	 * the order of the game's move set
+	 */
+	public static final Comparator<Move> MOVE_ORDER = Comparator.comparingLong(PlayOut::key);
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final ScotlandYardGameFactory factory;
+
+	/**
+	 * @param factory the implementation to check; not null
+	 */
+	public PlayOut(ScotlandYardGameFactory factory) {
+		this.factory = Objects.requireNonNull(factory);
+	}
+
+	/**
+	 * @param move the move; not null
+	 * @return a key that orders moves by kind, ticket and destination
+	 */
+	static long key(Move move) {
+		if (move instanceof PassMove) return 0;
+		if (move instanceof TicketMove) return (1L << 40) | leg((TicketMove) move) << 20;
+		DoubleMove doubleMove = (DoubleMove) move;
+		return (2L << 40) | leg(doubleMove.firstMove()) << 20 | leg(doubleMove.secondMove());
+	}
+
+	private static long leg(TicketMove move) {
+		return (long) move.ticket().ordinal() << 16 | move.destination();
+	}
+
+	/**
+	 * Plays the scenario until the game is over or a rule is broken
+	 *
+	 * @param scenario the scenario; not null
+	 * @param chooser picks the moves; not null
+	 * @return the result; never null
+	 */
+	public Result play(Scenario scenario, Chooser chooser) {
+		Referee referee = new Referee(scenario, Objects.requireNonNull(chooser));
+		ScotlandYardGame game;
+		try {
+			game = scenario.create(factory, colour -> (view, location, offered, callback) ->
+					referee.makeMove(colour, view, location, offered, callback));
+		} catch (RuntimeException e) {
+			return referee.result(Invariant.EXCEPTION, "Creating the game threw " + e);
+		}
+		try {
+			game.registerSpectator(referee);
+			for (int rotation = 0; !game.isGameOver(); rotation++) {
+				if (rotation >= scenario.rounds().size())
+					throw new Violation(Invariant.TERMINATION,
+							"Game not over after " + rotation + " rotations");
+				game.startRotate();
+			}
+			// a game can be over before the first move, it is only announced
+			// after a move
+			referee.check(game);
+			if (!referee.over && !referee.moves.isEmpty())
+				throw new Violation(Invariant.GAME_OVER, "Game over without onGameOver");
+		} catch (Violation violation) {
+			return referee.result(violation.invariant, violation.getMessage());
+		} catch (RuntimeException e) {
+			return referee.result(Invariant.EXCEPTION, "Threw " + e);
+		}
+		return referee.result(null, null);
+	}
+
+	/**
+	 * The outcome of a play-out
+	 */
+	public static final class Result {
+
+		private final List<Move> moves;
+		private final int[] choices;
+		private final Set<Colour> winners;
+		private final Invariant invariant;
+		private final String message;
+
+		private Result(List<Move> moves, int[] choices, Set<Colour> winners,
+				Invariant invariant, String message) {
+			this.moves = Collections.unmodifiableList(moves);
+			this.choices = choices;
+			this.winners = Collections.unmodifiableSet(winners);
+			this.invariant = invariant;
+			this.message = message;
+		}
+
+		/**
+		 * @return the moves played, as picked; never null
+		 */
+		public List<Move> moves() {
+			return moves;
+		}
+
+		/**
+		 * @return the index of every move picked, replaying them with
+		 *         {@link #replay(int[])} plays the same game; never null
+		 */
+		public int[] choices() {
+			return choices.clone();
+		}
+
+		/**
+		 * @return the winners, empty if a rule was broken; never null
+		 */
+		public Set<Colour> winners() {
+			return winners;
+		}
+
+		/**
+		 * @return whether a rule was broken
+		 */
+		public boolean failed() {
+			return invariant != null;
+		}
+
+		/**
+		 * @return the rule that was broken, null if none
+		 */
+		public Invariant invariant() {
+			return invariant;
+		}
+
+		/**
+		 * @return what went wrong, null if nothing
+		 */
+		public String message() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return failed() ? invariant + " broken after " + moves.size() + " moves: " + message
+					: moves.size() + " moves, won by " + winners;
+		}
+
+	}
+
+	/**
+	 * @param choices the choices, taken modulo the number of moves; 0 after
+	 *        the last one
+	 * @return a chooser that replays the choices; never null
+	 */
+	public static Chooser replay(int[] choices) {
+		int[] copy = choices.clone();
+		return (step, moves) -> step < copy.length ? Math.floorMod(copy[step], moves) : 0;
+	}
+
+	private static final class Violation extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final Invariant invariant;
+
+		Violation(Invariant invariant, String message) {
+			super(message, null, false, false);
+			this.invariant = invariant;
+		}
+	}
+
+	private static final class Referee implements Spectator {
+
+		private final Chooser chooser;
+		private final List<Colour> colours;
+		private final int[] locations;
+		private final int[][] tickets;
+		private final List<Move> moves = new ArrayList<>();
+		private int[] choices = new int[64];
+		private int next;
+		private Set<Colour> winners = Collections.emptySet();
+		private boolean over;
+
+		Referee(Scenario scenario, Chooser chooser) {
+			this.chooser = chooser;
+			this.colours = scenario.colours();
+			this.locations = new int[colours.size()];
+			this.tickets = new int[colours.size()][TICKETS.length];
+			for (int i = 0; i < colours.size(); i++) {
+				locations[i] = scenario.location(i);
+				for (Ticket ticket : TICKETS)
+					tickets[i][ticket.ordinal()] = scenario.tickets(i, ticket);
+			}
+		}
+
+		void makeMove(Colour colour, ScotlandYardView view, int location, Set<Move> offered,
+				Consumer<Move> callback) {
+			int player = colours.indexOf(colour);
+			if (player != next || view.getCurrentPlayer() != colour)
+				throw new Violation(Invariant.TURN, "Expected " + colours.get(next)
+						+ " to move but " + colour + " was asked, current player is "
+						+ view.getCurrentPlayer());
+			if (location != locations[player])
+				throw new Violation(Invariant.TURN, colours.get(player) + " asked to move from "
+						+ location + " but is at " + locations[player]);
+			if (offered.isEmpty())
+				throw new Violation(Invariant.MOVES, colours.get(player) + " offered no moves");
+			if (check(view))
+				throw new Violation(Invariant.GAME_OVER, colours.get(player)
+						+ " asked to move after the game is over");
+			Move[] sorted = offered.toArray(new Move[0]);
+			Arrays.sort(sorted, MOVE_ORDER);
+			for (Move move : sorted)
+				if (move.colour() != colours.get(player))
+					throw new Violation(Invariant.MOVES, colours.get(player) + " offered " + move);
+			int step = moves.size();
+			int choice = chooser.choose(step, sorted.length);
+			Move move = sorted[choice];
+			if (step == choices.length) choices = Arrays.copyOf(choices, step * 2);
+			choices[step] = choice;
+			moves.add(move);
+			apply(player, move);
+			next = (player + 1) % colours.size();
+			callback.accept(move);
+		}
+
+		private void apply(int player, Move move) {
+			if (move instanceof TicketMove) {
+				spend(player, ((TicketMove) move).ticket());
+				locations[player] = ((TicketMove) move).destination();
+			} else if (move instanceof DoubleMove) {
+				DoubleMove doubleMove = (DoubleMove) move;
+				spend(player, Ticket.DOUBLE);
+				spend(player, doubleMove.firstMove().ticket());
+				spend(player, doubleMove.secondMove().ticket());
+				locations[player] = doubleMove.finalDestination();
+			}
+		}
+
+		private void spend(int player, Ticket ticket) {
+			tickets[player][ticket.ordinal()]--;
+			if (player != 0) tickets[0][ticket.ordinal()]++;
+		}
+
+		// returns whether the game is over
+		boolean check(ScotlandYardView view) {
+			for (int i = 0; i < colours.size(); i++) {
+				Colour colour = colours.get(i);
+				for (Ticket ticket : TICKETS) {
+					int actual = view.getPlayerTickets(colour, ticket).orElse(-1);
+					if (actual != tickets[i][ticket.ordinal()])
+						throw new Violation(Invariant.TICKETS, colour + " has " + actual + " "
+								+ ticket + " but should have " + tickets[i][ticket.ordinal()]);
+				}
+				if (i == 0) continue;
+				int actual = view.getPlayerLocation(colour).orElse(-1);
+				if (actual != locations[i])
+					throw new Violation(Invariant.LOCATIONS, colour + " is at " + actual
+							+ " but should be at " + locations[i]);
+				for (int j = 1; j < i; j++)
+					if (locations[j] == locations[i])
+						throw new Violation(Invariant.COLLISION, colours.get(j) + " and "
+								+ colour + " are both at " + locations[i]);
+			}
+			boolean gameOver = view.isGameOver();
+			Set<Colour> winning = view.getWinningPlayers();
+			if (gameOver == winning.isEmpty())
+				throw new Violation(Invariant.WINNERS, "isGameOver is " + gameOver
+						+ " but getWinningPlayers is " + winning);
+			if (!winning.isEmpty() && !winning.equals(EnumSet.of(Colour.BLACK))
+					&& !winning.equals(detectives()))
+				throw new Violation(Invariant.WINNERS, "Winners " + winning
+						+ " are neither Mr X nor all detectives");
+			for (int i = 1; i < colours.size(); i++)
+				if (locations[i] == locations[0] && !winning.equals(detectives()))
+					throw new Violation(Invariant.CAPTURE, colours.get(i) + " caught Mr X at "
+							+ locations[0] + " but winners are " + winning);
+			return gameOver;
+		}
+
+		private Set<Colour> detectives() {
+			Set<Colour> detectives = EnumSet.noneOf(Colour.class);
+			detectives.addAll(colours.subList(1, colours.size()));
+			return detectives;
+		}
+
+		@Override public void onRotationComplete(ScotlandYardView view) {
+			if (next != 0)
+				throw new Violation(Invariant.TURN, "Rotation complete before "
+						+ colours.get(next) + " moved");
+			check(view);
+		}
+
+		@Override public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+			if (over) throw new Violation(Invariant.GAME_OVER, "onGameOver notified twice");
+			over = true;
+			if (!check(view))
+				throw new Violation(Invariant.GAME_OVER, "onGameOver but isGameOver is false");
+			if (!winningPlayers.equals(view.getWinningPlayers()))
+				throw new Violation(Invariant.GAME_OVER, "onGameOver with " + winningPlayers
+						+ " but getWinningPlayers is " + view.getWinningPlayers());
+			winners = EnumSet.copyOf(winningPlayers);
+		}
+
+		Result result(Invariant invariant, String message) {
+			return new Result(moves, Arrays.copyOf(choices, moves.size()),
+					invariant == null ? winners : Collections.<Colour>emptySet(), invariant,
+					message);
+		}
+
+	}
+
+}
@@ -0,0 +1,349 @@
+package uk.ac.bris.cs.scotlandyard.verify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.ModelFactories;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.verify.PlayOut.Invariant;
+import uk.ac.bris.cs.scotlandyard.verify.PlayOut.Result;
+
+/**
+ * Plays random {@link Scenario}s out with random moves on a
+ * {@link ScotlandYardGameFactory} and checks the rules of the game after
+ * every move, see {@link PlayOut} for the rules. <br>
+ * Game {@code n} is seeded with {@code seed + n}, so every failure can be
+ * reproduced from the seed and game number alone. The first failure is
+ * shrunk before it is reported: detectives, rounds, tickets, edges and moves
+ * are removed for as long as the same rule still breaks, which usually
+ * leaves a game of a few moves on a handful of nodes. <br>
+ * Usage: {@code RuleFuzzer [games] [threads] [seed] [model]}, defaults to
+ * 100000 games, one thread per core, a seed from the clock and
+ * ScotlandYardModel, any model of {@link ModelFactories#factories()} can be
+ * named. Exits with status 1 if a rule was broken.
+ */
+public final class RuleFuzzer {
+
+	// every shrinking step replays the game, this bounds the replays
+	private static final int MAX_SHRINK_ATTEMPTS = 20_000;
+
+	private final ScotlandYardGameFactory factory;
+	private final Graph<Integer, Transport> standard;
+
+	/**
+	 * @param factory the implementation to check; not null
+	 * @param standard the standard graph, used for a quarter of the games;
+	 *        null to only use random graphs
+	 */
+	public RuleFuzzer(ScotlandYardGameFactory factory, Graph<Integer, Transport> standard) {
+		this.factory = Objects.requireNonNull(factory);
+		this.standard = standard;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.currentTimeMillis();
+		ScotlandYardGameFactory factory = ModelFactories.named(
+				args.length > 3 ? args[3] : "ScotlandYardModel");
+		RuleFuzzer fuzzer = new RuleFuzzer(factory, StandardGame.standardGraph());
+		Report report = fuzzer.fuzz(games, threads, seed);
+		System.out.println(report);
+		if (report.failure().isPresent()) System.exit(1);
+	}
+
+	/**
+	 * Plays games until one breaks a rule or all are played
+	 *
+	 * @param games the number of games
+	 * @param threads the number of threads to play on
+	 * @param seed the seed of game 0
+	 * @return the report, with the shrunk failure of the lowest numbered game
+	 *         that broke a rule, if any; never null
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	public Report fuzz(int games, int threads, long seed) throws InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0, got " + threads);
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger played = new AtomicInteger();
+		AtomicLong moves = new AtomicLong();
+		AtomicReference<Failure> first = new AtomicReference<>();
+		long start = System.nanoTime();
+		ExecutorService service = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("fuzzer-%d").build());
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(service.submit(() -> {
+					PlayOut playOut = new PlayOut(factory);
+					for (int n; (n = next.getAndIncrement()) < games; ) {
+						Random random = new Random(seed + n);
+						Scenario scenario = Scenario.random(random, standard);
+						Result result = playOut.play(scenario,
+								(step, count) -> random.nextInt(count));
+						played.incrementAndGet();
+						moves.addAndGet(result.moves().size());
+						if (result.failed()) {
+							Failure failure = new Failure(seed, n, scenario, result);
+							first.accumulateAndGet(failure, (a, b) ->
+									a == null || b.game < a.game ? b : a);
+							next.set(games);
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			service.shutdownNow();
+		}
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		Failure failure = first.get();
+		return new Report(played.get(), moves.get(), elapsed,
+				failure == null ? null : shrink(failure));
+	}
+
+	/**
+	 * Shrinks a failure to a smaller game that breaks the same rule
+	 *
+	 * @param failure the failure; not null
+	 * @return the smallest failure found, or the given one; never null
+	 */
+	public Failure shrink(Failure failure) {
+		return new Shrinker(failure).shrink();
+	}
+
+	private final class Shrinker {
+
+		private final PlayOut playOut = new PlayOut(factory);
+		private final Failure original;
+		private Scenario scenario;
+		private Result result;
+		private int attempts;
+
+		Shrinker(Failure failure) {
+			this.original = failure;
+			this.scenario = failure.scenario;
+			this.result = failure.result;
+		}
+
+		Failure shrink() {
+			boolean progress = true;
+			while (progress && attempts < MAX_SHRINK_ATTEMPTS) {
+				progress = removePlayers() | removeRounds() | removeMoves() | zeroChoices()
+						| removeTickets() | removeEdges();
+			}
+			return new Failure(original.seed, original.game, scenario, result);
+		}
+
+		// keeps the candidate if it breaks the same rule
+		private boolean attempt(Scenario candidate, int[] choices) {
+			if (attempts >= MAX_SHRINK_ATTEMPTS) return false;
+			attempts++;
+			Result replayed = playOut.play(candidate, PlayOut.replay(choices));
+			if (replayed.invariant() != result.invariant()) return false;
+			scenario = candidate;
+			result = replayed;
+			return true;
+		}
+
+		private boolean removePlayers() {
+			boolean progress = false;
+			for (int i = scenario.colours().size() - 1; i > 0; i--)
+				if (scenario.colours().size() > 2)
+					progress |= attempt(scenario.withoutPlayer(i), result.choices());
+			return progress;
+		}
+
+		private boolean removeRounds() {
+			for (int size = 1; size < scenario.rounds().size(); size++)
+				if (attempt(scenario.withRounds(size), result.choices())) return true;
+			return false;
+		}
+
+		private boolean removeMoves() {
+			boolean progress = false;
+			for (int chunk = Math.max(1, result.choices().length / 2); chunk > 0; chunk /= 2) {
+				for (int from = 0; from < result.choices().length; ) {
+					int[] choices = result.choices();
+					int to = Math.min(choices.length, from + chunk);
+					int[] candidate = new int[choices.length - (to - from)];
+					System.arraycopy(choices, 0, candidate, 0, from);
+					System.arraycopy(choices, to, candidate, from, choices.length - to);
+					if (attempt(scenario, candidate)) progress = true;
+					else from += chunk;
+				}
+			}
+			return progress;
+		}
+
+		private boolean zeroChoices() {
+			boolean progress = false;
+			for (int i = 0; i < result.choices().length; i++) {
+				int[] choices = result.choices();
+				if (choices[i] == 0) continue;
+				choices[i] = 0;
+				progress |= attempt(scenario, choices);
+			}
+			return progress;
+		}
+
+		private boolean removeTickets() {
+			boolean progress = false;
+			for (int i = 0; i < scenario.colours().size(); i++) {
+				for (Ticket ticket : Ticket.values()) {
+					for (int count = scenario.tickets(i, ticket) / 2; ; count /= 2) {
+						if (count >= scenario.tickets(i, ticket)) break;
+						if (!attempt(scenario.withTickets(i, ticket, count), result.choices()))
+							break;
+						progress = true;
+					}
+				}
+			}
+			return progress;
+		}
+
+		private boolean removeEdges() {
+			boolean progress = false;
+			List<Edge<Integer, Transport>> edges = scenario.edges();
+			for (int chunk = Math.max(1, edges.size() / 2); chunk > 0; chunk /= 2) {
+				for (int from = 0; from < edges.size(); ) {
+					List<Edge<Integer, Transport>> candidate = new ArrayList<>(edges);
+					candidate.subList(from, Math.min(edges.size(), from + chunk)).clear();
+					if (attempt(scenario.withEdges(candidate), result.choices())) {
+						edges = candidate;
+						progress = true;
+					} else {
+						from += chunk;
+					}
+				}
+			}
+			return progress;
+		}
+
+	}
+
+	/**
+	 * A game that broke a rule
+	 */
+	public static final class Failure {
+
+		private final long seed;
+		private final int game;
+		private final Scenario scenario;
+		private final Result result;
+
+		Failure(long seed, int game, Scenario scenario, Result result) {
+			this.seed = seed;
+			this.game = game;
+			this.scenario = scenario;
+			this.result = result;
+		}
+
+		/**
+		 * @return the scenario; never null
+		 */
+		public Scenario scenario() {
+			return scenario;
+		}
+
+		/**
+		 * @return the result of playing the scenario; never null
+		 */
+		public Result result() {
+			return result;
+		}
+
+		/**
+		 * @return the rule that was broken; never null
+		 */
+		public Invariant invariant() {
+			return result.invariant();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Game %d of seed %d: %s%n%s%nMoves: %s%nChoices: %s", game,
+					seed, result, scenario, result.moves().stream().map(Object::toString)
+							.collect(Collectors.joining(", ")),
+					Arrays.toString(result.choices()));
+		}
+
+	}
+
+	/**
+	 * The outcome of a fuzzing run
+	 */
+	public static final class Report {
+
+		private final int games;
+		private final long moves;
+		private final Duration elapsed;
+		private final Failure failure;
+
+		Report(int games, long moves, Duration elapsed, Failure failure) {
+			this.games = games;
+			this.moves = moves;
+			this.elapsed = elapsed;
+			this.failure = failure;
+		}
+
+		/**
+		 * @return the number of games played
+		 */
+		public int games() {
+			return games;
+		}
+
+		/**
+		 * @return the number of moves played
+		 */
+		public long moves() {
+			return moves;
+		}
+
+		/**
+		 * @return the shrunk failure, if a rule was broken; never null
+		 */
+		public Optional<Failure> failure() {
+			return Optional.ofNullable(failure);
+		}
+
+		@Override
+		public String toString() {
+			long millis = Math.max(1, elapsed.toMillis());
+			return String.format("%d games, %d moves in %dms (%d moves/s)%s", games, moves,
+					millis, moves * 1000 / millis,
+					failure == null ? ", no rules broken" : "\n" + failure);
+		}
+
+	}
+
+}
@@ -0,0 +1,310 @@
+package uk.ac.bris.cs.scotlandyard.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import com.google.common.base.MoreObjects;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * An immutable game setup: reveal rounds, graph, and the colour, location
+ * and tickets of every player, Mr X first. <br>
+ * Scenarios are valid by construction so every {@link ScotlandYardGameFactory}
+ * must accept them: locations are distinct nodes of the graph, detectives
+ * have no secret or double tickets and every player has a count for every
+ * ticket.
+ */
+public final class Scenario {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Transport[] TRANSPORTS = Transport.values();
+	private static final List<Colour> DETECTIVES = Collections.unmodifiableList(
+			Arrays.asList(Colour.BLUE, Colour.GREEN, Colour.RED, Colour.WHITE,
+					Colour.YELLOW));
+
+	private final List<Boolean> rounds;
+	private final Graph<Integer, Transport> graph;
+	private final List<Colour> colours;
+	private final int[] locations;
+	private final int[][] tickets;
+
+	private Scenario(List<Boolean> rounds, Graph<Integer, Transport> graph,
+			List<Colour> colours, int[] locations, int[][] tickets) {
+		this.rounds = Collections.unmodifiableList(new ArrayList<>(rounds));
+		this.graph = graph instanceof ImmutableGraph ? graph : new ImmutableGraph<>(graph);
+		this.colours = Collections.unmodifiableList(new ArrayList<>(colours));
+		this.locations = locations;
+		this.tickets = tickets;
+	}
+
+	/**
+	 * Creates a random scenario: 1 to 25 rounds, 1 to 5 detectives and ticket
+	 * counts around the standard ones, on a random connected graph of up to
+	 * 60 nodes or, if given, the standard graph
+	 *
+	 * @param random the source of randomness; not null
+	 * @param standard the standard graph to use for some scenarios, may be
+	 *        null
+	 * @return the scenario; never null
+	 */
+	public static Scenario random(Random random, Graph<Integer, Transport> standard) {
+		int detectives = 1 + random.nextInt(DETECTIVES.size());
+		Graph<Integer, Transport> graph = standard != null && random.nextInt(4) == 0
+				? standard
+				: randomGraph(random, detectives + 1 + random.nextInt(60 - detectives));
+		List<Boolean> rounds = new ArrayList<>();
+		for (int i = 1 + random.nextInt(25); i > 0; i--)
+			rounds.add(random.nextInt(4) == 0);
+		List<Colour> colours = new ArrayList<>(DETECTIVES);
+		Collections.shuffle(colours, random);
+		colours = new ArrayList<>(colours.subList(0, detectives));
+		colours.add(0, Colour.BLACK);
+		List<Node<Integer>> nodes = new ArrayList<>(graph.getNodes());
+		Collections.shuffle(nodes, random);
+		int[] locations = new int[colours.size()];
+		int[][] tickets = new int[colours.size()][];
+		for (int i = 0; i < colours.size(); i++) {
+			locations[i] = nodes.get(i).value();
+			tickets[i] = i == 0
+					? new int[] { random.nextInt(7), random.nextInt(6), random.nextInt(5),
+							random.nextInt(4), random.nextInt(7) }
+					: new int[] { random.nextInt(13), random.nextInt(10), random.nextInt(6), 0,
+							0 };
+		}
+		return new Scenario(rounds, graph, colours, locations, tickets);
+	}
+
+	/**
+	 * Creates a standard game: the rounds, tickets and start locations of
+	 * {@link StandardGame}, with the start locations picked by the seed as
+	 * the game setup does
+	 *
+	 * @param standard the standard graph; not null
+	 * @param detectives the number of detectives, 1 to 5
+	 * @param seed the seed of the start locations
+	 * @return the scenario; never null
+	 */
+	public static Scenario standard(Graph<Integer, Transport> standard, int detectives,
+			int seed) {
+		Objects.requireNonNull(standard);
+		if (detectives < 1 || detectives > DETECTIVES.size())
+			throw new IllegalArgumentException("detectives must be 1 to " + DETECTIVES.size()
+					+ ", got " + detectives);
+		List<Colour> colours = new ArrayList<>(DETECTIVES.subList(0, detectives));
+		colours.add(0, Colour.BLACK);
+		List<Integer> detectiveLocations = StandardGame.generateDetectiveLocations(seed,
+				detectives);
+		int[] locations = new int[colours.size()];
+		int[][] tickets = new int[colours.size()][];
+		locations[0] = StandardGame.generateMrXLocation(seed);
+		tickets[0] = counts(StandardGame.generateMrXTickets());
+		for (int i = 1; i < colours.size(); i++) {
+			locations[i] = detectiveLocations.get(i - 1);
+			tickets[i] = counts(StandardGame.generateDetectiveTickets());
+		}
+		return new Scenario(StandardGame.ROUNDS, standard, colours, locations, tickets);
+	}
+
+	private static int[] counts(Map<Ticket, Integer> tickets) {
+		int[] counts = new int[TICKETS.length];
+		for (Ticket ticket : TICKETS)
+			counts[ticket.ordinal()] = tickets.get(ticket);
+		return counts;
+	}
+
+	// a random spanning tree of taxi edges plus random extra edges
+	private static Graph<Integer, Transport> randomGraph(Random random, int size) {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		List<Node<Integer>> nodes = new ArrayList<>();
+		for (int i = 1; i <= size; i++) {
+			Node<Integer> node = new Node<>(i);
+			graph.addNode(node);
+			nodes.add(node);
+		}
+		for (int i = 1; i < size; i++)
+			graph.addEdge(new Edge<>(nodes.get(random.nextInt(i)), nodes.get(i), Transport.TAXI));
+		for (int i = random.nextInt(size * 2 + 1); i > 0; i--) {
+			Node<Integer> source = nodes.get(random.nextInt(size));
+			Node<Integer> destination = nodes.get(random.nextInt(size));
+			if (source.equals(destination)) continue;
+			graph.addEdge(new Edge<>(source, destination,
+					TRANSPORTS[random.nextInt(TRANSPORTS.length)]));
+		}
+		return graph;
+	}
+
+	/**
+	 * @return the reveal rounds; never null
+	 */
+	public List<Boolean> rounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the graph; never null
+	 */
+	public Graph<Integer, Transport> graph() {
+		return graph;
+	}
+
+	/**
+	 * @return the players, Mr X first; never null
+	 */
+	public List<Colour> colours() {
+		return colours;
+	}
+
+	/**
+	 * @param player the index of the player in {@link #colours()}
+	 * @return the start location of the player
+	 */
+	public int location(int player) {
+		return locations[player];
+	}
+
+	/**
+	 * @param player the index of the player in {@link #colours()}
+	 * @param ticket the ticket; not null
+	 * @return the number of tickets the player starts with
+	 */
+	public int tickets(int player, Ticket ticket) {
+		return tickets[player][ticket.ordinal()];
+	}
+
+	/**
+	 * Creates the game
+	 *
+	 * @param factory the factory; not null
+	 * @param players the player of each colour; not null
+	 * @return the game; never null
+	 */
+	public ScotlandYardGame create(ScotlandYardGameFactory factory,
+			Function<Colour, Player> players) {
+		List<PlayerConfiguration> configurations = new ArrayList<>();
+		for (int i = 0; i < colours.size(); i++) {
+			Map<Ticket, Integer> map = new EnumMap<>(Ticket.class);
+			for (Ticket ticket : TICKETS)
+				map.put(ticket, tickets[i][ticket.ordinal()]);
+			configurations.add(new PlayerConfiguration.Builder(colours.get(i))
+					.using(Objects.requireNonNull(players.apply(colours.get(i))))
+					.with(map).at(locations[i]).build());
+		}
+		return factory.createGame(rounds, graph, configurations.get(0), configurations.get(1),
+				configurations.subList(2, configurations.size())
+						.toArray(new PlayerConfiguration[0]));
+	}
+
+	/**
+	 * @param size the number of rounds to keep, at least 1
+	 * @return the scenario with only the first rounds; never null
+	 */
+	public Scenario withRounds(int size) {
+		if (size < 1 || size > rounds.size())
+			throw new IllegalArgumentException("size must be 1 to " + rounds.size() + ", got "
+					+ size);
+		return new Scenario(rounds.subList(0, size), graph, colours, locations, tickets);
+	}
+
+	/**
+	 * @param player the index of the detective to remove, at least 1
+	 * @return the scenario without the detective; never null
+	 */
+	public Scenario withoutPlayer(int player) {
+		if (player < 1 || player >= colours.size() || colours.size() == 2)
+			throw new IllegalArgumentException("Cannot remove player " + player + " of "
+					+ colours.size());
+		List<Colour> remaining = new ArrayList<>(colours);
+		remaining.remove(player);
+		int[] newLocations = new int[remaining.size()];
+		int[][] newTickets = new int[remaining.size()][];
+		for (int i = 0, j = 0; i < colours.size(); i++) {
+			if (i == player) continue;
+			newLocations[j] = locations[i];
+			newTickets[j++] = tickets[i];
+		}
+		return new Scenario(rounds, graph, remaining, newLocations, newTickets);
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @param ticket the ticket; not null
+	 * @param count the new count, 0 for detectives' secret and double tickets
+	 * @return the scenario with the player's ticket count changed; never null
+	 */
+	public Scenario withTickets(int player, Ticket ticket, int count) {
+		if (count < 0 || (player > 0 && count > 0
+				&& (ticket == Ticket.SECRET || ticket == Ticket.DOUBLE)))
+			throw new IllegalArgumentException("Invalid count " + count + " of " + ticket
+					+ " for player " + player);
+		int[][] newTickets = tickets.clone();
+		newTickets[player] = tickets[player].clone();
+		newTickets[player][ticket.ordinal()] = count;
+		return new Scenario(rounds, graph, colours, locations, newTickets);
+	}
+
+	/**
+	 * @param edges the edges to keep, nodes without edges that no player
+	 *        starts at are dropped; not null
+	 * @return the scenario on a graph with only the given edges; never null
+	 */
+	public Scenario withEdges(List<Edge<Integer, Transport>> edges) {
+		UndirectedGraph<Integer, Transport> reduced = new UndirectedGraph<>();
+		for (int location : locations)
+			reduced.addNode(new Node<>(location));
+		for (Edge<Integer, Transport> edge : edges) {
+			if (!reduced.containsNode(edge.source().value()))
+				reduced.addNode(new Node<>(edge.source().value()));
+			if (!reduced.containsNode(edge.destination().value()))
+				reduced.addNode(new Node<>(edge.destination().value()));
+			reduced.addEdge(new Edge<>(reduced.getNode(edge.source().value()),
+					reduced.getNode(edge.destination().value()), edge.data()));
+		}
+		return new Scenario(rounds, reduced, colours, locations, tickets);
+	}
+
+	/**
+	 * @return the edges of the graph, one per undirected edge; never null
+	 */
+	public List<Edge<Integer, Transport>> edges() {
+		List<Edge<Integer, Transport>> edges = new ArrayList<>();
+		for (Edge<Integer, Transport> edge : graph.getEdges())
+			if (edge.source().value() <= edge.destination().value()) edges.add(edge);
+		return edges;
+	}
+
+	@Override
+	public String toString() {
+		MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this)
+				.add("rounds", rounds)
+				.add("nodes", graph.size())
+				.add("edges", graph.size() <= 20 ? edges() : edges().size());
+		for (int i = 0; i < colours.size(); i++) {
+			Map<Ticket, Integer> map = new EnumMap<>(Ticket.class);
+			for (Ticket ticket : TICKETS)
+				map.put(ticket, tickets[i][ticket.ordinal()]);
+			helper.add(colours.get(i).toString(), locations[i] + " " + map);
+		}
+		return helper.toString();
+	}
+
+}
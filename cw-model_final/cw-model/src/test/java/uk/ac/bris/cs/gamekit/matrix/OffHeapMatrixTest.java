@@ -0,0 +1,118 @@
+package uk.ac.bris.cs.gamekit.matrix;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link OffHeapMatrix}
+ */
+public class OffHeapMatrixTest {
+
+	// one row fills a whole 1MiB tile
+	private static final int TILE_COLUMNS = 1 << 18;
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testUntouchedCellsHaveDefaultValue() throws IOException {
+		try (OffHeapMatrix matrix = new OffHeapMatrix(3, 4, 7)) {
+			assertThat(matrix.getInt(2, 3)).isEqualTo(7);
+			assertThat(matrix.row(1)).containsExactly(7, 7, 7, 7);
+			assertThat(matrix.isResident(1)).isFalse();
+		}
+	}
+
+	@Test
+	public void testCellsAcrossTiles() throws IOException {
+		try (OffHeapMatrix matrix = new OffHeapMatrix(4, TILE_COLUMNS, -1)) {
+			matrix.putInt(0, 0, 1);
+			matrix.putInt(3, TILE_COLUMNS - 1, 2);
+			assertThat(matrix.isResident(0)).isTrue();
+			assertThat(matrix.isResident(1)).isFalse();
+			assertThat(matrix.isResident(3)).isTrue();
+			assertThat(matrix.getInt(0, 0)).isEqualTo(1);
+			assertThat(matrix.getInt(3, TILE_COLUMNS - 1)).isEqualTo(2);
+			assertThat(matrix.getInt(1, 0)).isEqualTo(-1);
+			assertThat(matrix.getInt(3, 0)).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	public void testRowsColumnsAndDiagonals() throws IOException {
+		try (OffHeapMatrix matrix = new OffHeapMatrix(3, 3, 0)) {
+			matrix.row(0, asList(1, 2, 3));
+			matrix.column(2, asList(4, 5, 6));
+			matrix.put(1, 1, 9);
+			assertThat(matrix.row(0)).containsExactly(1, 2, 4);
+			assertThat(matrix.column(2)).containsExactly(4, 5, 6);
+			assertThat(matrix.mainDiagonal()).containsExactly(1, 9, 6);
+			assertThat(matrix.antiDiagonal()).containsExactly(4, 9, 0);
+			assertThat(matrix.asList()).containsExactly(1, 2, 4, 0, 9, 5, 0, 0, 6);
+		}
+	}
+
+	@Test
+	public void testOutOfBoundsShouldThrow() throws IOException {
+		try (OffHeapMatrix matrix = new OffHeapMatrix(2, 3, 0)) {
+			assertThatThrownBy(() -> matrix.getInt(2, 0))
+					.isInstanceOf(IndexOutOfBoundsException.class);
+			assertThatThrownBy(() -> matrix.putInt(0, 3, 1))
+					.isInstanceOf(IndexOutOfBoundsException.class);
+			assertThatThrownBy(() -> matrix.getInt(-1, 0))
+					.isInstanceOf(IndexOutOfBoundsException.class);
+		}
+	}
+
+	@Test
+	public void testMoreCellsThanAnIntCanCount() throws IOException {
+		try (OffHeapMatrix matrix = new OffHeapMatrix(100_000, 100_000, 3)) {
+			assertThat(matrix.cellCount()).isEqualTo(10_000_000_000L);
+			assertThatThrownBy(matrix::count).isInstanceOf(ArithmeticException.class);
+			assertThatThrownBy(matrix::asList).isInstanceOf(ArithmeticException.class);
+			matrix.putInt(99_999, 99_999, 5);
+			assertThat(matrix.getInt(99_999, 99_999)).isEqualTo(5);
+			assertThat(matrix.getInt(0, 0)).isEqualTo(3);
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedTileIsEvicted() throws IOException {
+		Path file = folder.newFile().toPath();
+		try (OffHeapMatrix matrix = new OffHeapMatrix(file, 3, TILE_COLUMNS, 2)) {
+			matrix.putInt(0, 0, 10);
+			matrix.putInt(1, 0, 11);
+			// a read makes row 0 the most recently used
+			assertThat(matrix.getInt(0, 0)).isEqualTo(10);
+			matrix.putInt(2, 0, 12);
+			assertThat(matrix.isResident(0)).isTrue();
+			assertThat(matrix.isResident(1)).isFalse();
+			assertThat(matrix.isResident(2)).isTrue();
+			// evicted tiles are written back and mapped again when read
+			assertThat(matrix.getInt(1, 0)).isEqualTo(11);
+			assertThat(matrix.isResident(0)).isFalse();
+		}
+	}
+
+	@Test
+	public void testFileBackedMatrixCanBeReopened() throws IOException {
+		Path file = folder.newFile().toPath();
+		try (OffHeapMatrix matrix = new OffHeapMatrix(file, 4, TILE_COLUMNS, 1)) {
+			for (int row = 0; row < 4; row++)
+				matrix.putInt(row, row, row + 1);
+			assertThat(matrix.getInt(1, 0)).isEqualTo(0);
+		}
+		assertThat(file.toFile().length()).isEqualTo(4L * TILE_COLUMNS * Integer.BYTES);
+		try (OffHeapMatrix matrix = new OffHeapMatrix(file, 4, TILE_COLUMNS, 2)) {
+			assertThat(matrix.mainDiagonal()).containsExactly(1, 2, 3, 4);
+		}
+	}
+
+}
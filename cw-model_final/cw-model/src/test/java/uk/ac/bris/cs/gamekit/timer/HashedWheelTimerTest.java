@@ -0,0 +1,140 @@
+package uk.ac.bris.cs.gamekit.timer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link HashedWheelTimer}
+ */
+public class HashedWheelTimerTest {
+
+	// a short tick and a small wheel so that delays span several turns
+	private final HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+	private final List<String> ran = new CopyOnWriteArrayList<>();
+	private final long start = System.nanoTime();
+
+	@After
+	public void tearDown() {
+		timer.shutdown();
+	}
+
+	private ScheduledFuture<?> schedule(Timer timer, long millis, String name) {
+		return timer.schedule(millis, TimeUnit.MILLISECONDS, () -> ran.add(name));
+	}
+
+	private static void await(ScheduledFuture<?> future)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		future.get(5, TimeUnit.SECONDS);
+	}
+
+	private long elapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	@Test
+	public void testTasksRunInDeadlineOrder() throws Exception {
+		ScheduledFuture<?> last = schedule(timer, 60, "c");
+		schedule(timer, 20, "a");
+		schedule(timer, 40, "b");
+		await(last);
+		assertThat(ran).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	public void testDelaysLongerThanOneTurnWaitForTheirRounds() throws Exception {
+		// 8 buckets of 1ms, so these land in the same bucket turns apart
+		CountDownLatch fired = new CountDownLatch(1);
+		long[] firedAt = new long[1];
+		ScheduledFuture<?> far = timer.schedule(43, TimeUnit.MILLISECONDS, () -> {
+			firedAt[0] = elapsedMillis();
+			fired.countDown();
+		});
+		ScheduledFuture<?> near = schedule(timer, 3, "near");
+		await(near);
+		assertThat(far.isDone()).isFalse();
+		assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(firedAt[0]).isGreaterThanOrEqualTo(43);
+		assertThat(far.isDone()).isTrue();
+	}
+
+	@Test
+	public void testCancelBeforeFiring() throws Exception {
+		ScheduledFuture<?> cancelled = schedule(timer, 20, "cancelled");
+		ScheduledFuture<?> after = schedule(timer, 40, "after");
+		assertThat(cancelled.cancel(false)).isTrue();
+		assertThat(cancelled.isCancelled()).isTrue();
+		await(after);
+		assertThat(ran).containsExactly("after");
+	}
+
+	@Test
+	public void testCancelAfterFiringHasNoEffect() throws Exception {
+		ScheduledFuture<?> fired = schedule(timer, 5, "fired");
+		await(fired);
+		assertThat(fired.cancel(false)).isFalse();
+		assertThat(fired.isCancelled()).isFalse();
+		assertThat(ran).containsExactly("fired");
+	}
+
+	@Test
+	public void testStopAllOnGroupLeavesOtherGroupsAlone() throws Exception {
+		Timer first = timer.newGroup();
+		Timer second = timer.newGroup();
+		ScheduledFuture<?> stopped = schedule(first, 20, "first");
+		ScheduledFuture<?> kept = schedule(second, 30, "second");
+		ScheduledFuture<?> root = schedule(timer, 30, "root");
+		first.stopAll();
+		assertThat(stopped.isCancelled()).isTrue();
+		await(kept);
+		await(root);
+		assertThat(ran).containsExactlyInAnyOrder("second", "root");
+	}
+
+	@Test
+	public void testStopAllOnTimerStopsEveryGroup() throws Exception {
+		ScheduledFuture<?> grouped = schedule(timer.newGroup(), 20, "grouped");
+		ScheduledFuture<?> root = schedule(timer, 20, "root");
+		timer.stopAll();
+		assertThat(grouped.isCancelled()).isTrue();
+		assertThat(root.isCancelled()).isTrue();
+		// the timer is still usable
+		await(schedule(timer, 30, "later"));
+		assertThat(ran).containsExactly("later");
+	}
+
+	@Test
+	public void testShutdownCancelsTasksAndRejectsNewOnes() throws Exception {
+		Timer group = timer.newGroup();
+		ScheduledFuture<?> pending = schedule(group, 20, "pending");
+		timer.shutdown();
+		assertThat(pending.isCancelled()).isTrue();
+		assertThatThrownBy(() -> schedule(timer, 10, "late"))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> schedule(group, 10, "late"))
+				.isInstanceOf(IllegalStateException.class);
+		TimeUnit.MILLISECONDS.sleep(40);
+		assertThat(ran).isEmpty();
+	}
+
+	@Test
+	public void testRejectsInvalidArguments() {
+		assertThatThrownBy(() -> new HashedWheelTimer(0, TimeUnit.MILLISECONDS, 8))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> timer.schedule(1, TimeUnit.MILLISECONDS, null))
+				.isInstanceOf(NullPointerException.class);
+	}
+
+}
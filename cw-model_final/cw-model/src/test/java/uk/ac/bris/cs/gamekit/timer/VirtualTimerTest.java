@@ -0,0 +1,134 @@
+package uk.ac.bris.cs.gamekit.timer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link VirtualTimer}
+ */
+public class VirtualTimerTest {
+
+	private final VirtualTimer timer = new VirtualTimer();
+	private final List<String> ran = new ArrayList<>();
+
+	private ScheduledFuture<?> schedule(long millis, String name) {
+		return timer.schedule(millis, TimeUnit.MILLISECONDS, () -> ran.add(name));
+	}
+
+	@Test
+	public void testTasksRunInDeadlineThenSchedulingOrder() {
+		schedule(30, "c");
+		schedule(10, "a");
+		schedule(20, "b1");
+		schedule(20, "b2");
+		assertThat(timer.advance(30, TimeUnit.MILLISECONDS)).isEqualTo(4);
+		assertThat(ran).containsExactly("a", "b1", "b2", "c");
+	}
+
+	@Test
+	public void testAdvanceOnlyRunsDueTasks() {
+		schedule(10, "a");
+		schedule(20, "b");
+		assertThat(timer.advance(15, TimeUnit.MILLISECONDS)).isEqualTo(1);
+		assertThat(ran).containsExactly("a");
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(15);
+		assertThat(timer.pending()).isEqualTo(1);
+		assertThat(timer.advance(5, TimeUnit.MILLISECONDS)).isEqualTo(1);
+		assertThat(ran).containsExactly("a", "b");
+	}
+
+	@Test
+	public void testAdvanceToNextJumpsToEarliestDeadline() {
+		schedule(50, "b");
+		schedule(20, "a1");
+		schedule(20, "a2");
+		assertThat(timer.advanceToNext()).isTrue();
+		assertThat(ran).containsExactly("a1", "a2");
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(20);
+		assertThat(timer.advanceToNext()).isTrue();
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(50);
+		assertThat(timer.advanceToNext()).isFalse();
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(50);
+	}
+
+	@Test
+	public void testAdvanceToNextWithinLimit() {
+		schedule(20, "a");
+		assertThat(timer.advanceToNext(19, TimeUnit.MILLISECONDS)).isFalse();
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isZero();
+		assertThat(timer.advanceToNext(20, TimeUnit.MILLISECONDS)).isTrue();
+		assertThat(ran).containsExactly("a");
+		assertThatThrownBy(() -> timer.advanceToNext(-1, TimeUnit.MILLISECONDS))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testCancelledTasksDoNotRun() {
+		ScheduledFuture<?> a = schedule(10, "a");
+		schedule(20, "b");
+		assertThat(a.cancel(false)).isTrue();
+		assertThat(timer.pending()).isEqualTo(1);
+		// the cancelled deadline is skipped, not jumped to
+		assertThat(timer.advanceToNext()).isTrue();
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(20);
+		assertThat(ran).containsExactly("b");
+		assertThat(a.isDone()).isTrue();
+	}
+
+	@Test
+	public void testCancelAfterRunHasNoEffect() {
+		ScheduledFuture<?> a = schedule(10, "a");
+		timer.advance(10, TimeUnit.MILLISECONDS);
+		assertThat(a.cancel(false)).isFalse();
+		assertThat(a.isCancelled()).isFalse();
+		assertThat(ran).containsExactly("a");
+	}
+
+	@Test
+	public void testStopAllCancelsEverything() {
+		ScheduledFuture<?> a = schedule(10, "a");
+		schedule(20, "b");
+		timer.stopAll();
+		assertThat(a.isCancelled()).isTrue();
+		assertThat(timer.pending()).isZero();
+		assertThat(timer.advanceToNext()).isFalse();
+		assertThat(ran).isEmpty();
+	}
+
+	@Test
+	public void testTasksMayScheduleTasks() {
+		timer.schedule(10, TimeUnit.MILLISECONDS, () -> {
+			ran.add("a at " + timer.now(TimeUnit.MILLISECONDS));
+			timer.schedule(5, TimeUnit.MILLISECONDS,
+					() -> ran.add("b at " + timer.now(TimeUnit.MILLISECONDS)));
+			timer.schedule(50, TimeUnit.MILLISECONDS, () -> ran.add("c"));
+		});
+		// a task scheduled by a task runs in the same advance if it is due
+		assertThat(timer.advance(20, TimeUnit.MILLISECONDS)).isEqualTo(2);
+		assertThat(ran).containsExactly("a at 10", "b at 15");
+		assertThat(timer.pending()).isEqualTo(1);
+		assertThat(timer.now(TimeUnit.MILLISECONDS)).isEqualTo(20);
+	}
+
+	@Test
+	public void testDelayFollowsTheClock() {
+		ScheduledFuture<?> a = schedule(30, "a");
+		timer.advance(10, TimeUnit.MILLISECONDS);
+		assertThat(a.getDelay(TimeUnit.MILLISECONDS)).isEqualTo(20);
+	}
+
+	@Test
+	public void testNegativeDelayRunsOnNextAdvance() {
+		schedule(-5, "a");
+		assertThat(timer.advance(0, TimeUnit.MILLISECONDS)).isEqualTo(1);
+		assertThat(ran).containsExactly("a");
+	}
+
+}
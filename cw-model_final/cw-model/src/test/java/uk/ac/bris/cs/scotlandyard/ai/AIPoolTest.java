@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.Fallback;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.VisualiserSurface;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI.VisualiserType;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.FastScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AIPool}
+ */
+public class AIPoolTest {
+
+	private static volatile boolean spinning = true;
+
+	/**
+	 * Spins until the test is over, ignoring interrupts
+	 */
+	public static final class SpinningAI implements PlayerFactory {
+
+		@Override
+		public Player createPlayer(Colour colour) {
+			return (view, location, moves, callback) -> {
+				while (spinning) {
+					// busy, never looks at the interrupt flag
+				}
+			};
+		}
+	}
+
+	private AIPool<Colour> pool;
+
+	@After
+	public void tearDown() {
+		spinning = false;
+		if (pool != null) pool.terminate();
+	}
+
+	@Test
+	public void testAIThatIgnoresInterruptsStillGetsFallbackMove() throws Exception {
+		pool = new AIPool<>(new VisualiserSurface() {
+			@Override
+			public Pane onCreate(AI ai) {
+				return null;
+			}
+
+			@Override
+			public void onDestroy() {}
+		}, Throwable::printStackTrace, Duration.ofMillis(200), Fallback.FIRST);
+		pool.addToGroup(Colour.BLACK, Colour.BLACK,
+				AI.fromName("Spinning", VisualiserType.values()[0], SpinningAI.class));
+		ScotlandYardGame game = standardGame();
+		pool.initialise(null, game);
+		Player player = pool.createPlayer(Colour.BLACK).orElseThrow(AssertionError::new);
+		Set<Move> moves = Collections.singleton(new TicketMove(Colour.BLACK, Ticket.TAXI, 1));
+
+		for (int turn = 0; turn < 2; turn++) {
+			CompletableFuture<Move> picked = new CompletableFuture<>();
+			CompletableFuture<String> thread = new CompletableFuture<>();
+			player.makeMove(game, game.getPlayerLocation(Colour.BLACK).orElse(0), moves, move -> {
+				thread.complete(Thread.currentThread().getName());
+				picked.complete(move);
+			});
+			// the second turn is queued behind the first, still spinning, move
+			assertThat(picked.get(5, TimeUnit.SECONDS)).isEqualTo(moves.iterator().next());
+			assertThat(thread.get()).startsWith("AI-fallback");
+		}
+	}
+
+	private static ScotlandYardGame standardGame() throws IOException {
+		Player idle = (view, location, moves, callback) -> {};
+		return new FastScotlandYardModel(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				new PlayerConfiguration.Builder(Colour.BLACK).using(idle)
+						.with(StandardGame.generateMrXTickets()).at(45).build(),
+				new PlayerConfiguration.Builder(Colour.RED).using(idle)
+						.with(StandardGame.generateDetectiveTickets()).at(13).build());
+	}
+
+}
@@ -0,0 +1,96 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AnytimePlayer}
+ */
+public class AnytimePlayerTest {
+
+	private static final Duration BUDGET = Duration.ofMillis(100);
+
+	private final Set<Move> moves = new LinkedHashSet<>(Arrays.asList(
+			new TicketMove(Colour.BLACK, Ticket.TAXI, 2),
+			new TicketMove(Colour.BLACK, Ticket.TAXI, 3)));
+	private final List<Move> picked = new ArrayList<>();
+	private final List<Thread> threads = new ArrayList<>();
+
+	private void makeMove(AnytimePlayer player) {
+		player.makeMove(null, 1, moves, move -> {
+			synchronized (picked) {
+				picked.add(move);
+				threads.add(Thread.currentThread());
+			}
+		});
+	}
+
+	@Test
+	public void testSearchStopsWhenBudgetExpires() {
+		// prefers the last move, every iteration runs until told to stop
+		AnytimePlayer player = new AnytimePlayer(BUDGET) {
+			@Override
+			protected void search(ScotlandYardView view, int location, Set<Move> moves,
+					Search search, int depth) {
+				if (depth == 1) {
+					search.offer(new TicketMove(Colour.BLACK, Ticket.TAXI, 3), 1);
+					return;
+				}
+				while (!search.expired()) Thread.yield();
+			}
+		};
+		makeMove(player);
+		assertThat(picked).containsExactly(new TicketMove(Colour.BLACK, Ticket.TAXI, 3));
+		assertThat(threads).containsExactly(Thread.currentThread());
+	}
+
+	@Test
+	public void testExpiryDoesNotCommitForTheSearch() throws InterruptedException {
+		// ignores the budget for three times as long
+		long ignoreNanos = 3 * BUDGET.toNanos();
+		AnytimePlayer player = new AnytimePlayer(BUDGET) {
+			@Override
+			protected void search(ScotlandYardView view, int location, Set<Move> moves,
+					Search search, int depth) {
+				long start = System.nanoTime();
+				while (System.nanoTime() - start < ignoreNanos) Thread.yield();
+				synchronized (picked) {
+					assertThat(picked).isEmpty();
+				}
+			}
+		};
+		makeMove(player);
+		assertThat(picked).hasSize(1);
+		assertThat(threads).containsExactly(Thread.currentThread());
+	}
+
+	@Test
+	public void testStopEndsSearchEarly() {
+		AnytimePlayer player = new AnytimePlayer(Duration.ofMinutes(1)) {
+			@Override
+			protected void search(ScotlandYardView view, int location, Set<Move> moves,
+					Search search, int depth) {
+				search.offer(new TicketMove(Colour.BLACK, Ticket.TAXI, 2), depth);
+				if (depth == 3) search.stop();
+			}
+		};
+		makeMove(player);
+		assertThat(picked).containsExactly(new TicketMove(Colour.BLACK, Ticket.TAXI, 2));
+		assertThat(player.lastStats().depth()).isEqualTo(3);
+	}
+
+}
@@ -0,0 +1,76 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.DEFAULT_REVEAL;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.doNothingMrX;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.doNothingRed;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.ofRounds;
+
+/**
+ * Tests for {@link GraphAnalytics}
+ */
+public class GraphAnalyticsTest {
+
+	private static Graph<Integer, Transport> graph;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		graph = ScotlandYardGraphReader.fromLines(Files.readAllLines(Paths.get(
+				GraphAnalyticsTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+	@Test
+	public void testViewsOfOneGameShareAnalytics() {
+		ScotlandYardModel model = new ScotlandYardModel(ofRounds(3, DEFAULT_REVEAL),
+				new ImmutableGraph<>(graph), doNothingMrX(), doNothingRed());
+		GraphAnalytics analytics = GraphAnalytics.of(model.getGraph());
+		assertThat(GraphAnalytics.of(model.getGraph())).isSameAs(analytics);
+		assertThat(GraphAnalytics.of(ViewSnapshot.of(model).getGraph())).isSameAs(analytics);
+		assertThat(GraphAnalytics.of(ViewSnapshot.of(model).getGraph())).isSameAs(analytics);
+	}
+
+	@Test
+	public void testCopiesOfAGraphShareAnalytics() {
+		GraphAnalytics analytics = GraphAnalytics.of(graph);
+		assertThat(GraphAnalytics.of(new ImmutableGraph<>(graph))).isSameAs(analytics);
+		assertThat(GraphAnalytics.of(new UndirectedGraph<>(graph))).isSameAs(analytics);
+	}
+
+	@Test
+	public void testDifferentGraphsGetDifferentAnalytics() {
+		UndirectedGraph<Integer, Transport> changed = new UndirectedGraph<>(graph);
+		changed.addEdge(new Edge<>(changed.getNode(1), changed.getNode(199), Transport.FERRY));
+		assertThat(GraphAnalytics.of(changed)).isNotSameAs(GraphAnalytics.of(graph));
+		assertThat(GraphAnalytics.of(changed).degree(1))
+				.isEqualTo(GraphAnalytics.of(graph).degree(1) + 1);
+	}
+
+	@Test
+	public void testDistancesAndNeighbours() {
+		UndirectedGraph<Integer, Transport> line = new UndirectedGraph<>();
+		for (int i = 1; i <= 3; i++) line.addNode(new Node<>(i));
+		line.addEdge(new Edge<>(line.getNode(1), line.getNode(2), Transport.TAXI));
+		line.addEdge(new Edge<>(line.getNode(2), line.getNode(3), Transport.BUS));
+		GraphAnalytics analytics = GraphAnalytics.of(line);
+		assertThat(analytics.distance(1, 3)).isEqualTo(2);
+		assertThat(analytics.neighbours(2, Transport.BUS)).containsExactly(3);
+		assertThat(analytics.degree(2)).isEqualTo(2);
+	}
+
+}
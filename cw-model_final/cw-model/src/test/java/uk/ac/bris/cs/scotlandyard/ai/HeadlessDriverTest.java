@@ -0,0 +1,137 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.timer.VirtualTimer;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool.Fallback;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.DEFAULT_REVEAL;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.ofRounds;
+
+/**
+ * Tests for {@link HeadlessDriver}
+ */
+public class HeadlessDriverTest {
+
+	private static final Duration DEADLINE = Duration.ofMillis(500);
+
+	private static Graph<Integer, Transport> graph;
+
+	private final ExecutorService async = Executors.newSingleThreadExecutor();
+	private final VirtualTimer clock = new VirtualTimer();
+	private final HeadlessDriver driver = new HeadlessDriver(clock, DEADLINE, Fallback.FIRST);
+	// the moves the model made, including both halves of double moves
+	private final List<Move> played = new ArrayList<>();
+	// the moves the players picked themselves
+	private final List<Move> picked = new ArrayList<>();
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		graph = ScotlandYardGraphReader.fromLines(Files.readAllLines(Paths.get(
+				HeadlessDriverTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+	@After
+	public void tearDown() {
+		async.shutdownNow();
+	}
+
+	// picks the last single move, never the fallback's first, so every game
+	// has four moves
+	private Move last(Set<Move> moves) {
+		Move last = null;
+		for (Move move : moves)
+			if (move instanceof TicketMove) last = move;
+		synchronized (picked) {
+			picked.add(last);
+		}
+		return last;
+	}
+
+	private void play(Player player) {
+		PlayerConfiguration mrX = new PlayerConfiguration.Builder(Colour.BLACK)
+				.using(driver.defer(player)).with(mrXTickets()).at(45).build();
+		PlayerConfiguration red = new PlayerConfiguration.Builder(Colour.RED)
+				.using(driver.defer(player)).with(detectiveTickets()).at(13).build();
+		ScotlandYardModel game = new ScotlandYardModel(ofRounds(2, DEFAULT_REVEAL), graph,
+				mrX, red);
+		game.registerSpectator(new Spectator() {
+			@Override public void onMoveMade(ScotlandYardView view, Move move) {
+				played.add(move);
+			}
+		});
+		driver.play(game);
+	}
+
+	@Test
+	public void testPlayerCallingBackOnItsOwnThreadIsWaitedFor() {
+		play((view, location, moves, callback) -> async.execute(() -> {
+			sleep(50);
+			callback.accept(last(moves));
+		}));
+		assertThat(picked).hasSize(4);
+		assertThat(detectives(played)).isEqualTo(detectives(picked));
+		// no deadline passed on the clock
+		assertThat(clock.now(TimeUnit.MILLISECONDS)).isZero();
+	}
+
+	@Test
+	public void testTasksBeforeTheDeadlineRunWithoutWaiting() {
+		long start = System.nanoTime();
+		play((view, location, moves, callback) -> clock.schedule(100, TimeUnit.MILLISECONDS,
+				() -> callback.accept(last(moves))));
+		assertThat(picked).hasSize(4);
+		assertThat(detectives(played)).isEqualTo(detectives(picked));
+		assertThat(clock.now(TimeUnit.MILLISECONDS)).isEqualTo(400);
+		assertThat(System.nanoTime() - start).isLessThan(DEADLINE.toNanos());
+	}
+
+	@Test
+	public void testStalledPlayerGetsFallbackAtDeadline() {
+		play((view, location, moves, callback) -> {});
+		assertThat(picked).isEmpty();
+		assertThat(played).isNotEmpty();
+		assertThat(clock.now(TimeUnit.MILLISECONDS)).isEqualTo(4 * DEADLINE.toMillis());
+	}
+
+	// Mr X's moves are reported to spectators with his location hidden
+	private static List<Move> detectives(List<Move> moves) {
+		return moves.stream().filter(m -> m.colour().isDetective()).collect(toList());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
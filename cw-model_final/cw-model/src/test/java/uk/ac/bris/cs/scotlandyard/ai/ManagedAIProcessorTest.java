@@ -0,0 +1,142 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for {@link ManagedAIProcessor} and how {@link AI} loads its index
+ */
+public class ManagedAIProcessorTest {
+
+	private static final String VALID = "package test;\n"
+			+ "import uk.ac.bris.cs.scotlandyard.ai.*;\n"
+			+ "import uk.ac.bris.cs.scotlandyard.model.*;\n"
+			+ "@ManagedAI(\"%s\")\n"
+			+ "public class %s implements PlayerFactory {\n"
+			+ "\t@Override public Player createPlayer(Colour colour) { return null; }\n"
+			+ "}\n";
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+	@Test
+	public void testIndexListsAnnotatedClasses() throws IOException {
+		Path classes = compile(true, source("Indexed", String.format(VALID, "Indexed", "Indexed")),
+				source("Plain", "package test; public class Plain {}"));
+		assertThat(Files.readAllLines(classes.resolve(ManagedAIProcessor.INDEX)))
+				.containsExactly("test.Indexed");
+	}
+
+	@Test
+	public void testInvalidClassesAreCompileErrors() throws IOException {
+		assertThat(compile(true, source("Broken", "package test;\n"
+				+ "import uk.ac.bris.cs.scotlandyard.ai.*;\n"
+				+ "public class Broken {\n"
+				+ "\t@ManagedAI(\"Inner\") public class Inner implements PlayerFactory {\n"
+				+ "\t\t@Override public uk.ac.bris.cs.scotlandyard.model.Player createPlayer(\n"
+				+ "\t\t\t\tuk.ac.bris.cs.scotlandyard.model.Colour colour) { return null; }\n"
+				+ "\t}\n"
+				+ "\t@ManagedAI(\"Not a factory\") public static class NotAFactory {}\n"
+				+ "}\n"))).isNull();
+		assertThat(errors()).anyMatch(m -> m.contains("must be top-level or static"))
+				.anyMatch(m -> m.contains("must implement " + ManagedAIProcessor.PLAYER_FACTORY));
+	}
+
+	@Test
+	public void testLoadReadsTheIndex() throws IOException {
+		Path classes = compile(true, source("Indexed", String.format(VALID, "Indexed", "Indexed")));
+		try (URLClassLoader loader = loader(classes)) {
+			List<AI> ais = AI.load(loader, false);
+			assertThat(names(ais)).contains("Indexed");
+			AI indexed = ais.get(names(ais).indexOf("Indexed"));
+			assertThat(indexed.instantiate().getClass().getName()).isEqualTo("test.Indexed");
+		}
+	}
+
+	@Test
+	public void testScanAddsClassesWithoutIndex() throws IOException {
+		Path indexed = compile(true, source("Indexed", String.format(VALID, "Indexed", "Indexed")));
+		Path unindexed = compile(false,
+				source("Unindexed", String.format(VALID, "Unindexed", "Unindexed")));
+		assertThat(Files.exists(unindexed.resolve(ManagedAIProcessor.INDEX))).isFalse();
+		try (URLClassLoader loader = loader(indexed, unindexed)) {
+			assertThat(names(AI.load(loader, false))).contains("Indexed")
+					.doesNotContain("Unindexed");
+			List<String> scanned = names(AI.load(loader, true));
+			assertThat(scanned).contains("Indexed", "Unindexed");
+			// indexed classes are not added twice
+			assertThat(scanned).doesNotHaveDuplicates();
+		}
+	}
+
+	private Path source(String name, String content) throws IOException {
+		File directory = new File(folder.getRoot(), "src");
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("mkdirs");
+		Path source = directory.toPath().resolve(name + ".java");
+		Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+		return source;
+	}
+
+	// returns the class output or null if compilation failed
+	private Path compile(boolean process, Path... sources) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue("needs a JDK", compiler != null);
+		Path output = folder.newFolder().toPath();
+		List<String> options = new ArrayList<>(Arrays.asList("-d", output.toString(),
+				"-cp", System.getProperty("java.class.path")));
+		if (process) options.addAll(Arrays.asList("-processor",
+				ManagedAIProcessor.class.getName()));
+		else options.add("-proc:none");
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics,
+				Locale.ROOT, StandardCharsets.UTF_8)) {
+			Iterable<? extends JavaFileObject> units = files.getJavaFileObjects(
+					Arrays.stream(sources).map(Path::toFile).toArray(File[]::new));
+			boolean compiled = compiler.getTask(null, files, diagnostics, options, null, units)
+					.call();
+			return compiled ? output : null;
+		}
+	}
+
+	private List<String> errors() {
+		return diagnostics.getDiagnostics().stream()
+				.filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+				.map(d -> d.getMessage(Locale.ROOT)).collect(toList());
+	}
+
+	private static URLClassLoader loader(Path... classes) throws IOException {
+		URL[] urls = new URL[classes.length];
+		for (int i = 0; i < classes.length; i++)
+			urls[i] = classes[i].toUri().toURL();
+		return new URLClassLoader(urls, ManagedAIProcessorTest.class.getClassLoader());
+	}
+
+	private static List<String> names(List<AI> ais) {
+		return ais.stream().map(AI::getName).collect(toList());
+	}
+
+}
@@ -0,0 +1,56 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.UNDERGROUND;
+
+/**
+ * Tests for {@link MoveCodec}
+ */
+public class MoveCodecTest {
+
+	private static Move roundTrip(Move move) {
+		return MoveCodec.decode(move.colour(), MoveCodec.encode(move));
+	}
+
+	@Test
+	public void testMovesRoundTrip() {
+		Move ticket = new TicketMove(RED, UNDERGROUND, 199);
+		Move doubleMove = new DoubleMove(BLACK, SECRET, 4095, TAXI, 1);
+		Move pass = new PassMove(RED);
+		assertThat(roundTrip(ticket)).isEqualTo(ticket);
+		assertThat(roundTrip(doubleMove)).isEqualTo(doubleMove);
+		assertThat(roundTrip(pass)).isEqualTo(pass);
+	}
+
+	@Test
+	public void testLayoutIsStable() {
+		// stored in opening books and self-play data
+		assertThat(MoveCodec.encode(new TicketMove(BLACK, BUS, 13)))
+				.isEqualTo(13 | BUS.ordinal() << 12);
+		assertThat(MoveCodec.encode(new DoubleMove(BLACK, TAXI, 1, BUS, 2)))
+				.isEqualTo(1 | (2 | BUS.ordinal() << 12) << 15 | 1 << 30);
+		assertThat(MoveCodec.encode(new PassMove(RED))).isEqualTo(1 << 31);
+	}
+
+	@Test
+	public void testLocationsThatDoNotFitAreRejected() {
+		assertThatThrownBy(() -> MoveCodec.encode(new TicketMove(BLACK, TAXI, 4096)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> MoveCodec.encode(new TicketMove(BLACK, TAXI, -1)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
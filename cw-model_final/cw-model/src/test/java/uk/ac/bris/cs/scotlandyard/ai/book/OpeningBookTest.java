@@ -0,0 +1,152 @@
+package uk.ac.bris.cs.scotlandyard.ai.book;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link OpeningBook} and {@link OpeningBookBuilder}
+ */
+public class OpeningBookTest {
+
+	private static final int MRX = 35;
+	private static final List<Integer> DETECTIVES = asList(26, 29);
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	// Mr X's first turn of a standard game
+	private static final class Turn {
+		ScotlandYardView view;
+		int location;
+		Set<Move> moves;
+	}
+
+	private static Turn firstTurn(int mrX, List<Integer> detectives) throws IOException {
+		Turn turn = new Turn();
+		PlayerConfiguration mrXConfiguration = new PlayerConfiguration.Builder(Colour.BLACK)
+				.using((view, location, moves, callback) -> {
+					turn.view = ViewSnapshot.of(view);
+					turn.location = location;
+					turn.moves = new HashSet<>(moves);
+					callback.accept(moves.iterator().next());
+				}).with(StandardGame.generateMrXTickets()).at(mrX).build();
+		List<PlayerConfiguration> rest = new ArrayList<>();
+		List<Colour> colours = asList(Colour.BLUE, Colour.GREEN);
+		for (int i = 0; i < detectives.size(); i++)
+			rest.add(new PlayerConfiguration.Builder(colours.get(i))
+					.using((view, location, moves, callback) ->
+							callback.accept(moves.iterator().next()))
+					.with(StandardGame.generateDetectiveTickets()).at(detectives.get(i)).build());
+		ScotlandYardModel model = new ScotlandYardModel(StandardGame.ROUNDS,
+				StandardGame.standardGraph(), mrXConfiguration, rest.get(0),
+				rest.subList(1, rest.size()).toArray(new PlayerConfiguration[0]));
+		model.startRotate();
+		return turn;
+	}
+
+	@Test
+	public void testBuiltBookRoundTrips() throws Exception {
+		OpeningBookBuilder builder = new OpeningBookBuilder(Duration.ofMillis(20), 1);
+		builder.build(Collections.singletonList(MRX), Collections.singletonList(DETECTIVES), 1);
+		Path file = folder.newFile().toPath();
+		try (OutputStream output = Files.newOutputStream(file)) {
+			builder.write(output);
+		}
+
+		Turn turn = firstTurn(MRX, DETECTIVES);
+		for (OpeningBook book : asList(OpeningBook.open(file),
+				OpeningBook.read(new ByteArrayInputStream(Files.readAllBytes(file))))) {
+			// only Mr X's first move is recorded in a book of one round
+			assertThat(book.size()).isEqualTo(1);
+			Optional<Move> move = book.lookup(turn.view, turn.location, turn.moves);
+			assertThat(move).isPresent();
+			assertThat(turn.moves).contains(move.get());
+			// a position that was not played
+			Turn other = firstTurn(MRX, asList(26, 34));
+			assertThat(book.lookup(other.view, other.location, other.moves)).isEmpty();
+		}
+	}
+
+	@Test
+	public void testLookupReturnsTheWrittenMove() throws IOException {
+		Turn turn = firstTurn(MRX, DETECTIVES);
+		Move move = turn.moves.iterator().next();
+		SortedMap<Long, Integer> positions = new TreeMap<>();
+		positions.put(OpeningBook.key(turn.view, turn.location), MoveCodec.encode(move));
+		OpeningBook book = read(positions);
+
+		assertThat(book.size()).isEqualTo(1);
+		assertThat(book.lookup(turn.view, turn.location, turn.moves)).contains(move);
+	}
+
+	@Test
+	public void testLookupRejectsMovesThatAreNotValid() throws IOException {
+		Turn turn = firstTurn(MRX, DETECTIVES);
+		Move move = turn.moves.iterator().next();
+		SortedMap<Long, Integer> positions = new TreeMap<>();
+		positions.put(OpeningBook.key(turn.view, turn.location), MoveCodec.encode(move));
+		OpeningBook book = read(positions);
+
+		Set<Move> without = new HashSet<>(turn.moves);
+		without.remove(move);
+		assertThat(book.lookup(turn.view, turn.location, without)).isEmpty();
+	}
+
+	@Test
+	public void testEmptyBookHasNoPositions() throws IOException {
+		Turn turn = firstTurn(MRX, DETECTIVES);
+		assertThat(OpeningBook.empty().size()).isZero();
+		assertThat(OpeningBook.empty().lookup(turn.view, turn.location, turn.moves)).isEmpty();
+		assertThat(read(new TreeMap<>()).size()).isZero();
+	}
+
+	@Test
+	public void testRejectsInputThatIsNotABook() throws IOException {
+		assertThatThrownBy(() -> OpeningBook.read(new ByteArrayInputStream(new byte[12])))
+				.isInstanceOf(IOException.class);
+		SortedMap<Long, Integer> positions = new TreeMap<>();
+		positions.put(1L, 2);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		OpeningBook.write(positions, output);
+		byte[] truncated = Arrays.copyOf(output.toByteArray(), output.size() - 1);
+		assertThatThrownBy(() -> OpeningBook.read(new ByteArrayInputStream(truncated)))
+				.isInstanceOf(IOException.class);
+	}
+
+	private static OpeningBook read(SortedMap<Long, Integer> positions) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		OpeningBook.write(positions, output);
+		return OpeningBook.read(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+}
@@ -0,0 +1,77 @@
+package uk.ac.bris.cs.scotlandyard.ai.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link GameState}
+ */
+public class GameStateTest {
+
+	private static final int TAXI = Ticket.TAXI.ordinal();
+
+	// 1 - 2 - 3 by taxi
+	private static Board line() {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		Node<Integer> one = new Node<>(1);
+		Node<Integer> two = new Node<>(2);
+		Node<Integer> three = new Node<>(3);
+		graph.addNode(one);
+		graph.addNode(two);
+		graph.addNode(three);
+		graph.addEdge(new Edge<>(one, two, Transport.TAXI));
+		graph.addEdge(new Edge<>(two, three, Transport.TAXI));
+		return Board.of(graph);
+	}
+
+	// Mr X at 1 and red at 3, one round left, taxi tickets only
+	private static GameState lastRound(int detectiveTaxis) {
+		int[] tickets = new int[2 * Ticket.values().length];
+		tickets[TAXI] = 1;
+		tickets[Ticket.values().length + TAXI] = detectiveTaxis;
+		return new GameState(line(), Collections.singletonList(false),
+				Arrays.asList(Colour.BLACK, Colour.RED), new int[] { 1, 3 }, tickets, 0, 0);
+	}
+
+	@Test
+	public void testCaptureInFinalRoundIsDetectiveWin() {
+		GameState state = lastRound(2);
+		int two = state.board().index(2);
+		state.play(GameState.ticketMove(two, TAXI));
+		assertThat(state.outcome()).isEqualTo(GameState.ONGOING);
+		state.play(GameState.ticketMove(two, TAXI));
+		assertThat(state.round()).isEqualTo(state.rounds());
+		assertThat(state.outcome()).isEqualTo(GameState.DETECTIVES_WIN);
+	}
+
+	@Test
+	public void testCaptureWithLastTicketIsDetectiveWin() {
+		GameState state = lastRound(1);
+		int two = state.board().index(2);
+		state.play(GameState.ticketMove(two, TAXI));
+		state.play(GameState.ticketMove(two, TAXI));
+		// red is out of tickets as well
+		assertThat(state.hasMove(1)).isFalse();
+		assertThat(state.outcome()).isEqualTo(GameState.DETECTIVES_WIN);
+	}
+
+	@Test
+	public void testFinalRoundWithoutCaptureIsMrXWin() {
+		GameState state = lastRound(2);
+		state.play(GameState.ticketMove(state.board().index(2), TAXI));
+		state.play(GameState.ticketMove(state.board().index(3), TAXI));
+		assertThat(state.outcome()).isEqualTo(GameState.MRX_WINS);
+	}
+
+}
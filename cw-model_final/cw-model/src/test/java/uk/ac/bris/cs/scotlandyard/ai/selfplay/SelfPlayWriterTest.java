@@ -0,0 +1,153 @@
+package uk.ac.bris.cs.scotlandyard.ai.selfplay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import uk.ac.bris.cs.scotlandyard.ai.MoveCodec;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.ai.selfplay.SelfPlayFormat.*;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for {@link SelfPlayWriter} and {@link SelfPlayReader}
+ */
+public class SelfPlayWriterTest {
+
+	private static final int RECORDS_PER_CHUNK = 5;
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	// a two player game of the given length, record r has Mr X at 100 + r
+	// and blue at 10 + r with r taxi tickets, Mr X moves first
+	private static ByteBuffer game(int length) {
+		ByteBuffer records = ByteBuffer.allocate(length * RECORD_BYTES);
+		for (int r = 0; r < length; r++) {
+			int base = r * RECORD_BYTES;
+			records.put(base + ROUND, (byte) (r / 2));
+			records.put(base + PLAYER, (byte) (r % 2));
+			records.put(base + PLAYERS, (byte) 2);
+			records.putShort(base + LOCATIONS, (short) (100 + r));
+			records.putShort(base + LOCATIONS + 2, (short) (10 + r));
+			records.put(base + TICKETS + Ticket.values().length + Ticket.TAXI.ordinal(), (byte) r);
+			records.putInt(base + MOVE, MoveCodec.encode(played(r)));
+		}
+		return records;
+	}
+
+	private static Move played(int record) {
+		return new TicketMove(record % 2 == 0 ? BLACK : BLUE, Ticket.TAXI, 50 + record);
+	}
+
+	@Test
+	public void testRecordsRoundTrip() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (SelfPlayWriter writer = new SelfPlayWriter(directory, RECORDS_PER_CHUNK)) {
+			assertThat(writer.write(game(3), MRX_WINS)).isZero();
+			assertThat(writer.write(game(2), DETECTIVES_WIN)).isEqualTo(1);
+			assertThat(writer.records()).isEqualTo(5);
+		}
+		SelfPlayReader reader = SelfPlayReader.open(directory);
+		assertThat(reader.games()).isEqualTo(2);
+		assertThat(reader.outcome(0)).isEqualTo(MRX_WINS);
+		assertThat(reader.outcome(1)).isEqualTo(DETECTIVES_WIN);
+		assertThat(reader.size(0)).isEqualTo(3);
+		assertThat(reader.size(1)).isEqualTo(2);
+		ByteBuffer records = reader.records(0);
+		assertThat(records.remaining()).isEqualTo(3 * RECORD_BYTES);
+		for (int r = 0; r < 3; r++) {
+			assertThat(SelfPlayFormat.game(records, r)).isZero();
+			assertThat(outcome(records, r)).isEqualTo(MRX_WINS);
+			assertThat(round(records, r)).isEqualTo(r / 2);
+			assertThat(player(records, r)).isEqualTo(r % 2);
+			assertThat(players(records, r)).isEqualTo(2);
+			assertThat(location(records, r, 0)).isEqualTo(100 + r);
+			assertThat(location(records, r, 1)).isEqualTo(10 + r);
+			assertThat(tickets(records, r, 1, Ticket.TAXI)).isEqualTo(r);
+			assertThat(tickets(records, r, 0, Ticket.TAXI)).isZero();
+			assertThat(MoveCodec.decode(r % 2 == 0 ? BLACK : BLUE, move(records, r)))
+					.isEqualTo(played(r));
+		}
+		assertThat(SelfPlayFormat.game(reader.records(1), 1)).isEqualTo(1);
+		assertThat(outcome(reader.records(1), 0)).isEqualTo(DETECTIVES_WIN);
+	}
+
+	@Test
+	public void testGamesNeverSpanChunks() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (SelfPlayWriter writer = new SelfPlayWriter(directory, RECORDS_PER_CHUNK)) {
+			writer.write(game(3), MRX_WINS);
+			// would take the first chunk to 6 records
+			writer.write(game(3), MRX_WINS);
+			writer.write(game(2), DETECTIVES_WIN);
+			// longer than a chunk on its own
+			writer.write(game(7), MRX_WINS);
+		}
+		assertThat(Files.exists(directory.resolve(chunkName(0)))).isTrue();
+		assertThat(Files.exists(directory.resolve(chunkName(1)))).isTrue();
+		assertThat(Files.exists(directory.resolve(chunkName(2)))).isTrue();
+		assertThat(Files.exists(directory.resolve(chunkName(3)))).isFalse();
+		assertThat(Files.size(directory.resolve(chunkName(1))))
+				.isEqualTo(HEADER_BYTES + 5 * RECORD_BYTES);
+
+		SelfPlayReader reader = SelfPlayReader.open(directory);
+		assertThat(reader.games()).isEqualTo(4);
+		// index entries: game, chunk, first record, records, outcome, players
+		ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(INDEX)));
+		int[][] entries = { { 0, 0, 0, 3 }, { 1, 1, 0, 3 }, { 2, 1, 3, 2 }, { 3, 2, 0, 7 } };
+		for (int[] entry : entries) {
+			int at = HEADER_BYTES + entry[0] * ENTRY_BYTES;
+			assertThat(index.getInt(at)).isEqualTo(entry[0]);
+			assertThat(index.getInt(at + 4)).isEqualTo(entry[1]);
+			assertThat(index.getInt(at + 8)).isEqualTo(entry[2]);
+			assertThat(index.getShort(at + 12)).isEqualTo((short) entry[3]);
+			assertThat(index.get(at + 15)).isEqualTo((byte) 2);
+			assertThat(reader.size(entry[0])).isEqualTo(entry[3]);
+			assertThat(location(reader.records(entry[0]), entry[3] - 1, 0))
+					.isEqualTo(100 + entry[3] - 1);
+		}
+	}
+
+	@Test
+	public void testReopenedDataSetContinuesInNewChunk() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (SelfPlayWriter writer = new SelfPlayWriter(directory, RECORDS_PER_CHUNK)) {
+			writer.write(game(2), MRX_WINS);
+		}
+		try (SelfPlayWriter writer = new SelfPlayWriter(directory, RECORDS_PER_CHUNK)) {
+			assertThat(writer.games()).isEqualTo(1);
+			assertThat(writer.write(game(2), DETECTIVES_WIN)).isEqualTo(1);
+		}
+		assertThat(Files.exists(directory.resolve(chunkName(1)))).isTrue();
+		SelfPlayReader reader = SelfPlayReader.open(directory);
+		assertThat(reader.games()).isEqualTo(2);
+		assertThat(SelfPlayFormat.game(reader.records(1), 0)).isEqualTo(1);
+		assertThatThrownBy(() -> reader.records(2))
+				.isInstanceOf(IndexOutOfBoundsException.class);
+	}
+
+	@Test
+	public void testInvalidGamesAreRejected() throws IOException {
+		try (SelfPlayWriter writer = new SelfPlayWriter(folder.getRoot().toPath(),
+				RECORDS_PER_CHUNK)) {
+			assertThatThrownBy(() -> writer.write(game(1), 0))
+					.isInstanceOf(IllegalArgumentException.class);
+			assertThatThrownBy(() -> writer.write(ByteBuffer.allocate(RECORD_BYTES + 1), MRX_WINS))
+					.isInstanceOf(IllegalArgumentException.class);
+			assertThatThrownBy(() -> writer.write(ByteBuffer.allocate(0), MRX_WINS))
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package uk.ac.bris.cs.scotlandyard.ai.tablebase;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.ai.search.Board;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.ESCAPES;
+import static uk.ac.bris.cs.scotlandyard.ai.tablebase.EndgameTable.UNKNOWN;
+
+/**
+ * Tests for {@link EndgameTableGenerator} and {@link EndgameTable}
+ */
+public class EndgameTableGeneratorTest {
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	// 1 - 2 - ... - n, closed into a cycle if asked
+	private static Board line(int n, boolean cycle) {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		for (int i = 1; i <= n; i++)
+			graph.addNode(new Node<>(i));
+		for (int i = 1; i < n; i++)
+			graph.addEdge(new Edge<>(graph.getNode(i), graph.getNode(i + 1), Transport.TAXI));
+		if (cycle)
+			graph.addEdge(new Edge<>(graph.getNode(n), graph.getNode(1), Transport.TAXI));
+		return Board.of(graph);
+	}
+
+	private EndgameTable generate(Board board, int detectives) throws IOException {
+		Path file = folder.newFile().toPath();
+		EndgameTableGenerator.generate(board, detectives, file);
+		return EndgameTable.open(file);
+	}
+
+	@Test
+	public void testPliesToCaptureOnALine() throws IOException {
+		Path file = folder.newFile().toPath();
+		// the longest capture below takes 4 plies
+		assertThat(EndgameTableGenerator.generate(line(4, false), 1, file)).isEqualTo(4);
+		EndgameTable table = EndgameTable.open(file);
+		assertThat(table.detectives()).isEqualTo(1);
+		// caught, and Mr X stuck at the end of the line
+		assertThat(table.distanceToCapture(2, new int[] { 2 }, 0)).isEqualTo(0);
+		assertThat(table.distanceToCapture(4, new int[] { 3 }, 0)).isEqualTo(0);
+		// the detective steps onto Mr X
+		assertThat(table.distanceToCapture(2, new int[] { 1 }, 1)).isEqualTo(1);
+		// 4 <- 2: detective to 3, Mr X is stuck
+		assertThat(table.distanceToCapture(4, new int[] { 2 }, 1)).isEqualTo(1);
+		// 4 <- 2: Mr X to 3, detective to 3
+		assertThat(table.distanceToCapture(4, new int[] { 2 }, 0)).isEqualTo(2);
+		// 3 <- 1: Mr X runs to 4 rather than 2, then as above
+		assertThat(table.distanceToCapture(3, new int[] { 1 }, 0)).isEqualTo(4);
+		// 4 <- 1: detective to 2, then as above
+		assertThat(table.distanceToCapture(4, new int[] { 1 }, 1)).isEqualTo(3);
+		assertThat(table.distanceToCapture(4, new int[] { 1 }, 0)).isEqualTo(4);
+	}
+
+	@Test
+	public void testMrXEscapesOneDetectiveOnACycle() throws IOException {
+		EndgameTable table = generate(line(5, true), 1);
+		// Mr X can always keep two nodes away
+		assertThat(table.distanceToCapture(1, new int[] { 3 }, 0)).isEqualTo(ESCAPES);
+		assertThat(table.distanceToCapture(1, new int[] { 3 }, 1)).isEqualTo(ESCAPES);
+		// but not from next to the detective with the detective to move
+		assertThat(table.distanceToCapture(1, new int[] { 2 }, 1)).isEqualTo(1);
+	}
+
+	@Test
+	public void testTwoDetectivesCatchMrXOnACycle() throws IOException {
+		EndgameTable table = generate(line(5, true), 2);
+		assertThat(table.detectives()).isEqualTo(2);
+		for (int mrX = 1; mrX <= 5; mrX++)
+			for (int first = 1; first <= 5; first++)
+				for (int second = 1; second <= 5; second++) {
+					if (first == second) continue;
+					for (int turn = 0; turn <= 2; turn++)
+						assertThat(table.distanceToCapture(mrX, new int[] { first, second }, turn))
+								.as("%d <- %d, %d turn %d", mrX, first, second, turn)
+								.isNotNegative();
+				}
+	}
+
+	@Test
+	public void testCapturesBeyondTheLastPassAreUnknown() throws IOException {
+		// 299 detective moves from one end to the other are more plies than a
+		// cell can store, though none of these positions is an escape
+		EndgameTable table = generate(line(300, false), 1);
+		assertThat(table.distanceToCapture(300, new int[] { 1 }, 1)).isEqualTo(UNKNOWN);
+		assertThat(table.distanceToCapture(300, new int[] { 1 }, 0)).isEqualTo(UNKNOWN);
+		assertThat(table.distanceToCapture(2, new int[] { 1 }, 1)).isEqualTo(1);
+		assertThat(table.distanceToCapture(300, new int[] { 298 }, 1)).isEqualTo(1);
+	}
+
+	@Test
+	public void testRejectsPositionsThatDoNotFit() throws IOException {
+		EndgameTable table = generate(line(4, false), 1);
+		assertThatThrownBy(() -> table.distanceToCapture(1, new int[] { 2, 3 }, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> table.distanceToCapture(1, new int[] { 2 }, 2))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> table.distanceToCapture(5, new int[] { 2 }, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> generate(line(4, false), 3))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
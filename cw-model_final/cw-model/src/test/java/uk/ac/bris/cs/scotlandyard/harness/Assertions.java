@@ -4,7 +4,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
 import java.security.Permission;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 final class Assertions {
 	private Assertions() {}
@@ -39,18 +41,27 @@ final class Assertions {
 
 	}
 
-	static void disableSystemExit() {
-		System.setSecurityManager(new SecurityManager() {
-			@Override public void checkPermission(Permission perm) {
-				if (perm.getName().startsWith("exitVM")) {
-					throw new AssertionError("Calling System.exit() is not allowed");
-				}
+	// the security manager is global, so it stays installed while any thread
+	// holds the lock; a thread runs one test at a time so a new holder on the
+	// same thread replaces one that was never released
+	private static final Map<Thread, Object> HOLDERS = new HashMap<>();
+	private static final SecurityManager NO_EXIT = new SecurityManager() {
+		@Override public void checkPermission(Permission perm) {
+			if (perm.getName().startsWith("exitVM")) {
+				throw new AssertionError("Calling System.exit() is not allowed");
 			}
-		});
+		}
+	};
+
+	static synchronized void disableSystemExit(Object holder) {
+		HOLDERS.keySet().removeIf(thread -> !thread.isAlive());
+		HOLDERS.put(Thread.currentThread(), holder);
+		if (System.getSecurityManager() != NO_EXIT) System.setSecurityManager(NO_EXIT);
 	}
 
-	static void enableSystemExit() {
-		System.setSecurityManager(null);
+	static synchronized void enableSystemExit(Object holder) {
+		HOLDERS.values().removeIf(held -> held == holder);
+		if (HOLDERS.isEmpty()) System.setSecurityManager(null);
 	}
 
 }
@@ -0,0 +1,102 @@
+package uk.ac.bris.cs.scotlandyard.harness;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.harness.CodeGenRecorder.CodeGen;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.DEFAULT_REVEAL;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.ofRounds;
+
+/**
+ * Tests for {@link CodeGenRecorder}
+ */
+public class CodeGenRecorderTest {
+
+	private static final String GRAPH_METHOD = "defaultGraph()";
+
+	@Test
+	public void testStreamedPlayOutMatchesReadOut() throws Exception {
+		Map<String, String> outputs = record(TestHarnessPlayOutTestCodeGen::new);
+		assertThat(outputs.get("streamed")).isEqualTo(outputs.get("read"));
+		assertThat(outputs.get("read")).contains("player(RED).makeMove()",
+				"spectator().onGameOver()");
+	}
+
+	@Test
+	public void testStreamedSequenceDiagramMatchesReadOutBarTheTitle() throws Exception {
+		Map<String, String> outputs = record(GameModelSequencePUMLCodeGen::new);
+		String read = outputs.get("read");
+		String streamed = outputs.get("streamed");
+		// the round count in the title is only known at the end, so a
+		// streamed diagram has its title last
+		int start = read.indexOf("\ntitle ");
+		assertThat(start).isPositive();
+		String title = read.substring(start + 1, read.indexOf('\n', start + 1));
+		assertThat(streamed).endsWith("\n" + title + "\n@enduml");
+		assertThat(streamed.replace("\n" + title, ""))
+				.isEqualTo(read.replace("\n" + title, ""));
+	}
+
+	// plays a short game with one recorder reading out and another streaming
+	// the same code gen
+	private static Map<String, String> record(Supplier<CodeGen> codeGen)
+			throws IOException, URISyntaxException {
+		CodeGenRecorder reading = new CodeGenRecorder(ImmutableList.of(codeGen.get()));
+		CodeGenRecorder streaming = new CodeGenRecorder(ImmutableList.of(codeGen.get()));
+		PlayerConfiguration mrX = observe(reading, streaming, Colour.BLACK, 45, true);
+		PlayerConfiguration red = observe(reading, streaming, Colour.RED, 13, false);
+		PlayerConfiguration blue = observe(reading, streaming, Colour.BLUE, 94, false);
+		ScotlandYardModel model = new ScotlandYardModel(ofRounds(3, DEFAULT_REVEAL), graph(),
+				mrX, red, blue);
+		reading.snap(model);
+		streaming.snap(model);
+		StringWriter output = new StringWriter();
+		streaming.stream(GRAPH_METHOD, cg -> output);
+		model.registerSpectator(reading.createSpectator());
+		model.registerSpectator(streaming.createSpectator());
+		while (!model.isGameOver()) model.startRotate();
+		streaming.finish();
+
+		Map<String, String> outputs = new HashMap<>();
+		outputs.put("read", reading.readOut(GRAPH_METHOD).values().iterator().next());
+		outputs.put("streamed", output.toString());
+		return outputs;
+	}
+
+	// the player picks the first valid move; both recorders see each pick
+	private static PlayerConfiguration observe(CodeGenRecorder reading,
+			CodeGenRecorder streaming, Colour colour, int location, boolean mrX) {
+		PlayerConfiguration player = new PlayerConfiguration.Builder(colour)
+				.at(location)
+				.with(mrX ? mrXTickets() : detectiveTickets())
+				.using((view, at, moves, callback) -> callback.accept(moves.iterator().next()))
+				.build();
+		return streaming.observePlayer(reading.observePlayer(player));
+	}
+
+	private static Graph<Integer, Transport> graph() throws IOException, URISyntaxException {
+		return ScotlandYardGraphReader.fromLines(Files.readAllLines(Paths.get(
+				CodeGenRecorderTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+}
@@ -0,0 +1,120 @@
+package uk.ac.bris.cs.scotlandyard.harness;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Suite} that runs the tests of every class in the suite in parallel, on a pool shared
+ * by the whole suite. <br>
+ * Nested suites and parameterised runners are walked down to the runners that run test
+ * methods, those run their methods on the pool; classes, and the parameters of parameterised
+ * classes, still run one after the other so class level setup is unaffected. Each test method
+ * gets its own test instance as usual, so tests that keep their state in fields, like a
+ * {@link TestHarness} created in {@code @Before}, are confined to one thread. <br>
+ * The pool size defaults to the number of cores, pass the system property testThreads to change
+ * it, e.g. <code>-DtestThreads=4</code>. The pool is shut down once the suite has run.
+ */
+public class ParallelSuite extends Suite {
+
+	private final ExecutorService pool;
+
+	public ParallelSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+		super(klass, builder);
+		int threads = Optional.ofNullable(System.getProperty("testThreads"))
+				.map(Integer::parseInt)
+				.orElse(Runtime.getRuntime().availableProcessors());
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+				.setNameFormat("test-%d").setDaemon(true).build());
+		try {
+			filter(new Parallelise());
+		} catch (NoTestsRemainException e) {
+			throw new InitializationError(e);
+		}
+	}
+
+	@Override public void run(RunNotifier notifier) {
+		try {
+			super.run(notifier);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Keeps every test and visits every runner on the way, a filter is handed each child of a
+	 * runner. Only leaves are scheduled on the pool, a parent waiting on its children from a pool
+	 * thread could starve the pool.
+	 */
+	private final class Parallelise extends Filter {
+
+		// for each runner being visited, whether any of its children is a runner
+		private final Deque<Boolean> parents = new ArrayDeque<>();
+
+		@Override public boolean shouldRun(Description description) {
+			return true;
+		}
+
+		@Override public void apply(Object child) throws NoTestsRemainException {
+			if (!(child instanceof ParentRunner)) return;
+			if (!parents.isEmpty()) {
+				parents.pop();
+				parents.push(true);
+			}
+			ParentRunner<?> runner = (ParentRunner<?>) child;
+			parents.push(false);
+			try {
+				super.apply(runner);
+			} finally {
+				if (!parents.pop()) runner.setScheduler(new PoolScheduler());
+			}
+		}
+
+		@Override public String describe() {
+			return "all tests, in parallel";
+		}
+	}
+
+	private final class PoolScheduler implements RunnerScheduler {
+
+		private final List<Future<?>> scheduled = new ArrayList<>();
+
+		@Override public void schedule(Runnable childStatement) {
+			scheduled.add(pool.submit(childStatement));
+		}
+
+		@Override public void finished() {
+			// failures are reported to the notifier by the child itself
+			for (Future<?> future : scheduled) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			scheduled.clear();
+		}
+	}
+
+}
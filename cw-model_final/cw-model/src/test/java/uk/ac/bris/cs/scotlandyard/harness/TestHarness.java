@@ -22,7 +22,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import uk.ac.bris.cs.scotlandyard.harness.Captures.Player.MakeMove;
 import uk.ac.bris.cs.scotlandyard.harness.Captures.Spectator.GameOver;
@@ -75,7 +75,13 @@ import static uk.ac.bris.cs.scotlandyard.model.Ticket.UNDERGROUND;
  * To print interactions to System.out, pass the system property printInteractions=true<br>
  * To change the default number of runs of each test from 10, pass the system property captureN,
  * e.g. captureN=5<br>
+ * To take the repeated captures in parallel, pass the system property parallelCaptures=true;
+ * only for models whose getters are safe to call from several threads<br>
  * For example: <code>-DprintInteractions=true</code>
+ * <p>
+ * A harness holds no global state apart from the lock that stops the model from calling
+ * {@link System#exit(int)}, so harnesses of different tests can run on different threads, see
+ * {@link ParallelSuite}. A harness itself must stay confined to the test that created it.
  */
 public class TestHarness {
 
@@ -83,6 +89,7 @@ public class TestHarness {
 	enum EndMode {NO_MORE, IGNORE}
 
 	private final int captureN;
+	private final boolean parallelCaptures;
 	private final String callingClass;
 	private final Queue<Interaction<?>> interactions = new ArrayDeque<>();
 	private boolean printInteractions;
@@ -125,8 +132,9 @@ public class TestHarness {
 		this(captureN, getBooleanFlag("printInteractions"));
 	}
 	public TestHarness(int captureN, boolean printInteractions) {
-		Assertions.disableSystemExit();
+		Assertions.disableSystemExit(this);
 		this.captureN = captureN;
+		this.parallelCaptures = getBooleanFlag("parallelCaptures");
 		this.printInteractions = printInteractions;
 		this.callingClass = Arrays.stream(Thread.currentThread().getStackTrace())
 				.skip(1)
@@ -171,7 +179,8 @@ public class TestHarness {
 		private TestAssert previousRound;
 		private Interaction<?>[] interactions;
 		private List<Requirement<ScotlandYardGame>> reqs = new ArrayList<>();
-		Consumer<ScotlandYardGame> continuation = game -> Assertions.enableSystemExit();
+		Consumer<ScotlandYardGame> continuation =
+				game -> Assertions.enableSystemExit(TestHarness.this);
 
 		private TestAssert(Interaction<?>... interactions) {
 			this(null, interactions);
@@ -246,7 +255,7 @@ public class TestHarness {
 	}
 
 	public void forceReleaseShutdownLock() {
-		Assertions.enableSystemExit();
+		Assertions.enableSystemExit(this);
 	}
 
 	public interface Setups {
@@ -276,8 +285,10 @@ public class TestHarness {
 	                                             Supplier<C> unsafeCapture) {
 		// TODO wrap exceptions
 		C initial = unsafeCapture.get();
-		List<C> captures = Stream.generate(unsafeCapture)
-				.limit(captureN - 1)
+		IntStream repetitions = IntStream.range(1, captureN);
+		if (parallelCaptures) repetitions = repetitions.parallel();
+		List<C> captures = repetitions
+				.mapToObj(i -> unsafeCapture.get())
 				.collect(toList());
 		// view getter with side effect will fail
 		List<Entry<Boolean, C>> statuses = captures.stream()
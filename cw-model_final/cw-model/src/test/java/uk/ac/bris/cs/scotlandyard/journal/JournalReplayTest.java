@@ -0,0 +1,150 @@
+package uk.ac.bris.cs.scotlandyard.journal;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.DEFAULT_REVEAL;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.ofRounds;
+
+/**
+ * Tests for {@link GameJournal} and {@link JournalReplay}
+ */
+public class JournalReplayTest {
+
+	private static final int ROUNDS = 9;
+	// the round at which the unfinished journal is taken
+	private static final int CUT = 6;
+
+	private static Graph<Integer, Transport> graph;
+
+	// live views right after each round started, 0 before the first move
+	private final Map<Integer, ViewSnapshot> live = new HashMap<>();
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private byte[] unfinished;
+	// Mr X's true location at the end of the game
+	private int mrXLocation;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		graph = ScotlandYardGraphReader.fromLines(Files.readAllLines(Paths.get(
+				JournalReplayTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+	// plays a game with every player picking its first move
+	private void play() throws IOException {
+		GameJournal journal = new GameJournal(bytes, 2, e -> {
+			throw new AssertionError(e);
+		});
+		PlayerConfiguration mrX = journal.observePlayer(new PlayerConfiguration.Builder(
+				Colour.BLACK).at(45).with(mrXTickets())
+				.using((view, location, moves, callback) -> {
+					Move move = moves.iterator().next();
+					mrXLocation = move instanceof DoubleMove
+							? ((DoubleMove) move).finalDestination()
+							: ((TicketMove) move).destination();
+					callback.accept(move);
+				}).build());
+		ScotlandYardModel model = new ScotlandYardModel(ofRounds(ROUNDS, DEFAULT_REVEAL), graph,
+				mrX, detective(Colour.RED, 13), detective(Colour.BLUE, 94));
+		journal.start(model);
+		live.put(0, ViewSnapshot.of(model));
+		// the journal is registered first so its output is up to date
+		model.registerSpectator(journal);
+		model.registerSpectator(new Spectator() {
+			@Override public void onRoundStarted(ScotlandYardView view, int round) {
+				live.put(round, ViewSnapshot.of(view));
+				if (round == CUT) unfinished = bytes.toByteArray();
+			}
+		});
+		while (!model.isGameOver()) model.startRotate();
+		journal.close();
+	}
+
+	private static PlayerConfiguration detective(Colour colour, int location) {
+		return new PlayerConfiguration.Builder(colour).at(location).with(detectiveTickets())
+				.using((view, at, moves, callback) -> callback.accept(moves.iterator().next()))
+				.build();
+	}
+
+	@Test
+	public void testSeekMatchesLiveGameAtEveryRound() throws IOException {
+		play();
+		JournalReplay replay = JournalReplay.read(bytes.toByteArray());
+		assertThat(replay.getPlayers()).containsExactly(Colour.BLACK, Colour.RED, Colour.BLUE);
+		assertThat(replay.getRounds()).hasSize(ROUNDS);
+		for (int round = 0; round <= ROUNDS; round++) {
+			assertThat(live).containsKey(round);
+			assertSameView(replay.seek(round).view(), live.get(round));
+		}
+		assertThat(replay.last().view().isGameOver()).isTrue();
+		assertThat(replay.last().mrXLocation()).isEqualTo(mrXLocation);
+	}
+
+	@Test
+	public void testSeekWithoutIndexScansTheJournal() throws IOException {
+		play();
+		// taken mid-game, before the index is written
+		JournalReplay replay = JournalReplay.read(unfinished);
+		assertThat(replay.last().view().getCurrentRound()).isEqualTo(CUT);
+		for (int round = 0; round <= CUT; round++)
+			assertSameView(replay.seek(round).view(), live.get(round));
+		assertThatThrownBy(() -> replay.seek(CUT + 1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testResumePointIsAtTheEndOfARotation() throws IOException {
+		play();
+		JournalReplay replay = JournalReplay.read(unfinished);
+		ViewSnapshot resume = replay.resumePoint().view();
+		assertThat(resume.getCurrentPlayer()).isEqualTo(Colour.BLACK);
+		assertThat(resume.getCurrentRound()).isLessThanOrEqualTo(CUT);
+	}
+
+	@Test
+	public void testNotAJournal() {
+		assertThatThrownBy(() -> JournalReplay.read(new byte[] { 1, 2, 3, 4, 5, 6, 7 }))
+				.isInstanceOf(IOException.class);
+	}
+
+	private static void assertSameView(ScotlandYardView actual, ScotlandYardView expected) {
+		assertThat(actual.getCurrentRound()).isEqualTo(expected.getCurrentRound());
+		assertThat(actual.getCurrentPlayer()).isEqualTo(expected.getCurrentPlayer());
+		assertThat(actual.isGameOver()).isEqualTo(expected.isGameOver());
+		for (Colour colour : expected.getPlayers()) {
+			assertThat(actual.getPlayerLocation(colour))
+					.as("%s in round %d", colour, expected.getCurrentRound())
+					.isEqualTo(expected.getPlayerLocation(colour));
+			for (Ticket ticket : Ticket.values())
+				assertThat(actual.getPlayerTickets(colour, ticket))
+						.as("%s %s in round %d", colour, ticket, expected.getCurrentRound())
+						.isEqualTo(expected.getPlayerTickets(colour, ticket));
+		}
+	}
+
+}
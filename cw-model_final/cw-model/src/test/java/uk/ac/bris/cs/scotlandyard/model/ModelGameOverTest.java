@@ -243,4 +243,21 @@ public class ModelGameOverTest extends ParameterisedModelTestBase {
 				.thenAssert("All detectives are winners", g ->
 						assertThat(g.getWinningPlayers()).containsExactlyInAnyOrder(BLUE, RED));
 	}
+
+	@Test
+	public void testDetectivesWinIfMrXCapturedInFinalRound() {
+		PlayerConfiguration mrX = harness.newPlayer(BLACK, 86);
+		PlayerConfiguration blue = harness.newPlayer(BLUE, 85);
+		PlayerConfiguration red = harness.newPlayer(RED, 111);
+
+		harness.play(createGame(rounds(true), mrX, red, blue))
+				.startRotationAndAssertTheseInteractionsOccurInOrder(
+						player(BLACK).makeMove().willPick(taxi(103)),
+						player(RED).makeMove().willPick(taxi(112)),
+						// MrX captured at 103 as the last round ends
+						player(BLUE).makeMove().willPick(taxi(103)))
+				.thenRequire(gameOver())
+				.thenAssert("Capture beats the round limit", g ->
+						assertThat(g.getWinningPlayers()).containsExactlyInAnyOrder(BLUE, RED));
+	}
 }
@@ -0,0 +1,107 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.verify.Perft;
+import uk.ac.bris.cs.scotlandyard.verify.Perft.Counts;
+import uk.ac.bris.cs.scotlandyard.verify.Scenario;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests the number of move sequences from the start of standard games, see
+ * {@link Perft}. Every model counts up to depth 3, deeper counts only run on
+ * {@link FastScotlandYardModel}
+ */
+public class ModelPerftTest extends ParameterisedModelTestBase {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private Counts count(int detectives, int seed, int depth) throws InterruptedException {
+		return new Perft(factory).count(Scenario.standard(defaultGraph(), detectives, seed),
+				depth, THREADS);
+	}
+
+	@Test
+	public void testFirstMovesOfMrXFollowTheRules() {
+		// counted from the graph and tickets alone, no model is involved
+		assertThat(firstMovesOfMrX(Scenario.standard(defaultGraph(), 5, 0)))
+				.isEqualTo(new Counts(4, 4, 86, 0));
+		assertThat(firstMovesOfMrX(Scenario.standard(defaultGraph(), 2, 1)))
+				.isEqualTo(new Counts(4, 4, 98, 0));
+	}
+
+	@Test
+	public void testFiveDetectivesFirstRound() throws InterruptedException {
+		assertThat(count(5, 0, 1)).isEqualTo(new Counts(4, 4, 86, 0));
+		assertThat(count(5, 0, 2)).isEqualTo(new Counts(846, 0, 0, 0));
+		assertThat(count(5, 0, 3)).isEqualTo(new Counts(2538, 0, 0, 0));
+	}
+
+	@Test
+	public void testTwoDetectivesSecondMoveOfMrX() throws InterruptedException {
+		assertThat(count(2, 1, 1)).isEqualTo(new Counts(4, 4, 98, 0));
+		assertThat(count(2, 1, 2)).isEqualTo(new Counts(636, 0, 0, 0));
+		assertThat(count(2, 1, 3)).isEqualTo(new Counts(1908, 0, 0, 0));
+	}
+
+	@Test
+	public void testDeeperCountsOfFastModel() throws InterruptedException {
+		// other models replay every sequence, these take minutes on them
+		assumeTrue(factory instanceof ModelFactories.FastModelFactory);
+		assertThat(count(2, 1, 4)).isEqualTo(new Counts(10644, 9600, 256752, 0));
+		assertThat(count(5, 0, 6)).isEqualTo(new Counts(121824, 0, 0, 0));
+		assertThat(count(5, 0, 7)).isEqualTo(new Counts(718200, 648216, 16108848, 0));
+		assertThat(count(2, 1, 5)).isEqualTo(new Counts(1383732, 0, 0, 0));
+		assertThat(count(2, 1, 6)).isEqualTo(new Counts(6440000, 0, 0, 0));
+	}
+
+	// Mr X's valid moves at the start of the game as the rules define them:
+	// a ticket or a secret ticket per edge to a node no detective is on, and
+	// a double move of two such moves if he has the tickets for both
+	private static Counts firstMovesOfMrX(Scenario scenario) {
+		Set<Integer> detectives = new HashSet<>();
+		for (int i = 1; i < scenario.colours().size(); i++)
+			detectives.add(scenario.location(i));
+		Set<List<Object>> singles = singleMoves(scenario, detectives, scenario.location(0),
+				null);
+		long secrets = singles.stream().filter(m -> m.get(0) == Ticket.SECRET).count();
+		Set<List<Object>> doubles = new HashSet<>();
+		if (scenario.tickets(0, Ticket.DOUBLE) > 0 && scenario.rounds().size() > 1) {
+			for (List<Object> first : singles)
+				for (List<Object> second : singleMoves(scenario, detectives,
+						(Integer) first.get(1), (Ticket) first.get(0))) {
+					List<Object> move = new ArrayList<>(first);
+					move.addAll(second);
+					doubles.add(move);
+				}
+		}
+		return new Counts(singles.size() - secrets, secrets, doubles.size(), 0);
+	}
+
+	// distinct [ticket, destination] pairs, with one ticket already spent if
+	// not null
+	private static Set<List<Object>> singleMoves(Scenario scenario, Set<Integer> detectives,
+			int location, Ticket spent) {
+		Set<List<Object>> moves = new HashSet<>();
+		Node<Integer> node = scenario.graph().getNode(location);
+		for (Edge<Integer, Transport> edge : scenario.graph().getEdgesFrom(node)) {
+			int destination = edge.destination().value();
+			if (detectives.contains(destination)) continue;
+			for (Ticket ticket : asList(Ticket.fromTransport(edge.data()), Ticket.SECRET))
+				if (scenario.tickets(0, ticket) - (ticket == spent ? 1 : 0) > 0)
+					moves.add(asList(ticket, destination));
+		}
+		return moves;
+	}
+
+}
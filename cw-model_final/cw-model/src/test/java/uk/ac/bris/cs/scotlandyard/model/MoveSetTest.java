@@ -0,0 +1,166 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+
+/**
+ * Tests for {@link MoveSet}
+ */
+public class MoveSetTest {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	// singles, doubles and passes in a random order, with repeats
+	private static List<Move> moves(int count, long seed) {
+		Random random = new Random(seed);
+		List<Move> moves = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			switch (random.nextInt(4)) {
+				case 0:
+					moves.add(new PassMove(random.nextBoolean() ? RED : BLUE));
+					break;
+				case 1:
+					moves.add(new DoubleMove(BLACK, TICKETS[random.nextInt(5)],
+							1 + random.nextInt(199), TICKETS[random.nextInt(5)],
+							1 + random.nextInt(199)));
+					break;
+				default:
+					moves.add(new TicketMove(random.nextBoolean() ? BLACK : RED,
+							TICKETS[random.nextInt(5)], 1 + random.nextInt(199)));
+			}
+		}
+		return moves;
+	}
+
+	private static MoveSet build(List<Move> moves) {
+		MoveSet.Builder builder = MoveSet.builder();
+		moves.forEach(builder::add);
+		return builder.build();
+	}
+
+	@Test
+	public void testContainsAgreesWithHashSet() {
+		List<Move> added = moves(600, 1);
+		MoveSet set = build(added);
+		Set<Move> expected = new HashSet<>(added);
+		assertThat(set).hasSameSizeAs(expected);
+		for (Move move : moves(2000, 2))
+			assertThat(set.contains(move)).as("contains %s", move)
+					.isEqualTo(expected.contains(move));
+		assertThat(set.containsAll(expected)).isTrue();
+		assertThat(set.contains("not a move")).isFalse();
+		assertThat(set.contains(null)).isFalse();
+	}
+
+	@Test
+	public void testEqualsAndHashCodeAgreeWithHashSet() {
+		List<Move> added = moves(300, 3);
+		MoveSet set = build(added);
+		Set<Move> expected = new HashSet<>(added);
+		assertThat(set).isEqualTo(expected);
+		assertThat(expected).isEqualTo(set);
+		assertThat(set.hashCode()).isEqualTo(expected.hashCode());
+		// the same moves in another order
+		List<Move> shuffled = new ArrayList<>(added);
+		Collections.shuffle(shuffled, new Random(4));
+		assertThat(build(shuffled)).isEqualTo(set);
+		assertThat(build(shuffled).hashCode()).isEqualTo(set.hashCode());
+		// one move less
+		expected.remove(added.get(0));
+		assertThat(set).isNotEqualTo(expected);
+		assertThat(expected).isNotEqualTo(set);
+	}
+
+	@Test
+	public void testBuilderIgnoresDuplicates() {
+		Move taxi = new TicketMove(RED, Ticket.TAXI, 10);
+		MoveSet.Builder builder = MoveSet.builder()
+				.add(taxi)
+				.add(new TicketMove(RED, Ticket.TAXI, 10))
+				.add(new TicketMove(RED, Ticket.BUS, 10))
+				.add(taxi);
+		assertThat(builder.size()).isEqualTo(2);
+		assertThat(builder.build()).containsExactly(taxi, new TicketMove(RED, Ticket.BUS, 10));
+		assertThatThrownBy(() -> builder.add(null)).isInstanceOf(NullPointerException.class);
+	}
+
+	@Test
+	public void testIterationFollowsFirstAddition() {
+		List<Move> added = moves(400, 5);
+		List<Move> distinct = new ArrayList<>();
+		for (Move move : added)
+			if (!distinct.contains(move)) distinct.add(move);
+		MoveSet set = build(added);
+		assertThat(set).containsExactlyElementsOf(distinct);
+		assertThat(set.toArray()).containsExactly(distinct.toArray());
+		Iterator<Move> iterator = set.iterator();
+		distinct.forEach(m -> iterator.next());
+		assertThat(iterator.hasNext()).isFalse();
+		assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+	}
+
+	@Test
+	public void testEmptySet() {
+		MoveSet empty = MoveSet.of();
+		assertThat(empty).isEmpty();
+		assertThat(empty.hashCode()).isZero();
+		assertThat(empty).isEqualTo(Collections.emptySet());
+		assertThat(empty.contains(new PassMove(RED))).isFalse();
+		assertThat(MoveSet.builder().build()).isSameAs(empty);
+		assertThat(MoveSet.copyOf(Collections.emptyList())).isSameAs(empty);
+		assertThat(MoveSet.ofDistinct(new Move[3], 0)).isSameAs(empty);
+		assertThatThrownBy(() -> empty.iterator().next())
+				.isInstanceOf(NoSuchElementException.class);
+	}
+
+	@Test
+	public void testCopyOf() {
+		MoveSet set = build(moves(50, 6));
+		assertThat(MoveSet.copyOf(set)).isSameAs(set);
+		Set<Move> hashSet = new HashSet<>(set);
+		MoveSet copy = MoveSet.copyOf(hashSet);
+		assertThat(copy).isEqualTo(set).containsExactlyElementsOf(hashSet);
+		// a list with repeats keeps the first of each
+		List<Move> repeated = new ArrayList<>(set);
+		repeated.addAll(set);
+		assertThat(MoveSet.copyOf(repeated)).containsExactlyElementsOf(set);
+	}
+
+	@Test
+	public void testBuilderCanBeReusedAfterBuild() {
+		MoveSet.Builder builder = MoveSet.builder();
+		List<Move> moves = moves(64, 7);
+		moves.forEach(builder::add);
+		MoveSet first = builder.build();
+		Move extra = new TicketMove(BLUE, Ticket.UNDERGROUND, 200);
+		builder.add(extra);
+		assertThat(first).doesNotContain(extra).isEqualTo(new HashSet<>(moves));
+		assertThat(builder.build()).contains(extra).hasSize(first.size() + 1);
+	}
+
+	@Test
+	public void testSetIsImmutable() {
+		MoveSet set = build(moves(10, 8));
+		Move move = new PassMove(RED);
+		assertThatThrownBy(() -> set.add(move))
+				.isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> set.remove(set.iterator().next()))
+				.isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(set::clear).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+}
@@ -0,0 +1,14 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import uk.ac.bris.cs.scotlandyard.harness.ParallelSuite;
+
+/**
+ * Runs {@link ModelTest} with the tests of each class spread across all cores, e.g.
+ * <code>mvn test -DrunSuite=**&#47;ParallelModelTest.class</code>
+ */
+@RunWith(ParallelSuite.class)
+@Suite.SuiteClasses(ModelTest.class)
+public class ParallelModelTest {}
@@ -0,0 +1,127 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.DEFAULT_REVEAL;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.ofRounds;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+
+/**
+ * Tests for {@link ViewSnapshot}
+ */
+public class ViewSnapshotTest {
+
+	private static Graph<Integer, Transport> graph;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		graph = ScotlandYardGraphReader.fromLines(Files.readAllLines(Paths.get(
+				ViewSnapshotTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+	// every player picks its first move
+	private static PlayerConfiguration player(Colour colour, int location) {
+		return new PlayerConfiguration.Builder(colour).at(location)
+				.with(colour.isMrX() ? mrXTickets() : detectiveTickets())
+				.using((view, at, moves, callback) -> callback.accept(moves.iterator().next()))
+				.build();
+	}
+
+	private static ScotlandYardModel game(int rounds) {
+		return new ScotlandYardModel(ofRounds(rounds, DEFAULT_REVEAL), graph,
+				player(BLACK, 45), player(RED, 13), player(BLUE, 94));
+	}
+
+	// forwards to the view, counting the calls to isGameOver
+	private static ScotlandYardView counting(ScotlandYardView view, AtomicInteger calls) {
+		return (ScotlandYardView) Proxy.newProxyInstance(
+				ScotlandYardView.class.getClassLoader(),
+				new Class<?>[] { ScotlandYardView.class }, (proxy, method, args) -> {
+					if (method.getName().equals("isGameOver")) calls.incrementAndGet();
+					try {
+						return method.invoke(view, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	@Test
+	public void testSnapshotIsUnchangedAfterTheModelMovesOn() {
+		ScotlandYardModel model = game(4);
+		ViewSnapshot snapshot = ViewSnapshot.of(model);
+		model.startRotate();
+		model.startRotate();
+
+		assertThat(model.getCurrentRound()).isEqualTo(2);
+		assertThat(model.getPlayerLocation(RED)).isNotEqualTo(Optional.of(13));
+		assertThat(snapshot.getCurrentRound()).isEqualTo(0);
+		assertThat(snapshot.getCurrentPlayer()).isEqualTo(BLACK);
+		assertThat(snapshot.getPlayerLocation(RED)).contains(13);
+		assertThat(snapshot.getPlayerLocation(BLUE)).contains(94);
+		// hidden before the first reveal
+		assertThat(snapshot.getPlayerLocation(BLACK)).contains(0);
+		for (Ticket ticket : Ticket.values()) {
+			assertThat(snapshot.getPlayerTickets(BLACK, ticket))
+					.contains(mrXTickets().get(ticket));
+			assertThat(snapshot.getPlayerTickets(RED, ticket))
+					.contains(detectiveTickets().get(ticket));
+		}
+		assertThat(snapshot.isGameOver()).isFalse();
+		assertThat(snapshot.getWinningPlayers()).isEmpty();
+	}
+
+	@Test
+	public void testSnapshotsOfSourceShareGraphAndRounds() {
+		ScotlandYardModel model = game(4);
+		ViewSnapshot.Source source = ViewSnapshot.source(model);
+		ViewSnapshot first = source.snapshot(model);
+		model.startRotate();
+		ViewSnapshot second = source.snapshot(model);
+
+		assertThat(second.getGraph()).isSameAs(first.getGraph());
+		assertThat(second.getRounds()).isSameAs(first.getRounds());
+		assertThat(second.getPlayers()).isSameAs(first.getPlayers());
+		assertThat(second.sameSource(first)).isTrue();
+		assertThat(second.version()).isGreaterThan(first.version());
+		assertThat(ViewSnapshot.of(model).sameSource(first)).isFalse();
+	}
+
+	@Test
+	public void testGameOverIsOnlyWorkedOutWhenNotGiven() {
+		ScotlandYardModel model = game(2);
+		AtomicInteger calls = new AtomicInteger();
+		ScotlandYardView view = counting(model, calls);
+		ViewSnapshot.Source source = ViewSnapshot.source(view);
+
+		ViewSnapshot running = source.snapshot(view, false);
+		assertThat(calls).hasValue(0);
+		assertThat(running.isGameOver()).isFalse();
+		assertThat(running.getWinningPlayers()).isEmpty();
+
+		while (!model.isGameOver()) model.startRotate();
+		ViewSnapshot over = source.snapshot(view);
+		assertThat(calls).hasValue(1);
+		assertThat(over.isGameOver()).isTrue();
+		assertThat(over.getWinningPlayers()).isEqualTo(model.getWinningPlayers());
+		assertThat(source.snapshot(view, true).getWinningPlayers())
+				.isEqualTo(model.getWinningPlayers());
+		assertThat(calls).hasValue(1);
+	}
+
+}